@@ -15,6 +15,10 @@
  */
 package com.github.fastxml;
 
+import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ParseUtils;
+import com.github.fastxml.util.StringCache;
+
 import java.nio.charset.Charset;
 
 /**
@@ -53,6 +57,17 @@ public abstract class AbstractFastXmlParser implements FastXmlParser {
      */
     protected boolean currentHasEntityReference;
 
+    /**
+     * mark current text contain CDATA block
+     */
+    protected boolean currentHasCDATA;
+
+    /**
+     * mark current token contain bytes which are not ASCII, names are always ASCII.
+     * The flags are recorded when the token is scanned, so getters can build string at once if there is nothing to decode
+     */
+    protected boolean currentNonAscii;
+
     /**
      * current event that has already checked
      */
@@ -79,6 +94,79 @@ public abstract class AbstractFastXmlParser implements FastXmlParser {
     protected Charset charset;
     protected final static Charset DEFAULT_CHARSET = Charset.defaultCharset();
 
+    /**
+     * the charset specified by setInput(), every document uses it in multi-document mode
+     */
+    protected Charset specifiedCharset;
+
+    /**
+     * whether documents following the first root tag will be parsed, see setMultiDocument()
+     */
+    protected boolean multiDocument;
+
+    /**
+     * whether another document follows the current END_DOCUMENT in multi-document mode
+     */
+    protected boolean hasNextDocument;
+
+    /**
+     * events suppressed by the scanner, see setOptions()
+     */
+    protected boolean skipAttributeEvents;
+    protected boolean skipTextEvents;
+    protected int maxDepth = Integer.MAX_VALUE;
+    /**
+     * whether values are decoded in place, it's only used by FastXmlParser4ByteArray
+     */
+    protected boolean inSitu;
+    /**
+     * cache of strings of values without markup, null if values are not cached
+     */
+    protected StringCache stringCache;
+    /**
+     * internal next event when the following start tag is deeper than maxDepth, next() skips the element before going on
+     */
+    protected final static int DEEP_ELEMENT = 7;
+
+    // attributes of the current start tag, they are scanned by scanAttributes() on demand
+    protected final static int ATTRIBUTE_STRIDE = 5; // name index, name length, value index, value length, flags
+    protected final static int ATTRIBUTE_IN_DOUBLE_QUOTE = 1;
+    protected final static int ATTRIBUTE_HAS_ENTITY_REFERENCE = 2;
+    protected final static int ATTRIBUTE_NON_ASCII = 4;
+
+    /**
+     * count of scanned attributes, -1 if attributes of the current start tag have not been scanned. next() resets it.
+     */
+    protected int attributeCount = -1;
+    protected int[] attributeTable = new int[ATTRIBUTE_STRIDE * 8];
+    /**
+     * cursor and next event after attributes, skipAttributes() continues from them
+     */
+    protected int attributesEndCursor;
+    protected int attributesNextEvent;
+    /**
+     * state saved by mark(), indexes of FastXmlParser4InputStream are decreased when segments are released
+     */
+    protected boolean marked;
+    protected int markedCursor;
+    protected int markedIndex;
+    private int markedLength;
+    private int markedEvent;
+    private int markedNextEvent;
+    private int markedDepth;
+    private boolean markedInDoubleQuote;
+    private boolean markedHasEntityReference;
+    private boolean markedHasCDATA;
+    private boolean markedNonAscii;
+    private boolean markedHasNextDocument;
+    private Charset markedCharset;
+
+    /**
+     * name of start tag, it's restored when an attribute has been selected
+     */
+    private int startTagIndex;
+    private int startTagLength;
+
     public byte[] getDocument() {
         return this.docBytes;
     }
@@ -102,4 +190,384 @@ public abstract class AbstractFastXmlParser implements FastXmlParser {
     public int getDepth() {
         return currentDepth;
     }
+
+    /**
+     * Enable or disable multi-document mode, it's kept when setInput() is called again.
+     * In multi-document mode, END_DOCUMENT is returned when the root tag is closed, and if another document follows,
+     * getNextEvent() is START_DOCUMENT and next() continues with the following document, which may have its own declaration.
+     * Documents may be back to back, or separated by whitespace, new lines or NUL bytes.
+     *
+     * @param multiDocument true if documents following the first one should be parsed
+     */
+    public void setMultiDocument(boolean multiDocument) {
+        this.multiDocument = multiDocument;
+    }
+
+    public boolean isMultiDocument() {
+        return multiDocument;
+    }
+
+    /**
+     * Set options to suppress events, they are kept when setInput() is called again.
+     * Suppressed tokens are skipped by the scanner in one pass, and next() never returns them.
+     *
+     * @param options options, if null, all events are returned
+     */
+    public void setOptions(Options options) {
+        if (options == null) {
+            options = new Options();
+        }
+        this.skipAttributeEvents = options.isSkipAttributes();
+        this.skipTextEvents = options.isSkipText();
+        this.maxDepth = options.getMaxDepth();
+        this.inSitu = options.isInSitu();
+        this.stringCache = options.getStringCache();
+    }
+
+    /**
+     * get the array which contains the whole current token without copying, see tokenOffset()
+     *
+     * @return the array contains current token
+     */
+    byte[] tokenBytes() {
+        return docBytes;
+    }
+
+    /**
+     * the beginning index of current token in the array returned by tokenBytes()
+     *
+     * @return offset of current token
+     */
+    int tokenOffset() {
+        return currentIndex;
+    }
+
+    /**
+     * build string of the current token which contains neither CDATA block nor entity reference, by cache if there is one
+     *
+     * @param bytes  array contains the current token
+     * @param offset the beginning index of current token in bytes
+     * @param ascii  true if all bytes of current token are ASCII, otherwise they are decoded by charset
+     * @return string of current token, null if it's empty
+     */
+    protected final String plainString(byte[] bytes, int offset, boolean ascii) {
+        StringCache cache = stringCache;
+        if (cache != null) {
+            return cache.get(bytes, offset, currentBytesLength, ascii ? null : charset);
+        }
+        return ParseUtils.parsePlainString(bytes, offset, currentBytesLength, ascii, charset);
+    }
+
+    /**
+     * check that the current event is START_TAG before getting the range of current element,
+     * and make the name of start tag the current bytes if an attribute has been selected
+     */
+    protected void checkStartTag() {
+        if (currentEvent != START_TAG) {
+            throw new IllegalStateException("current event should be START_TAG, but it's " + currentEvent);
+        }
+        if (attributeCount >= 0) {
+            restoreStartTag();
+        }
+    }
+
+    /**
+     * scan attributes of the current start tag from cursor, call addAttribute() for each of them,
+     * and set attributesEndCursor and attributesNextEvent. Cursor, next event and the current bytes should be restored after scanning.
+     *
+     * @throws ParseException
+     */
+    protected abstract void scanAttributes() throws ParseException;
+
+    /**
+     * record an attribute when scanning attributes
+     */
+    protected void addAttribute(int nameIndex, int nameLength, int valueIndex, int valueLength, boolean inDoubleQuote, boolean hasEntityReference,
+                                boolean nonAscii) {
+        int i = attributeCount * ATTRIBUTE_STRIDE;
+        if (i + ATTRIBUTE_STRIDE > attributeTable.length) {
+            int[] table = new int[attributeTable.length << 1];
+            System.arraycopy(attributeTable, 0, table, 0, i);
+            attributeTable = table;
+        }
+        attributeTable[i] = nameIndex;
+        attributeTable[i + 1] = nameLength;
+        attributeTable[i + 2] = valueIndex;
+        attributeTable[i + 3] = valueLength;
+        attributeTable[i + 4] = (inDoubleQuote ? ATTRIBUTE_IN_DOUBLE_QUOTE : 0) | (hasEntityReference ? ATTRIBUTE_HAS_ENTITY_REFERENCE : 0)
+                | (nonAscii ? ATTRIBUTE_NON_ASCII : 0);
+        attributeCount++;
+    }
+
+    /**
+     * scan attributes of the current start tag if they have not been scanned
+     */
+    private void ensureAttributes() throws ParseException {
+        if (attributeCount < 0) {
+            checkStartTag();
+            startTagIndex = currentIndex;
+            startTagLength = currentBytesLength;
+            attributeCount = 0; // addAttribute() counts from 0
+            try {
+                scanAttributes();
+            } catch (ParseException e) {
+                attributeCount = -1;
+                throw e;
+            }
+        }
+    }
+
+    private void restoreStartTag() {
+        currentIndex = startTagIndex;
+        currentBytesLength = startTagLength;
+        currentInDoubleQuote = false;
+        currentHasEntityReference = false;
+        currentHasCDATA = false;
+        currentNonAscii = false;
+    }
+
+    public int nextBatch(int[] events, int[] offsets, int[] lengths, int[] depths, int max) throws ParseException {
+        if (currentEvent == END_DOCUMENT && nextEvent == END_DOCUMENT) {
+            return 0;
+        }
+        beginBatch();
+        int count = 0;
+        while (count < max) {
+            int event = next();
+            events[count] = event;
+            offsets[count] = batchOffset();
+            lengths[count] = currentBytesLength;
+            depths[count] = currentDepth;
+            count++;
+            if (event == END_DOCUMENT) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    public byte[] getBatchBytes() {
+        return docBytes;
+    }
+
+    /**
+     * called before the first record of a batch is written, see nextBatch()
+     */
+    protected void beginBatch() {
+    }
+
+    /**
+     * get the offset of the current token in getBatchBytes(), see nextBatch()
+     *
+     * @return offset of the current token
+     */
+    protected int batchOffset() {
+        return currentIndex;
+    }
+
+    public boolean nextStartTag() throws ParseException {
+        for (; ; ) {
+            int event = next();
+            if (event == START_TAG) {
+                return true;
+            } else if (event == END_DOCUMENT) {
+                return false;
+            }
+        }
+    }
+
+    public boolean nextSiblingStartTag() throws ParseException {
+        if (currentEvent == START_TAG) {
+            getCurrentElementRange(); // skip the current element by scanning bytes for tags only
+        } else if (currentEvent != END_TAG && currentEvent != END_TAG_WITHOUT_TEXT) {
+            throw new IllegalStateException("current event should be START_TAG or END_TAG, but it's " + currentEvent);
+        }
+        // only a sibling or the end tag of parent can follow an end tag
+        return next() == START_TAG;
+    }
+
+    public boolean seekChild(byte[] name) throws ParseException {
+        int parentDepth = currentDepth;
+        for (; ; ) {
+            int event = next();
+            if (event == START_TAG) {
+                if (isMatch(name)) {
+                    return true;
+                }
+                getCurrentElementRange(); // skip the child
+            } else if (event == END_TAG || event == END_TAG_WITHOUT_TEXT) {
+                if (currentDepth < parentDepth) { // the current element ends
+                    return false;
+                }
+            } else if (event == END_DOCUMENT) {
+                return false;
+            }
+        }
+    }
+
+    public String nextText() throws ParseException {
+        if (!moveToText()) {
+            return "";
+        }
+        String text = getStringWithDecoding();
+        next(); // END_TAG
+        return text == null ? "" : text;
+    }
+
+    public int readIntChild(byte[] name, int defaultValue) throws ParseException {
+        if (!seekChild(name) || !moveToText()) {
+            return defaultValue;
+        }
+        int value = getInt();
+        next(); // END_TAG
+        return value;
+    }
+
+    public long readLongChild(byte[] name, long defaultValue) throws ParseException {
+        if (!seekChild(name) || !moveToText()) {
+            return defaultValue;
+        }
+        long value = getLong();
+        next(); // END_TAG
+        return value;
+    }
+
+    public String readStringChild(byte[] name) throws ParseException {
+        return seekChild(name) ? nextText() : null;
+    }
+
+    /**
+     * skip attributes of the current start tag and move to its text
+     *
+     * @return true if the current event is TEXT, false if the element has no text, then the current event is its end tag
+     * @throws ParseException
+     */
+    private boolean moveToText() throws ParseException {
+        if (currentEvent != START_TAG) {
+            throw new IllegalStateException("current event should be START_TAG, but it's " + currentEvent);
+        }
+        int event;
+        do {
+            event = next();
+        } while (event == ATTRIBUTE_NAME || event == ATTRIBUTE_VALUE);
+        if (event == TEXT) {
+            return true;
+        } else if (event == END_TAG || event == END_TAG_WITHOUT_TEXT) {
+            return false;
+        }
+        throw ParseException.formatError("element should contain text only", this);
+    }
+
+    public void mark() {
+        if (attributeCount >= 0) { // a selected attribute is not kept
+            restoreStartTag();
+        }
+        marked = true;
+        markedCursor = cursor;
+        markedIndex = currentIndex;
+        markedLength = currentBytesLength;
+        markedEvent = currentEvent;
+        markedNextEvent = nextEvent;
+        markedDepth = currentDepth;
+        markedInDoubleQuote = currentInDoubleQuote;
+        markedHasEntityReference = currentHasEntityReference;
+        markedHasCDATA = currentHasCDATA;
+        markedNonAscii = currentNonAscii;
+        markedHasNextDocument = hasNextDocument;
+        markedCharset = charset;
+    }
+
+    public void reset() throws ParseException {
+        if (!marked) {
+            throw new IllegalStateException("parser is not marked");
+        }
+        cursor = markedCursor;
+        currentIndex = markedIndex;
+        currentBytesLength = markedLength;
+        currentEvent = markedEvent;
+        nextEvent = markedNextEvent;
+        currentDepth = markedDepth;
+        currentInDoubleQuote = markedInDoubleQuote;
+        currentHasEntityReference = markedHasEntityReference;
+        currentHasCDATA = markedHasCDATA;
+        currentNonAscii = markedNonAscii;
+        hasNextDocument = markedHasNextDocument;
+        charset = markedCharset;
+        attributeCount = -1;
+    }
+
+    public void release() {
+        marked = false;
+    }
+
+    public int getAttributeCount() throws ParseException {
+        ensureAttributes();
+        return attributeCount;
+    }
+
+    public int indexOfAttribute(byte[] name) throws ParseException {
+        ensureAttributes();
+        int index = currentIndex;
+        int length = currentBytesLength;
+        try {
+            int[] table = attributeTable;
+            for (int i = 0, end = attributeCount * ATTRIBUTE_STRIDE; i < end; i += ATTRIBUTE_STRIDE) {
+                if (table[i + 1] == name.length) {
+                    currentIndex = table[i];
+                    currentBytesLength = table[i + 1];
+                    if (isMatch(name)) {
+                        return i / ATTRIBUTE_STRIDE;
+                    }
+                }
+            }
+            return -1;
+        } finally {
+            currentIndex = index;
+            currentBytesLength = length;
+        }
+    }
+
+    public void selectAttribute(int index) throws ParseException {
+        ensureAttributes();
+        if (index < 0 || index >= attributeCount) {
+            throw new IndexOutOfBoundsException("index of attribute: " + index + ", count: " + attributeCount);
+        }
+        int i = index * ATTRIBUTE_STRIDE;
+        currentIndex = attributeTable[i + 2];
+        currentBytesLength = attributeTable[i + 3];
+        currentInDoubleQuote = (attributeTable[i + 4] & ATTRIBUTE_IN_DOUBLE_QUOTE) != 0;
+        currentHasEntityReference = (attributeTable[i + 4] & ATTRIBUTE_HAS_ENTITY_REFERENCE) != 0;
+        currentHasCDATA = false;
+        currentNonAscii = (attributeTable[i + 4] & ATTRIBUTE_NON_ASCII) != 0;
+    }
+
+    public void readAttributes(AttributeSink sink) throws ParseException {
+        ensureAttributes();
+        int count = attributeCount;
+        if (count == 0) {
+            return;
+        }
+        int[] table = attributeTable;
+        int last = (count - 1) * ATTRIBUTE_STRIDE;
+        int begin = table[0];
+        // get all attributes in one array by taking them as a token
+        int index = currentIndex;
+        int length = currentBytesLength;
+        currentIndex = begin;
+        currentBytesLength = table[last + 2] + table[last + 3] - begin;
+        byte[] bytes = tokenBytes();
+        int base = tokenOffset() - begin;
+        currentIndex = index;
+        currentBytesLength = length;
+        for (int i = 0; i <= last; i += ATTRIBUTE_STRIDE) {
+            sink.attribute(bytes, base + table[i], table[i + 1], base + table[i + 2], table[i + 3]);
+        }
+    }
+
+    public void skipAttributes() throws ParseException {
+        ensureAttributes();
+        restoreStartTag();
+        cursor = attributesEndCursor;
+        nextEvent = attributesNextEvent;
+    }
 }
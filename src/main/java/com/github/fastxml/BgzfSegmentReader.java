@@ -0,0 +1,526 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompress BGZF input(gzip members whose extra field "BC" records the size of member) in parallel.
+ * A splitter thread reads compressed members one by one, and computes where the decompressed bytes of each member
+ * should be put by ISIZE in member trailer, then members are inflated by workers directly into segments of parser.
+ * Segments are given to parser in document order when all members covering them have been inflated.
+ */
+class BgzfSegmentReader extends SegmentReader implements Runnable {
+
+    /**
+     * max size of a BGZF member
+     */
+    private final static int MAX_BLOCK_SIZE = 65536;
+    /**
+     * size of fixed gzip header and XLEN
+     */
+    private final static int HEADER_SIZE = 12;
+    /**
+     * size of gzip trailer: CRC32 and ISIZE
+     */
+    private final static int TRAILER_SIZE = 8;
+    private final static int FHCRC = 2;
+    private final static int FEXTRA = 4;
+    private final static int FNAME = 8;
+    private final static int FCOMMENT = 16;
+    /**
+     * marks the end of slots
+     */
+    private final static Slot END = new Slot(null, 0);
+
+    private final InputStream is;
+    private final ExecutorService executor;
+    /**
+     * whether the executor is created by this reader, and should be shutdown by it
+     */
+    private final boolean ownExecutor;
+    private final Thread thread;
+    /**
+     * slots in document order, waiting for parser
+     */
+    private final BlockingQueue<Slot> slots;
+    /**
+     * segments released by parser, they will be filled again
+     */
+    private final ConcurrentLinkedQueue<byte[]> freeSegments = new ConcurrentLinkedQueue<byte[]>();
+    /**
+     * buffers of compressed members, and inflaters, they are reused by workers
+     */
+    private final ConcurrentLinkedQueue<byte[]> freeBlocks = new ConcurrentLinkedQueue<byte[]>();
+    private final ConcurrentLinkedQueue<Inflater> freeInflaters = new ConcurrentLinkedQueue<Inflater>();
+    /**
+     * the exception thrown when reading or inflating
+     */
+    private volatile IOException exception;
+    /**
+     * the last segment which may be not full, and it's length
+     */
+    private volatile byte[] lastSegment;
+    private volatile int lastSegmentLength;
+    /**
+     * whether END has been taken by parser, only accessed by parser thread
+     */
+    private boolean finished;
+
+    /**
+     * the slot which the next decompressed byte will be put into, and the offset in it, only accessed by splitter thread
+     */
+    private Slot currentSlot;
+    private int currentSlotOffset;
+
+    /**
+     * create a reader, the splitter thread will be started by start()
+     *
+     * @param is            input stream of BGZF, the first member has not been read
+     * @param segmentSize   size of each segment
+     * @param bufferCount   max count of segments which are being inflated or waiting for parser
+     * @param executor      workers to inflate members; if null, a pool of daemon threads will be created
+     *                      and shutdown when all members have been inflated
+     * @param threadFactory factory to create the splitter thread; if null, a daemon thread will be created
+     */
+    BgzfSegmentReader(InputStream is, int segmentSize, int bufferCount, ExecutorService executor, ThreadFactory threadFactory) {
+        super(segmentSize);
+        this.is = is;
+        this.slots = new ArrayBlockingQueue<Slot>(Math.max(bufferCount, 1) + 1); // one more for END
+        if (executor == null) {
+            this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "fastxml-inflater");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.ownExecutor = true;
+        } else {
+            this.executor = executor;
+            this.ownExecutor = false;
+        }
+        if (threadFactory == null) {
+            this.thread = new Thread(this, "fastxml-bgzf-splitter");
+            this.thread.setDaemon(true);
+        } else {
+            this.thread = threadFactory.newThread(this);
+        }
+    }
+
+    /**
+     * check whether the beginning of input is a BGZF member
+     *
+     * @param header first bytes of input
+     * @param length count of bytes in header
+     * @return true if it's a gzip member with "BC" subfield
+     */
+    static boolean isBgzf(byte[] header, int length) {
+        if (length < HEADER_SIZE || !isGzip(header, length) || (header[3] & FEXTRA) == 0) {
+            return false;
+        }
+        int extraLength = readShort(header, 10);
+        return findBlockSize(header, HEADER_SIZE, Math.min(HEADER_SIZE + extraLength, length)) >= 0;
+    }
+
+    /**
+     * check whether the beginning of input is a gzip member
+     *
+     * @param header first bytes of input
+     * @param length count of bytes in header
+     * @return true if magic number and compression method is gzip's
+     */
+    static boolean isGzip(byte[] header, int length) {
+        return length >= 3 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B && header[2] == 8;
+    }
+
+    @Override
+    void start() {
+        thread.start();
+    }
+
+    public void run() {
+        try {
+            byte[] block;
+            while (exception == null && (block = readBlock()) != null) {
+                int dataOffset = dataOffset(block);
+                int blockSize = readShort(block, blockSizeOffset(block)) + 1;
+                int crc = readInt(block, blockSize - TRAILER_SIZE);
+                int size = readInt(block, blockSize - 4);
+                if (size < 0 || size > MAX_BLOCK_SIZE) {
+                    throw new IOException("invalid ISIZE in BGZF member: " + size);
+                }
+                if (size == 0) { // such as EOF marker
+                    freeBlocks.offer(block);
+                    continue;
+                }
+                Inflate task = new Inflate(block, dataOffset, blockSize - TRAILER_SIZE - dataOffset, crc, size,
+                        assignSlots(size), currentSlotOffset);
+                currentSlotOffset = (currentSlotOffset + size) & (segmentSize - 1);
+                if (currentSlotOffset == 0) {
+                    currentSlot = null;
+                }
+                executor.execute(task);
+            }
+            if (exception != null) { // failed in workers
+                return;
+            }
+            if (currentSlot != null) { // the last segment is not full
+                lastSegment = currentSlot.segment;
+                lastSegmentLength = currentSlotOffset;
+                if (currentSlot.written(segmentSize - currentSlotOffset)) { // workers may have finished it
+                    synchronized (this) {
+                        notifyAll();
+                    }
+                }
+            }
+            slots.put(END);
+        } catch (IOException e) {
+            fail(e);
+        } catch (RejectedExecutionException e) {
+            fail(new IOException("executor of BGZF inflater is shutdown"));
+        } catch (InterruptedException e) {
+            // closed by parser
+        } finally {
+            if (ownExecutor) {
+                executor.shutdown(); // tasks have been submitted will be finished
+            }
+        }
+    }
+
+    /**
+     * read a whole BGZF member
+     *
+     * @return bytes of member, or null if EOF
+     * @throws IOException
+     */
+    private byte[] readBlock() throws IOException {
+        byte[] block = freeBlocks.poll();
+        if (block == null) {
+            block = new byte[MAX_BLOCK_SIZE];
+        }
+        int length = readFully(block, 0, HEADER_SIZE);
+        if (length == 0) {
+            return null;
+        }
+        if (length < HEADER_SIZE || !isGzip(block, length) || (block[3] & FEXTRA) == 0) {
+            throw new IOException("not a BGZF member");
+        }
+        int extraLength = readShort(block, 10);
+        if (readFully(block, HEADER_SIZE, extraLength) < extraLength) {
+            throw new EOFException("unexpected end of BGZF member");
+        }
+        int blockSizeOffset = findBlockSize(block, HEADER_SIZE, HEADER_SIZE + extraLength);
+        if (blockSizeOffset < 0) {
+            throw new IOException("gzip member without BGZF block size");
+        }
+        int blockSize = readShort(block, blockSizeOffset) + 1;
+        int rest = blockSize - HEADER_SIZE - extraLength;
+        if (rest < TRAILER_SIZE || readFully(block, HEADER_SIZE + extraLength, rest) < rest) {
+            throw new EOFException("unexpected end of BGZF member");
+        }
+        return block;
+    }
+
+    private int readFully(byte[] bytes, int offset, int length) throws IOException {
+        int count = 0;
+        while (count < length) {
+            int n = is.read(bytes, offset + count, length - count);
+            if (n < 0) {
+                break;
+            }
+            count += n;
+        }
+        return count;
+    }
+
+    /**
+     * find slots which the decompressed bytes of member will be put into, new slots will be given to parser in order
+     *
+     * @param size count of decompressed bytes
+     * @return slots covering the bytes
+     * @throws InterruptedException
+     */
+    private Slot[] assignSlots(int size) throws InterruptedException {
+        int offset = currentSlot == null ? 0 : currentSlotOffset;
+        Slot[] assigned = new Slot[(offset + size + segmentSize - 1) / segmentSize];
+        for (int i = 0; i < assigned.length; i++) {
+            if (i > 0 || currentSlot == null) {
+                byte[] segment = freeSegments.poll();
+                if (segment == null) {
+                    segment = new byte[segmentSize];
+                }
+                currentSlot = new Slot(segment, segmentSize);
+                slots.put(currentSlot); // wait if parser is far behind
+            }
+            assigned[i] = currentSlot;
+        }
+        return assigned;
+    }
+
+    /**
+     * record the exception and wake up parser
+     *
+     * @param e
+     */
+    private void fail(IOException e) {
+        if (exception == null) {
+            exception = e;
+        }
+        slots.clear(); // make room for END, the parser will not need these bytes
+        slots.offer(END);
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    @Override
+    byte[] take() throws ParseException {
+        if (!finished) {
+            try {
+                Slot slot = slots.take();
+                if (slot != END) {
+                    synchronized (this) {
+                        while (slot.pending.get() > 0 && exception == null) {
+                            wait();
+                        }
+                    }
+                    if (exception == null) {
+                        return slot.segment;
+                    }
+                }
+                finished = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw ParseException.ioException(new InterruptedIOException("interrupted when waiting for BGZF inflater"));
+            }
+        }
+        if (exception != null) {
+            throw ParseException.ioException(exception);
+        }
+        return null;
+    }
+
+    @Override
+    int length(byte[] segment) {
+        return segment == lastSegment ? lastSegmentLength : segmentSize;
+    }
+
+    @Override
+    void recycle(byte[] segment) {
+        freeSegments.offer(segment);
+    }
+
+    /**
+     * stop the splitter thread and workers, and take back segments which can be reused.
+     * If the whole input has not been inflated, workers may be still using segments, so no segment will be taken back.
+     *
+     * @return segments which can be reused
+     */
+    @Override
+    byte[][] close() {
+        if (!finished || exception != null) {
+            thread.interrupt();
+            if (ownExecutor) {
+                executor.shutdownNow();
+            }
+            return new byte[0][];
+        }
+        // END has been taken and every segment is complete, so no worker will touch any segment
+        Inflater inflater;
+        while ((inflater = freeInflaters.poll()) != null) {
+            inflater.end();
+        }
+        return freeSegments.toArray(new byte[freeSegments.size()][]);
+    }
+
+    /**
+     * a segment which is being inflated, it's complete when pending is 0
+     */
+    private static class Slot {
+        final byte[] segment;
+        /**
+         * count of bytes which have not been inflated
+         */
+        final AtomicInteger pending;
+
+        Slot(byte[] segment, int size) {
+            this.segment = segment;
+            this.pending = new AtomicInteger(size);
+        }
+
+        /**
+         * @param count count of bytes have been inflated or will not be used
+         * @return true if the segment is complete
+         */
+        boolean written(int count) {
+            return pending.addAndGet(-count) == 0;
+        }
+    }
+
+    /**
+     * inflate a member into slots
+     */
+    private class Inflate implements Runnable {
+        private final byte[] block;
+        private final int dataOffset;
+        private final int dataLength;
+        private final int crc;
+        private final int size;
+        private final Slot[] slots;
+        private final int firstOffset;
+
+        Inflate(byte[] block, int dataOffset, int dataLength, int crc, int size, Slot[] slots, int firstOffset) {
+            this.block = block;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.crc = crc;
+            this.size = size;
+            this.slots = slots;
+            this.firstOffset = firstOffset;
+        }
+
+        public void run() {
+            Inflater inflater = freeInflaters.poll();
+            if (inflater == null) {
+                inflater = new Inflater(true);
+            }
+            try {
+                inflater.setInput(block, dataOffset, dataLength);
+                CRC32 crc32 = new CRC32();
+                int[] lengths = new int[slots.length];
+                int offset = firstOffset;
+                int remaining = size;
+                for (int i = 0; i < slots.length; i++) {
+                    Slot slot = slots[i];
+                    int length = Math.min(remaining, segmentSize - offset);
+                    for (int count = 0; count < length; ) {
+                        int n = inflater.inflate(slot.segment, offset + count, length - count);
+                        if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                            throw new DataFormatException("ISIZE of BGZF member does not match its data");
+                        }
+                        count += n;
+                    }
+                    crc32.update(slot.segment, offset, length);
+                    lengths[i] = length;
+                    remaining -= length;
+                    offset = 0;
+                }
+                if ((int) crc32.getValue() != crc) {
+                    throw new DataFormatException("CRC32 of BGZF member does not match its data");
+                }
+                // bytes are given to parser only after they are verified
+                boolean complete = false;
+                for (int i = 0; i < slots.length; i++) {
+                    complete |= slots[i].written(lengths[i]);
+                }
+                if (complete) {
+                    synchronized (BgzfSegmentReader.this) {
+                        BgzfSegmentReader.this.notifyAll();
+                    }
+                }
+            } catch (DataFormatException e) {
+                fail(new IOException("corrupt BGZF member: " + e.getMessage()));
+            } finally {
+                inflater.reset();
+                freeInflaters.offer(inflater);
+                freeBlocks.offer(block);
+            }
+        }
+    }
+
+    /**
+     * find the offset of BSIZE in extra subfields
+     *
+     * @param bytes bytes of header
+     * @param begin offset of the first subfield
+     * @param end   end of extra field
+     * @return offset of BSIZE, or -1 if not found
+     */
+    private static int findBlockSize(byte[] bytes, int begin, int end) {
+        for (int i = begin; i + 4 <= end; ) {
+            int length = readShort(bytes, i + 2);
+            if (bytes[i] == 'B' && bytes[i + 1] == 'C' && length == 2 && i + 6 <= end) {
+                return i + 4;
+            }
+            i += 4 + length;
+        }
+        return -1;
+    }
+
+    private static int blockSizeOffset(byte[] block) {
+        return findBlockSize(block, HEADER_SIZE, HEADER_SIZE + readShort(block, 10));
+    }
+
+    /**
+     * skip optional header fields
+     *
+     * @param block bytes of member
+     * @return offset of compressed data
+     * @throws IOException
+     */
+    private static int dataOffset(byte[] block) throws IOException {
+        int flags = block[3];
+        int offset = HEADER_SIZE + readShort(block, 10);
+        int end = readShort(block, blockSizeOffset(block)) + 1 - TRAILER_SIZE;
+        if ((flags & FNAME) != 0) {
+            offset = skipZeroTerminated(block, offset, end);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            offset = skipZeroTerminated(block, offset, end);
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+        if (offset > end) {
+            throw new IOException("invalid header of BGZF member");
+        }
+        return offset;
+    }
+
+    private static int skipZeroTerminated(byte[] bytes, int offset, int end) throws IOException {
+        while (offset < end) {
+            if (bytes[offset++] == 0) {
+                return offset;
+            }
+        }
+        throw new IOException("invalid header of BGZF member");
+    }
+
+    private static int readShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | ((bytes[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return readShort(bytes, offset) | (readShort(bytes, offset + 2) << 16);
+    }
+}
@@ -0,0 +1,501 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parse many small documents concurrently with a user handler.
+ * Documents run on a fixed pool of threads, or each on a new thread of a thread factory, such as virtual threads on JDK 21+.
+ * Parsers are pooled and reused, so there are not more parsers than documents being parsed at the same time.
+ * Bytes of documents which are submitted but not delivered are bounded, parse() waits when the bound is reached.
+ * Results are delivered by one thread at a time, in the order of documents or in the order of completion.
+ */
+public class FastXmlBatchParser {
+
+    public final static int DEFAULT_MAX_IN_FLIGHT_BYTES = 64 * 1024 * 1024;
+
+    /**
+     * parse a document, it's called concurrently by worker threads
+     *
+     * @param <T> type of result
+     */
+    public interface DocumentHandler<T> {
+        /**
+         * @param parser parser before START_DOCUMENT, it's reused after this method returns, so don't keep it
+         * @return result of the document
+         * @throws Exception the exception will be delivered by ResultListener.onError(), an Error is not delivered,
+         *                   the first one is thrown by parse() after other results are delivered
+         */
+        T handle(FastXmlParser parser) throws Exception;
+    }
+
+    /**
+     * receive results, it's called by one thread at a time
+     *
+     * @param <T> type of result
+     */
+    public interface ResultListener<T> {
+        /**
+         * @param index  index of document in the batch, starting from 0
+         * @param result result returned by handler
+         */
+        void onResult(long index, T result);
+
+        /**
+         * @param index index of document in the batch, starting from 0
+         * @param e     exception thrown when parsing or handling the document
+         */
+        void onError(long index, Exception e);
+    }
+
+    private final ExecutorService pool;
+    private final ThreadFactory threadFactory;
+    private final int maxInFlightBytes;
+    private final Semaphore inFlightBytes;
+    private final boolean ordered;
+    private final Charset charset;
+    private final ConcurrentLinkedQueue<FastXmlParser4ByteArray> parsers = new ConcurrentLinkedQueue<FastXmlParser4ByteArray>();
+
+    /**
+     * create a batch parser running on a fixed pool
+     *
+     * @param threads          count of threads in pool
+     * @param maxInFlightBytes max bytes of documents which are submitted but not delivered
+     * @param ordered          true if results are delivered in the order of documents
+     * @param charset          if null, charset specified in document header will be used
+     */
+    public FastXmlBatchParser(int threads, int maxInFlightBytes, boolean ordered, Charset charset) {
+        this(Executors.newFixedThreadPool(Math.max(threads, 1), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "fastxml-batch-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), null, maxInFlightBytes, ordered, charset);
+    }
+
+    /**
+     * create a batch parser which runs each document on a new thread, it's designed for virtual threads
+     *
+     * @param threadFactory    factory of threads, such as virtualThreadFactory()
+     * @param maxInFlightBytes max bytes of documents which are submitted but not delivered, it also bounds count of threads
+     * @param ordered          true if results are delivered in the order of documents
+     * @param charset          if null, charset specified in document header will be used
+     */
+    public FastXmlBatchParser(ThreadFactory threadFactory, int maxInFlightBytes, boolean ordered, Charset charset) {
+        this(null, threadFactory, maxInFlightBytes, ordered, charset);
+        if (threadFactory == null) {
+            throw new IllegalArgumentException("threadFactory is null");
+        }
+    }
+
+    private FastXmlBatchParser(ExecutorService pool, ThreadFactory threadFactory, int maxInFlightBytes, boolean ordered, Charset charset) {
+        this.pool = pool;
+        this.threadFactory = threadFactory;
+        this.maxInFlightBytes = Math.max(maxInFlightBytes, 1);
+        this.inFlightBytes = new Semaphore(this.maxInFlightBytes);
+        this.ordered = ordered;
+        this.charset = charset;
+    }
+
+    /**
+     * create a batch parser on virtual threads if JVM supports them, otherwise on a fixed pool with a thread per core
+     *
+     * @param ordered true if results are delivered in the order of documents
+     * @return batch parser
+     */
+    public static FastXmlBatchParser newInstance(boolean ordered) {
+        ThreadFactory threadFactory = virtualThreadFactory();
+        if (threadFactory != null) {
+            return new FastXmlBatchParser(threadFactory, DEFAULT_MAX_IN_FLIGHT_BYTES, ordered, null);
+        }
+        return new FastXmlBatchParser(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_IN_FLIGHT_BYTES, ordered, null);
+    }
+
+    /**
+     * get the factory of virtual threads by reflection, because the source is compatible with old JVMs
+     *
+     * @return factory of virtual threads, or null if JVM doesn't support them
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * parse documents and wait until all results are delivered
+     *
+     * @param documents documents, a document should not be modified until it's result is delivered
+     * @param handler   handler to parse a document
+     * @param listener  listener to receive results
+     * @param <T>       type of result
+     * @return statistics of the batch
+     * @throws InterruptedException if the calling thread is interrupted when waiting
+     * @throws RuntimeException     the first exception thrown by listener, other results are still delivered,
+     *                              or RejectedExecutionException if a document can't be started, such as after close()
+     * @throws Error                the first error thrown by handler, other results are still delivered
+     */
+    public <T> Stats parse(Iterator<byte[]> documents, DocumentHandler<T> handler, ResultListener<T> listener) throws InterruptedException {
+        Batch<T> batch = new Batch<T>(handler, listener);
+        try {
+            while (documents.hasNext()) {
+                batch.submit(documents.next());
+            }
+        } finally {
+            batch.await();
+        }
+        return batch.stats;
+    }
+
+    /**
+     * parse documents in byte buffers and wait until all results are delivered.
+     * Bytes of a buffer are used directly if it wraps a whole array, otherwise they are copied.
+     *
+     * @param documents documents, a document should not be modified until it's result is delivered
+     * @param handler   handler to parse a document
+     * @param listener  listener to receive results
+     * @param <T>       type of result
+     * @return statistics of the batch
+     * @throws InterruptedException if the calling thread is interrupted when waiting
+     * @throws RuntimeException     the first exception thrown by listener, other results are still delivered,
+     *                              or RejectedExecutionException if a document can't be started, such as after close()
+     * @throws Error                the first error thrown by handler, other results are still delivered
+     */
+    public <T> Stats parseBuffers(Iterator<ByteBuffer> documents, DocumentHandler<T> handler, ResultListener<T> listener) throws InterruptedException {
+        Batch<T> batch = new Batch<T>(handler, listener);
+        try {
+            while (documents.hasNext()) {
+                batch.submit(toBytes(documents.next()));
+            }
+        } finally {
+            batch.await();
+        }
+        return batch.stats;
+    }
+
+    /**
+     * stop threads of pool, the batch parser can not be used any more
+     */
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() + buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * documents submitted by a parse() call
+     */
+    private class Batch<T> {
+        private final DocumentHandler<T> handler;
+        private final ResultListener<T> listener;
+        private final Stats stats = new Stats();
+        /**
+         * completed documents waiting for the previous ones, only used when ordered
+         */
+        private final Map<Long, Task<T>> completed = new HashMap<Long, Task<T>>();
+        /**
+         * tasks ready to be delivered, in the order of delivery
+         */
+        private final Queue<Task<T>> ready = new ArrayDeque<Task<T>>();
+        /**
+         * true when a thread is delivering, listener is called outside the lock, so this keeps it called by one thread at a time
+         */
+        private boolean delivering;
+        private long submitted;
+        private long nextDelivery;
+        private int pending;
+        /**
+         * the first exception thrown by listener, it will be thrown by parse()
+         */
+        private RuntimeException listenerError;
+        /**
+         * the first error thrown by handler, it will be thrown by parse()
+         */
+        private Error handlerError;
+
+        Batch(DocumentHandler<T> handler, ResultListener<T> listener) {
+            this.handler = handler;
+            this.listener = listener;
+        }
+
+        void submit(byte[] bytes) throws InterruptedException {
+            int permits = Math.min(bytes.length, maxInFlightBytes);
+            inFlightBytes.acquire(permits);
+            synchronized (this) {
+                pending++;
+            }
+            Task<T> task = new Task<T>(this, submitted++, bytes, permits);
+            boolean started = false;
+            try {
+                if (pool != null) {
+                    pool.execute(task);
+                } else {
+                    Thread thread = threadFactory.newThread(task);
+                    if (thread == null) {
+                        throw new RejectedExecutionException("thread factory returned null");
+                    }
+                    thread.start();
+                }
+                started = true;
+            } finally {
+                if (!started) { // the task will never complete, so await() should not wait for it
+                    synchronized (this) {
+                        pending--;
+                        submitted--;
+                    }
+                    inFlightBytes.release(permits);
+                }
+            }
+        }
+
+        /**
+         * make the result of task ready, and the results waiting for it if ordered, then deliver ready results
+         * unless another thread is delivering, which will deliver them too
+         */
+        void complete(Task<T> task) {
+            synchronized (this) {
+                if (!ordered) {
+                    ready.add(task);
+                } else if (task.index != nextDelivery) {
+                    completed.put(task.index, task);
+                } else {
+                    ready.add(task);
+                    nextDelivery++;
+                    Task<T> next;
+                    while ((next = completed.remove(nextDelivery)) != null) {
+                        ready.add(next);
+                        nextDelivery++;
+                    }
+                }
+                if (delivering || ready.isEmpty()) {
+                    return;
+                }
+                delivering = true;
+            }
+            deliverReady();
+        }
+
+        /**
+         * deliver ready results until none is left, listener is called without holding the lock,
+         * so workers completing other documents are not blocked by it
+         */
+        private void deliverReady() {
+            Task<T> task;
+            synchronized (this) {
+                task = ready.poll();
+            }
+            while (task != null) {
+                inFlightBytes.release(task.permits);
+                RuntimeException error = task.fatal == null ? deliver(task) : null;
+                synchronized (this) {
+                    pending--;
+                    stats.record(task.bytes.length, System.nanoTime() - task.submitTime, task.error != null || task.fatal != null);
+                    if (error != null && listenerError == null) {
+                        listenerError = error;
+                    }
+                    if (task.fatal != null && handlerError == null) {
+                        handlerError = task.fatal;
+                    }
+                    task = ready.poll();
+                    if (task == null) {
+                        delivering = false;
+                        if (pending == 0) {
+                            notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return exception thrown by listener, null if none
+         */
+        private RuntimeException deliver(Task<T> task) {
+            try {
+                if (task.error == null) {
+                    listener.onResult(task.index, task.result);
+                } else {
+                    listener.onError(task.index, task.error);
+                }
+                return null;
+            } catch (RuntimeException e) {
+                return e;
+            }
+        }
+
+        synchronized void await() throws InterruptedException {
+            while (pending > 0) {
+                wait();
+            }
+            stats.finish();
+            if (handlerError != null) {
+                throw handlerError;
+            }
+            if (listenerError != null) {
+                throw listenerError;
+            }
+        }
+    }
+
+    /**
+     * parse a document on a worker thread
+     */
+    private class Task<T> implements Runnable {
+        private final Batch<T> batch;
+        private final long index;
+        private final byte[] bytes;
+        private final int permits;
+        private final long submitTime = System.nanoTime();
+        private T result;
+        private Exception error;
+        private Error fatal;
+
+        Task(Batch<T> batch, long index, byte[] bytes, int permits) {
+            this.batch = batch;
+            this.index = index;
+            this.bytes = bytes;
+            this.permits = permits;
+        }
+
+        public void run() {
+            FastXmlParser4ByteArray parser = parsers.poll();
+            if (parser == null) {
+                parser = new FastXmlParser4ByteArray();
+            }
+            try {
+                parser.setInput(bytes, charset);
+                result = batch.handler.handle(parser);
+            } catch (Exception e) {
+                error = e;
+            } catch (Error e) { // still complete the task, or parse() would wait for it forever
+                fatal = e;
+            } finally {
+                parsers.offer(parser);
+            }
+            batch.complete(this);
+        }
+    }
+
+    /**
+     * throughput and latency of a batch. Latency of a document is from submitting to delivering,
+     * it's recorded in buckets of power of 2 nanoseconds, so percentiles are upper bounds within 2 times.
+     */
+    public static class Stats {
+        private final long beginTime = System.nanoTime();
+        private final long[] latencyBuckets = new long[64];
+        private long elapsedNanos;
+        private long documents;
+        private long errors;
+        private long bytes;
+        private long maxLatencyNanos;
+
+        void record(int length, long latencyNanos, boolean error) {
+            documents++;
+            bytes += length;
+            if (error) {
+                errors++;
+            }
+            if (latencyNanos > maxLatencyNanos) {
+                maxLatencyNanos = latencyNanos;
+            }
+            latencyBuckets[64 - Long.numberOfLeadingZeros(Math.max(latencyNanos, 1))]++;
+        }
+
+        void finish() {
+            elapsedNanos = System.nanoTime() - beginTime;
+        }
+
+        public long getDocuments() {
+            return documents;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getDocumentsPerSecond() {
+            return elapsedNanos == 0 ? 0 : documents * 1e9 / elapsedNanos;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1024 * 1024);
+        }
+
+        public long getMaxLatencyNanos() {
+            return maxLatencyNanos;
+        }
+
+        /**
+         * @param percentile such as 50, 99
+         * @return upper bound of latency in nanoseconds
+         */
+        public long getLatencyNanos(double percentile) {
+            long threshold = (long) Math.ceil(documents * percentile / 100);
+            long count = 0;
+            for (int i = 0; i < latencyBuckets.length; i++) {
+                count += latencyBuckets[i];
+                if (count >= threshold && count > 0) {
+                    return Math.min(i == 63 ? Long.MAX_VALUE : (1L << i) - 1, maxLatencyNanos);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("documents: %d, errors: %d, %.0f docs/s, %.1f MB/s, latency p50: %.1f us, p99: %.1f us, max: %.1f us",
+                    documents, errors, getDocumentsPerSecond(), getMegabytesPerSecond(),
+                    getLatencyNanos(50) / 1e3, getLatencyNanos(99) / 1e3, maxLatencyNanos / 1e3);
+        }
+    }
+}
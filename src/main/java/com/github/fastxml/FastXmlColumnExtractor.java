@@ -0,0 +1,930 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ByteUtils;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Extract repeated records into batches of columns, without an object per record.
+ * Records are matched by a path like "/rows/row" from the root tag, or by a name like "row" at any depth; "*" matches any element.
+ * A column is a path relative to the record: "price" is the text of a child element, "@id" is an attribute of the record,
+ * "address/city" and "address/@zip" are values of descendants. A name without prefix matches elements with any prefix.
+ * <p>
+ * Values are written into a reusable Batch of fixed size: int[], long[] and double[] by getInt(), getLong() and getDouble() of parser,
+ * and strings are codes of a dictionary of the batch, so a repeated string is decoded once per batch.
+ * A missing value, or an empty value of a numeric column, is marked in the null bitmap of the column.
+ * If a value occurs more than once in a record, the last one is kept.
+ * <p>
+ * extract(byte[], int, BatchHandler) splits a large document into ranges which begin at start tags of records,
+ * and fills batches of ranges in parallel. Records should be siblings with the same name,
+ * and the name should not occur in records, CDATA or comments as a start tag.
+ * <p>
+ * Columns can be added until the first extraction, then an extractor can be used by many threads.
+ */
+public class FastXmlColumnExtractor {
+
+    // types of columns
+    public final static int INT = 0;
+    public final static int LONG = 1;
+    public final static int DOUBLE = 2;
+    public final static int STRING = 3;
+
+    public final static int DEFAULT_BATCH_SIZE = 4096;
+    /**
+     * ranges of a parallel extraction per thread, more ranges balance threads better
+     */
+    private final static int SPLITS_PER_THREAD = 4;
+    private final static int MIN_SPLIT_BYTES = 64 * 1024;
+    private final static byte[] EMPTY = new byte[0];
+    private final static byte[] CDATA_BEGIN = "<![CDATA[".getBytes();
+    private final static byte[] CDATA_END = "]]>".getBytes();
+    private final static byte[] COMMENT_BEGIN = "<!--".getBytes();
+    private final static byte[] COMMENT_END = "-->".getBytes();
+    private final static byte[] PI_END = "?>".getBytes();
+
+    /**
+     * receive batches of records
+     */
+    public interface BatchHandler {
+        /**
+         * @param batch batch of records, it's reused after this method returns, so don't keep it.
+         *              In parallel extraction, it's called by many threads at the same time, each with its own batch.
+         */
+        void onBatch(Batch batch);
+    }
+
+    private final boolean absolute;
+    private final String[] recordNames;
+    private final List<String> columnPaths = new ArrayList<String>();
+    private final List<Integer> columnTypes = new ArrayList<Integer>();
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    /**
+     * columns compiled for the charset of the last document
+     */
+    private volatile Plan plan;
+    private volatile boolean started;
+
+    /**
+     * @param recordPath path from the root tag like "/rows/row", or a name like "row"
+     */
+    public FastXmlColumnExtractor(String recordPath) {
+        if (recordPath == null || recordPath.length() == 0 || recordPath.equals("/")) {
+            throw new IllegalArgumentException("record path is empty");
+        }
+        this.absolute = recordPath.charAt(0) == '/';
+        this.recordNames = (absolute ? recordPath.substring(1) : recordPath).split("/");
+        if (!absolute && recordNames.length > 1) {
+            throw new IllegalArgumentException("relative record path should be a name: " + recordPath);
+        }
+    }
+
+    /**
+     * add a column, its index is the count of columns added before it
+     *
+     * @param path path relative to the record, such as "price", "@id" or "address/@zip"
+     * @param type INT, LONG, DOUBLE or STRING
+     */
+    public FastXmlColumnExtractor addColumn(String path, int type) {
+        checkNotStarted();
+        if (type < INT || type > STRING) {
+            throw new IllegalArgumentException("unknown type: " + type);
+        }
+        if (path == null || path.length() == 0 || path.charAt(0) == '/' || path.endsWith("/")) {
+            throw new IllegalArgumentException("invalid column path: " + path);
+        }
+        String[] names = path.split("/");
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].length() == 0 || names[i].equals("*") || (names[i].charAt(0) == '@' && (i < names.length - 1 || names[i].length() == 1))) {
+                throw new IllegalArgumentException("invalid column path: " + path);
+            }
+        }
+        if (columnPaths.contains(path)) {
+            throw new IllegalArgumentException("duplicated column: " + path);
+        }
+        columnPaths.add(path);
+        columnTypes.add(type);
+        return this;
+    }
+
+    /**
+     * @param batchSize max records of a batch
+     */
+    public FastXmlColumnExtractor setBatchSize(int batchSize) {
+        checkNotStarted();
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size should be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public int getColumnCount() {
+        return columnPaths.size();
+    }
+
+    private void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("columns can not be changed after extracting");
+        }
+    }
+
+    /**
+     * extract records of document by the calling thread
+     *
+     * @param doc     document bytes, the encoding in document or AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @param handler handler of batches
+     * @return count of records
+     * @throws ParseException
+     */
+    public long extract(byte[] doc, BatchHandler handler) throws ParseException {
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(doc, null);
+        return extract(parser, handler);
+    }
+
+    /**
+     * extract records by the calling thread, the last batch is delivered before returning
+     *
+     * @param parser  parser before START_DOCUMENT, or at START_DOCUMENT
+     * @param handler handler of batches
+     * @return count of records
+     * @throws ParseException
+     */
+    public long extract(FastXmlParser parser, BatchHandler handler) throws ParseException {
+        if (!(parser instanceof AbstractFastXmlParser)) {
+            throw new IllegalArgumentException("unsupported parser: " + parser.getClass().getName());
+        }
+        AbstractFastXmlParser p = (AbstractFastXmlParser) parser;
+        if (p.getNextEvent() == FastXmlParser.START_DOCUMENT) {
+            p.next();
+        }
+        Plan plan = plan(p.getEncode());
+        Reader reader = new Reader(plan, handler);
+        while (nextRecord(p, plan)) {
+            reader.readRecord(p);
+        }
+        reader.flush();
+        return reader.rows;
+    }
+
+    /**
+     * extract records of document by threads in parallel. The document is split into ranges which begin at start tags of records,
+     * and batches are filled per range, so a batch doesn't contain records of two ranges.
+     * Order of records is getSplit() and getSequence() of batches, then rows in batch.
+     *
+     * @param doc     document bytes, the encoding in document or AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @param threads count of threads, including the calling thread
+     * @param handler handler of batches, it's called by many threads at the same time
+     * @return count of records
+     * @throws ParseException       the first exception of parsing, other threads stop at the end of their ranges
+     * @throws InterruptedException if the calling thread is interrupted when waiting for other threads
+     */
+    public long extract(final byte[] doc, int threads, final BatchHandler handler) throws ParseException, InterruptedException {
+        if (threads <= 1) {
+            return extract(doc, handler);
+        }
+        // find the first record by parsing from the beginning
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(doc, null);
+        parser.next(); // START_DOCUMENT
+        final Charset charset = parser.getEncode();
+        final Plan plan = plan(charset);
+        if (!nextRecord(parser, plan)) {
+            return 0;
+        }
+        final byte[] name = parser.getRawBytes();
+        int begin = parser.currentIndex - 1; // '<'
+        int splits = Math.min(threads * SPLITS_PER_THREAD, (doc.length - begin) / MIN_SPLIT_BYTES + 1);
+        final int[] bounds = split(doc, begin, parser.getDepth(), name, splits);
+
+        final AtomicInteger nextSplit = new AtomicInteger();
+        final AtomicLong rows = new AtomicLong();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Runnable worker = new Runnable() {
+            public void run() {
+                try {
+                    FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+                    Reader reader = new Reader(plan, handler);
+                    int split;
+                    while (error.get() == null && (split = nextSplit.getAndIncrement()) < bounds.length - 1) {
+                        parser.setRange(doc, bounds[split], bounds[split + 1], charset);
+                        reader.readSplit(parser, name, split, split == bounds.length - 2);
+                    }
+                    rows.addAndGet(reader.rows);
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e);
+                }
+            }
+        };
+        Thread[] workers = new Thread[Math.min(threads, bounds.length - 1) - 1];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(worker, "fastxml-extract-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        worker.run();
+        try {
+            for (Thread thread : workers) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            error.compareAndSet(null, e); // stop other threads
+            throw e;
+        }
+
+        Throwable e = error.get();
+        if (e instanceof ParseException) {
+            throw (ParseException) e;
+        } else if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        } else if (e != null) {
+            throw new ParseException("extracting failed", e);
+        }
+        return rows.get();
+    }
+
+    /**
+     * go to the start tag of next record
+     *
+     * @return false if END_DOCUMENT
+     */
+    private boolean nextRecord(AbstractFastXmlParser parser, Plan plan) throws ParseException {
+        byte[][] names = plan.recordNames;
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            if (event != FastXmlParser.START_TAG) {
+                continue;
+            }
+            if (!absolute) {
+                if (FastXmlRewriter.matchName(names[0], parser.tokenBytes(), parser.tokenOffset(), parser.currentBytesLength)) {
+                    return true;
+                }
+            } else {
+                // elements out of the path are skipped, so all ancestors of a start tag have been matched
+                int depth = parser.getDepth();
+                if (!FastXmlRewriter.matchName(names[depth - 1], parser.tokenBytes(), parser.tokenOffset(), parser.currentBytesLength)) {
+                    parser.skipCurrentTag();
+                } else if (depth == names.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * split range from begin to the end of document at start tags of records. Tags are scanned from begin to track depth,
+     * and CDATA blocks, comments, processing instructions and attribute values are skipped,
+     * so a name in them or a start tag of another depth is not taken as a record
+     *
+     * @param begin index of '&lt;' of the first record
+     * @param depth depth of the first record
+     * @return bounds of ranges
+     */
+    private static int[] split(byte[] doc, int begin, int depth, byte[] name, int count) {
+        int[] bounds = new int[count + 1];
+        int n = 0;
+        bounds[n++] = begin;
+        long step = (doc.length - begin) / count;
+        long next = begin + step;
+        int recordDepth = depth;
+        depth--; // depth of the parent before the first record
+        int i = begin;
+        while (n < count && i >= 0 && (i = indexOf(doc, i, '<')) >= 0 && i + 1 < doc.length) {
+            byte b = doc[i + 1];
+            if (b == '!') {
+                if (startsWith(doc, i, CDATA_BEGIN)) {
+                    i = indexOf(doc, i + CDATA_BEGIN.length, CDATA_END);
+                } else if (startsWith(doc, i, COMMENT_BEGIN)) {
+                    i = indexOf(doc, i + COMMENT_BEGIN.length, COMMENT_END);
+                } else {
+                    i = indexOf(doc, i, '>');
+                }
+            } else if (b == '?') {
+                i = indexOf(doc, i + 2, PI_END);
+            } else if (b == '/') {
+                depth--;
+                i = indexOf(doc, i, '>');
+            } else {
+                if (i >= next && depth == recordDepth - 1 && isStartTag(doc, i, name)) {
+                    bounds[n++] = i;
+                    next = Math.max(begin + step * n, i + 1);
+                }
+                i = endOfStartTag(doc, i + 1);
+                if (i >= 0 && doc[i - 1] != '/') {
+                    depth++;
+                }
+            }
+        }
+        bounds[n++] = doc.length;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * @return true if a start tag of name begins at index of '&lt;'
+     */
+    private static boolean isStartTag(byte[] doc, int index, byte[] name) {
+        int length = name.length;
+        if (index + 1 + length >= doc.length) {
+            return false;
+        }
+        for (int j = 0; j < length; j++) {
+            if (doc[index + 1 + j] != name[j]) {
+                return false;
+            }
+        }
+        byte next = doc[index + 1 + length];
+        return next == '>' || next == '/' || ByteUtils.isWhiteSpaceOrNewLine(next);
+    }
+
+    /**
+     * @return index of '&gt;' of the start tag, quoted attribute values are skipped, -1 if not found
+     */
+    private static int endOfStartTag(byte[] doc, int from) {
+        for (int i = from; i < doc.length; i++) {
+            byte b = doc[i];
+            if (b == '>') {
+                return i;
+            } else if (b == '"' || b == '\'') {
+                i = indexOf(doc, i + 1, b);
+                if (i < 0) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] doc, int from, int b) {
+        for (int i = from; i < doc.length; i++) {
+            if (doc[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return index of the last byte of pattern from index, -1 if not found
+     */
+    private static int indexOf(byte[] doc, int from, byte[] pattern) {
+        for (int i = indexOf(doc, from, pattern[0]); i >= 0; i = indexOf(doc, i + 1, pattern[0])) {
+            if (startsWith(doc, i, pattern)) {
+                return i + pattern.length - 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] doc, int index, byte[] pattern) {
+        if (index + pattern.length > doc.length) {
+            return false;
+        }
+        for (int j = 0; j < pattern.length; j++) {
+            if (doc[index + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * get columns compiled for charset, or compile them
+     */
+    private Plan plan(Charset charset) {
+        started = true;
+        Plan plan = this.plan;
+        if (plan == null || !plan.charset.equals(charset)) {
+            plan = new Plan(this, charset);
+            this.plan = plan;
+        }
+        return plan;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * names of record and tree of columns, encoded in a charset. It's immutable after built.
+     */
+    private static final class Plan {
+        final Charset charset;
+        final byte[][] recordNames;
+        final Node root = new Node(null);
+        final int[] types;
+        final int batchSize;
+
+        Plan(FastXmlColumnExtractor extractor, Charset charset) {
+            this.charset = charset;
+            this.recordNames = new byte[extractor.recordNames.length][];
+            for (int i = 0; i < recordNames.length; i++) {
+                recordNames[i] = extractor.recordNames[i].getBytes(charset);
+            }
+            this.types = new int[extractor.columnTypes.size()];
+            this.batchSize = extractor.batchSize;
+            for (int column = 0; column < types.length; column++) {
+                types[column] = extractor.columnTypes.get(column);
+                String[] names = extractor.columnPaths.get(column).split("/");
+                Node node = root;
+                for (int i = 0; i < names.length - 1; i++) {
+                    node = node.child(names[i].getBytes(charset));
+                }
+                String last = names[names.length - 1];
+                if (last.charAt(0) == '@') {
+                    node.addAttribute(last.substring(1).getBytes(charset), column);
+                } else {
+                    node.child(last.getBytes(charset)).textColumn = column;
+                }
+            }
+        }
+    }
+
+    /**
+     * an element of column paths, the root is the record
+     */
+    private static final class Node {
+        final byte[] name;
+        Node[] children = new Node[0];
+        byte[][] attributeNames = new byte[0][];
+        int[] attributeColumns = new int[0];
+        /**
+         * column of the text of element, -1 if none
+         */
+        int textColumn = -1;
+
+        Node(byte[] name) {
+            this.name = name;
+        }
+
+        /**
+         * get or add child
+         */
+        Node child(byte[] name) {
+            for (Node child : children) {
+                if (Arrays.equals(child.name, name)) {
+                    return child;
+                }
+            }
+            children = Arrays.copyOf(children, children.length + 1);
+            return children[children.length - 1] = new Node(name);
+        }
+
+        void addAttribute(byte[] name, int column) {
+            attributeNames = Arrays.copyOf(attributeNames, attributeNames.length + 1);
+            attributeNames[attributeNames.length - 1] = name;
+            attributeColumns = Arrays.copyOf(attributeColumns, attributeColumns.length + 1);
+            attributeColumns[attributeColumns.length - 1] = column;
+        }
+
+        /**
+         * @return child matching the current start tag, null if none
+         */
+        Node find(AbstractFastXmlParser parser) {
+            Node[] children = this.children;
+            if (children.length == 0) {
+                return null;
+            }
+            byte[] bytes = parser.tokenBytes();
+            int offset = parser.tokenOffset();
+            int length = parser.currentBytesLength;
+            for (Node child : children) {
+                if (FastXmlRewriter.matchName(child.name, bytes, offset, length)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @return column of the current attribute name, -1 if none
+         */
+        int attributeColumn(AbstractFastXmlParser parser) {
+            byte[][] names = this.attributeNames;
+            for (int i = 0; i < names.length; i++) {
+                if (parser.isMatch(names[i])) {
+                    return attributeColumns[i];
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * fill a batch from parser by a thread, and deliver it when it's full
+     */
+    private static final class Reader {
+        final Plan plan;
+        final Batch batch;
+        final BatchHandler handler;
+        long rows;
+
+        Reader(Plan plan, BatchHandler handler) {
+            this.plan = plan;
+            this.batch = new Batch(plan.types, plan.batchSize);
+            this.handler = handler;
+        }
+
+        /**
+         * read records of a range set by setRange(), they are at depth 1
+         *
+         * @param last true if it's the last range, which ends with end tags of ancestors of records
+         */
+        void readSplit(FastXmlParser4ByteArray parser, byte[] name, int split, boolean last) throws ParseException {
+            batch.split = split;
+            batch.sequence = 0;
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.START_TAG) {
+                    if (parser.isMatch(name)) {
+                        readRecord(parser);
+                    } else {
+                        parser.skipCurrentTag();
+                    }
+                } else if (parser.getDepth() < 0) { // the parent of records is closed
+                    if (!last) {
+                        throw ParseException.formatError("records should be siblings to be extracted in parallel", parser);
+                    }
+                    break;
+                }
+            }
+            flush();
+        }
+
+        /**
+         * read record at START_TAG into a new row, then the current event will be the end of the record
+         */
+        void readRecord(AbstractFastXmlParser parser) throws ParseException {
+            Batch batch = this.batch;
+            readElement(parser, plan.root, batch.beginRow());
+            rows++;
+            if (batch.size == batch.capacity) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (batch.size > 0) {
+                handler.onBatch(batch);
+                batch.clear();
+            }
+        }
+
+        private void readElement(AbstractFastXmlParser parser, Node node, int row) throws ParseException {
+            Batch batch = this.batch;
+            int event = parser.next();
+            while (event == FastXmlParser.ATTRIBUTE_NAME) {
+                int column = node.attributeColumn(parser);
+                parser.next(); // ATTRIBUTE_VALUE
+                if (column >= 0) {
+                    batch.set(column, row, parser);
+                }
+                event = parser.next();
+            }
+            while (event == FastXmlParser.START_TAG) {
+                Node child = node.find(parser);
+                if (child == null) {
+                    parser.skipCurrentTag();
+                } else {
+                    readElement(parser, child, row);
+                }
+                event = parser.next();
+            }
+            if (event == FastXmlParser.TEXT) {
+                if (node.textColumn >= 0) {
+                    batch.set(node.textColumn, row, parser);
+                }
+                parser.next(); // END_TAG
+            } else if (node.textColumn >= 0 && plan.types[node.textColumn] == STRING) { // empty element
+                batch.setEmpty(node.textColumn, row);
+            }
+        }
+    }
+
+    /**
+     * columns of records. Arrays are reused by following batches, and their lengths may be larger than getSize().
+     */
+    public static final class Batch {
+        private final int[] types;
+        private final int capacity;
+        /**
+         * values of INT columns and codes of STRING columns
+         */
+        private final int[][] ints;
+        private final long[][] longs;
+        private final double[][] doubles;
+        /**
+         * bit of row is set if the value is null
+         */
+        private final long[][] nulls;
+        private final Dictionary[] dictionaries;
+        private int size;
+        private int split;
+        private int sequence;
+
+        Batch(int[] types, int capacity) {
+            this.types = types;
+            this.capacity = capacity;
+            int columns = types.length;
+            this.ints = new int[columns][];
+            this.longs = new long[columns][];
+            this.doubles = new double[columns][];
+            this.nulls = new long[columns][];
+            this.dictionaries = new Dictionary[columns];
+            for (int column = 0; column < columns; column++) {
+                switch (types[column]) {
+                    case LONG:
+                        longs[column] = new long[capacity];
+                        break;
+                    case DOUBLE:
+                        doubles[column] = new double[capacity];
+                        break;
+                    case STRING:
+                        dictionaries[column] = new Dictionary(Math.min(capacity, 1024));
+                        ints[column] = new int[capacity]; // codes of dictionary
+                        break;
+                    default:
+                        ints[column] = new int[capacity];
+                }
+                nulls[column] = new long[(capacity + 63) >>> 6];
+                Arrays.fill(nulls[column], -1L);
+            }
+        }
+
+        /**
+         * add a row with all values null
+         *
+         * @return index of the row
+         */
+        int beginRow() {
+            int row = size++;
+            for (int column = 0; column < types.length; column++) {
+                switch (types[column]) {
+                    case LONG:
+                        longs[column][row] = 0;
+                        break;
+                    case DOUBLE:
+                        doubles[column][row] = 0;
+                        break;
+                    default:
+                        ints[column][row] = 0;
+                }
+            }
+            return row;
+        }
+
+        /**
+         * set the current text or attribute value of parser to column
+         */
+        void set(int column, int row, AbstractFastXmlParser parser) throws ParseException {
+            int type = types[column];
+            if (type == STRING) {
+                ints[column][row] = dictionaries[column].code(parser.tokenBytes(), parser.tokenOffset(), parser.currentBytesLength, parser);
+            } else if (parser.currentBytesLength == 0) {
+                return; // empty number is null
+            } else if (type == INT) {
+                ints[column][row] = parser.getInt();
+            } else if (type == LONG) {
+                longs[column][row] = parser.getLong();
+            } else {
+                doubles[column][row] = parser.getDouble();
+            }
+            nulls[column][row >>> 6] &= ~(1L << row);
+        }
+
+        void setEmpty(int column, int row) throws ParseException {
+            ints[column][row] = dictionaries[column].code(EMPTY, 0, 0, null);
+            nulls[column][row >>> 6] &= ~(1L << row);
+        }
+
+        void clear() {
+            for (int column = 0; column < types.length; column++) {
+                Arrays.fill(nulls[column], 0, (size + 63) >>> 6, -1L);
+                if (dictionaries[column] != null) {
+                    dictionaries[column].clear();
+                }
+            }
+            size = 0;
+            sequence++;
+        }
+
+        /**
+         * @return count of records in batch
+         */
+        public int getSize() {
+            return size;
+        }
+
+        public int getColumnCount() {
+            return types.length;
+        }
+
+        public int getColumnType(int column) {
+            return types[column];
+        }
+
+        /**
+         * @return index of range in parallel extraction, 0 in other extraction
+         */
+        public int getSplit() {
+            return split;
+        }
+
+        /**
+         * @return index of batch in its range, starting from 0
+         */
+        public int getSequence() {
+            return sequence;
+        }
+
+        public int[] getInts(int column) {
+            checkType(column, INT);
+            return ints[column];
+        }
+
+        public long[] getLongs(int column) {
+            checkType(column, LONG);
+            return longs[column];
+        }
+
+        public double[] getDoubles(int column) {
+            checkType(column, DOUBLE);
+            return doubles[column];
+        }
+
+        /**
+         * @return codes of a STRING column, they are indexes of getDictionary()
+         */
+        public int[] getCodes(int column) {
+            checkType(column, STRING);
+            return ints[column];
+        }
+
+        /**
+         * @return distinct strings of a STRING column in this batch, the length may be larger than getDictionarySize()
+         */
+        public String[] getDictionary(int column) {
+            checkType(column, STRING);
+            return dictionaries[column].values;
+        }
+
+        public int getDictionarySize(int column) {
+            checkType(column, STRING);
+            return dictionaries[column].size;
+        }
+
+        /**
+         * @return string of a STRING column, null if it's null
+         */
+        public String getString(int column, int row) {
+            checkType(column, STRING);
+            return isNull(column, row) ? null : dictionaries[column].values[ints[column][row]];
+        }
+
+        public boolean isNull(int column, int row) {
+            return (nulls[column][row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * @return null bitmap of column, bit (row % 64) of word (row / 64) is set if the value is null
+         */
+        public long[] getNulls(int column) {
+            return nulls[column];
+        }
+
+        private void checkType(int column, int type) {
+            if (types[column] != type) {
+                throw new IllegalArgumentException("type of column " + column + " is " + types[column]);
+            }
+        }
+    }
+
+    /**
+     * dictionary of strings of a column in a batch, keyed by raw bytes of values
+     */
+    private static final class Dictionary {
+        /**
+         * open addressing table of code + 1, 0 if empty
+         */
+        private int[] table;
+        private int[] hashes;
+        /**
+         * raw bytes of code are in bytes[offsets[code], offsets[code + 1])
+         */
+        private int[] offsets;
+        private byte[] bytes;
+        private String[] values;
+        private int size;
+
+        Dictionary(int capacity) {
+            table = new int[Integer.highestOneBit(capacity) << 2];
+            hashes = new int[capacity];
+            offsets = new int[capacity + 1];
+            bytes = new byte[capacity * 16];
+            values = new String[capacity];
+        }
+
+        /**
+         * @param parser parser at the value, it's decoded if the value is new; null for empty value
+         * @return code of value
+         */
+        int code(byte[] raw, int offset, int length, AbstractFastXmlParser parser) throws ParseException {
+            int h = hash(raw, offset, length);
+            int[] table = this.table;
+            int mask = table.length - 1;
+            for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+                int code = table[slot] - 1;
+                if (code < 0) {
+                    code = add(h, raw, offset, length, parser);
+                    table[slot] = code + 1;
+                    if (size << 1 > table.length) {
+                        rehash();
+                    }
+                    return code;
+                }
+                if (hashes[code] == h && equals(code, raw, offset, length)) {
+                    return code;
+                }
+            }
+        }
+
+        private boolean equals(int code, byte[] raw, int offset, int length) {
+            int begin = offsets[code];
+            if (offsets[code + 1] - begin != length) {
+                return false;
+            }
+            byte[] bytes = this.bytes;
+            for (int i = 0; i < length; i++) {
+                if (bytes[begin + i] != raw[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int add(int h, byte[] raw, int offset, int length, AbstractFastXmlParser parser) throws ParseException {
+            int code = size;
+            if (code == hashes.length) {
+                hashes = Arrays.copyOf(hashes, code << 1);
+                offsets = Arrays.copyOf(offsets, (code << 1) + 1);
+                values = Arrays.copyOf(values, code << 1);
+            }
+            int begin = offsets[code];
+            if (begin + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length << 1, begin + length));
+            }
+            System.arraycopy(raw, offset, bytes, begin, length);
+            offsets[code + 1] = begin + length;
+            hashes[code] = h;
+            String value = parser == null ? null : parser.getStringWithDecoding();
+            values[code] = value == null ? "" : value;
+            size++;
+            return code;
+        }
+
+        private void rehash() {
+            int[] table = new int[this.table.length << 1];
+            int mask = table.length - 1;
+            for (int code = 0; code < size; code++) {
+                int slot = hashes[code] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = code + 1;
+            }
+            this.table = table;
+        }
+
+        void clear() {
+            Arrays.fill(table, 0);
+            Arrays.fill(values, 0, size, null);
+            size = 0;
+        }
+    }
+}
@@ -17,14 +17,28 @@ package com.github.fastxml;
 
 import com.github.fastxml.exception.ParseException;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.nio.charset.Charset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Created by weager on 2016/06/07.
  */
 public class FastXmlFactory {
 
+    /**
+     * count of bytes to detect gzip and BGZF, it's enough for a standard BGZF header
+     */
+    private final static int COMPRESSION_HEADER_SIZE = 18;
+    /**
+     * max size of decompressed bytes in a BGZF member
+     */
+    private final static int BGZF_BLOCK_SIZE = 65536;
+
     /**
      * create FastXmlParser with charset specified in document header
      * @param docBytes document bytes
@@ -77,7 +91,7 @@ public class FastXmlFactory {
      * @throws ParseException
      */
     public static FastXmlParser newInstance(InputStream is, int bufferSize) throws ParseException {
-        return newInstance(is, bufferSize);
+        return newInstance(is, bufferSize, null);
     }
 
     /**
@@ -94,4 +108,94 @@ public class FastXmlFactory {
         return parser;
     }
 
+    /**
+     * create FastXmlParser which reads input stream ahead on a helper thread
+     * @param is input stream
+     * @return
+     * @throws ParseException
+     */
+    public static FastXmlParser newReadAheadInstance(InputStream is) throws ParseException {
+        return newReadAheadInstance(is, FastXmlParser4InputStream.DEFAULT_BUFFER_SIZE, null,
+                FastXmlParser4InputStream.DEFAULT_READ_AHEAD_BUFFERS, null);
+    }
+
+    /**
+     * create FastXmlParser which reads input stream ahead on a helper thread
+     * @param is input stream
+     * @param bufferSize buffer size
+     * @param charset if null, charset specified in document header will be used
+     * @param readAheadBuffers max count of buffers which can be read ahead
+     * @param threadFactory factory to create the helper thread, such as a factory of virtual threads on JDK 21+;
+     *                      if null, a daemon thread will be created
+     * @return
+     * @throws ParseException
+     */
+    public static FastXmlParser newReadAheadInstance(InputStream is, int bufferSize, Charset charset,
+                                                     int readAheadBuffers, ThreadFactory threadFactory) throws ParseException {
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(is, bufferSize, charset, readAheadBuffers, threadFactory);
+        return parser;
+    }
+
+    /**
+     * create FastXmlParser for input stream which may be compressed by gzip
+     * @param is input stream, it can be gzip(including concatenated members), BGZF, or plain xml
+     * @return
+     * @throws ParseException
+     */
+    public static FastXmlParser newGzipInstance(InputStream is) throws ParseException {
+        return newGzipInstance(is, FastXmlParser4InputStream.DEFAULT_BUFFER_SIZE, null, null, null);
+    }
+
+    /**
+     * create FastXmlParser for input stream which may be compressed by gzip.
+     * BGZF members are inflated in parallel by executor directly into buffers of parser,
+     * other gzip input is inflated on a helper thread while parser parses the inflated bytes,
+     * and plain xml is parsed as newInstance(is, bufferSize, charset) does.
+     * Call FastXmlParser4InputStream.close() if the document will not be parsed to the end.
+     * @param is input stream, it can be gzip(including concatenated members), BGZF, or plain xml
+     * @param bufferSize buffer size
+     * @param charset if null, charset specified in document header will be used
+     * @param executor workers to inflate BGZF members; if null, a pool of daemon threads will be created for the document
+     * @param threadFactory factory to create the thread which reads compressed input; if null, a daemon thread will be created
+     * @return
+     * @throws ParseException
+     */
+    public static FastXmlParser newGzipInstance(InputStream is, int bufferSize, Charset charset,
+                                                ExecutorService executor, ThreadFactory threadFactory) throws ParseException {
+        if (is == null) {
+            throw ParseException.emptyDocument();
+        }
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        try {
+            PushbackInputStream input = new PushbackInputStream(is, COMPRESSION_HEADER_SIZE);
+            byte[] header = new byte[COMPRESSION_HEADER_SIZE];
+            int length = 0;
+            for (int n; length < header.length && (n = input.read(header, length, header.length - length)) > 0; ) {
+                length += n;
+            }
+            if (length == 0) {
+                throw ParseException.emptyDocument();
+            }
+            input.unread(header, 0, length);
+
+            int segmentSize = FastXmlParser4InputStream.toSegmentSize(bufferSize);
+            if (BgzfSegmentReader.isBgzf(header, length)) {
+                // enough segments for every worker to inflate two members
+                int threads = Runtime.getRuntime().availableProcessors();
+                int bufferCount = 2 * threads * Math.max(1, BGZF_BLOCK_SIZE / segmentSize);
+                parser.setInput(new BgzfSegmentReader(input, segmentSize, bufferCount, executor, threadFactory), charset);
+            } else if (BgzfSegmentReader.isGzip(header, length)) {
+                InputStream gzip = new GZIPInputStream(input, segmentSize);
+                parser.setInput(new ReadAheadReader(gzip, segmentSize,
+                        FastXmlParser4InputStream.DEFAULT_READ_AHEAD_BUFFERS, threadFactory), charset);
+            } else {
+                parser.setInput(input, bufferSize, charset);
+            }
+        } catch (IOException e) {
+            throw ParseException.ioException(e);
+        }
+        return parser;
+    }
+
 }
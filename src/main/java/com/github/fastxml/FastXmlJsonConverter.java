@@ -0,0 +1,619 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ParseUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Convert XML into UTF-8 JSON by walking events of FastXmlParser, no DOM is built.
+ * The document is converted into an object with the root tag as its only key, and by default:
+ * <li>an element with only text is a string, or a number if the text is a valid JSON number, which is copied as it is</li>
+ * <li>an empty element is null</li>
+ * <li>an element with attributes or children is an object, attribute keys are prefixed by "@", and its text is "#text"</li>
+ * <li>consecutive siblings with the same name are an array</li>
+ * <p>
+ * Output is buffered in a small buffer and written to output stream while parsing, so memory is constant with
+ * FastXmlParser4InputStream. The only exception is array detection: the first element of siblings is kept in buffer
+ * until the next sibling shows whether it's an array, and this lookahead is bounded by setLookahead(),
+ * a larger one is written as a single value.
+ * Elements declared by addArrayName() are always arrays and need no lookahead.
+ * Siblings with the same name that are not consecutive are written as duplicate keys.
+ * <p>
+ * A converter is not thread-safe, but it can be reused for many documents.
+ */
+public class FastXmlJsonConverter {
+
+    public final static int DEFAULT_LOOKAHEAD = 64 * 1024;
+    private final static int BUFFER_SIZE = 8192;
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+
+    /**
+     * type of byte in string: copied as it is, escaped, or markup which needs decoding
+     */
+    private final static byte COPY = 0;
+    private final static byte ESCAPE = 1;
+    private final static byte MARKUP = 2;
+    private final static byte[] TYPES = new byte[256];
+    private final static byte[][] ESCAPES = new byte[128][];
+    private final static byte[] NULL = {'n', 'u', 'l', 'l'};
+    private final static byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    static {
+        for (int b = 0; b < 0x20; b++) {
+            TYPES[b] = ESCAPE;
+            ESCAPES[b] = new byte[]{'\\', 'u', '0', '0', HEX[b >> 4], HEX[b & 0xF]};
+        }
+        ESCAPES['\n'] = new byte[]{'\\', 'n'};
+        ESCAPES['\r'] = new byte[]{'\\', 'r'};
+        ESCAPES['\t'] = new byte[]{'\\', 't'};
+        ESCAPES['\b'] = new byte[]{'\\', 'b'};
+        ESCAPES['\f'] = new byte[]{'\\', 'f'};
+        TYPES['"'] = ESCAPE;
+        ESCAPES['"'] = new byte[]{'\\', '"'};
+        TYPES['\\'] = ESCAPE;
+        ESCAPES['\\'] = new byte[]{'\\', '\\'};
+        TYPES['<'] = MARKUP; // CDATA block or comment in text
+    }
+
+    // convention
+    private String attributePrefix = "@";
+    private String textKey = "#text";
+    private boolean arrayDetection = true;
+    private boolean numbers = true;
+    private int lookahead = DEFAULT_LOOKAHEAD;
+    private final List<String> arrayNames = new ArrayList<String>();
+
+    // convention encoded for the charset of document
+    private Charset encodedCharset;
+    private byte[] attributeKeyPrefix; // "\"@"
+    private byte[] textEntry; // ",\"#text\":"
+    private byte[][] encodedArrayNames;
+
+    // state of the current document
+    private AbstractFastXmlParser parser;
+    private OutputStream out;
+    private boolean utf8;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int count;
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    private FastXmlParser4ByteArray byteArrayParser;
+
+    /**
+     * @param attributePrefix prefix of attribute keys, "@" by default
+     */
+    public FastXmlJsonConverter setAttributePrefix(String attributePrefix) {
+        this.attributePrefix = attributePrefix;
+        encodedCharset = null;
+        return this;
+    }
+
+    /**
+     * @param textKey key of text in an element with attributes, "#text" by default
+     */
+    public FastXmlJsonConverter setTextKey(String textKey) {
+        this.textKey = textKey;
+        encodedCharset = null;
+        return this;
+    }
+
+    /**
+     * @param arrayDetection whether consecutive siblings with the same name are converted into an array, true by default.
+     *                       If false, they are written as duplicate keys unless they are declared by addArrayName()
+     */
+    public FastXmlJsonConverter setArrayDetection(boolean arrayDetection) {
+        this.arrayDetection = arrayDetection;
+        return this;
+    }
+
+    /**
+     * @param lookahead max bytes of JSON kept in buffer for array detection, DEFAULT_LOOKAHEAD by default.
+     *                  If the first one of siblings is larger than it, it's written as a single value,
+     *                  and a ParseException will be thrown if a sibling with the same name follows it
+     */
+    public FastXmlJsonConverter setLookahead(int lookahead) {
+        if (lookahead <= 0) {
+            throw new IllegalArgumentException("lookahead should be positive");
+        }
+        this.lookahead = lookahead;
+        return this;
+    }
+
+    /**
+     * @param numbers whether text which is a valid JSON number is written as a number, true by default
+     */
+    public FastXmlJsonConverter setNumbers(boolean numbers) {
+        this.numbers = numbers;
+        return this;
+    }
+
+    /**
+     * declare elements which are always arrays, even if there is only one of them
+     *
+     * @param name tag name, including prefix if any
+     */
+    public FastXmlJsonConverter addArrayName(String name) {
+        arrayNames.add(name);
+        encodedCharset = null;
+        return this;
+    }
+
+    /**
+     * convert document bytes into JSON
+     *
+     * @param doc document bytes, the encoding in document or AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @return JSON in UTF-8
+     * @throws ParseException
+     * @throws IOException
+     */
+    public byte[] convert(byte[] doc) throws ParseException, IOException {
+        if (byteArrayParser == null) {
+            byteArrayParser = new FastXmlParser4ByteArray();
+        }
+        byteArrayParser.setInput(doc, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(doc.length);
+        convert(byteArrayParser, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * convert the document of parser into JSON. Parser should be at the beginning of document, just after setInput()
+     *
+     * @param parser parser of FastXml
+     * @param out    output stream of JSON in UTF-8, it's not closed
+     * @throws ParseException
+     * @throws IOException
+     */
+    public void convert(FastXmlParser parser, OutputStream out) throws ParseException, IOException {
+        if (!(parser instanceof AbstractFastXmlParser)) {
+            throw new IllegalArgumentException("unsupported parser: " + parser.getClass().getName());
+        }
+        if (parser.next() != FastXmlParser.START_DOCUMENT) {
+            throw new IllegalStateException("parser should be at the beginning of document");
+        }
+        this.parser = (AbstractFastXmlParser) parser;
+        this.out = out;
+        Charset charset = parser.getEncode();
+        utf8 = charset.equals(UTF_8) || charset.name().equals("US-ASCII");
+        prepare(charset);
+        count = 0;
+        depth = 0;
+        frame(0).clear();
+        try {
+            int event;
+            while ((event = parser.next()) != FastXmlParser.END_DOCUMENT) {
+                switch (event) {
+                    case FastXmlParser.START_TAG:
+                        processStartTag();
+                        break;
+                    case FastXmlParser.ATTRIBUTE_NAME:
+                        beginEntry(frames[depth]);
+                        writeRaw(attributeKeyPrefix, 0, attributeKeyPrefix.length);
+                        writeName();
+                        writeByte((byte) '"');
+                        writeByte((byte) ':');
+                        break;
+                    case FastXmlParser.ATTRIBUTE_VALUE:
+                        writeValue();
+                        break;
+                    case FastXmlParser.TEXT:
+                        Frame frame = frames[depth];
+                        if (frame.opened) {
+                            writeRaw(textEntry, 0, textEntry.length);
+                        }
+                        writeValue();
+                        frame.hasText = true;
+                        break;
+                    case FastXmlParser.END_TAG:
+                    case FastXmlParser.END_TAG_WITHOUT_TEXT:
+                        endElement(frames[depth--]);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            endElement(frames[0]);
+            out.write(buffer, 0, count);
+            out.flush();
+        } finally {
+            count = 0;
+            this.parser = null;
+            this.out = null;
+        }
+    }
+
+    private void processStartTag() throws ParseException, IOException {
+        AbstractFastXmlParser parser = this.parser;
+        Frame parent = frames[depth];
+        byte[] bytes = parser.tokenBytes();
+        int offset = parser.tokenOffset();
+        int length = parser.currentBytesLength;
+        frame(++depth).clear();
+        if (parent.isLastChild(bytes, offset, length)) {
+            if (parent.pendingPosition >= 0) { // the second one of siblings, so the first one becomes an array
+                ensure(1);
+                int position = parent.pendingPosition;
+                System.arraycopy(buffer, position, buffer, position + 1, count - position);
+                buffer[position] = '[';
+                count++;
+                parent.pendingPosition = -1;
+                parent.inArray = true;
+            }
+            if (parent.inArray) {
+                writeByte((byte) ',');
+                return;
+            }
+            if (parent.lookaheadExceeded) {
+                throw new ParseException("the first one of siblings exceeds lookahead of " + lookahead
+                        + " bytes, and it has been written, declare the repeated element by addArrayName()", parser);
+            }
+        }
+        endRun(parent);
+        beginEntry(parent);
+        writeByte((byte) '"');
+        writeName();
+        writeByte((byte) '"');
+        writeByte((byte) ':');
+        if (isArrayName(bytes, offset, length)) {
+            writeByte((byte) '[');
+            parent.inArray = true;
+        } else if (arrayDetection) {
+            parent.pendingPosition = count;
+        }
+        parent.setLastChild(bytes, offset, length);
+    }
+
+    /**
+     * write the end of element, a pending sibling is not an array any more
+     */
+    private void endElement(Frame frame) throws IOException {
+        if (frame.opened) {
+            endRun(frame);
+            writeByte((byte) '}');
+        } else if (!frame.hasText) {
+            writeRaw(NULL, 0, NULL.length);
+        }
+    }
+
+    /**
+     * end the run of siblings with the same name
+     */
+    private void endRun(Frame frame) throws IOException {
+        if (frame.inArray) {
+            writeByte((byte) ']');
+            frame.inArray = false;
+        }
+        frame.pendingPosition = -1;
+        frame.lookaheadExceeded = false;
+    }
+
+    /**
+     * begin a key of object, the object is opened by the first key
+     */
+    private void beginEntry(Frame frame) throws IOException {
+        if (frame.opened) {
+            writeByte((byte) ',');
+        } else {
+            writeByte((byte) '{');
+            frame.opened = true;
+        }
+    }
+
+    private boolean isArrayName(byte[] bytes, int offset, int length) {
+        byte[][] names = encodedArrayNames;
+        for (int i = 0; i < names.length; i++) {
+            byte[] name = names[i];
+            if (name.length == length) {
+                int j = 0;
+                while (j < length && name[j] == bytes[offset + j]) {
+                    j++;
+                }
+                if (j == length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * write current token as name, without quotations
+     */
+    private void writeName() throws ParseException, IOException {
+        AbstractFastXmlParser parser = this.parser;
+        if (utf8) {
+            writeEscaped(parser.tokenBytes(), parser.tokenOffset(), parser.currentBytesLength, false);
+        } else {
+            byte[] bytes = new String(parser.tokenBytes(), parser.tokenOffset(), parser.currentBytesLength, parser.getEncode()).getBytes(UTF_8);
+            writeEscaped(bytes, 0, bytes.length, false);
+        }
+    }
+
+    /**
+     * write current text or attribute value as number or string
+     */
+    private void writeValue() throws ParseException, IOException {
+        AbstractFastXmlParser parser = this.parser;
+        byte[] bytes = parser.tokenBytes();
+        int offset = parser.tokenOffset();
+        int length = parser.currentBytesLength;
+        if (numbers && isNumber(bytes, offset, length)) { // digits are the same in all supported charsets
+            writeRaw(bytes, offset, length);
+            return;
+        }
+        writeByte((byte) '"');
+        if (!utf8 || parser.currentHasEntityReference) {
+            writeString(parser.getStringWithDecoding());
+        } else {
+            int end = offset + length;
+            int markup = writeEscaped(bytes, offset, length, true);
+            if (markup < end) { // decode CDATA block and the rest
+                writeString(ParseUtils.parseStringWithDecoding(bytes, markup, end - markup, UTF_8));
+            }
+        }
+        writeByte((byte) '"');
+    }
+
+    /**
+     * write string escaped, without quotations
+     */
+    private void writeString(String string) throws ParseException, IOException {
+        if (string != null) {
+            byte[] bytes = string.getBytes(UTF_8);
+            writeEscaped(bytes, 0, bytes.length, false);
+        }
+    }
+
+    /**
+     * copy runs of UTF-8 bytes which need no escaping by arraycopy, and escape the others.
+     * Bytes of multi-byte chars are all copied.
+     *
+     * @param raw whether bytes are raw XML, which should stop at '&lt;' of CDATA block
+     * @return end of bytes, or index of '&lt;' which should be decoded
+     */
+    private int writeEscaped(byte[] bytes, int offset, int length, boolean raw) throws IOException {
+        byte[] types = TYPES;
+        int end = offset + length;
+        int run = offset;
+        for (int i = offset; i < end; i++) {
+            byte type = types[bytes[i] & 0xFF];
+            if (type != COPY) {
+                if (type == MARKUP) {
+                    if (!raw) {
+                        continue;
+                    }
+                    writeRaw(bytes, run, i - run);
+                    return i;
+                }
+                writeRaw(bytes, run, i - run);
+                byte[] escape = ESCAPES[bytes[i]];
+                writeRaw(escape, 0, escape.length);
+                run = i + 1;
+            }
+        }
+        writeRaw(bytes, run, end - run);
+        return end;
+    }
+
+    /**
+     * check whether bytes is a valid JSON number: -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?
+     */
+    private static boolean isNumber(byte[] bytes, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        if (i < end && bytes[i] == '-') {
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        if (bytes[i] == '0') {
+            i++;
+        } else if (bytes[i] >= '1' && bytes[i] <= '9') {
+            i = skipDigits(bytes, i + 1, end);
+        } else {
+            return false;
+        }
+        if (i < end && bytes[i] == '.') {
+            int begin = ++i;
+            if ((i = skipDigits(bytes, i, end)) == begin) {
+                return false;
+            }
+        }
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            if (i < end && (bytes[i] == '+' || bytes[i] == '-')) {
+                i++;
+            }
+            int begin = i;
+            if ((i = skipDigits(bytes, i, end)) == begin) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    private static int skipDigits(byte[] bytes, int i, int end) {
+        while (i < end && bytes[i] >= '0' && bytes[i] <= '9') {
+            i++;
+        }
+        return i;
+    }
+
+    private void writeByte(byte b) throws IOException {
+        if (count == buffer.length) {
+            ensure(1);
+        }
+        buffer[count++] = b;
+    }
+
+    private void writeRaw(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int n = Math.min(length, BUFFER_SIZE);
+            ensure(n);
+            System.arraycopy(bytes, offset, buffer, count, n);
+            count += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * make room for n bytes. Bytes before the first pending sibling are written to output stream,
+     * and buffer grows for pending bytes until lookahead is exceeded.
+     * Then the outermost pending sibling is given up as a single value, and its bytes can be written.
+     */
+    private void ensure(int n) throws IOException {
+        while (buffer.length - count < n) {
+            Frame pending = null;
+            for (int i = 0; i <= depth; i++) { // the outermost pending sibling is the first one in buffer
+                if (frames[i].pendingPosition >= 0) {
+                    pending = frames[i];
+                    break;
+                }
+            }
+            int limit = pending == null ? count : pending.pendingPosition;
+            if (limit > 0) {
+                out.write(buffer, 0, limit);
+                System.arraycopy(buffer, limit, buffer, 0, count - limit);
+                count -= limit;
+                for (int i = 0; i <= depth; i++) {
+                    if (frames[i].pendingPosition >= 0) {
+                        frames[i].pendingPosition -= limit;
+                    }
+                }
+            } else if (count + n <= lookahead + BUFFER_SIZE) {
+                buffer = Arrays.copyOf(buffer, Math.min(Math.max(buffer.length << 1, count + n), lookahead + BUFFER_SIZE));
+            } else {
+                pending.pendingPosition = -1;
+                pending.lookaheadExceeded = true;
+            }
+        }
+    }
+
+    private Frame frame(int index) {
+        if (index == frames.length) {
+            frames = Arrays.copyOf(frames, index << 1);
+        }
+        Frame frame = frames[index];
+        if (frame == null) {
+            frame = frames[index] = new Frame();
+        }
+        return frame;
+    }
+
+    /**
+     * encode keys and array names in charset of document
+     */
+    private void prepare(Charset charset) {
+        if (charset.equals(encodedCharset)) {
+            return;
+        }
+        attributeKeyPrefix = jsonString(attributePrefix, false);
+        textEntry = ("," + new String(jsonString(textKey, true), UTF_8) + ":").getBytes(UTF_8);
+        encodedArrayNames = new byte[arrayNames.size()][];
+        for (int i = 0; i < encodedArrayNames.length; i++) {
+            encodedArrayNames[i] = arrayNames.get(i).getBytes(charset);
+        }
+        encodedCharset = charset;
+    }
+
+    /**
+     * @return string escaped and quoted in UTF-8, the closing quotation is omitted if close is false
+     */
+    private static byte[] jsonString(String string, boolean close) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 128 && ESCAPES[c] != null) {
+                sb.append(new String(ESCAPES[c], UTF_8));
+            } else {
+                sb.append(c);
+            }
+        }
+        if (close) {
+            sb.append('"');
+        }
+        return sb.toString().getBytes(UTF_8);
+    }
+
+    /**
+     * an open element or the document
+     */
+    private static class Frame {
+        /**
+         * whether '{' has been written
+         */
+        boolean opened;
+        boolean hasText;
+        /**
+         * name of the last child
+         */
+        byte[] lastChild = new byte[32];
+        int lastChildLength;
+        /**
+         * whether the run of children with the last name is an array
+         */
+        boolean inArray;
+        /**
+         * position in buffer of the first child of the run, which may become an array; -1 if there is none
+         */
+        int pendingPosition;
+        /**
+         * whether the pending child has been given up as a single value
+         */
+        boolean lookaheadExceeded;
+
+        void clear() {
+            opened = false;
+            hasText = false;
+            lastChildLength = -1;
+            inArray = false;
+            pendingPosition = -1;
+            lookaheadExceeded = false;
+        }
+
+        boolean isLastChild(byte[] bytes, int offset, int length) {
+            if (length != lastChildLength) {
+                return false;
+            }
+            byte[] lastChild = this.lastChild;
+            for (int i = 0; i < length; i++) {
+                if (lastChild[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void setLastChild(byte[] bytes, int offset, int length) {
+            if (lastChild.length < length) {
+                lastChild = new byte[length];
+            }
+            System.arraycopy(bytes, offset, lastChild, 0, length);
+            lastChildLength = length;
+        }
+    }
+}
@@ -0,0 +1,535 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.binding.BinderSupport;
+import com.github.fastxml.exception.ParseException;
+
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bind documents to objects. On first use of a class, a plan is built and cached: a hash table from name bytes
+ * to binders of fields, and each binder calls getInt(), getLong(), getDouble() or getStringWithDecoding() of parser
+ * for its type directly, so names are never decoded into strings and primitive values are never boxed.
+ * <p>
+ * An attribute or a child element is bound to the field with the same name, a name with prefix matches the field
+ * with its local name, and unknown elements are skipped by skipCurrentTag().
+ * Supported field types are primitives and their wrappers, String, enums, nested classes, and List of them.
+ * Every element of a list is a child element with the name of the list field, such as
+ * "&lt;order&gt;&lt;item&gt;a&lt;/item&gt;&lt;item&gt;b&lt;/item&gt;&lt;/order&gt;" for field List&lt;String&gt; item.
+ * Empty elements leave fields unchanged, except String fields which become "".
+ * <p>
+ * A class needs a constructor without parameters, or it's a record, which is created by its canonical constructor.
+ * A mapper is thread-safe, plans are immutable and shared by all threads.
+ */
+public class FastXmlMapper {
+
+    // kinds of values
+    private final static int STRING = 0;
+    private final static int INT = 1;
+    private final static int LONG = 2;
+    private final static int SHORT = 3;
+    private final static int DOUBLE = 4;
+    private final static int FLOAT = 5;
+    private final static int BOOLEAN = 6;
+    private final static int ENUM = 7;
+    private final static int OBJECT = 8;
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+
+    private final ConcurrentMap<Class<?>, Plan> plans = new ConcurrentHashMap<Class<?>, Plan>();
+
+    /**
+     * bind document bytes to a new object
+     *
+     * @param doc  document bytes, the encoding in document or AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @param type class of the root element
+     * @return object
+     * @throws ParseException
+     */
+    public <T> T read(byte[] doc, Class<T> type) throws ParseException {
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(doc, null);
+        return read(parser, type);
+    }
+
+    /**
+     * bind document from input stream to a new object, input stream is not closed
+     *
+     * @param is   input stream
+     * @param type class of the root element
+     * @return object
+     * @throws ParseException
+     */
+    public <T> T read(InputStream is, Class<T> type) throws ParseException {
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(is);
+        return read(parser, type);
+    }
+
+    /**
+     * bind the current element of parser to a new object. If parser is not at START_TAG,
+     * it goes to the next START_TAG. Then the current event will be the end of the element.
+     *
+     * @param parser parser of FastXml
+     * @param type   class of the element, its name is not checked
+     * @return object
+     * @throws ParseException
+     */
+    public <T> T read(FastXmlParser parser, Class<T> type) throws ParseException {
+        if (!(parser instanceof AbstractFastXmlParser)) {
+            throw new IllegalArgumentException("unsupported parser: " + parser.getClass().getName());
+        }
+        if (parser.getCurrentEvent() != FastXmlParser.START_TAG) {
+            int event;
+            while ((event = parser.next()) != FastXmlParser.START_TAG) {
+                if (event == FastXmlParser.END_DOCUMENT) {
+                    throw ParseException.emptyDocument();
+                }
+            }
+        }
+        return type.cast(plan(type).read((AbstractFastXmlParser) parser));
+    }
+
+    /**
+     * get the cached plan of class, or build it
+     */
+    Plan plan(Class<?> type) {
+        Plan plan = plans.get(type);
+        if (plan == null) {
+            plan = new Plan(this, type);
+            Plan previous = plans.putIfAbsent(type, plan);
+            if (previous != null) {
+                plan = previous;
+            }
+        }
+        return plan;
+    }
+
+    private static int kindOf(Class<?> type) {
+        if (type == String.class) {
+            return STRING;
+        } else if (type == int.class || type == Integer.class) {
+            return INT;
+        } else if (type == long.class || type == Long.class) {
+            return LONG;
+        } else if (type == short.class || type == Short.class) {
+            return SHORT;
+        } else if (type == double.class || type == Double.class) {
+            return DOUBLE;
+        } else if (type == float.class || type == Float.class) {
+            return FLOAT;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type.isEnum()) {
+            return ENUM;
+        } else if (type.isPrimitive() || type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            throw new IllegalArgumentException("unsupported type: " + type.getName());
+        }
+        return OBJECT;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + bytes[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * binding plan of a class, it's immutable after built
+     */
+    static final class Plan {
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        /**
+         * arguments of canonical constructor with defaults of primitives, if class is a record
+         */
+        private final Object[] defaults;
+        /**
+         * open addressing table of binders by hash of name bytes
+         */
+        private final Binder[] table;
+        private final int mask;
+
+        Plan(FastXmlMapper mapper, Class<?> type) {
+            this.type = type;
+            List<Field> fields = new ArrayList<Field>();
+            boolean record = type.getSuperclass() != null && type.getSuperclass().getName().equals("java.lang.Record");
+            try {
+                if (record) { // fields of components in order of canonical constructor
+                    Object[] components = (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+                    Class<?>[] types = new Class<?>[components.length];
+                    for (int i = 0; i < components.length; i++) {
+                        Method getName = components[i].getClass().getMethod("getName");
+                        fields.add(type.getDeclaredField((String) getName.invoke(components[i])));
+                        types[i] = fields.get(i).getType();
+                    }
+                    constructor = type.getDeclaredConstructor(types);
+                } else {
+                    for (Class<?> c = type; c != Object.class && c != null; c = c.getSuperclass()) {
+                        for (Field field : c.getDeclaredFields()) {
+                            int modifiers = field.getModifiers();
+                            if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                                fields.add(field);
+                            }
+                        }
+                    }
+                    constructor = type.getDeclaredConstructor();
+                }
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(type.getName() + " should have a constructor without parameters", e);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalArgumentException("field of record component is not found in " + type.getName(), e);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("can't access record components of " + type.getName(), e);
+            } catch (InvocationTargetException e) {
+                throw new IllegalArgumentException("can't access record components of " + type.getName(), e);
+            }
+
+            int size = 4;
+            while (size < fields.size() * 2) {
+                size <<= 1;
+            }
+            table = new Binder[size];
+            mask = size - 1;
+            defaults = record ? new Object[fields.size()] : null;
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                Binder binder = createBinder(mapper, field, record ? i : -1);
+                if (record && field.getType().isPrimitive()) {
+                    defaults[i] = Array.get(Array.newInstance(field.getType(), 1), 0); // zero of primitive type
+                }
+                int slot = binder.hash & mask;
+                while (table[slot] != null) {
+                    if (table[slot].name.length == binder.name.length && new String(table[slot].name, UTF_8).equals(field.getName())) {
+                        break; // a field hidden by the field of subclass
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                if (table[slot] == null) {
+                    table[slot] = binder;
+                }
+            }
+        }
+
+        private static Binder createBinder(FastXmlMapper mapper, Field field, int index) {
+            Class<?> fieldType = field.getType();
+            if (List.class.isAssignableFrom(fieldType) || fieldType == Collection.class) {
+                Type generic = field.getGenericType();
+                if (!(generic instanceof ParameterizedType) || !(((ParameterizedType) generic).getActualTypeArguments()[0] instanceof Class)) {
+                    throw new IllegalArgumentException("element type of list should be a class: " + field);
+                }
+                Class<?> elementType = (Class<?>) ((ParameterizedType) generic).getActualTypeArguments()[0];
+                if (!fieldType.isAssignableFrom(ArrayList.class)) {
+                    throw new IllegalArgumentException("list should be List or ArrayList: " + field);
+                }
+                return new ListBinder(mapper, field, index, elementType);
+            }
+            return new ValueBinder(mapper, field, index, fieldType);
+        }
+
+        /**
+         * bind the current element, parser is at its START_TAG, and it will be at the end of element
+         */
+        Object read(AbstractFastXmlParser parser) throws ParseException {
+            Object target = defaults != null ? defaults.clone() : newInstance(null);
+            int event = parser.next();
+            while (event == FastXmlParser.ATTRIBUTE_NAME) {
+                Binder binder = find(parser);
+                parser.next(); // ATTRIBUTE_VALUE
+                if (binder != null) {
+                    binder.bindText(parser, target);
+                }
+                event = parser.next();
+            }
+            while (event == FastXmlParser.START_TAG) {
+                Binder binder = find(parser);
+                if (binder == null) {
+                    parser.skipCurrentTag();
+                } else {
+                    binder.bindElement(parser, target);
+                }
+                event = parser.next();
+            }
+            if (event == FastXmlParser.TEXT) { // text of an element with fields is ignored
+                parser.next();
+            }
+            return defaults != null ? newInstance((Object[]) target) : target;
+        }
+
+        private Object newInstance(Object[] args) throws ParseException {
+            try {
+                return constructor.newInstance(args);
+            } catch (InstantiationException e) {
+                throw new ParseException("can't create " + type.getName(), e);
+            } catch (IllegalAccessException e) {
+                throw new ParseException("can't create " + type.getName(), e);
+            } catch (InvocationTargetException e) {
+                throw new ParseException("can't create " + type.getName(), e.getCause());
+            }
+        }
+
+        /**
+         * find binder by name bytes of current token, the local name is tried if the name has a prefix
+         */
+        private Binder find(AbstractFastXmlParser parser) {
+            byte[] bytes = parser.tokenBytes();
+            int offset = parser.tokenOffset();
+            int length = parser.currentBytesLength;
+            Binder binder = find(bytes, offset, length);
+            if (binder == null) {
+                for (int i = offset + length - 1; i > offset; i--) {
+                    if (bytes[i] == ':') {
+                        return find(bytes, i + 1, offset + length - i - 1);
+                    }
+                }
+            }
+            return binder;
+        }
+
+        private Binder find(byte[] bytes, int offset, int length) {
+            Binder[] table = this.table;
+            for (int slot = hash(bytes, offset, length) & mask; ; slot = (slot + 1) & mask) {
+                Binder binder = table[slot];
+                if (binder == null) {
+                    return null;
+                }
+                byte[] name = binder.name;
+                if (name.length == length) {
+                    int i = 0;
+                    while (i < length && name[i] == bytes[offset + i]) {
+                        i++;
+                    }
+                    if (i == length) {
+                        return binder;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * binder of a field. Target is the object, or arguments of canonical constructor if index >= 0
+     */
+    static abstract class Binder {
+        final byte[] name;
+        final int hash;
+        final Field field;
+        final int index;
+
+        Binder(Field field, int index) {
+            this.name = field.getName().getBytes(UTF_8);
+            this.hash = hash(name, 0, name.length);
+            this.field = field;
+            this.index = index;
+        }
+
+        /**
+         * bind attribute value
+         */
+        abstract void bindText(AbstractFastXmlParser parser, Object target) throws ParseException;
+
+        /**
+         * bind child element, parser is at its START_TAG, and it will be at the end of element
+         */
+        abstract void bindElement(AbstractFastXmlParser parser, Object target) throws ParseException;
+
+        final Object get(Object target) throws ParseException {
+            if (index >= 0) {
+                return ((Object[]) target)[index];
+            }
+            try {
+                return field.get(target);
+            } catch (IllegalAccessException e) {
+                throw new ParseException("can't access " + field, e);
+            }
+        }
+
+        final void set(Object target, Object value) throws ParseException {
+            if (index >= 0) {
+                ((Object[]) target)[index] = value;
+                return;
+            }
+            try {
+                field.set(target, value);
+            } catch (IllegalAccessException e) {
+                throw new ParseException("can't access " + field, e);
+            }
+        }
+    }
+
+    /**
+     * binder of a value or a nested object
+     */
+    static final class ValueBinder extends Binder {
+        private final FastXmlMapper mapper;
+        private final Class<?> type;
+        private final int kind;
+        /**
+         * whether value is set by typed setter of field without boxing
+         */
+        private final boolean primitive;
+        private Plan plan;
+
+        ValueBinder(FastXmlMapper mapper, Field field, int index, Class<?> type) {
+            super(field, index);
+            this.mapper = mapper;
+            this.type = type;
+            this.kind = kindOf(type);
+            this.primitive = index < 0 && type.isPrimitive();
+        }
+
+        void bindText(AbstractFastXmlParser parser, Object target) throws ParseException {
+            if (!primitive) {
+                set(target, readText(parser, kind, type));
+                return;
+            }
+            try {
+                switch (kind) {
+                    case INT:
+                        field.setInt(target, parser.getInt());
+                        break;
+                    case LONG:
+                        field.setLong(target, parser.getLong());
+                        break;
+                    case DOUBLE:
+                        field.setDouble(target, parser.getDouble());
+                        break;
+                    case SHORT:
+                        field.setShort(target, parser.getShort());
+                        break;
+                    case FLOAT:
+                        field.setFloat(target, parser.getFloat());
+                        break;
+                    default:
+                        field.setBoolean(target, BinderSupport.bool(parser));
+                }
+            } catch (IllegalAccessException e) {
+                throw new ParseException("can't access " + field, e);
+            }
+        }
+
+        void bindElement(AbstractFastXmlParser parser, Object target) throws ParseException {
+            if (kind == OBJECT) {
+                set(target, plan().read(parser));
+            } else if (BinderSupport.nextText(parser)) {
+                bindText(parser, target);
+                parser.next(); // END_TAG
+            } else if (kind == STRING) {
+                set(target, "");
+            }
+        }
+
+        Plan plan() {
+            Plan plan = this.plan;
+            if (plan == null) { // resolved lazily, because the class may contain itself
+                plan = this.plan = mapper.plan(type);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * binder of a list, every child element with the name of list is an element of list
+     */
+    static final class ListBinder extends Binder {
+        private final FastXmlMapper mapper;
+        private final Class<?> elementType;
+        private final int kind;
+        private Plan plan;
+
+        ListBinder(FastXmlMapper mapper, Field field, int index, Class<?> elementType) {
+            super(field, index);
+            this.mapper = mapper;
+            this.elementType = elementType;
+            this.kind = kindOf(elementType);
+        }
+
+        void bindText(AbstractFastXmlParser parser, Object target) throws ParseException {
+            list(target).add(readText(parser, kind, elementType));
+        }
+
+        void bindElement(AbstractFastXmlParser parser, Object target) throws ParseException {
+            if (kind == OBJECT) {
+                Plan plan = this.plan;
+                if (plan == null) {
+                    plan = this.plan = mapper.plan(elementType);
+                }
+                list(target).add(plan.read(parser));
+            } else if (BinderSupport.nextText(parser)) {
+                bindText(parser, target);
+                parser.next(); // END_TAG
+            } else if (kind == STRING) {
+                list(target).add("");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Object> list(Object target) throws ParseException {
+            List<Object> list = (List<Object>) get(target);
+            if (list == null) {
+                list = new ArrayList<Object>();
+                set(target, list);
+            }
+            return list;
+        }
+    }
+
+    /**
+     * read the current text or attribute value as boxed value
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object readText(AbstractFastXmlParser parser, int kind, Class<?> type) throws ParseException {
+        switch (kind) {
+            case STRING:
+                return BinderSupport.string(parser);
+            case INT:
+                return parser.getInt();
+            case LONG:
+                return parser.getLong();
+            case SHORT:
+                return parser.getShort();
+            case DOUBLE:
+                return parser.getDouble();
+            case FLOAT:
+                return parser.getFloat();
+            case BOOLEAN:
+                return BinderSupport.bool(parser);
+            case ENUM:
+                return BinderSupport.enumValue(parser, (Class<Enum>) type);
+            default:
+                throw ParseException.formatError(type.getName() + " can't be bound to an attribute", parser);
+        }
+    }
+}
@@ -17,7 +17,10 @@ package com.github.fastxml;
 
 import com.github.fastxml.exception.NumberFormatException;
 import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.StringCache;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -82,6 +85,148 @@ public interface FastXmlParser {
      */
     void skipCurrentTag() throws ParseException;
 
+    /**
+     * skip the current tag and its descendants like skipCurrentTag(), and get the bytes range of it,
+     * from '&lt;' of the start tag to '&gt;' of the matching end tag.
+     * Bytes are scanned for tags only, no event is generated for descendants.
+     * This method should be called after next()==START_TAG, then the current event will be END_TAG(or END_TAG_WITHOUT_TEXT) of this tag.
+     *
+     * @return {begin, end}, end is exclusive. Offsets of FastXmlParser4ByteArray are indexes of getDocument(),
+     * offsets of FastXmlParser4InputStream are counted from the beginning of input stream
+     */
+    long[] getCurrentElementRange() throws ParseException;
+
+    /**
+     * copy bytes of the current tag and its descendants to output stream unchanged, and skip them like getCurrentElementRange().
+     * FastXmlParser4InputStream writes bytes while reading them, so the whole element is never kept in buffer.
+     *
+     * @param out output stream, it's not flushed
+     * @return count of bytes copied
+     */
+    long copyCurrentElement(OutputStream out) throws ParseException;
+
+    /**
+     * copy bytes of the current tag and its descendants to byte buffer unchanged, and skip them like getCurrentElementRange().
+     *
+     * @param buffer byte buffer, BufferOverflowException will be thrown if there is not enough room, and the parser should not be used any more
+     * @return count of bytes copied
+     */
+    long copyCurrentElement(ByteBuffer buffer) throws ParseException;
+
+    /**
+     * run next() for up to max tokens and write a record of each token into arrays, without calling getters.
+     * A record is the event, the offset and length of its bytes in getBatchBytes(), and the depth,
+     * the bytes can be decoded later by ParseUtils, such as ParseUtils.parseInt() and ParseUtils.parseStringWithDecoding().
+     * The last record is END_DOCUMENT when the document ends, in multi-document mode the following document is in the next batch.
+     *
+     * @param events  events of tokens
+     * @param offsets beginning indexes of tokens in getBatchBytes()
+     * @param lengths lengths of tokens
+     * @param depths  depths of tokens
+     * @param max     max count of records, arrays should be at least this long
+     * @return count of records, 0 if the document has ended before
+     * @throws ParseException
+     */
+    int nextBatch(int[] events, int[] offsets, int[] lengths, int[] depths, int max) throws ParseException;
+
+    /**
+     * get the array which offsets of the last nextBatch() refer to.
+     * It's getDocument() for FastXmlParser4ByteArray, and a buffer of copied tokens for FastXmlParser4InputStream,
+     * which is reused by the next nextBatch().
+     *
+     * @return bytes of tokens
+     */
+    byte[] getBatchBytes();
+
+    /**
+     * save the state of parser, so reset() can go back to the current token later, such as peeking an element further down.
+     * A selected attribute is not kept, the name of start tag is the current bytes after reset().
+     * FastXmlParser4InputStream keeps bytes from the marked token in buffer until release(), see setLookaheadLimit(),
+     * and FastXmlParser4Pipeline keeps token records from it in ring, at most the capacity of ring.
+     */
+    void mark();
+
+    /**
+     * restore the state saved by mark(), the mark is kept, so it can be reset again
+     *
+     * @throws ParseException if the mark has been dropped because of lookahead limit
+     */
+    void reset() throws ParseException;
+
+    /**
+     * drop the mark, so bytes kept for it can be released
+     */
+    void release();
+
+    /**
+     * move to the next start tag in document order, other events are skipped
+     *
+     * @return true if the current event is START_TAG, false if the document ends
+     * @throws ParseException
+     */
+    boolean nextStartTag() throws ParseException;
+
+    /**
+     * skip the current element like getCurrentElementRange() if the current event is START_TAG,
+     * then move to the start tag of its next sibling.
+     * This method should be called after next()==START_TAG, END_TAG or END_TAG_WITHOUT_TEXT.
+     *
+     * @return true if the current event is START_TAG of the next sibling,
+     * false if the parent ends before that, then the current event is END_TAG of the parent(or END_DOCUMENT)
+     * @throws ParseException
+     */
+    boolean nextSiblingStartTag() throws ParseException;
+
+    /**
+     * move to the next child of the current element which matches name, children before it are skipped like getCurrentElementRange().
+     * The current element is the one of START_TAG, or the parent of the child whose END_TAG is the current event,
+     * so children with the same name can be found one by one. Children are found in document order only.
+     *
+     * @param name name bytes
+     * @return true if the current event is START_TAG of the child,
+     * false if the current element ends before that, then the current event is END_TAG(or END_TAG_WITHOUT_TEXT) of it
+     * @throws ParseException
+     */
+    boolean seekChild(byte[] name) throws ParseException;
+
+    /**
+     * read the text of the current element, attributes are skipped.
+     * This method should be called after next()==START_TAG, then the current event will be END_TAG(or END_TAG_WITHOUT_TEXT) of this tag.
+     *
+     * @return decoded text, empty string if the element has no text
+     * @throws ParseException if the element contains child elements
+     */
+    String nextText() throws ParseException;
+
+    /**
+     * find the child like seekChild() and read its text as int like nextText()
+     *
+     * @param name         name bytes of child
+     * @param defaultValue returned if the child is not found or has no text
+     * @return value of child
+     * @throws ParseException
+     */
+    int readIntChild(byte[] name, int defaultValue) throws ParseException;
+
+    /**
+     * find the child like seekChild() and read its text as long like nextText()
+     *
+     * @param name         name bytes of child
+     * @param defaultValue returned if the child is not found or has no text
+     * @return value of child
+     * @throws ParseException
+     */
+    long readLongChild(byte[] name, long defaultValue) throws ParseException;
+
+    /**
+     * find the child like seekChild() and read its text like nextText()
+     *
+     * @param name name bytes of child
+     * @return decoded text of child, null if the child is not found
+     * @throws ParseException
+     */
+    String readStringChild(byte[] name) throws ParseException;
+
     /**
      * Encode declared at the beginning of the doc。
      * This method should be called after START_DOCUMENT event.
@@ -98,6 +243,22 @@ public interface FastXmlParser {
      */
     int getDepth();
 
+    /**
+     * get the line number of cursor, starting from 1.
+     * It's computed on demand, so there is no cost when parsing, but don't call it for every event.
+     *
+     * @return current line number
+     */
+    int getRow();
+
+    /**
+     * get the column number of cursor, starting from 1. Column is counted by bytes, not chars.
+     * It's computed on demand, so there is no cost when parsing, but don't call it for every event.
+     *
+     * @return current column number
+     */
+    int getColumn();
+
     /**
      * check the current bytes is the same with expectBytes
      *
@@ -113,6 +274,53 @@ public interface FastXmlParser {
      */
     byte[] getRawBytes();
 
+    /**
+     * get count of attributes of the current start tag.
+     * Attributes are scanned once at START_TAG, offsets of their names and values are kept until next() is called,
+     * so they can be looked up in any order, see indexOfAttribute(), selectAttribute() and readAttributes().
+     * After that, call skipAttributes() to skip ATTRIBUTE_NAME and ATTRIBUTE_VALUE events, or call next() to get them as usual.
+     * FastXmlParser4InputStream keeps the whole start tag in buffer until next() is called.
+     * This method should be called after next()==START_TAG.
+     *
+     * @return count of attributes
+     * @throws ParseException
+     */
+    int getAttributeCount() throws ParseException;
+
+    /**
+     * find attribute of the current start tag by name, see getAttributeCount()
+     *
+     * @param name name bytes
+     * @return index of attribute, -1 if not found
+     * @throws ParseException
+     */
+    int indexOfAttribute(byte[] name) throws ParseException;
+
+    /**
+     * make the value of an attribute of the current start tag the current bytes, so getters like getInt() read the value,
+     * and the current event is still START_TAG. The name of start tag is the current bytes again after skipAttributes().
+     *
+     * @param index index of attribute, see indexOfAttribute()
+     * @throws ParseException
+     */
+    void selectAttribute(int index) throws ParseException;
+
+    /**
+     * give all attributes of the current start tag to sink in order, see getAttributeCount()
+     *
+     * @param sink receiver of attributes
+     * @throws ParseException
+     */
+    void readAttributes(AttributeSink sink) throws ParseException;
+
+    /**
+     * skip attributes of the current start tag, then next() goes to the content of this tag.
+     * This method should be called after next()==START_TAG.
+     *
+     * @throws ParseException
+     */
+    void skipAttributes() throws ParseException;
+
     /**
      * get Short which convert from current bytes
      *
@@ -167,4 +375,105 @@ public interface FastXmlParser {
      */
     String getStringWithDecoding() throws ParseException;
 
+    /**
+     * receive attributes of a start tag, see readAttributes()
+     */
+    interface AttributeSink {
+        /**
+         * @param bytes       array contains the attribute, don't keep it or call methods of parser in this method
+         * @param nameOffset  beginning index of name
+         * @param nameLength  length of name
+         * @param valueOffset beginning index of value, quotations are excluded
+         * @param valueLength length of value, it can be converted by methods of ParseUtils
+         * @throws ParseException
+         */
+        void attribute(byte[] bytes, int nameOffset, int nameLength, int valueOffset, int valueLength) throws ParseException;
+    }
+
+    /**
+     * options to suppress events inside the scanner or change how values are decoded, see AbstractFastXmlParser.setOptions().
+     * Whitespace between tags is never reported as TEXT, so there is no option for it.
+     */
+    final class Options {
+        private boolean skipAttributes;
+        private boolean skipText;
+        private int maxDepth = Integer.MAX_VALUE;
+        private boolean inSitu;
+        private StringCache stringCache;
+
+        /**
+         * @param skipAttributes true if attributes are skipped when the start tag is scanned,
+         *                       then neither ATTRIBUTE_NAME nor ATTRIBUTE_VALUE is returned, and getAttributeCount() is 0
+         * @return this options
+         */
+        public Options setSkipAttributes(boolean skipAttributes) {
+            this.skipAttributes = skipAttributes;
+            return this;
+        }
+
+        public boolean isSkipAttributes() {
+            return skipAttributes;
+        }
+
+        /**
+         * @param skipText true if text of elements is skipped, then END_TAG follows START_TAG directly instead of TEXT
+         * @return this options
+         */
+        public Options setSkipText(boolean skipText) {
+            this.skipText = skipText;
+            return this;
+        }
+
+        public boolean isSkipText() {
+            return skipText;
+        }
+
+        /**
+         * @param maxDepth elements deeper than it are skipped with their descendants, no event is returned for them.
+         *                 The root element is of depth 1
+         * @return this options
+         */
+        public Options setMaxDepth(int maxDepth) {
+            if (maxDepth < 1) {
+                throw new IllegalArgumentException("max depth should be positive: " + maxDepth);
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        public int getMaxDepth() {
+            return maxDepth;
+        }
+
+        /**
+         * @param inSitu true if text and attribute values returned by next() are decoded in place inside the input byte array,
+         *               so the array is modified. Then getString() and getStringWithDecoding() build the string from bytes at once,
+         *               and getRawBytes() returns the decoded bytes. It only works for FastXmlParser4ByteArray,
+         *               and mark() is not supported because decoded bytes can't be parsed again
+         * @return this options
+         */
+        public Options setInSitu(boolean inSitu) {
+            this.inSitu = inSitu;
+            return this;
+        }
+
+        public boolean isInSitu() {
+            return inSitu;
+        }
+
+        /**
+         * @param stringCache cache of strings returned by getString() and getStringWithDecoding() for values without
+         *                    CDATA block or entity reference, so repeated values are the same string.
+         *                    It can be used by one parser, or shared by parsers on different threads. null if no cache
+         * @return this options
+         */
+        public Options setStringCache(StringCache stringCache) {
+            this.stringCache = stringCache;
+            return this;
+        }
+
+        public StringCache getStringCache() {
+            return stringCache;
+        }
+    }
 }
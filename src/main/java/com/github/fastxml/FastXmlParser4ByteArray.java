@@ -20,6 +20,9 @@ import com.github.fastxml.exception.ParseException;
 import com.github.fastxml.util.ByteUtils;
 import com.github.fastxml.util.ParseUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 
@@ -57,24 +60,61 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
         this.nextEvent = START_DOCUMENT;
         this.currentDepth = 0;
         this.charset = charset;
+        this.specifiedCharset = charset;
+        this.hasNextDocument = false;
         this.docBytesLength = bytes.length;
+        this.marked = false;
+    }
+
+    /**
+     * Set input to a range of bytes which begins with a start tag, such as a part of a large document.
+     * There is no START_DOCUMENT, the first event is START_TAG of depth 1, and elements following it are parsed as its siblings.
+     * END_DOCUMENT is returned when end of the range is reached after an end tag.
+     * Bytes after the range may be read when looking ahead, so they should belong to the same document.
+     *
+     * @param bytes   the whole document
+     * @param begin   index of '&lt;' of the first start tag
+     * @param end     end of range, exclusive
+     * @param charset charset of document, it can't be detected here
+     */
+    void setRange(byte[] bytes, int begin, int end, Charset charset) {
+        this.docBytes = bytes;
+        this.cursor = begin + 1; // skip '<'
+        this.currentIndex = cursor;
+        this.currentBytesLength = 0;
+        this.currentEvent = END_DOCUMENT;
+        this.nextEvent = START_TAG;
+        this.currentDepth = 0;
+        this.charset = charset;
+        this.specifiedCharset = charset;
+        this.hasNextDocument = false;
+        this.docBytesLength = end;
+        this.marked = false;
     }
 
     public int next() throws ParseException {
         try {
+            attributeCount = -1;
             currentEvent = nextEvent;
             currentInDoubleQuote = false;
             currentHasEntityReference = false;
+            currentHasCDATA = false;
+            currentNonAscii = false;
+            if (currentEvent == DEEP_ELEMENT) {
+                currentEvent = skipDeepElements();
+            }
 
             if (currentEvent != END_TAG_WITHOUT_TEXT) {
                 resetCurrent();
             }
             switch (currentEvent) {
                 case START_DOCUMENT:
+                    charset = specifiedCharset;
                     nextEvent = processStartDocument();
                     break;
                 case END_DOCUMENT:
-                    nextEvent = -1;
+                    nextEvent = hasNextDocument ? START_DOCUMENT : END_DOCUMENT;
+                    hasNextDocument = false;
                     break;
                 case START_TAG:
                     currentDepth++;
@@ -93,9 +133,15 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
                     break;
                 case ATTRIBUTE_VALUE:
                     nextEvent = processAttributeValue();
+                    if (inSitu && currentHasEntityReference) {
+                        decodeInSitu();
+                    }
                     break;
                 case TEXT:
                     nextEvent = processText();
+                    if (inSitu && (currentHasEntityReference || currentHasCDATA)) {
+                        decodeInSitu();
+                    }
                     break;
                 default:
                     throw ParseException.otherError(this);
@@ -219,7 +265,7 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
             if ((currentInDoubleQuote && cursorByte == '\"') || (!currentInDoubleQuote && cursorByte == '\'')) {// found another quotation, it's the end of attribute value
                 currentBytesLength = cursor - currentIndex; // length of attribute value
                 try {
-                    charset = Charset.forName(this.getString());
+                    charset = Charset.forName(ParseUtils.parseString(docBytes, currentIndex, currentBytesLength));
                 } catch (Exception e) {
                     throw ParseException.formatError("encoding is not found or charset is not correct", this);
                 }
@@ -253,7 +299,7 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
                         cursor++;
                         return END_TAG_WITHOUT_TEXT;
                     } else if (skipCharCount > 0) { // found attribute name
-                        return ATTRIBUTE_NAME;
+                        return skipAttributeEvents ? processSkippedAttributes() : ATTRIBUTE_NAME;
                     } else {
                         throw ParseException.formatError("should be '/' or attribute here", this);
                     }
@@ -315,20 +361,86 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
             byte nextByte = docBytes[cursor + 1];
             if (ByteUtils.isValidTokenChar(nextByte)) { // found out another start tag
                 cursor++; // skip "<"
-                return START_TAG;
+                return currentDepth < maxDepth ? START_TAG : DEEP_ELEMENT;
             } else if (nextByte == '/') { // found out end tag
                 cursor += 2; // skip "</"
                 return END_TAG;
             } else { // so it should be text CDATA block
                 // restore
                 cursor = tempCursor;
-                return TEXT;
+                return skipTextEvents ? processSkippedText() : TEXT;
             }
         } else {
             // restore
             cursor = tempCursor;
-            return TEXT;
+            return skipTextEvents ? processSkippedText() : TEXT;
+        }
+    }
+
+    /**
+     * skip attributes of start tag in one pass when attribute events are suppressed, and find out next event
+     *
+     * @return next event
+     * @throws ParseException
+     */
+    private int processSkippedAttributes() throws ParseException {
+        byte quote = 0;
+        byte previous = 0;
+        for (; cursor < docBytesLength; cursor++) {
+            byte b = docBytes[cursor];
+            if (quote != 0) {
+                if (b == quote) {
+                    quote = 0;
+                }
+            } else if (b == '"' || b == '\'') {
+                quote = b;
+            } else if (b == '>') {
+                if (previous == '/') { // tag end immediately, processEndTagWithoutText() checks '>'
+                    return END_TAG_WITHOUT_TEXT;
+                }
+                cursor++;
+                return processAfterStartTag();
+            }
+            previous = b;
         }
+        throw ParseException.documentEndUnexpected(this);
+    }
+
+    /**
+     * skip text of element when text events are suppressed, the current bytes are still the start tag
+     *
+     * @return <code>END_TAG</code> event
+     * @throws ParseException
+     */
+    private int processSkippedText() throws ParseException {
+        int index = currentIndex;
+        int length = currentBytesLength;
+        boolean hasEntityReference = currentHasEntityReference;
+        boolean hasCDATA = currentHasCDATA;
+        boolean nonAscii = currentNonAscii;
+        currentIndex = cursor;
+        int event = processText();
+        currentIndex = index;
+        currentBytesLength = length;
+        currentHasEntityReference = hasEntityReference;
+        currentHasCDATA = hasCDATA;
+        currentNonAscii = nonAscii;
+        return event;
+    }
+
+    /**
+     * skip elements deeper than maxDepth and their descendants, the cursor is after '<' of the first one
+     *
+     * @return the event after them
+     * @throws ParseException
+     */
+    private int skipDeepElements() throws ParseException {
+        do {
+            currentIndex = cursor;
+            currentDepth++; // skipElement() ends at its end tag
+            skipElement();
+        } while (nextEvent == DEEP_ELEMENT);
+        return nextEvent;
     }
 
     /**
@@ -342,6 +454,9 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private int processAfterEndTag() throws ParseException {
+        if (multiDocument && currentDepth == 0) { // the root tag is closed
+            return processEndDocument();
+        }
         skipUselessChar();
         // continue to find out next event: end tag or another start tag or end document
         if (cursor == docBytesLength) {
@@ -352,13 +467,37 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
                 return END_TAG;
             } else { // found a start tag
                 cursor++;
-                return START_TAG;
+                return currentDepth < maxDepth ? START_TAG : DEEP_ELEMENT;
             }
         } else {
             throw ParseException.formatError("need a start tag or end document here", this);
         }
     }
 
+    /**
+     * skip delimiters after the root tag in multi-document mode, and find out whether another document follows
+     *
+     * @return <code>END_DOCUMENT</code> event
+     * @throws ParseException
+     */
+    private int processEndDocument() throws ParseException {
+        for (; ; ) {
+            skipUselessChar();
+            if (cursor < docBytesLength && docBytes[cursor] == 0) { // NUL delimiter
+                cursor++;
+            } else {
+                break;
+            }
+        }
+        if (cursor < docBytesLength) {
+            if (docBytes[cursor] != '<') {
+                throw ParseException.formatError("need another document or end of input here", this);
+            }
+            hasNextDocument = true;
+        }
+        return END_DOCUMENT;
+    }
+
     /**
      * process attribute name, and find out next event
      *
@@ -399,10 +538,13 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
         currentInDoubleQuote = docBytes[cursor] == '\"';
         currentIndex++;
         cursor++;
+        int bits = 0; // negative if any byte is not ASCII
         for (; cursor < docBytesLength; cursor++) {
             byte cursorByte = docBytes[cursor];
+            bits |= cursorByte;
             if ((currentInDoubleQuote && cursorByte == '\"') || (!currentInDoubleQuote && cursorByte == '\'')) {// found another quotation, it's the end of attribute value
                 currentBytesLength = cursor - currentIndex; // length of attribute value
+                currentNonAscii = bits < 0;
                 cursor++;
                 // continue to read byte until find next event
                 skipUselessChar();
@@ -425,6 +567,57 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
         throw ParseException.formatError("need another quotation", this);
     }
 
+    /**
+     * scan attributes from the end of tag name by processAttributeName() and processAttributeValue(),
+     * it also works for FastXmlParser4Pipeline, whose cursor is at the end of tag name at START_TAG
+     *
+     * @throws ParseException
+     */
+    @Override
+    protected void scanAttributes() throws ParseException {
+        int tagIndex = currentIndex;
+        int tagLength = currentBytesLength;
+        int tagCursor = cursor;
+        int tagNextEvent = nextEvent;
+        attributesEndCursor = cursor;
+        attributesNextEvent = nextEvent;
+        if (nextEvent != ATTRIBUTE_NAME) {
+            return;
+        }
+        try {
+            cursor = tagIndex + tagLength;
+            skipUselessChar();
+            int event = ATTRIBUTE_NAME;
+            while (event == ATTRIBUTE_NAME) {
+                currentIndex = cursor;
+                processAttributeName();
+                int nameIndex = currentIndex;
+                int nameLength = currentBytesLength;
+                currentIndex = cursor;
+                currentInDoubleQuote = false;
+                currentHasEntityReference = false;
+                currentHasCDATA = false;
+                currentNonAscii = false;
+                event = processAttributeValue();
+                addAttribute(nameIndex, nameLength, currentIndex, currentBytesLength, currentInDoubleQuote, currentHasEntityReference,
+                        currentNonAscii);
+            }
+            attributesEndCursor = cursor;
+            attributesNextEvent = event;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw ParseException.documentEndUnexpected(this);
+        } finally {
+            currentIndex = tagIndex;
+            currentBytesLength = tagLength;
+            currentInDoubleQuote = false;
+            currentHasEntityReference = false;
+            currentHasCDATA = false;
+            currentNonAscii = false;
+            cursor = tagCursor;
+            nextEvent = tagNextEvent;
+        }
+    }
+
     /**
      * Text wrapped by a pair of tag.
      * this method will not get rid of CDATA block, because it will break the order of docBytes.
@@ -435,8 +628,10 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
      */
     private int processText() throws ParseException {
         boolean inCDATA = false;
+        int bits = 0; // negative if any byte is not ASCII
         for (; cursor < docBytesLength; cursor++) {
             byte currentCursor = docBytes[cursor];
+            bits |= currentCursor;
             if (inCDATA) { // in CDATA block, then find out "]]>"
                 if (currentCursor == ']' && docBytes[cursor + 1] == ']' && docBytes[cursor + 2] == '>') {
                     cursor += 2;
@@ -450,8 +645,10 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
                             && docBytes[cursor + 7] == 'A' && docBytes[cursor + 8] == '[') { // found CDATA block
                         cursor += 8;
                         inCDATA = true;
+                        currentHasCDATA = true;
                     } else if (nextByte == '/') { // found end tag
                         currentBytesLength = cursor - currentIndex;
+                        currentNonAscii = bits < 0;
                         cursor += 2; // skip "</"
                         return END_TAG;
                     }
@@ -463,6 +660,25 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
         throw ParseException.documentEndUnexpected(this);
     }
 
+    /**
+     * decode the current value in place when in-situ option is set, it's called after the whole value has been scanned,
+     * so bytes after the value are not touched. The decoded value is a slice of docBytes which can be read at once.
+     *
+     * @throws ParseException
+     */
+    private void decodeInSitu() throws ParseException {
+        boolean hasEntityReference = currentHasEntityReference;
+        try {
+            currentBytesLength = ParseUtils.decodeInSitu(docBytes, currentIndex, currentBytesLength, charset);
+        } catch (ParseException e) {
+            e.setRowAndColumn(this);
+            throw e;
+        }
+        currentHasEntityReference = false;
+        currentHasCDATA = false;
+        currentNonAscii = currentNonAscii || hasEntityReference; // character references may be decoded to non-ASCII bytes
+    }
+
     /**
      * skip useless chars, such as ' ', '\t', '\n', '\r', comment, DOCTYPE
      *
@@ -563,12 +779,170 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
         int tempDepth = currentDepth - 1; // the depth before this tag
         for (; ; ) {
             event = next();
-            if (currentDepth == tempDepth && event == END_TAG) { // this tag and its descendants is skipped
+            if (currentDepth == tempDepth && (event == END_TAG || event == END_TAG_WITHOUT_TEXT)) { // this tag and its descendants is skipped
                 return;
             }
         }
     }
 
+    public long[] getCurrentElementRange() throws ParseException {
+        checkStartTag();
+        int begin = currentIndex - 1; // '<' before tag name
+        try {
+            return new long[]{begin, skipElement()};
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw ParseException.documentEndUnexpected(this);
+        }
+    }
+
+    /**
+     * Skip the current element like getCurrentElementRange(), and create a parser over its bytes only.
+     * The sub parser shares the document bytes without copying, and it's independent of this parser,
+     * so it can be handed to another thread while this parser goes on, as long as the document bytes are not modified.
+     * The sub parser is at START_TAG of the element with depth 1, and its next event after the end tag of the element is END_DOCUMENT.
+     * Charset and options of this parser are kept.
+     * This method should be called after next()==START_TAG.
+     *
+     * @return parser of the current element
+     * @throws ParseException
+     */
+    public FastXmlParser4ByteArray createSubParser() throws ParseException {
+        long[] range = getCurrentElementRange();
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.skipAttributeEvents = skipAttributeEvents;
+        parser.skipTextEvents = skipTextEvents;
+        parser.maxDepth = maxDepth;
+        parser.inSitu = inSitu;
+        parser.stringCache = stringCache;
+        parser.setRange(docBytes, (int) range[0], (int) range[1], charset);
+        parser.next();
+        return parser;
+    }
+
+    public long copyCurrentElement(OutputStream out) throws ParseException {
+        long[] range = getCurrentElementRange();
+        try {
+            out.write(docBytes, (int) range[0], (int) (range[1] - range[0]));
+        } catch (IOException e) {
+            throw ParseException.ioException(e);
+        }
+        return range[1] - range[0];
+    }
+
+    public long copyCurrentElement(ByteBuffer buffer) throws ParseException {
+        long[] range = getCurrentElementRange();
+        buffer.put(docBytes, (int) range[0], (int) (range[1] - range[0]));
+        return range[1] - range[0];
+    }
+
+    /**
+     * scan bytes of current element for tags only, then move to the end tag of it.
+     * Comments, CDATA blocks, processing instructions and quoted attribute values are skipped as a whole.
+     *
+     * @return index after '>' of the end tag
+     * @throws ParseException
+     */
+    private int skipElement() throws ParseException {
+        final byte[] docBytes = this.docBytes;
+        int depth = 0;
+        int i = currentIndex; // the byte after '<' of start tag
+        for (; ; ) {
+            byte b = docBytes[i];
+            if (b == '/') { // end tag
+                int nameBegin = ++i;
+                i = skipPastClose(i, (byte) 0, 0);
+                if (--depth == 0) {
+                    int nameEnd = i - 1;
+                    while (nameEnd > nameBegin && ByteUtils.isWhiteSpaceOrNewLine(docBytes[nameEnd - 1])) {
+                        nameEnd--;
+                    }
+                    endElement(END_TAG, nameBegin, nameEnd - nameBegin, i);
+                    return i;
+                }
+            } else if (b == '!') {
+                if (docBytes[i + 1] == '-' && docBytes[i + 2] == '-') { // comment
+                    i = skipPastClose(i + 3, (byte) '-', 2);
+                } else if (docBytes[i + 1] == '[') { // CDATA block
+                    i = skipPastClose(i + 1, (byte) ']', 2);
+                } else {
+                    i = skipPastClose(i + 1, (byte) 0, 0);
+                }
+            } else if (b == '?') { // processing instruction
+                i = skipPastClose(i + 1, (byte) '?', 1);
+            } else { // start tag
+                byte quote = 0;
+                byte previous = 0;
+                for (; i < docBytesLength; i++) {
+                    b = docBytes[i];
+                    if (quote != 0) {
+                        if (b == quote) {
+                            quote = 0;
+                        }
+                    } else if (b == '"' || b == '\'') {
+                        quote = b;
+                    } else if (b == '>') {
+                        break;
+                    }
+                    previous = b;
+                }
+                if (i == docBytesLength) {
+                    cursor = i;
+                    throw ParseException.documentEndUnexpected(this);
+                }
+                i++;
+                if (previous != '/') {
+                    depth++;
+                } else if (depth == 0) { // current element is empty
+                    endElement(END_TAG_WITHOUT_TEXT, currentIndex, currentBytesLength, i);
+                    return i;
+                }
+            }
+            while (i < docBytesLength && docBytes[i] != '<') {
+                i++;
+            }
+            if (i == docBytesLength) {
+                cursor = i;
+                throw ParseException.documentEndUnexpected(this);
+            }
+            i++;
+        }
+    }
+
+    /**
+     * find the first '>' which follows at least count bytes of before
+     *
+     * @return index after '>'
+     * @throws ParseException
+     */
+    private int skipPastClose(int i, byte before, int count) throws ParseException {
+        int run = 0;
+        for (; i < docBytesLength; i++) {
+            byte b = docBytes[i];
+            if (b == '>' && run >= count) {
+                return i + 1;
+            }
+            run = b == before ? run + 1 : 0;
+        }
+        cursor = i;
+        throw ParseException.documentEndUnexpected(this);
+    }
+
+    /**
+     * set state as the end tag of current element has just been parsed
+     */
+    private void endElement(int event, int index, int length, int end) throws ParseException {
+        currentEvent = event;
+        currentIndex = index;
+        currentBytesLength = length;
+        currentInDoubleQuote = false;
+        currentHasEntityReference = false;
+        currentHasCDATA = false;
+        currentNonAscii = false;
+        cursor = end;
+        currentDepth--;
+        nextEvent = processAfterEndTag();
+    }
+
     /**
      * reset currentIndex and currentBytesLength when traverse to another element
      */
@@ -577,6 +951,27 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
         currentBytesLength = 0;
     }
 
+    /**
+     * current line number: starting from 1.
+     * It's computed on demand by counting new lines from the beginning of document.
+     *
+     * @return
+     */
+    public int getRow() {
+        return ByteUtils.countNewLines(docBytes, 0, Math.min(cursor, docBytesLength)) + 1;
+    }
+
+    /**
+     * current column number: starting from 1.
+     * It's computed on demand by finding the last new line before cursor.
+     *
+     * @return
+     */
+    public int getColumn() {
+        int end = Math.min(cursor, docBytesLength);
+        return end - ByteUtils.lastIndexOfNewLine(docBytes, 0, end);
+    }
+
     public boolean isMatch(byte[] expectBytes) {
         int length = expectBytes.length;
         if (expectBytes.length == currentBytesLength) {
@@ -596,7 +991,21 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
         return bytes;
     }
 
+    /**
+     * decoded bytes can't be parsed again, so mark is not supported when in-situ option is set
+     */
+    @Override
+    public void mark() {
+        if (inSitu) {
+            throw new IllegalStateException("mark is not supported when values are decoded in place");
+        }
+        super.mark();
+    }
+
     public String getString() throws ParseException {
+        if (!currentHasEntityReference && !currentHasCDATA && (!currentNonAscii || inSitu)) { // nothing to decode
+            return plainString(docBytes, currentIndex, !currentNonAscii);
+        }
         try {
             return ParseUtils.parseString(docBytes, currentIndex, currentBytesLength);
         } catch (ParseException e) {
@@ -606,6 +1015,9 @@ public class FastXmlParser4ByteArray extends AbstractFastXmlParser {
     }
 
     public String getStringWithDecoding() throws ParseException {
+        if (!currentHasEntityReference && !currentHasCDATA) { // nothing to decode
+            return plainString(docBytes, currentIndex, !currentNonAscii);
+        }
         try {
             return ParseUtils.parseStringWithDecoding(docBytes, currentIndex, currentBytesLength, charset);
         } catch (ParseException e) {
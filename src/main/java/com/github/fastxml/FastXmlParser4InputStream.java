@@ -7,9 +7,16 @@ import com.github.fastxml.util.ParseUtils;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ThreadFactory;
 
 /**
+ * A simple, pull based XML parser for input stream.
+ * Bytes are read into fixed-size segments, and the scanning loops run over the plain array of a segment
+ * just like FastXmlParser4ByteArray, bytes will be read from IO only when the end of the readable window is reached.
  * Created by weager on 2016/08/026.
  */
 public class FastXmlParser4InputStream extends AbstractFastXmlParser {
@@ -18,30 +25,101 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * default buffer size for initialing buffer
      */
     public final static int DEFAULT_BUFFER_SIZE = 8192;
+    /**
+     * default count of segments which can be read ahead by the helper thread
+     */
+    public final static int DEFAULT_READ_AHEAD_BUFFERS = 2;
+    /**
+     * default max bytes kept in buffer for a mark, see setLookaheadLimit()
+     */
+    public final static int DEFAULT_LOOKAHEAD_LIMIT = 4 * 1024 * 1024;
+    /**
+     * the minimum size of a buffer segment
+     */
+    private final static int MIN_SEGMENT_SIZE = 1024;
     /**
      * input stream
      */
     private InputStream is;
     /**
-     * the last index of buffer
+     * produce segments on other threads if read-ahead or gzip decompression is enabled, otherwise null
      */
-    private int bufferEnd;
+    private SegmentReader segmentReader;
+    /**
+     * buffer segments in reading order, only segments[0, segmentCount) hold bytes of the document.
+     * index of the buffer is continuous, the byte of an index can be found by segments[index >> segmentShift][index & segmentMask]
+     */
+    private byte[][] segments;
+    /**
+     * count of the segments in use
+     */
+    private int segmentCount;
+    /**
+     * released segments which can be reused, they will be kept for the next document
+     */
+    private byte[][] freeSegments;
+    /**
+     * count of the released segments
+     */
+    private int freeSegmentCount;
+    /**
+     * size of each segment, it must be power of 2
+     */
+    private int segmentSize;
+    /**
+     * segmentSize == 1 << segmentShift
+     */
+    private int segmentShift;
+    /**
+     * segmentMask == segmentSize - 1
+     */
+    private int segmentMask;
+    /**
+     * bytes of the current token which span segments will be copied into this buffer when a getter need them
+     */
+    private byte[] tokenBuffer;
+    /**
+     * tokens of the last nextBatch(), see getBatchBytes()
+     */
+    private byte[] batchBytes = new byte[1024];
+    private int batchLength;
     /**
      * the last readable index of buffer
      */
     private int lastReadableIndex;
     /**
-     * current line number: starting from 1
+     * count of new lines in the released segments
      */
-    private int row;
+    private int releasedRows;
     /**
-     * current column number: starting from 1
+     * count of bytes after the last new line in the released segments
      */
-    private int column;
+    private int releasedColumns;
     /**
      * the index of EOF byte(-1)
      */
     private int indexOfEOF = -1;
+    /**
+     * count of bytes in the released segments, it's the offset of index 0 in input stream
+     */
+    private long releasedBytes;
+    /**
+     * max bytes kept in buffer from the marked token, the mark is dropped if it's exceeded
+     */
+    private int lookaheadLimit = DEFAULT_LOOKAHEAD_LIMIT;
+    /**
+     * whether the mark has been dropped because of lookahead limit
+     */
+    private boolean markDropped;
+    /**
+     * where bytes of current element are copied to by copyCurrentElement(), at most one of them is not null
+     */
+    private OutputStream copyOut;
+    private ByteBuffer copyBuffer;
+    /**
+     * the beginning index of bytes which have not been copied
+     */
+    private int copyStart;
 
     /**
      * Set input steam, the encoding in document declaration will be used
@@ -62,7 +140,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     public void setInput(InputStream is, Charset charset) throws ParseException {
-        this.setInput(is, DEFAULT_BUFFER_SIZE, null);
+        this.setInput(is, DEFAULT_BUFFER_SIZE, charset);
     }
 
     /**
@@ -75,6 +153,27 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     public void setInput(InputStream is, int bufferSize, Charset charset) throws ParseException {
+        this.setInput(is, bufferSize, charset, 0, null);
+    }
+
+    /**
+     * Set input stream, byte buffer, and set charset, and read input stream ahead on a helper thread.
+     * The helper thread fills the next segments while the parser parses the current one,
+     * it's useful when input stream is slow, such as network file system or decompressing stream.
+     * IOException thrown on the helper thread will be thrown by next() as ParseException.
+     * After close() the helper thread doesn't start another read, but a read which is blocked in input stream
+     * goes on until it returns, so close the input stream too if it may block.
+     *
+     * @param is               input steam
+     * @param bufferSize       size of buffer
+     * @param charset          if param charset is null, then encoding in document will be used;
+     *                         if both param charset and encoding in document is empty, then AbstractFastXmlParser.defaultCharset will be used
+     * @param readAheadBuffers max count of segments which can be read ahead, read-ahead is disabled if it's not positive
+     * @param threadFactory    factory to create the helper thread, such as a factory of virtual threads on JDK 21+;
+     *                         if null, a daemon thread will be created
+     * @throws ParseException
+     */
+    public void setInput(InputStream is, int bufferSize, Charset charset, int readAheadBuffers, ThreadFactory threadFactory) throws ParseException {
         try {
             if (is == null || is.available() == 0) {
                 throw ParseException.emptyDocument();
@@ -82,33 +181,159 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
         } catch (IOException e) {
             throw ParseException.ioException(e);
         }
-        if (bufferSize < 1024) { // if the buffer is so small
+        int segmentSize = toSegmentSize(bufferSize);
+        SegmentReader reader = null;
+        if (readAheadBuffers > 0) {
+            reader = new ReadAheadReader(is, segmentSize, readAheadBuffers, threadFactory);
+        }
+        init(is, segmentSize, charset, reader);
+    }
+
+    /**
+     * Set segment reader which produces segments on other threads, and set charset.
+     *
+     * @param segmentReader segment reader, it's size of segment should be computed by toSegmentSize()
+     * @param charset       if param charset is null, then encoding in document will be used;
+     *                      if both param charset and encoding in document is empty, then AbstractFastXmlParser.defaultCharset will be used
+     * @throws ParseException
+     */
+    void setInput(SegmentReader segmentReader, Charset charset) throws ParseException {
+        init(null, segmentReader.segmentSize, charset, segmentReader);
+        if (!ensure(1)) {
+            throw ParseException.emptyDocument();
+        }
+    }
+
+    /**
+     * compute size of segment from buffer size
+     *
+     * @param bufferSize size of buffer
+     * @return power of 2 which is not less than buffer size
+     */
+    static int toSegmentSize(int bufferSize) {
+        if (bufferSize < MIN_SEGMENT_SIZE) { // if the buffer is so small
             bufferSize = DEFAULT_BUFFER_SIZE;
         }
+        int size = Integer.highestOneBit(bufferSize);
+        if (size < bufferSize) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    /**
+     * init parser state for a new document
+     *
+     * @param is            input stream, null if segment reader is not null
+     * @param segmentSize   size of segment
+     * @param charset       charset
+     * @param segmentReader segment reader, or null if bytes will be read by parser thread
+     * @throws ParseException
+     */
+    private void init(InputStream is, int segmentSize, Charset charset, SegmentReader segmentReader) throws ParseException {
         this.is = is;
         this.charset = charset;
-        this.docBytes = new byte[bufferSize];
-        this.bufferEnd = bufferSize - 1; // for reuse
+        this.specifiedCharset = charset;
+        this.hasNextDocument = false;
+        initSegments(segmentSize);
+        if (segmentReader != null) {
+            this.segmentReader = segmentReader;
+            for (int i = 0; i < freeSegmentCount; i++) {
+                segmentReader.recycle(freeSegments[i]);
+                freeSegments[i] = null;
+            }
+            freeSegmentCount = 0;
+            segmentReader.start();
+        }
         this.cursor = 0;
+        this.currentIndex = 0;
+        this.currentBytesLength = 0;
+        this.currentEvent = END_DOCUMENT;
+        this.nextEvent = START_DOCUMENT;
+        this.currentDepth = 0;
         this.lastReadableIndex = -1;
         this.indexOfEOF = -1;
-        read(); // prefetch a byte for parser
+        this.releasedRows = 0;
+        this.releasedColumns = 0;
+        this.releasedBytes = 0;
+        this.marked = false;
+        this.markDropped = false;
+        ensure(1); // prefetch bytes for parser
+    }
+
+    /**
+     * recycle segments of the previous document, and prepare segments for the new document.
+     * If the segment size is changed, the old segments will be dropped.
+     *
+     * @param size size of segment, it must be power of 2
+     */
+    private void initSegments(int size) {
+        closeSegmentReader();
+        if (size != segmentSize || segments == null) {
+            this.segmentSize = size;
+            this.segmentShift = Integer.numberOfTrailingZeros(size);
+            this.segmentMask = size - 1;
+            this.segments = new byte[4][];
+            this.freeSegments = new byte[4][];
+            this.freeSegmentCount = 0;
+        } else {
+            for (int i = 0; i < segmentCount; i++) {
+                recycleSegment(segments[i]);
+                segments[i] = null;
+            }
+        }
+        this.segmentCount = 0;
+        this.docBytes = null;
+    }
+
+    /**
+     * stop the read-ahead or decompression threads if the document will not be parsed any more.
+     * It's not necessary to call this method after END_DOCUMENT or when setInput() is called again.
+     * The input stream will not be closed, and a helper thread blocked in reading it stops after the read returns,
+     * so close the input stream too if a read may block for long.
+     */
+    public void close() {
+        closeSegmentReader();
+    }
+
+    /**
+     * stop the segment reader, and take back segments which can be reused
+     */
+    private void closeSegmentReader() {
+        if (segmentReader != null) {
+            byte[][] segments = segmentReader.close();
+            segmentReader = null;
+            for (byte[] segment : segments) {
+                recycleSegment(segment);
+            }
+        }
     }
 
     public int next() throws ParseException {
         try {
+            attributeCount = -1;
             currentEvent = nextEvent;
             currentInDoubleQuote = false;
             currentHasEntityReference = false;
+            currentHasCDATA = false;
+            currentNonAscii = false;
+            if (currentEvent == DEEP_ELEMENT) {
+                currentEvent = skipDeepElements();
+            }
             if (currentEvent != END_TAG_WITHOUT_TEXT) {
                 resetCurrent();
             }
+            if (currentIndex > segmentMask) { // bytes before current token are useless
+                releaseSegments();
+            }
             switch (currentEvent) {
                 case START_DOCUMENT:
+                    charset = specifiedCharset;
                     nextEvent = processStartDocument();
                     break;
                 case END_DOCUMENT:
-                    nextEvent = -1;
+                    nextEvent = hasNextDocument ? START_DOCUMENT : END_DOCUMENT;
+                    hasNextDocument = false;
                     break;
                 case START_TAG:
                     currentDepth++;
@@ -153,13 +378,13 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
                     && readAndCheck(cursor + 2, 'x', 'X')
                     && readAndCheck(cursor + 3, 'm', 'M')
                     && readAndCheck(cursor + 4, 'l', 'L')) {
-                moveCursor(5);
+                cursor += 5;
                 skipUselessChar();
 
                 if (charset != null) {// if charset has been set, then just finish declaration.
                     return processEndDeclaration();
                 } else { // charset has not been set, then find out encoding
-                    for (; notEnd(); moveCursor()) {
+                    for (; ensure(1); cursor++) {
                         if (readAndCheck(cursor, 'e', 'E')
                                 && readAndCheck(cursor + 1, 'n', 'N')
                                 && readAndCheck(cursor + 2, 'c', 'C')
@@ -168,13 +393,12 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
                                 && readAndCheck(cursor + 5, 'i', 'I')
                                 && readAndCheck(cursor + 6, 'n', 'N')
                                 && readAndCheck(cursor + 7, 'g', 'G')) {
-                            moveCursor(8); // skip "encoding"
+                            cursor += 8; // skip "encoding"
                             skipUselessChar();
                             if (readAndCheck(cursor, '=')) {
-                                moveCursor(1);
+                                cursor++;
                                 skipUselessChar();
-                                byte currentCursor = docBytes[cursor];
-                                if (currentCursor == '\"' || currentCursor == '\'') {
+                                if (readAndCheck(cursor, '\"', '\'')) {
                                     processEncodingValue(); // parse encoding="xxx"
                                     return processEndDeclaration();
                                 } else {
@@ -184,7 +408,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
                                 throw ParseException.formatError("need '=' here", this);
                             }
                         } else if (readAndCheck(cursor, '?') && readAndCheck(cursor + 1, '>')) {
-                            moveCursor(2);
+                            cursor += 2;
                             skipUselessChar();
                             return _processEndDeclaration();
                         }
@@ -192,7 +416,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
                     throw ParseException.formatError("xml declaration should contain encoding, or specify charset on method setInput(byte[], Charset)", this);
                 }
             } else { // no declaration, no specified charset, so use the default charset, next event should be START_TAG
-                moveCursor(1);
+                cursor++;
                 if (charset == null) {
                     charset = DEFAULT_CHARSET;
                 }
@@ -210,9 +434,9 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private int processEndDeclaration() throws ParseException {
-        for (; notEnd(); moveCursor()) {
+        for (; ensure(1); cursor++) {
             if (readAndCheck(cursor, '?') && readAndCheck(cursor + 1, '>')) {
-                moveCursor(2);
+                cursor += 2;
                 skipUselessChar();
                 return _processEndDeclaration();
             }
@@ -231,7 +455,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
             charset = DEFAULT_CHARSET;
         }
         if (readAndCheck(cursor, '<')) {
-            moveCursor(1);
+            cursor++;
             return START_TAG;
         } else {
             throw ParseException.formatError("should be a <tagName here", this);
@@ -245,11 +469,11 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      */
     private void processEncodingValue() throws ParseException {
         // check doubleQuote or singleQuote
-        currentInDoubleQuote = docBytes[cursor] == '\"';
-        moveCursor(1);
+        currentInDoubleQuote = byteAt(cursor) == '\"';
+        cursor++;
         currentIndex = cursor;
-        for (; notEnd(); moveCursor()) {
-            byte cursorByte = docBytes[cursor];
+        for (; ensure(1); cursor++) {
+            byte cursorByte = byteAt(cursor);
             if ((currentInDoubleQuote && cursorByte == '\"') || (!currentInDoubleQuote && cursorByte == '\'')) {// found another quotation, it's the end of attribute value
                 currentBytesLength = cursor - currentIndex; // length of attribute value
                 try {
@@ -257,7 +481,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
                 } catch (Exception e) {
                     throw ParseException.formatError("encoding is not found or charset is not correct", this);
                 }
-                moveCursor(1); // skip another '\'' or '\"'
+                cursor++; // skip another '\'' or '\"'
                 return;
             }
         }
@@ -273,24 +497,22 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
     private int processStartTag() throws ParseException {
         // the first char has bean validated in previous event, so just skip it.
         // to see: processAfterEndTag() and processStartDocument()
-        for (; notEnd(); moveCursor()) {
-            if (!ByteUtils.isValidTokenChar(docBytes[cursor])) {
-                if (readAndCheck(cursor, '>')) { // start tag
-                    currentBytesLength = cursor - currentIndex;
-                    moveCursor(1);
-                    return processAfterStartTag();
+        if (skipTokenChars()) {
+            if (byteAt(cursor) == '>') { // start tag
+                currentBytesLength = cursor - currentIndex;
+                cursor++;
+                return processAfterStartTag();
+            } else {
+                int skipCharCount = skipUselessChar();
+                // tagName should not contain whitespace
+                currentBytesLength = cursor - skipCharCount - currentIndex;
+                if (readAndCheck(cursor, '/')) { // tag end immediately
+                    cursor++;
+                    return END_TAG_WITHOUT_TEXT;
+                } else if (skipCharCount > 0) { // found attribute name
+                    return skipAttributeEvents ? processSkippedAttributes() : ATTRIBUTE_NAME;
                 } else {
-                    int skipCharCount = skipUselessChar();
-                    // tagName should not contain whitespace
-                    currentBytesLength = cursor - skipCharCount - currentIndex;
-                    if (readAndCheck(cursor, '/')) { // tag end immediately
-                        moveCursor(1);
-                        return END_TAG_WITHOUT_TEXT;
-                    } else if (skipCharCount > 0) { // found attribute name
-                        return ATTRIBUTE_NAME;
-                    } else {
-                        throw ParseException.formatError("should be '/' or attribute here", this);
-                    }
+                    throw ParseException.formatError("should be '/' or attribute here", this);
                 }
             }
         }
@@ -304,12 +526,12 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private int processEndTag() throws ParseException {
-        for (; notEnd(); moveCursor()) {
-            if (readAndCheck(cursor, '>')) {// the tag end
+        if (skipTokenChars()) {
+            if (byteAt(cursor) == '>') {// the tag end
                 currentBytesLength = cursor - currentIndex;
-                moveCursor(1);
+                cursor++;
                 return processAfterEndTag();
-            } else if (!ByteUtils.isValidTokenChar(docBytes[cursor])) {
+            } else {
                 throw ParseException.formatError("tag name should not contain invalid char", this);
             }
         }
@@ -324,7 +546,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      */
     private int processEndTagWithoutText() throws ParseException {
         if (readAndCheck(cursor, '>')) {
-            moveCursor(1);
+            cursor++;
             return processAfterEndTag();
         } else {
             throw ParseException.tagNotClosed(this);
@@ -343,29 +565,102 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      */
     private int processAfterStartTag() throws ParseException {
         int tempCursor = cursor;
-        int count = skipUselessChar();
-        tempCursor = cursor - count; // resetBuffer() may be called, so recaculate tempCursor
+        skipUselessChar();
         // continue to find out next event: another start tag or end tag or text
-        if (readAndCheck(cursor, '<')) {
-            byte nextByte = (byte) read(cursor + 1);
+        if (ensure(2) && byteAt(cursor) == '<') {
+            byte nextByte = byteAt(cursor + 1);
             if (ByteUtils.isValidTokenChar(nextByte)) { // found out another start tag
-                moveCursor(1); // skip "<"
-                return START_TAG;
+                cursor++; // skip "<"
+                return currentDepth < maxDepth ? START_TAG : DEEP_ELEMENT;
             } else if (nextByte == '/') { // found out end tag
-                moveCursor(2); // skip "</"
+                cursor += 2; // skip "</"
                 return END_TAG;
             } else { // so it should be text CDATA block
                 // restore
                 cursor = tempCursor;
-                return TEXT;
+                return skipTextEvents ? processSkippedText() : TEXT;
             }
         } else {
             // restore
             cursor = tempCursor;
-            return TEXT;
+            return skipTextEvents ? processSkippedText() : TEXT;
         }
     }
 
+    /**
+     * skip attributes of start tag in one pass when attribute events are suppressed, and find out next event
+     *
+     * @return next event
+     * @throws ParseException
+     */
+    private int processSkippedAttributes() throws ParseException {
+        byte quote = 0;
+        byte previous = 0;
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            for (int i = cursor - base; i < last; i++) {
+                byte b = bytes[i];
+                if (quote != 0) {
+                    if (b == quote) {
+                        quote = 0;
+                    }
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    cursor = base + i;
+                    if (previous == '/') { // tag end immediately, processEndTagWithoutText() checks '>'
+                        return END_TAG_WITHOUT_TEXT;
+                    }
+                    cursor++;
+                    return processAfterStartTag();
+                }
+                previous = b;
+            }
+            cursor = end;
+        }
+        throw ParseException.documentEndUnexpected(this);
+    }
+
+    /**
+     * skip text of element when text events are suppressed, the current bytes are still the start tag
+     *
+     * @return <code>END_TAG</code> event
+     * @throws ParseException
+     */
+    private int processSkippedText() throws ParseException {
+        int index = currentIndex;
+        int length = currentBytesLength;
+        boolean hasEntityReference = currentHasEntityReference;
+        boolean hasCDATA = currentHasCDATA;
+        boolean nonAscii = currentNonAscii;
+        currentIndex = cursor;
+        int event = processText();
+        currentIndex = index;
+        currentBytesLength = length;
+        currentHasEntityReference = hasEntityReference;
+        currentHasCDATA = hasCDATA;
+        currentNonAscii = nonAscii;
+        return event;
+    }
+
+    /**
+     * skip elements deeper than maxDepth and their descendants, the cursor is after '<' of the first one.
+     * Segments are released while skipping, so the buffer does not grow with the size of elements
+     *
+     * @return the event after them
+     * @throws ParseException
+     */
+    private int skipDeepElements() throws ParseException {
+        do {
+            currentIndex = cursor;
+            currentDepth++; // skipElement() ends at its end tag
+            skipElement();
+        } while (nextEvent == DEEP_ELEMENT);
+        return nextEvent;
+    }
+
     /**
      * process bytes after end tag.
      * There are two possibilities:
@@ -377,23 +672,50 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private int processAfterEndTag() throws ParseException {
+        if (multiDocument && currentDepth == 0) { // the root tag is closed
+            return processEndDocument();
+        }
         skipUselessChar();
         // continue to find out next event: end tag or another start tag or end document
-        if (!notEnd()) {
+        if (!ensure(1)) {
             return END_DOCUMENT;
-        } else if (readAndCheck(cursor, '<')) {
+        } else if (byteAt(cursor) == '<') {
             if (readAndCheck(cursor + 1, '/')) { // found another end tag
-                moveCursor(2); // skip "</"
+                cursor += 2; // skip "</"
                 return END_TAG;
             } else { // found a start tag
-                moveCursor(1);
-                return START_TAG;
+                cursor++;
+                return currentDepth < maxDepth ? START_TAG : DEEP_ELEMENT;
             }
         } else {
             throw ParseException.formatError("need a start tag or end document here", this);
         }
     }
 
+    /**
+     * skip delimiters after the root tag in multi-document mode, and find out whether another document follows
+     *
+     * @return <code>END_DOCUMENT</code> event
+     * @throws ParseException
+     */
+    private int processEndDocument() throws ParseException {
+        for (; ; ) {
+            skipUselessChar();
+            if (ensure(1) && byteAt(cursor) == 0) { // NUL delimiter
+                cursor++;
+            } else {
+                break;
+            }
+        }
+        if (ensure(1)) {
+            if (byteAt(cursor) != '<') {
+                throw ParseException.formatError("need another document or end of input here", this);
+            }
+            hasNextDocument = true;
+        }
+        return END_DOCUMENT;
+    }
+
     /**
      * process attribute name, and find out next event
      *
@@ -401,23 +723,21 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private int processAttributeName() throws ParseException {
-        moveCursor(1); // the first char has been checked in previous event, so here just skip it
-        for (; notEnd(); moveCursor()) {// read tag bytes
-            if (!ByteUtils.isValidTokenChar(docBytes[cursor])) {// this attribute name end
-                currentBytesLength = cursor - currentIndex;
-                skipUselessChar(); // skip ' ' and '\t' between attribute name and '='
-                // read "=\"", '\'' should be ok
-                if (readAndCheck(cursor, '=')) {
-                    moveCursor(1);
-                    skipUselessChar(); // skip ' ' and '\t' between '=' and attribute value
-                    if (readAndCheck(cursor, '\"', '\'')) { // found the quotation at the beginning of attribute value
-                        return ATTRIBUTE_VALUE; // found attribute value
-                    } else {
-                        throw ParseException.formatError("need '\"' or '\'' here", this);
-                    }
+        cursor++; // the first char has been checked in previous event, so here just skip it
+        if (skipTokenChars()) {// this attribute name end
+            currentBytesLength = cursor - currentIndex;
+            skipUselessChar(); // skip ' ' and '\t' between attribute name and '='
+            // read "=\"", '\'' should be ok
+            if (readAndCheck(cursor, '=')) {
+                cursor++;
+                skipUselessChar(); // skip ' ' and '\t' between '=' and attribute value
+                if (readAndCheck(cursor, '\"', '\'')) { // found the quotation at the beginning of attribute value
+                    return ATTRIBUTE_VALUE; // found attribute value
                 } else {
-                    throw ParseException.formatError("need '=' here", this);
+                    throw ParseException.formatError("need '\"' or '\'' here", this);
                 }
+            } else {
+                throw ParseException.formatError("need '=' here", this);
             }
         }
         throw ParseException.documentEndUnexpected(this);
@@ -431,35 +751,96 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      */
     private int processAttributeValue() throws ParseException {
         // check doubleQuote or singleQuote
-        currentInDoubleQuote = docBytes[cursor] == '\"';
+        final byte quote = byteAt(cursor);
+        currentInDoubleQuote = quote == '\"';
         currentIndex++;
-        moveCursor(1);
-        for (; notEnd(); moveCursor()) {
-            byte cursorByte = docBytes[cursor];
-            if ((currentInDoubleQuote && cursorByte == '\"') || (!currentInDoubleQuote && cursorByte == '\'')) {// found another quotation, it's the end of attribute value
-                currentBytesLength = cursor - currentIndex; // length of attribute value
-                moveCursor(1);
-                // continue to read byte until find next event
-                skipUselessChar();
-                cursorByte = docBytes[cursor];
-                if (ByteUtils.isValidTokenChar(cursorByte)) {// next attributeName
-                    return ATTRIBUTE_NAME;
-                } else if (cursorByte == '>') { // the start tag
-                    moveCursor(1);
-                    return processAfterStartTag();
-                } else if (cursorByte == '/') {// found end tag
-                    moveCursor(1);
-                    return END_TAG_WITHOUT_TEXT;
-                } else {
-                    throw ParseException.formatError("should be space or '>' or '/>' or another attribute here", this);
+        cursor++;
+        int bits = 0; // negative if any byte is not ASCII
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            for (int i = cursor - base; i < last; i++) {
+                byte cursorByte = bytes[i];
+                bits |= cursorByte;
+                if (cursorByte == quote) {// found another quotation, it's the end of attribute value
+                    cursor = base + i;
+                    currentBytesLength = cursor - currentIndex; // length of attribute value
+                    currentNonAscii = bits < 0;
+                    cursor++;
+                    // continue to read byte until find next event
+                    skipUselessChar();
+                    int nextByte = read(cursor);
+                    if (ByteUtils.isValidTokenChar((byte) nextByte)) {// next attributeName
+                        return ATTRIBUTE_NAME;
+                    } else if (nextByte == '>') { // the start tag
+                        cursor++;
+                        return processAfterStartTag();
+                    } else if (nextByte == '/') {// found end tag
+                        cursor++;
+                        return END_TAG_WITHOUT_TEXT;
+                    } else {
+                        throw ParseException.formatError("should be space or '>' or '/>' or another attribute here", this);
+                    }
+                } else if (cursorByte == '&') { // attribute value contains entity reference
+                    currentHasEntityReference = true;
                 }
-            } else if (cursorByte == '&') { // attribute value contains entity reference
-                currentHasEntityReference = true;
             }
+            cursor = end;
         }
         throw ParseException.formatError("need another quotation", this);
     }
 
+    /**
+     * scan attributes by processAttributeName() and processAttributeValue().
+     * Segments are released only by next(), so the whole start tag stays in buffer until next() is called,
+     * and indexes of attributes are valid.
+     *
+     * @throws ParseException
+     */
+    @Override
+    protected void scanAttributes() throws ParseException {
+        int tagIndex = currentIndex;
+        int tagLength = currentBytesLength;
+        int tagCursor = cursor;
+        int tagNextEvent = nextEvent;
+        attributesEndCursor = cursor;
+        attributesNextEvent = nextEvent;
+        if (nextEvent != ATTRIBUTE_NAME) {
+            return;
+        }
+        try {
+            int event = ATTRIBUTE_NAME;
+            while (event == ATTRIBUTE_NAME) {
+                currentIndex = cursor;
+                processAttributeName();
+                int nameIndex = currentIndex;
+                int nameLength = currentBytesLength;
+                currentIndex = cursor;
+                currentInDoubleQuote = false;
+                currentHasEntityReference = false;
+                currentHasCDATA = false;
+                currentNonAscii = false;
+                event = processAttributeValue();
+                addAttribute(nameIndex, nameLength, currentIndex, currentBytesLength, currentInDoubleQuote, currentHasEntityReference,
+                        currentNonAscii);
+            }
+            attributesEndCursor = cursor;
+            attributesNextEvent = event;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw ParseException.documentEndUnexpected(this);
+        } finally {
+            currentIndex = tagIndex;
+            currentBytesLength = tagLength;
+            currentInDoubleQuote = false;
+            currentHasEntityReference = false;
+            currentHasCDATA = false;
+            currentNonAscii = false;
+            cursor = tagCursor;
+            nextEvent = tagNextEvent;
+        }
+    }
+
     /**
      * Text wrapped by a pair of tag.
      * this method will not get rid of CDATA block, because it will break the order of docBytes.
@@ -469,35 +850,71 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private int processText() throws ParseException {
-        boolean inCDATA = false;
-        for (; notEnd(); moveCursor()) {
-            byte currentCursor = docBytes[cursor];
-            if (inCDATA) { // in CDATA block, then find out "]]>"
-                if (currentCursor == ']' && readAndCheck(cursor + 1, ']') && readAndCheck(cursor + 2, '>')) {
-                    moveCursor(2);
-                    inCDATA = false;
-                }
-            } else { // not in CDATA block
+        int bits = 0; // negative if any byte is not ASCII
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            int i = cursor - base;
+            for (; i < last; i++) {
+                byte currentCursor = bytes[i];
+                bits |= currentCursor;
                 if (currentCursor == '<') {
-                    byte nextByte = (byte) read(cursor + 1);
-                    if (nextByte == '!' && readAndCheck(cursor + 2, '[') && readAndCheck(cursor + 3, 'C')
-                            && readAndCheck(cursor + 4, 'D') && readAndCheck(cursor + 5, 'A') && readAndCheck(cursor + 6, 'T')
-                            && readAndCheck(cursor + 7, 'A') && readAndCheck(cursor + 8, '[')) { // found CDATA block
-                        moveCursor(8);
-                        inCDATA = true;
-                    } else if (nextByte == '/') { // found end tag
-                        currentBytesLength = cursor - currentIndex;
-                        moveCursor(2); // skip "</"
-                        return END_TAG;
-                    }
+                    break;
                 } else if (currentCursor == '&') { // text content contains entity reference
                     currentHasEntityReference = true;
                 }
             }
+            cursor = base + i;
+            if (i < last) { // found '<'
+                if (ensure(9) && byteAt(cursor + 1) == '!' && byteAt(cursor + 2) == '[' && byteAt(cursor + 3) == 'C'
+                        && byteAt(cursor + 4) == 'D' && byteAt(cursor + 5) == 'A' && byteAt(cursor + 6) == 'T'
+                        && byteAt(cursor + 7) == 'A' && byteAt(cursor + 8) == '[') { // found CDATA block
+                    cursor += 9;
+                    bits |= skipCDATA();
+                    currentHasCDATA = true;
+                } else if (readAndCheck(cursor + 1, '/')) { // found end tag
+                    currentBytesLength = cursor - currentIndex;
+                    currentNonAscii = bits < 0;
+                    cursor += 2; // skip "</"
+                    return END_TAG;
+                } else {
+                    cursor++;
+                }
+            }
         }
         throw ParseException.documentEndUnexpected(this);
     }
 
+    /**
+     * skip the content of CDATA block, until find out "]]>"
+     *
+     * @return skipped bytes OR-ed together, it's negative if any of them is not ASCII
+     * @throws ParseException
+     */
+    private int skipCDATA() throws ParseException {
+        int bits = 0;
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            int i = cursor - base;
+            while (i < last && bytes[i] != ']') {
+                bits |= bytes[i];
+                i++;
+            }
+            cursor = base + i;
+            if (i < last) { // found ']'
+                if (readAndCheck(cursor + 1, ']') && readAndCheck(cursor + 2, '>')) {
+                    cursor += 3; // skip "]]>"
+                    return bits;
+                }
+                cursor++;
+            }
+        }
+        throw ParseException.formatError("CDATA is not closed", this);
+    }
+
     /**
      * skip useless chars, such as ' ', '\t', '\n', '\r', comment, DOCTYPE
      *
@@ -506,14 +923,24 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      */
     private int skipUselessChar() throws ParseException {
         int beginIndex = cursor;
-        for (; notEnd(); moveCursor()) {
-            byte cursorByte = docBytes[cursor];
-            if (ByteUtils.isWhiteSpaceOrNewLine(cursorByte)) { // found useless character: ' ','\t','\r','\n'
-                // continue
-            } else if (cursorByte == '<' && readAndCheck(cursor + 1, '!')) {
-                skipOtherUselessChar();
-            } else { // found valid char
-                break;
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            int i = cursor - base;
+            // found useless character: ' ','\t','\r','\n'
+            while (i < last && ByteUtils.isWhiteSpaceOrNewLine(bytes[i])) {
+                i++;
+            }
+            cursor = base + i;
+            if (i < last) {
+                if (bytes[i] == '<' && readAndCheck(cursor + 1, '!')) {
+                    if (!skipOtherUselessChar()) {
+                        break;
+                    }
+                } else { // found valid char
+                    break;
+                }
             }
         }
         return cursor - beginIndex;
@@ -522,19 +949,23 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
     /**
      * skip comment and DTA DOCTYPE
      *
+     * @return false if it is neither comment nor DOCTYPE
      * @throws ParseException
      */
-    private void skipOtherUselessChar() throws ParseException {
+    private boolean skipOtherUselessChar() throws ParseException {
         if (readAndCheck(cursor + 2, '-') && readAndCheck(cursor + 3, '-')) { // found comment
-            moveCursor(4); // skip "<!--"
+            cursor += 4; // skip "<!--"
             skipComment();
-            // continue
-        } else if (readAndCheck(cursor + 2, 'D') && readAndCheck(cursor + 3, 'O') && readAndCheck(cursor + 4, 'C')
-                && readAndCheck(cursor + 5, 'T') && readAndCheck(cursor + 6, 'Y') && readAndCheck(cursor + 7, 'P')
-                && readAndCheck(cursor + 8, 'E')) { // found DTD DOCTYPE
-            moveCursor(8); // skip "<!DOCTYPE"
+            return true;
+        } else if (ensure(9) && byteAt(cursor + 2) == 'D' && byteAt(cursor + 3) == 'O' && byteAt(cursor + 4) == 'C'
+                && byteAt(cursor + 5) == 'T' && byteAt(cursor + 6) == 'Y' && byteAt(cursor + 7) == 'P'
+                && byteAt(cursor + 8) == 'E') { // found DTD DOCTYPE
+            cursor += 9; // skip "<!DOCTYPE"
             skipDocType();
-            // continue
+            return true;
+        } else {
+            cursor++; // skip '<'
+            return false;
         }
     }
 
@@ -555,19 +986,21 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      */
     private void skipDocType() throws ParseException {
         boolean docTypeDefineInDoc = false;
-        for (; notEnd(); moveCursor()) {
-            if (!docTypeDefineInDoc && readAndCheck(cursor, '[')) { // DTD DOCTYPE defined in document
+        for (; ensure(1); cursor++) {
+            if (!docTypeDefineInDoc && byteAt(cursor) == '[') { // DTD DOCTYPE defined in document
                 docTypeDefineInDoc = true;
             } else if (docTypeDefineInDoc) {
                 boolean foundEndBracket = false;
-                for (; notEnd(); moveCursor()) {
-                    if (!foundEndBracket && readAndCheck(cursor, ']')) {
+                for (; ensure(1); cursor++) {
+                    if (!foundEndBracket && byteAt(cursor) == ']') {
                         foundEndBracket = true;
-                    } else if (foundEndBracket && readAndCheck(cursor, '>')) { // doctype end
+                    } else if (foundEndBracket && byteAt(cursor) == '>') { // doctype end
+                        cursor++;
                         return;
                     }
                 }
-            } else if (readAndCheck(cursor, '>')) { // doctype end
+            } else if (byteAt(cursor) == '>') { // doctype end
+                cursor++;
                 return;
             }
         }
@@ -580,15 +1013,48 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private void skipComment() throws ParseException {
-        for (; notEnd(); moveCursor()) {
-            if (readAndCheck(cursor, '-') && readAndCheck(cursor + 1, '-') && readAndCheck(cursor + 2, '>')) { // comment end
-                moveCursor(2); // skip "-->"
-                return;
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            int i = cursor - base;
+            while (i < last && bytes[i] != '-') {
+                i++;
+            }
+            cursor = base + i;
+            if (i < last) { // found '-'
+                if (readAndCheck(cursor + 1, '-') && readAndCheck(cursor + 2, '>')) { // comment end
+                    cursor += 3; // skip "-->"
+                    return;
+                }
+                cursor++;
             }
         }
         throw ParseException.formatError("comment does not closed", this);
     }
 
+    /**
+     * skip chars of tag name or attribute name
+     *
+     * @return true if found a char which is not a token char, false if reach the end of document
+     * @throws ParseException
+     */
+    private boolean skipTokenChars() throws ParseException {
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            for (int i = cursor - base; i < last; i++) {
+                if (!ByteUtils.isValidTokenChar(bytes[i])) {
+                    cursor = base + i;
+                    return true;
+                }
+            }
+            cursor = end;
+        }
+        return false;
+    }
+
     /**
      * Skip current tag and its descendants。
      * This method should be called after next()==START_TAG.
@@ -598,12 +1064,229 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
         int tempDepth = currentDepth - 1; // the depth before this tag
         for (; ; ) {
             event = next();
-            if (currentDepth == tempDepth && event == END_TAG) { // this tag and its descendants is skipped
+            if (currentDepth == tempDepth && (event == END_TAG || event == END_TAG_WITHOUT_TEXT)) { // this tag and its descendants is skipped
                 return;
             }
         }
     }
 
+    public long[] getCurrentElementRange() throws ParseException {
+        checkStartTag();
+        long begin = releasedBytes + currentIndex - 1; // '<' before tag name
+        return new long[]{begin, skipElement()};
+    }
+
+    public long copyCurrentElement(OutputStream out) throws ParseException {
+        checkStartTag();
+        copyOut = out;
+        try {
+            out.write('<'); // it may be in a released segment
+            return copyElement();
+        } catch (IOException e) {
+            throw ParseException.ioException(e);
+        } finally {
+            copyOut = null;
+        }
+    }
+
+    public long copyCurrentElement(ByteBuffer buffer) throws ParseException {
+        checkStartTag();
+        copyBuffer = buffer;
+        try {
+            buffer.put((byte) '<');
+            return copyElement();
+        } finally {
+            copyBuffer = null;
+        }
+    }
+
+    private long copyElement() throws ParseException {
+        long begin = releasedBytes + currentIndex - 1;
+        return skipElement() - begin;
+    }
+
+    /**
+     * scan bytes of current element for tags only, then move to the end tag of it.
+     * Comments, CDATA blocks, processing instructions and quoted attribute values are skipped as a whole.
+     * Bytes are given to the copy target while scanning, and segments before cursor are released,
+     * so the buffer does not grow with the size of element.
+     *
+     * @return offset after '>' of the end tag in input stream
+     * @throws ParseException
+     */
+    private long skipElement() throws ParseException {
+        try {
+            int depth = 0;
+            cursor = currentIndex; // the byte after '<' of start tag
+            copyStart = cursor;
+            for (; ; ) {
+                int b = read(cursor);
+                if (b == '/') { // end tag, the name is scanned without releasing segments
+                    int nameBegin = ++cursor;
+                    int nameEnd = -1;
+                    for (; (b = read(cursor)) != '>'; cursor++) {
+                        if (b < 0) {
+                            throw ParseException.documentEndUnexpected(this);
+                        } else if (nameEnd < 0 && ByteUtils.isWhiteSpaceOrNewLine((byte) b)) {
+                            nameEnd = cursor;
+                        }
+                    }
+                    cursor++;
+                    if (--depth == 0) {
+                        writeCopy();
+                        long end = releasedBytes + cursor;
+                        endElement(END_TAG, nameBegin, (nameEnd < 0 ? cursor - 1 : nameEnd) - nameBegin);
+                        return end;
+                    }
+                } else if (b == '!') {
+                    if (readAndCheck(cursor + 1, '-') && readAndCheck(cursor + 2, '-')) { // comment
+                        cursor += 3;
+                        skipPastClose((byte) '-', 2);
+                    } else if (readAndCheck(cursor + 1, '[')) { // CDATA block
+                        cursor++;
+                        skipPastClose((byte) ']', 2);
+                    } else {
+                        cursor++;
+                        skipPastClose((byte) 0, 0);
+                    }
+                } else if (b == '?') { // processing instruction
+                    cursor++;
+                    skipPastClose((byte) '?', 1);
+                } else { // start tag
+                    int quote = 0;
+                    int previous = 0;
+                    for (; (b = read(cursor)) != '>' || quote != 0; cursor++) {
+                        if (b < 0) {
+                            throw ParseException.documentEndUnexpected(this);
+                        } else if (quote != 0) {
+                            if (b == quote) {
+                                quote = 0;
+                            }
+                        } else if (b == '"' || b == '\'') {
+                            quote = b;
+                        }
+                        previous = b;
+                    }
+                    cursor++;
+                    if (previous != '/') {
+                        depth++;
+                    } else if (depth == 0) { // current element is empty
+                        writeCopy();
+                        long end = releasedBytes + cursor;
+                        endElement(END_TAG_WITHOUT_TEXT, currentIndex, currentBytesLength);
+                        return end;
+                    }
+                }
+                skipPastLessThan();
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw ParseException.documentEndUnexpected(this);
+        }
+    }
+
+    /**
+     * move cursor after the first '>' which follows at least count bytes of before
+     *
+     * @throws ParseException
+     */
+    private void skipPastClose(byte before, int count) throws ParseException {
+        int run = 0;
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            for (int i = cursor - base; i < last; i++) {
+                byte b = bytes[i];
+                if (b == '>' && run >= count) {
+                    cursor = base + i + 1;
+                    return;
+                }
+                run = b == before ? run + 1 : 0;
+            }
+            cursor = end;
+            drainElement();
+        }
+        throw ParseException.documentEndUnexpected(this);
+    }
+
+    /**
+     * move cursor after the next '<'
+     *
+     * @throws ParseException
+     */
+    private void skipPastLessThan() throws ParseException {
+        for (int end = windowEnd(); cursor < end; end = windowEnd()) {
+            final byte[] bytes = segments[cursor >> segmentShift];
+            final int base = cursor & ~segmentMask;
+            final int last = end - base;
+            for (int i = cursor - base; i < last; i++) {
+                if (bytes[i] == '<') {
+                    cursor = base + i + 1;
+                    return;
+                }
+            }
+            cursor = end;
+            drainElement();
+        }
+        throw ParseException.documentEndUnexpected(this);
+    }
+
+    /**
+     * copy scanned bytes of current element, and release segments before cursor
+     *
+     * @throws ParseException
+     */
+    private void drainElement() throws ParseException {
+        writeCopy();
+        currentIndex = cursor;
+        if (currentIndex > segmentMask) {
+            releaseSegments();
+            copyStart = cursor;
+        }
+    }
+
+    /**
+     * copy bytes from copyStart to cursor to the copy target
+     *
+     * @throws ParseException
+     */
+    private void writeCopy() throws ParseException {
+        if (copyOut == null && copyBuffer == null) {
+            copyStart = cursor;
+            return;
+        }
+        try {
+            for (int index = copyStart; index < cursor; ) {
+                int segmentOffset = index & segmentMask;
+                int count = Math.min(cursor - index, segmentSize - segmentOffset);
+                if (copyOut != null) {
+                    copyOut.write(segments[index >> segmentShift], segmentOffset, count);
+                } else {
+                    copyBuffer.put(segments[index >> segmentShift], segmentOffset, count);
+                }
+                index += count;
+            }
+            copyStart = cursor;
+        } catch (IOException e) {
+            throw ParseException.ioException(e);
+        }
+    }
+
+    /**
+     * set state as the end tag of current element has just been parsed, cursor is after '>' of it
+     */
+    private void endElement(int event, int index, int length) throws ParseException {
+        currentEvent = event;
+        currentIndex = index;
+        currentBytesLength = length;
+        currentInDoubleQuote = false;
+        currentHasEntityReference = false;
+        currentHasCDATA = false;
+        currentNonAscii = false;
+        currentDepth--;
+        nextEvent = processAfterEndTag();
+    }
+
     /**
      * reset currentIndex and currentBytesLength when traverse to another element
      */
@@ -612,19 +1295,36 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
         currentBytesLength = 0;
     }
 
-    private int moveCursor() throws ParseException {
-        int b = moveCursor(1);
-        setRowAndColumn(b);
-        return b;
-    }
-
-    private int moveCursor(int count) throws ParseException {
-        cursor += count;
-        return read(cursor);
+    /**
+     * make sure that n bytes from cursor has been read into buffer
+     *
+     * @param n count of bytes
+     * @return false if the document ends before that
+     * @throws ParseException
+     */
+    private boolean ensure(int n) throws ParseException {
+        int index = cursor + n - 1;
+        while (index > lastReadableIndex) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private boolean notEnd() {
-        return cursor != indexOfEOF;
+    /**
+     * get the end of readable window which begins from cursor, bytes of the window are in the same segment.
+     * Bytes will be read from IO if cursor reaches the end of readable bytes.
+     *
+     * @return the end index of window, exclusive; cursor if the document ends
+     * @throws ParseException
+     */
+    private int windowEnd() throws ParseException {
+        if (cursor > lastReadableIndex && !ensure(1)) {
+            return cursor;
+        }
+        int segmentEnd = (cursor | segmentMask) + 1;
+        return segmentEnd <= lastReadableIndex ? segmentEnd : lastReadableIndex + 1;
     }
 
     /**
@@ -637,7 +1337,8 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
      * @throws ParseException
      */
     private boolean readAndCheck(int index, int b1, int b2) throws ParseException {
-        return readAndCheck(index, b1) || readAndCheck(index, b2);
+        int b = read(index);
+        return b == b1 || b == b2;
     }
 
     /**
@@ -653,114 +1354,328 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
     }
 
     /**
-     * get the byte of specific index
+     * get the byte of specific index, read bytes from IO if necessary
      *
      * @param index
-     * @return
+     * @return the byte, or -1 if the index is out of document
      * @throws ParseException
      */
     private int read(int index) throws ParseException {
-        // for multiple branch checking, if checking failed in the first branch which has read a byte from IO,
-        // then second branch checking has no need to read byte from IO, just check it in buffer
-        if (index > lastReadableIndex) {
-            return read();
-        } else {
-            return docBytes[index];
+        while (index > lastReadableIndex) {
+            if (!fill()) {
+                return -1;
+            }
         }
+        return segments[index >> segmentShift][index & segmentMask];
     }
 
     /**
-     * read a byte from IO, and adjust buffer if buffer is full
+     * get the byte of specific index which has been read from IO, no boundary check
      *
-     * @return the byte from IO
+     * @param index
+     * @return the byte
+     */
+    private byte byteAt(int index) {
+        return segments[index >> segmentShift][index & segmentMask];
+    }
+
+    /**
+     * read bytes from IO into the last segment, and take a new segment if the last one is full.
+     * Bytes which have been read will never be moved.
+     *
+     * @return false if EOF
      * @throws ParseException
      */
-    private int read() throws ParseException {
-        if (indexOfEOF > 0) {
-            return -1;
+    private boolean fill() throws ParseException {
+        if (indexOfEOF >= 0) {
+            return false;
+        }
+        if (segmentReader != null) { // every segment is full except the last one
+            byte[] segment = segmentReader.take();
+            if (segment == null) {
+                indexOfEOF = lastReadableIndex + 1;
+                return false;
+            }
+            appendSegment(segment);
+            lastReadableIndex += segmentReader.length(segment);
+            return true;
         }
         try {
-            // buffer is full, so need to adjust buffer to fill any more bytes
-            if (lastReadableIndex == this.bufferEnd) {
-                if (lastReadableIndex - currentIndex + 1 > currentIndex) {
-                    // current token is longer than half of the buffer, then need to grow buffer
-                    growBuffer();
-                } else {
-                    // current token is not longer than half of the buffer, then reset buffer may be better
-                    resetBuffer();
-                }
+            int nextIndex = lastReadableIndex + 1;
+            if ((nextIndex >> segmentShift) == segmentCount) { // all segments are full, so take a new one
+                addSegment();
             }
-            int leftLength = bufferEnd - lastReadableIndex;
-            int count = is.read(docBytes, lastReadableIndex + 1, leftLength);
-            int b = docBytes[lastReadableIndex + 1];
-            lastReadableIndex = lastReadableIndex + count;
-            if (count < leftLength) {
-                indexOfEOF = lastReadableIndex + 1;
+            int offset = nextIndex & segmentMask;
+            int count = is.read(segments[nextIndex >> segmentShift], offset, segmentSize - offset);
+            if (count < 0) {
+                indexOfEOF = nextIndex;
+                return false;
             }
-            return b;
+            lastReadableIndex += count;
+            return true;
         } catch (IOException e) {
             throw ParseException.ioException(e);
         }
     }
 
-    private void setRowAndColumn(int bytes) {
-        if (bytes == '\n') {
-            this.row++;
-            this.column = -1;
-        }
-        this.column++;
-    }
-
     /**
-     * current line number: starting from 1
+     * current line number: starting from 1.
+     * It's computed on demand from the checkpoint recorded when segments are released, and bytes in buffer.
      *
      * @return
      */
     public int getRow() {
-        return this.row;
+        int end = Math.min(cursor, lastReadableIndex + 1);
+        int row = releasedRows + 1;
+        for (int i = 0; i < end; i += segmentSize) {
+            row += ByteUtils.countNewLines(segments[i >> segmentShift], 0, Math.min(segmentSize, end - i));
+        }
+        return row;
     }
 
     /**
-     * current column number: starting from 1
+     * current column number: starting from 1.
+     * It's computed on demand from the checkpoint recorded when segments are released, and bytes in buffer.
      *
      * @return
      */
     public int getColumn() {
-        return this.column;
+        int end = Math.min(cursor, lastReadableIndex + 1);
+        for (int i = (end - 1) & ~segmentMask; i >= 0; i -= segmentSize) {
+            int lastNewLine = ByteUtils.lastIndexOfNewLine(segments[i >> segmentShift], 0, Math.min(segmentSize, end - i));
+            if (lastNewLine >= 0) {
+                return end - i - lastNewLine;
+            }
+        }
+        return end + releasedColumns + 1;
     }
 
     /**
-     * reset buffer for reusing
+     * release the segments before the segment of current token for reusing.
+     * Only the references of segments are moved, all indexes will be decreased by the length of released bytes.
+     * This method must be called before scanning a token, so no index is held by local variables.
      */
-    private void resetBuffer() {
-        System.arraycopy(docBytes, currentIndex, docBytes, 0, lastReadableIndex - currentIndex + 1);
-        this.lastReadableIndex = lastReadableIndex - currentIndex;
-        if (indexOfEOF > 0) {
-            indexOfEOF = this.lastReadableIndex + 1;
+    private void releaseSegments() {
+        int index = currentIndex;
+        if (marked) {
+            if (index - markedIndex > lookaheadLimit) {
+                marked = false;
+                markDropped = true;
+            } else { // bytes from the marked token are kept
+                index = Math.min(index, markedIndex);
+            }
+        }
+        int count = index >> segmentShift;
+        for (int i = 0; i < count; i++) {
+            countRows(segments[i]);
+            recycleSegment(segments[i]);
+        }
+        segmentCount -= count;
+        System.arraycopy(segments, count, segments, 0, segmentCount);
+        for (int i = segmentCount; i < segmentCount + count; i++) {
+            segments[i] = null;
+        }
+        int releasedLength = count << segmentShift;
+        this.releasedBytes += releasedLength;
+        this.cursor -= releasedLength;
+        this.currentIndex -= releasedLength;
+        this.lastReadableIndex -= releasedLength;
+        this.markedCursor -= releasedLength;
+        this.markedIndex -= releasedLength;
+        if (indexOfEOF >= 0) {
+            this.indexOfEOF -= releasedLength;
+        }
+        this.docBytes = segments[0];
+    }
+
+    /**
+     * record the checkpoint of row and column before a segment is released, so row and column can be computed later
+     *
+     * @param segment
+     */
+    private void countRows(byte[] segment) {
+        int rows = ByteUtils.countNewLines(segment, 0, segment.length);
+        if (rows > 0) {
+            releasedRows += rows;
+            releasedColumns = segment.length - ByteUtils.lastIndexOfNewLine(segment, 0, segment.length) - 1;
+        } else {
+            releasedColumns += segment.length;
+        }
+    }
+
+    /**
+     * take a segment from released segments or create a new one, and append it to the segments in use
+     */
+    private void addSegment() {
+        byte[] segment;
+        if (freeSegmentCount > 0) {
+            segment = freeSegments[--freeSegmentCount];
+            freeSegments[freeSegmentCount] = null;
+        } else {
+            segment = new byte[segmentSize];
+        }
+        appendSegment(segment);
+    }
+
+    /**
+     * append a segment to the segments in use
+     *
+     * @param segment
+     */
+    private void appendSegment(byte[] segment) {
+        if (segmentCount == segments.length) {
+            byte[][] newSegments = new byte[segmentCount << 1][];
+            System.arraycopy(segments, 0, newSegments, 0, segmentCount);
+            segments = newSegments;
+        }
+        segments[segmentCount++] = segment;
+        if (segmentCount == 1) {
+            this.docBytes = segment;
         }
-        this.cursor = this.cursor - currentIndex;
-        this.currentIndex = 0;
-        //System.out.println("resetBuffer: " + docBytes.length);
     }
 
     /**
-     * grow buffer, when find an element longer than current buffer
+     * put a segment into released segments, or give it back to the segment reader
+     *
+     * @param segment
      */
-    private void growBuffer() {
-        byte[] oldBuffer = this.docBytes;
-        int bufferLength = oldBuffer.length;
-        this.docBytes = new byte[(int) (oldBuffer.length * 1.75)];
-        System.arraycopy(oldBuffer, 0, this.docBytes, 0, bufferLength);
-        bufferLength = this.docBytes.length;
-        this.bufferEnd = bufferLength - 1;
-        //System.out.println("growBuffer: " + docBytes.length);
+    private void recycleSegment(byte[] segment) {
+        if (segmentReader != null) {
+            segmentReader.recycle(segment);
+            return;
+        }
+        if (freeSegmentCount == freeSegments.length) {
+            byte[][] newFreeSegments = new byte[freeSegmentCount << 1][];
+            System.arraycopy(freeSegments, 0, newFreeSegments, 0, freeSegmentCount);
+            freeSegments = newFreeSegments;
+        }
+        freeSegments[freeSegmentCount++] = segment;
+    }
+
+    /**
+     * get the array which contains the whole current token.
+     * If the current token spans segments, it will be copied into tokenBuffer, otherwise the segment is returned.
+     * Use tokenOffset() to get the beginning index of current token in the array
+     *
+     * @return the array contains current token
+     */
+    @Override
+    byte[] tokenBytes() {
+        if (currentBytesLength == 0) {
+            return docBytes;
+        }
+        int first = currentIndex >> segmentShift;
+        if (first == (currentIndex + currentBytesLength - 1) >> segmentShift) {
+            return segments[first];
+        }
+        // the token spans segments, so stitch it
+        if (tokenBuffer == null || tokenBuffer.length < currentBytesLength) {
+            tokenBuffer = new byte[Math.max(currentBytesLength, segmentSize)];
+        }
+        copyTo(currentIndex, tokenBuffer, 0, currentBytesLength);
+        return tokenBuffer;
+    }
+
+    /**
+     * the beginning index of current token in the array returned by tokenBytes()
+     *
+     * @return offset of current token
+     */
+    @Override
+    int tokenOffset() {
+        if (currentBytesLength == 0) {
+            return 0;
+        }
+        int first = currentIndex >> segmentShift;
+        if (first == (currentIndex + currentBytesLength - 1) >> segmentShift) {
+            return currentIndex & segmentMask;
+        }
+        return 0;
+    }
+
+    /**
+     * Set max bytes which can be kept in buffer from the marked token, the default value is DEFAULT_LOOKAHEAD_LIMIT.
+     * If parsing goes further than it, the mark is dropped and bytes are released, then reset() throws ParseException.
+     *
+     * @param lookaheadLimit max bytes kept for a mark
+     */
+    public void setLookaheadLimit(int lookaheadLimit) {
+        this.lookaheadLimit = lookaheadLimit;
+    }
+
+    public int getLookaheadLimit() {
+        return lookaheadLimit;
+    }
+
+    @Override
+    public void mark() {
+        super.mark();
+        markDropped = false;
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        if (markDropped) {
+            throw new ParseException("mark has been dropped, lookahead limit " + lookaheadLimit + " is exceeded", this);
+        }
+        super.reset();
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        markDropped = false;
+    }
+
+    /**
+     * tokens of a batch are copied, because segments may be released by next()
+     */
+    @Override
+    protected void beginBatch() {
+        batchLength = 0;
+    }
+
+    @Override
+    protected int batchOffset() {
+        int offset = batchLength;
+        int length = currentBytesLength;
+        if (offset + length > batchBytes.length) {
+            batchBytes = Arrays.copyOf(batchBytes, Math.max(batchBytes.length << 1, offset + length));
+        }
+        copyTo(currentIndex, batchBytes, offset, length);
+        batchLength = offset + length;
+        return offset;
+    }
+
+    @Override
+    public byte[] getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * copy bytes from segments to the destination
+     *
+     * @param index  the beginning index of buffer
+     * @param dest   destination array
+     * @param offset the beginning index of destination array
+     * @param length length of bytes to be copied
+     */
+    private void copyTo(int index, byte[] dest, int offset, int length) {
+        while (length > 0) {
+            int segmentOffset = index & segmentMask;
+            int count = Math.min(length, segmentSize - segmentOffset);
+            System.arraycopy(segments[index >> segmentShift], segmentOffset, dest, offset, count);
+            index += count;
+            offset += count;
+            length -= count;
+        }
     }
 
     public boolean isMatch(byte[] expectBytes) {
         int length = expectBytes.length;
         if (expectBytes.length == currentBytesLength) {
             for (int i = currentIndex, j = 0; j < length; i++, j++) {
-                if (docBytes[i] != expectBytes[j]) {
+                if (byteAt(i) != expectBytes[j]) {
                     return false;
                 }
             }
@@ -771,13 +1686,16 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
 
     public byte[] getRawBytes() {
         byte[] bytes = new byte[currentBytesLength];
-        System.arraycopy(docBytes, currentIndex, bytes, 0, currentBytesLength);
+        copyTo(currentIndex, bytes, 0, currentBytesLength);
         return bytes;
     }
 
     public String getString() throws ParseException {
+        if (!currentHasEntityReference && !currentHasCDATA && !currentNonAscii) { // nothing to decode
+            return plainString(tokenBytes(), tokenOffset(), true);
+        }
         try {
-            return ParseUtils.parseString(docBytes, currentIndex, currentBytesLength);
+            return ParseUtils.parseString(tokenBytes(), tokenOffset(), currentBytesLength);
         } catch (ParseException e) {
             e.setRowAndColumn(this);
             throw e;
@@ -785,8 +1703,11 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
     }
 
     public String getStringWithDecoding() throws ParseException {
+        if (!currentHasEntityReference && !currentHasCDATA) { // nothing to decode
+            return plainString(tokenBytes(), tokenOffset(), !currentNonAscii);
+        }
         try {
-            return ParseUtils.parseStringWithDecoding(docBytes, currentIndex, currentBytesLength, charset);
+            return ParseUtils.parseStringWithDecoding(tokenBytes(), tokenOffset(), currentBytesLength, charset);
         } catch (ParseException e) {
             e.setRowAndColumn(this);
             throw e;
@@ -795,7 +1716,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
 
     public short getShort() throws NumberFormatException {
         try {
-            return (short) ParseUtils.parseInt(docBytes, currentIndex, currentBytesLength);
+            return (short) ParseUtils.parseInt(tokenBytes(), tokenOffset(), currentBytesLength);
         } catch (NumberFormatException e) {
             e.setRowAndColumn(this);
             throw e;
@@ -804,7 +1725,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
 
     public int getInt() throws NumberFormatException {
         try {
-            return ParseUtils.parseInt(docBytes, currentIndex, currentBytesLength);
+            return ParseUtils.parseInt(tokenBytes(), tokenOffset(), currentBytesLength);
         } catch (NumberFormatException e) {
             e.setRowAndColumn(this);
             throw e;
@@ -813,7 +1734,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
 
     public long getLong() throws NumberFormatException {
         try {
-            return ParseUtils.parseLong(docBytes, currentIndex, currentBytesLength);
+            return ParseUtils.parseLong(tokenBytes(), tokenOffset(), currentBytesLength);
         } catch (NumberFormatException e) {
             e.setRowAndColumn(this);
             throw e;
@@ -822,7 +1743,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
 
     public float getFloat() throws NumberFormatException {
         try {
-            return ParseUtils.parseFloat(docBytes, currentIndex, currentBytesLength);
+            return ParseUtils.parseFloat(tokenBytes(), tokenOffset(), currentBytesLength);
         } catch (NumberFormatException e) {
             e.setRowAndColumn(this);
             throw e;
@@ -831,7 +1752,7 @@ public class FastXmlParser4InputStream extends AbstractFastXmlParser {
 
     public double getDouble() throws NumberFormatException {
         try {
-            return ParseUtils.parseDouble(docBytes, currentIndex, currentBytesLength);
+            return ParseUtils.parseDouble(tokenBytes(), tokenOffset(), currentBytesLength);
         } catch (NumberFormatException e) {
             e.setRowAndColumn(this);
             throw e;
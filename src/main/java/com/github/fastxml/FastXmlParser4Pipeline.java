@@ -0,0 +1,408 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Parse document bytes on a producer thread, and replay tokens on the thread which calls next().
+ * The producer runs FastXmlParser4ByteArray and publishes token records(event, offset, length, depth, flags)
+ * into a preallocated ring, so tokenizing and the work of caller between next() calls run on two cores.
+ * Getters are the same as FastXmlParser4ByteArray, because offsets of records point into the same document bytes.
+ * No object is allocated per token. The producer thread is reused by the following documents, and it's stopped by close().
+ */
+public class FastXmlParser4Pipeline extends FastXmlParser4ByteArray {
+
+    /**
+     * wait strategies when the ring is empty or full:
+     * busy spin has the lowest latency but burns a core, yield gives the core to other threads,
+     * and park costs the least CPU when producer or consumer is often idle.
+     */
+    public final static int WAIT_BUSY_SPIN = TokenRing.WAIT_BUSY_SPIN;
+    public final static int WAIT_YIELD = TokenRing.WAIT_YIELD;
+    public final static int WAIT_PARK = TokenRing.WAIT_PARK;
+    public final static int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * the event of record which means the producer failed, the exception is in field error
+     */
+    private final static int ERROR = 0x7F;
+    private final static int FLAG_IN_DOUBLE_QUOTE = 1 << 16;
+    private final static int FLAG_HAS_ENTITY_REFERENCE = 1 << 17;
+    private final static int FLAG_HAS_CDATA = 1 << 18;
+    private final static int FLAG_NON_ASCII = 1 << 19;
+
+    private final TokenRing ring;
+    private final ThreadFactory threadFactory;
+    /**
+     * parser running on producer thread
+     */
+    private final FastXmlParser4ByteArray tokenizer = new FastXmlParser4ByteArray();
+    private Thread producer;
+
+    // handoff between consumer and producer
+    private volatile byte[] pendingBytes;
+    private volatile Charset pendingCharset;
+    private volatile boolean cancelled;
+    private volatile boolean idle = true;
+    private volatile boolean closed;
+    private volatile ParseException error;
+
+    /**
+     * whether the last record of the current document has been replayed, only accessed by consumer
+     */
+    private boolean documentDone = true;
+    /**
+     * state of ring saved by mark(), only accessed by consumer
+     */
+    private long markedSequence;
+    private boolean markedDocumentDone;
+    /**
+     * whether the mark has been dropped because records after it would be more than the capacity of ring
+     */
+    private boolean markDropped;
+
+    public FastXmlParser4Pipeline() {
+        this(DEFAULT_CAPACITY, WAIT_PARK, null);
+    }
+
+    /**
+     * @param capacity      count of token records in ring, it will be rounded up to power of 2
+     * @param waitStrategy  WAIT_BUSY_SPIN, WAIT_YIELD or WAIT_PARK
+     * @param threadFactory factory to create the producer thread; if null, a daemon thread will be created
+     */
+    public FastXmlParser4Pipeline(int capacity, int waitStrategy, ThreadFactory threadFactory) {
+        if (waitStrategy < WAIT_BUSY_SPIN || waitStrategy > WAIT_PARK) {
+            throw new IllegalArgumentException("unknown wait strategy: " + waitStrategy);
+        }
+        this.ring = new TokenRing(capacity, waitStrategy);
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Set input bytes, and set charset if no charset specified in document.
+     * The producer thread starts tokenizing the document at once.
+     * If the previous document has not been parsed to the end, it will be abandoned.
+     *
+     * @param bytes   byte array need to be parsed
+     * @param charset if param charset is null, then encoding in document will be used;
+     *                if both param charset and encoding in document is empty, then AbstractFastXmlParser.defaultCharset will be used
+     * @throws ParseException
+     */
+    @Override
+    public void setInput(byte[] bytes, Charset charset) throws ParseException {
+        if (closed) {
+            throw new IllegalStateException("parser is closed");
+        }
+        super.setInput(bytes, charset);
+        if (producer != null) {
+            if (!documentDone) { // stop tokenizing the previous document
+                cancelled = true;
+            }
+            awaitIdle();
+            ring.clear();
+            markDropped = false;
+            cancelled = false;
+        }
+        documentDone = false;
+        error = null;
+        idle = false;
+        pendingCharset = charset;
+        pendingBytes = bytes;
+        if (producer == null) {
+            producer = threadFactory == null ? new Thread(new Producer(), "fastxml-tokenizer") : threadFactory.newThread(new Producer());
+            if (threadFactory == null) {
+                producer.setDaemon(true);
+            }
+            producer.start();
+        } else {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    /**
+     * replay the next token published by producer
+     *
+     * @return event type
+     * @throws ParseException the exception thrown by producer
+     */
+    @Override
+    public int next() throws ParseException {
+        attributeCount = -1;
+        if (documentDone) {
+            currentEvent = END_DOCUMENT;
+            nextEvent = END_DOCUMENT;
+            return END_DOCUMENT;
+        }
+        TokenRing ring = this.ring;
+        if (marked && ring.consumed() - markedSequence >= ring.capacity()) { // producer can't go on while records are pinned
+            marked = false;
+            markDropped = true;
+            ring.unpin();
+        }
+        int index = ring.take();
+        int meta = ring.metas[index];
+        Charset documentCharset = (byte) meta == START_DOCUMENT ? ring.charsets[index] : null; // read before release
+        currentIndex = ring.offsets[index];
+        currentBytesLength = ring.lengths[index];
+        currentDepth = ring.depths[index];
+        ring.release();
+
+        int event = (byte) meta;
+        if (event == ERROR) {
+            documentDone = true;
+            throw error;
+        }
+        currentEvent = event;
+        nextEvent = (byte) (meta >> 8);
+        currentInDoubleQuote = (meta & FLAG_IN_DOUBLE_QUOTE) != 0;
+        currentHasEntityReference = (meta & FLAG_HAS_ENTITY_REFERENCE) != 0;
+        currentHasCDATA = (meta & FLAG_HAS_CDATA) != 0;
+        currentNonAscii = (meta & FLAG_NON_ASCII) != 0;
+        cursor = currentIndex + currentBytesLength;
+        if (event == START_DOCUMENT) {
+            charset = documentCharset; // producer may be tokenizing a later document already, so it's kept in the record
+        } else if (event == END_DOCUMENT && nextEvent != START_DOCUMENT) {
+            documentDone = true;
+        }
+        return event;
+    }
+
+    /**
+     * records of attributes have been published by producer, so they are replayed to skip them.
+     * Attributes scanned before are kept, because scanAttributes() reads the same document bytes.
+     */
+    @Override
+    public void skipAttributes() throws ParseException {
+        int count = getAttributeCount();
+        checkStartTag(); // the name of start tag may have been replaced by a selected attribute
+        int index = currentIndex;
+        int length = currentBytesLength;
+        int depth = currentDepth;
+        while (nextEvent == ATTRIBUTE_NAME || nextEvent == ATTRIBUTE_VALUE) {
+            next();
+        }
+        currentEvent = START_TAG;
+        currentIndex = index;
+        currentBytesLength = length;
+        currentDepth = depth;
+        currentInDoubleQuote = false;
+        currentHasEntityReference = false;
+        currentHasCDATA = false;
+        currentNonAscii = false;
+        attributeCount = count;
+    }
+
+    /**
+     * records from the marked token are pinned in ring, so they can be replayed again after reset().
+     * The producer stops when the ring is full of pinned records, so the mark is dropped when more records
+     * than the capacity of ring are replayed after it
+     */
+    @Override
+    public void mark() {
+        super.mark();
+        markedSequence = ring.pin();
+        markedDocumentDone = documentDone;
+        markDropped = false;
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        if (markDropped) {
+            throw new ParseException("mark has been dropped, more than " + ring.capacity() + " records are replayed after it", this);
+        }
+        super.reset();
+        ring.rewind(markedSequence);
+        documentDone = markedDocumentDone;
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        ring.unpin();
+        markDropped = false;
+    }
+
+    /**
+     * records of descendants have been published by producer, so they are replayed without calling getters,
+     * and the range is taken from offsets of the start tag and the end tag.
+     * The last record of an element without descendants may be in its start tag, such as the tag name when attributes
+     * are skipped, so its start tag is scanned again with quoted values skipped, to tell whether it's an empty tag.
+     */
+    @Override
+    public long[] getCurrentElementRange() throws ParseException {
+        checkStartTag();
+        int begin = currentIndex - 1; // '<' before tag name
+        int depth = currentDepth - 1;
+        int event = next();
+        int end = -1;
+        if (currentDepth == depth && (event == END_TAG || event == END_TAG_WITHOUT_TEXT)) { // no descendants
+            end = begin + 1;
+            for (byte quote = 0; quote != 0 || docBytes[end] != '>'; end++) {
+                byte b = docBytes[end];
+                if (quote == 0 && (b == '\"' || b == '\'')) {
+                    quote = b;
+                } else if (b == quote) {
+                    quote = 0;
+                }
+            }
+            if (docBytes[end - 1] == '/') { // empty tag
+                return new long[]{begin, end + 1};
+            }
+        } else {
+            do {
+                event = next();
+            } while (currentDepth != depth || (event != END_TAG && event != END_TAG_WITHOUT_TEXT));
+        }
+        end = Math.max(cursor, end + 1); // end of tag name in end tag
+        while (docBytes[end] != '>') {
+            end++;
+        }
+        return new long[]{begin, end + 1};
+    }
+
+    /**
+     * Enable or disable multi-document mode, it takes effect when setInput() is called.
+     *
+     * @param multiDocument true if documents following the first one should be parsed
+     */
+    @Override
+    public void setMultiDocument(boolean multiDocument) {
+        super.setMultiDocument(multiDocument);
+        tokenizer.setMultiDocument(multiDocument);
+    }
+
+    /**
+     * Set options to suppress events, they are applied by producer and take effect when setInput() is called.
+     *
+     * @param options options, if null, all events are returned
+     */
+    @Override
+    public void setOptions(Options options) {
+        super.setOptions(options);
+        tokenizer.setOptions(options);
+        // attributes are scanned again from document bytes, so values can't be decoded in place by tokenizer
+        inSitu = false;
+        tokenizer.inSitu = false;
+    }
+
+    /**
+     * stop the producer thread. The parser can not be used any more.
+     */
+    public void close() {
+        closed = true;
+        if (producer != null) {
+            cancelled = true;
+            LockSupport.unpark(producer);
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * wait until producer has stopped tokenizing
+     */
+    private void awaitIdle() {
+        for (int count = 0; !idle; count++) {
+            LockSupport.unpark(producer);
+            ring.idle(count);
+        }
+    }
+
+    /**
+     * pack event, next event and flags of tokenizer into an int
+     */
+    private static int meta(FastXmlParser4ByteArray tokenizer, int event) {
+        int meta = (event & 0xFF) | ((tokenizer.nextEvent & 0xFF) << 8);
+        if (tokenizer.currentInDoubleQuote) {
+            meta |= FLAG_IN_DOUBLE_QUOTE;
+        }
+        if (tokenizer.currentHasEntityReference) {
+            meta |= FLAG_HAS_ENTITY_REFERENCE;
+        }
+        if (tokenizer.currentHasCDATA) {
+            meta |= FLAG_HAS_CDATA;
+        }
+        if (tokenizer.currentNonAscii) {
+            meta |= FLAG_NON_ASCII;
+        }
+        return meta;
+    }
+
+    /**
+     * tokenize documents handed over by setInput(), and wait for the next one
+     */
+    private class Producer implements Runnable {
+        public void run() {
+            while (!closed) {
+                byte[] bytes = pendingBytes;
+                if (bytes == null) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                pendingBytes = null;
+                tokenize(bytes, pendingCharset);
+                idle = true;
+            }
+        }
+
+        private void tokenize(byte[] bytes, Charset charset) {
+            FastXmlParser4ByteArray tokenizer = FastXmlParser4Pipeline.this.tokenizer;
+            TokenRing ring = FastXmlParser4Pipeline.this.ring;
+            try {
+                tokenizer.setInput(bytes, charset);
+                int event;
+                int index;
+                do {
+                    event = tokenizer.next();
+                    if (cancelled || (index = ring.claim(FastXmlParser4Pipeline.this)) < 0) {
+                        return;
+                    }
+                    ring.metas[index] = meta(tokenizer, event);
+                    ring.offsets[index] = tokenizer.currentIndex;
+                    ring.lengths[index] = tokenizer.currentBytesLength;
+                    ring.depths[index] = tokenizer.currentDepth;
+                    if (event == START_DOCUMENT) {
+                        ring.charsets[index] = tokenizer.getEncode();
+                    }
+                    ring.publish();
+                } while (event != END_DOCUMENT || tokenizer.nextEvent == START_DOCUMENT);
+            } catch (ParseException e) {
+                fail(e);
+            } catch (RuntimeException e) {
+                fail(new ParseException("unexpected error when tokenizing", tokenizer, e));
+            }
+        }
+
+        /**
+         * publish an error record, and the exception will be thrown by next() of consumer
+         */
+        private void fail(ParseException e) {
+            error = e;
+            int index;
+            if ((index = ring.claim(FastXmlParser4Pipeline.this)) >= 0) {
+                ring.metas[index] = ERROR;
+                ring.publish();
+            }
+        }
+    }
+}
@@ -0,0 +1,478 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ByteUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrite a document by rules while copying everything else byte by byte.
+ * The document is parsed by FastXmlParser4ByteArray, bytes between changes are copied from the document directly,
+ * and only names, attribute values and text changed by rules are written again. Deleted elements and replaced content
+ * are skipped by the raw scanner of getCurrentElementRange(), so no event is generated for them.
+ * <p>
+ * A rule is keyed by a path like "/Envelope/Header/Security", which is matched from the root tag,
+ * or by a name like "Security", which is matched at any depth. "*" matches any element in a path.
+ * A name without prefix matches elements with any prefix, such as "Security" matches "wsse:Security".
+ * <p>
+ * Rules can be added until the first rewrite. A rewriter is not thread-safe, but it can be reused for many documents.
+ */
+public class FastXmlRewriter {
+
+    private final static int DELETE = 1;
+    private final static int REPLACE_TEXT = 2;
+    private final static int RENAME = 3;
+    private final static int SET_ATTRIBUTE = 4;
+
+    private final List<Rule> rules = new ArrayList<Rule>();
+    private final FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+    private FastXmlWriter writer;
+    /**
+     * charset which names of rules are encoded in
+     */
+    private Charset ruleCharset;
+
+    // state of the current document
+    private byte[] docBytes;
+    private int copyFrom;
+    private Frame[] frames = new Frame[16];
+    private int depth;
+
+    /**
+     * delete matched elements with their descendants
+     */
+    public FastXmlRewriter delete(String path) {
+        return addRule(new Rule(DELETE, path, null, null));
+    }
+
+    /**
+     * replace content of matched elements by text, it will be escaped
+     */
+    public FastXmlRewriter replaceText(String path, String text) {
+        return addRule(new Rule(REPLACE_TEXT, path, null, text));
+    }
+
+    /**
+     * rename matched elements, both start tag and end tag are renamed
+     */
+    public FastXmlRewriter rename(String path, String newName) {
+        FastXmlWriter.name(newName); // check name
+        return addRule(new Rule(RENAME, path, null, newName));
+    }
+
+    /**
+     * set attribute of matched elements, the value of an existing attribute is replaced, otherwise the attribute is added
+     */
+    public FastXmlRewriter setAttribute(String path, String name, String value) {
+        FastXmlWriter.name(name); // check name
+        return addRule(new Rule(SET_ATTRIBUTE, path, name, value));
+    }
+
+    private FastXmlRewriter addRule(Rule rule) {
+        if (ruleCharset != null) {
+            throw new IllegalStateException("rules can not be added after rewriting");
+        }
+        rules.add(rule);
+        return this;
+    }
+
+    /**
+     * rewrite document into bytes
+     *
+     * @param doc document bytes, the encoding in document or AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @return rewritten document
+     * @throws ParseException
+     * @throws IOException
+     */
+    public byte[] rewrite(byte[] doc) throws ParseException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(doc.length);
+        rewrite(doc, null, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * rewrite document into output stream
+     *
+     * @param doc     document bytes
+     * @param charset if null, encoding in document will be used;
+     *                if both param charset and encoding in document is empty, then AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @param out     output stream, it's flushed but not closed
+     * @throws ParseException
+     * @throws IOException
+     */
+    public void rewrite(byte[] doc, Charset charset, OutputStream out) throws ParseException, IOException {
+        FastXmlParser4ByteArray parser = this.parser;
+        parser.setInput(doc, charset);
+        parser.next(); // START_DOCUMENT
+        prepare(parser.getEncode());
+        writer.setOutput(out);
+        docBytes = doc;
+        copyFrom = 0;
+        depth = 0;
+        try {
+            int event = parser.next();
+            while (event != FastXmlParser.END_DOCUMENT) {
+                switch (event) {
+                    case FastXmlParser.START_TAG:
+                        processStartTag();
+                        break;
+                    case FastXmlParser.ATTRIBUTE_NAME:
+                        processAttributeName();
+                        break;
+                    case FastXmlParser.ATTRIBUTE_VALUE:
+                        processAttributeValue();
+                        break;
+                    case FastXmlParser.END_TAG:
+                        processEndTag();
+                        break;
+                    case FastXmlParser.END_TAG_WITHOUT_TEXT:
+                        frames[--depth].clear();
+                        break;
+                    default:
+                        break;
+                }
+                event = parser.next();
+            }
+            copyTo(doc.length);
+            writer.flush();
+        } finally {
+            writer.reset();
+            docBytes = null;
+            for (int i = 0; i < depth; i++) {
+                frames[i].clear();
+            }
+        }
+    }
+
+    private void processStartTag() throws ParseException, IOException {
+        FastXmlParser4ByteArray parser = this.parser;
+        if (depth == frames.length) {
+            Frame[] newFrames = new Frame[depth << 1];
+            System.arraycopy(frames, 0, newFrames, 0, depth);
+            frames = newFrames;
+        }
+        Frame frame = frames[depth];
+        if (frame == null) {
+            frame = frames[depth] = new Frame();
+        }
+        depth++;
+        frame.nameIndex = parser.currentIndex;
+        frame.nameLength = parser.currentBytesLength;
+        frame.lastTokenEnd = parser.currentIndex + parser.currentBytesLength;
+        if (rules.isEmpty() || !match(frame)) {
+            return;
+        }
+        if (frame.delete) {
+            copyTo(parser.currentIndex - 1); // before '<'
+            copyFrom = (int) parser.getCurrentElementRange()[1];
+            frame.clear();
+            depth--;
+            return;
+        }
+        if (frame.rename != null) {
+            replace(parser.currentIndex, parser.currentBytesLength, frame.rename);
+        }
+        if (parser.getNextEvent() != FastXmlParser.ATTRIBUTE_NAME) {
+            endStartTag(frame);
+        }
+    }
+
+    private void processAttributeName() {
+        Frame frame = frames[depth - 1];
+        frame.currentAttribute = -1;
+        if (frame.attributeNames != null) {
+            for (int i = 0; i < frame.attributeNames.size(); i++) {
+                if (parser.isMatch(frame.attributeNames.get(i))) {
+                    frame.currentAttribute = i;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void processAttributeValue() throws ParseException, IOException {
+        FastXmlParser4ByteArray parser = this.parser;
+        Frame frame = frames[depth - 1];
+        if (frame.currentAttribute >= 0) {
+            copyTo(parser.currentIndex);
+            writer.writeText(frame.attributeValues.get(frame.currentAttribute));
+            copyFrom = parser.currentIndex + parser.currentBytesLength;
+            frame.attributeDone[frame.currentAttribute] = true;
+            frame.currentAttribute = -1;
+        }
+        frame.lastTokenEnd = parser.currentIndex + parser.currentBytesLength + 1; // after the quotation
+        if (frame.matched && parser.getNextEvent() != FastXmlParser.ATTRIBUTE_NAME) {
+            endStartTag(frame);
+        }
+    }
+
+    private void processEndTag() throws IOException {
+        Frame frame = frames[--depth];
+        if (frame.rename != null) {
+            replace(parser.currentIndex, parser.currentBytesLength, frame.rename);
+        }
+        frame.clear();
+    }
+
+    /**
+     * all attributes of a matched element have been parsed, so add attributes and replace content
+     */
+    private void endStartTag(Frame frame) throws ParseException, IOException {
+        if (frame.attributeNames != null) {
+            for (int i = 0; i < frame.attributeNames.size(); i++) {
+                if (!frame.attributeDone[i]) { // add attribute after the last token
+                    copyTo(frame.lastTokenEnd);
+                    writer.writeRaw(frame.attributePrefixes.get(i), 0, frame.attributePrefixes.get(i).length);
+                    writer.writeText(frame.attributeValues.get(i));
+                    writer.writeRaw(QUOTE, 0, 1);
+                }
+            }
+        }
+        if (frame.text == null) {
+            return;
+        }
+        byte[] docBytes = this.docBytes;
+        int p = frame.lastTokenEnd;
+        while (ByteUtils.isWhiteSpaceOrNewLine(docBytes[p])) {
+            p++;
+        }
+        byte[] name = frame.rename;
+        int nameIndex = frame.nameIndex;
+        int nameLength = frame.nameLength;
+        if (docBytes[p] == '/') { // empty element, "/>" is replaced by "&gt;text&lt;/name&gt;"
+            copyTo(p);
+            writer.writeRaw(GREATER_THAN, 0, 1);
+            writer.writeText(frame.text);
+            writeEndTag(name, nameIndex, nameLength);
+            copyFrom = p + 2;
+            return;
+        }
+        copyTo(p + 1); // including '>'
+        writer.writeText(frame.text);
+        // skip content by the raw scanner from the start tag
+        FastXmlParser4ByteArray parser = this.parser;
+        parser.currentEvent = FastXmlParser.START_TAG;
+        parser.currentIndex = nameIndex;
+        parser.currentBytesLength = nameLength;
+        long end = parser.getCurrentElementRange()[1];
+        writeEndTag(name, nameIndex, nameLength);
+        copyFrom = (int) end;
+        frame.clear();
+        depth--;
+    }
+
+    private void writeEndTag(byte[] name, int nameIndex, int nameLength) throws IOException {
+        writer.writeRaw(LESS_THAN_SLASH, 0, 2);
+        if (name != null) {
+            writer.writeRaw(name, 0, name.length);
+        } else {
+            writer.writeRaw(docBytes, nameIndex, nameLength);
+        }
+        writer.writeRaw(GREATER_THAN, 0, 1);
+    }
+
+    /**
+     * copy document bytes before index, and write bytes instead of document bytes[index, index + length)
+     */
+    private void replace(int index, int length, byte[] bytes) throws IOException {
+        copyTo(index);
+        writer.writeRaw(bytes, 0, bytes.length);
+        copyFrom = index + length;
+    }
+
+    /**
+     * copy document bytes from copyFrom to end unchanged
+     */
+    private void copyTo(int end) throws IOException {
+        if (end > copyFrom) {
+            writer.writeRaw(docBytes, copyFrom, end - copyFrom);
+            copyFrom = end;
+        }
+    }
+
+    /**
+     * find rules matching the element of frame, and merge their actions into frame
+     *
+     * @return true if any rule matches
+     */
+    private boolean match(Frame frame) {
+        byte[] docBytes = this.docBytes;
+        for (int r = 0; r < rules.size(); r++) {
+            Rule rule = rules.get(r);
+            byte[][] path = rule.encodedPath;
+            if (rule.absolute ? path.length != depth : path.length > depth) {
+                continue;
+            }
+            boolean matched = true;
+            for (int i = path.length - 1, d = depth - 1; i >= 0; i--, d--) {
+                if (!matchName(path[i], docBytes, frames[d].nameIndex, frames[d].nameLength)) {
+                    matched = false;
+                    break;
+                }
+            }
+            if (matched) {
+                frame.merge(rule);
+            }
+        }
+        return frame.matched;
+    }
+
+    /**
+     * @param name name in rule, it matches any prefix if it has no prefix; "*" matches any name
+     */
+    static boolean matchName(byte[] name, byte[] bytes, int index, int length) {
+        if (name.length == 1 && name[0] == '*') {
+            return true;
+        }
+        if (name.length != length) {
+            int colon = index + length - name.length - 1; // index of ':' if name matches the local part
+            if (colon < index || bytes[colon] != ':') {
+                return false;
+            }
+            index = colon + 1;
+            length = name.length;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes[index + i] != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * encode names of rules in charset of document, and create writer for the charset
+     */
+    private void prepare(Charset charset) {
+        if (charset.equals(ruleCharset)) {
+            return;
+        }
+        for (Rule rule : rules) {
+            rule.encode(charset);
+        }
+        ruleCharset = charset;
+        writer = new FastXmlWriter(charset, FastXmlWriter.DEFAULT_BUFFER_SIZE);
+    }
+
+    private final static byte[] QUOTE = {'"'};
+    private final static byte[] GREATER_THAN = {'>'};
+    private final static byte[] LESS_THAN_SLASH = {'<', '/'};
+
+    private static class Rule {
+        final int type;
+        final String[] path;
+        final boolean absolute;
+        final String attributeName;
+        final String value;
+        // encoded in charset of document
+        byte[][] encodedPath;
+        byte[] encodedAttributeName;
+        byte[] attributePrefix; // " name=\""
+        byte[] encodedValue;
+
+        Rule(int type, String path, String attributeName, String value) {
+            if (path == null || path.length() == 0 || path.equals("/")) {
+                throw new IllegalArgumentException("path is empty");
+            }
+            this.type = type;
+            this.absolute = path.charAt(0) == '/';
+            this.path = (absolute ? path.substring(1) : path).split("/");
+            this.attributeName = attributeName;
+            this.value = value;
+        }
+
+        void encode(Charset charset) {
+            encodedPath = new byte[path.length][];
+            for (int i = 0; i < path.length; i++) {
+                encodedPath[i] = path[i].getBytes(charset);
+            }
+            if (attributeName != null) {
+                encodedAttributeName = attributeName.getBytes(charset);
+                attributePrefix = (" " + attributeName + "=\"").getBytes(charset);
+            }
+            if (type == RENAME) {
+                encodedValue = value.getBytes(charset);
+            }
+        }
+    }
+
+    /**
+     * an open element, and actions of rules matching it
+     */
+    private static class Frame {
+        int nameIndex;
+        int nameLength;
+        /**
+         * end of the last token of start tag, new attributes are added here
+         */
+        int lastTokenEnd;
+        boolean matched;
+        boolean delete;
+        byte[] rename;
+        String text;
+        List<byte[]> attributeNames;
+        List<byte[]> attributePrefixes;
+        List<String> attributeValues;
+        boolean[] attributeDone;
+        int currentAttribute = -1;
+
+        void merge(Rule rule) {
+            matched = true;
+            switch (rule.type) {
+                case DELETE:
+                    delete = true;
+                    break;
+                case REPLACE_TEXT:
+                    text = rule.value;
+                    break;
+                case RENAME:
+                    rename = rule.encodedValue;
+                    break;
+                default:
+                    if (attributeNames == null) {
+                        attributeNames = new ArrayList<byte[]>(2);
+                        attributePrefixes = new ArrayList<byte[]>(2);
+                        attributeValues = new ArrayList<String>(2);
+                    }
+                    attributeNames.add(rule.encodedAttributeName);
+                    attributePrefixes.add(rule.attributePrefix);
+                    attributeValues.add(rule.value);
+                    attributeDone = new boolean[attributeNames.size()];
+            }
+        }
+
+        void clear() {
+            if (matched) {
+                matched = false;
+                delete = false;
+                rename = null;
+                text = null;
+                attributeNames = null;
+                attributePrefixes = null;
+                attributeValues = null;
+                attributeDone = null;
+            }
+            currentAttribute = -1;
+        }
+    }
+}
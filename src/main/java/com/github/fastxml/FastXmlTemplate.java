@@ -0,0 +1,296 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A document compiled once and rendered many times with different values.
+ * Slots are written as "${name}" in text or attribute values of the template, such as
+ * "&lt;order id=\"${id}\"&gt;&lt;name&gt;${name}&lt;/name&gt;&lt;/order&gt;".
+ * The template is parsed by FastXmlParser4ByteArray when it's compiled, and the bytes between slots are kept as they are,
+ * so rendering is copying these bytes and writing escaped values in charset of the template.
+ * Slots are not allowed in CDATA blocks, since escaped values would be read back as they are.
+ * A compiled template is immutable and thread-safe, writers used by render() are pooled in the template.
+ */
+public final class FastXmlTemplate {
+
+    private final static byte[] CDATA_BEGIN = "<![CDATA[".getBytes();
+    private final static byte[] CDATA_END = "]]>".getBytes();
+
+    private final Charset charset;
+    /**
+     * names of slots, a name appearing more than once has one index
+     */
+    private final String[] slotNames;
+    /**
+     * template bytes, static run i is bytes[runOffsets[i], runOffsets[i] + runLengths[i]),
+     * and it's followed by the value of slot slotIndexes[i] except the last run
+     */
+    private final byte[] bytes;
+    private final int[] runOffsets;
+    private final int[] runLengths;
+    private final int[] slotIndexes;
+    private final ConcurrentLinkedQueue<FastXmlWriter> writers = new ConcurrentLinkedQueue<FastXmlWriter>();
+
+    private FastXmlTemplate(Charset charset, String[] slotNames, byte[] bytes, int[] runOffsets, int[] runLengths, int[] slotIndexes) {
+        this.charset = charset;
+        this.slotNames = slotNames;
+        this.bytes = bytes;
+        this.runOffsets = runOffsets;
+        this.runLengths = runLengths;
+        this.slotIndexes = slotIndexes;
+    }
+
+    /**
+     * compile a template, charset is the encoding in document or AbstractFastXmlParser.DEFAULT_CHARSET
+     *
+     * @param template bytes of template, it's copied
+     * @return compiled template
+     * @throws ParseException if template is not well-formed, a slot is not closed by '}' or a slot is in CDATA block
+     */
+    public static FastXmlTemplate compile(byte[] template) throws ParseException {
+        return compile(template, null);
+    }
+
+    /**
+     * compile a template
+     *
+     * @param template bytes of template, it's copied
+     * @param charset  if null, encoding in document will be used;
+     *                 if both param charset and encoding in document is empty, then AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @return compiled template
+     * @throws ParseException if template is not well-formed, a slot is not closed by '}' or a slot is in CDATA block
+     */
+    public static FastXmlTemplate compile(byte[] template, Charset charset) throws ParseException {
+        byte[] bytes = Arrays.copyOf(template, template.length);
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(bytes, charset);
+        List<String> names = new ArrayList<String>();
+        List<Integer> slots = new ArrayList<Integer>(); // (run end, slot end, slot index) of each slot
+        int event;
+        while ((event = parser.next()) != FastXmlParser.END_DOCUMENT) {
+            if (event == FastXmlParser.TEXT || event == FastXmlParser.ATTRIBUTE_VALUE) {
+                findSlots(parser, bytes, parser.currentIndex, parser.currentIndex + parser.currentBytesLength, names, slots);
+            }
+        }
+        int count = slots.size() / 3;
+        int[] runOffsets = new int[count + 1];
+        int[] runLengths = new int[count + 1];
+        int[] slotIndexes = new int[count];
+        int runStart = 0;
+        for (int i = 0; i < count; i++) {
+            runOffsets[i] = runStart;
+            runLengths[i] = slots.get(i * 3) - runStart;
+            runStart = slots.get(i * 3 + 1);
+            slotIndexes[i] = slots.get(i * 3 + 2);
+        }
+        runOffsets[count] = runStart;
+        runLengths[count] = bytes.length - runStart;
+        return new FastXmlTemplate(parser.getEncode(), names.toArray(new String[names.size()]), bytes, runOffsets, runLengths, slotIndexes);
+    }
+
+    /**
+     * find "${name}" in bytes of a token, CDATA blocks of text are skipped, but they should not contain slots
+     */
+    private static void findSlots(FastXmlParser parser, byte[] bytes, int begin, int end, List<String> names, List<Integer> slots) throws ParseException {
+        for (int i = begin; i + 1 < end; i++) {
+            if (startsWith(bytes, i, end, CDATA_BEGIN)) {
+                int cdataEnd = indexOf(bytes, i + CDATA_BEGIN.length, end, CDATA_END);
+                for (int j = i + CDATA_BEGIN.length; j + 1 < cdataEnd; j++) {
+                    if (bytes[j] == '$' && bytes[j + 1] == '{') {
+                        throw ParseException.formatError("slot should not be in CDATA block", parser);
+                    }
+                }
+                i = cdataEnd + CDATA_END.length - 1;
+                continue;
+            }
+            if (bytes[i] != '$' || bytes[i + 1] != '{') {
+                continue;
+            }
+            int nameBegin = i + 2;
+            int nameEnd = nameBegin;
+            while (nameEnd < end && bytes[nameEnd] != '}') {
+                nameEnd++;
+            }
+            if (nameEnd == end || nameEnd == nameBegin) {
+                throw ParseException.formatError("slot should be like ${name}", parser);
+            }
+            String name = new String(bytes, nameBegin, nameEnd - nameBegin, parser.getEncode());
+            int index = names.indexOf(name);
+            if (index < 0) {
+                index = names.size();
+                names.add(name);
+            }
+            slots.add(i);
+            slots.add(nameEnd + 1);
+            slots.add(index);
+            i = nameEnd;
+        }
+    }
+
+    private static boolean startsWith(byte[] bytes, int begin, int end, byte[] prefix) {
+        if (end - begin < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[begin + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return index of pattern in bytes, or end if not found
+     */
+    private static int indexOf(byte[] bytes, int begin, int end, byte[] pattern) {
+        for (int i = begin; i <= end - pattern.length; i++) {
+            if (startsWith(bytes, i, end, pattern)) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @return charset of template, output of render() is in this charset
+     */
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public int getSlotCount() {
+        return slotNames.length;
+    }
+
+    /**
+     * @return names of slots, the index of a name is the index of its value in render()
+     */
+    public String[] getSlotNames() {
+        return slotNames.clone();
+    }
+
+    /**
+     * @param name slot name
+     * @return index of slot, or -1 if no such slot
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < slotNames.length; i++) {
+            if (slotNames[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * render template into a writer, charset of writer should be the same as template
+     *
+     * @param writer writer
+     * @param values values of slots by index, see getSlotNames().
+     *               Integer, Long, Short and Byte are written as integers, Double as FastXmlWriter.writeText(double),
+     *               null as empty, and other values as escaped toString()
+     * @throws IOException
+     */
+    public void render(FastXmlWriter writer, Object... values) throws IOException {
+        if (!charset.equals(writer.getCharset())) {
+            throw new IllegalArgumentException("charset of writer should be " + charset + ", but it's " + writer.getCharset());
+        }
+        if (values.length < slotNames.length) {
+            throw new IllegalArgumentException("need " + slotNames.length + " values, but there are " + values.length);
+        }
+        byte[] bytes = this.bytes;
+        int[] runOffsets = this.runOffsets;
+        int[] runLengths = this.runLengths;
+        int[] slotIndexes = this.slotIndexes;
+        int count = slotIndexes.length;
+        for (int i = 0; i < count; i++) {
+            writer.writeRaw(bytes, runOffsets[i], runLengths[i]);
+            writeValue(writer, values[slotIndexes[i]]);
+        }
+        writer.writeRaw(bytes, runOffsets[count], runLengths[count]);
+    }
+
+    /**
+     * render template into bytes by a pooled writer
+     *
+     * @param values values of slots by index, see render(FastXmlWriter, Object...)
+     * @return rendered document
+     * @throws IOException
+     */
+    public byte[] render(Object... values) throws IOException {
+        FastXmlWriter writer = takeWriter();
+        try {
+            render(writer, values);
+            return writer.toByteArray();
+        } finally {
+            writers.offer(writer);
+        }
+    }
+
+    /**
+     * render template into output stream by a pooled writer
+     *
+     * @param out    output stream, it's flushed but not closed
+     * @param values values of slots by index, see render(FastXmlWriter, Object...)
+     * @throws IOException
+     */
+    public void render(OutputStream out, Object... values) throws IOException {
+        FastXmlWriter writer = takeWriter();
+        try {
+            writer.setOutput(out);
+            render(writer, values);
+            writer.flush();
+        } finally {
+            writer.reset();
+            writers.offer(writer);
+        }
+    }
+
+    private FastXmlWriter takeWriter() {
+        FastXmlWriter writer = writers.poll();
+        if (writer == null) {
+            writer = new FastXmlWriter(charset, Math.max(bytes.length * 2, FastXmlWriter.DEFAULT_BUFFER_SIZE));
+        } else {
+            writer.reset();
+        }
+        return writer;
+    }
+
+    private static void writeValue(FastXmlWriter writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value instanceof String) {
+            writer.writeText((String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writer.writeText(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            writer.writeText(((Number) value).doubleValue());
+        } else {
+            writer.writeText(value.toString());
+        }
+    }
+}
@@ -0,0 +1,835 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.util.ByteUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Write xml as bytes into a reusable byte array, a ByteBuffer or an OutputStream.
+ * Names can be encoded once by name(), numbers and timestamps are written as digits directly,
+ * and text is escaped by copying runs of bytes which need no escaping.
+ * Open elements are tracked, so writeEndElement() needs no name and writeEndDocument() closes all of them.
+ * Charset is the same as parsers: it must be compatible with ASCII, and if it's null, AbstractFastXmlParser.DEFAULT_CHARSET is used.
+ * A writer is not thread-safe, but it can be reused by reset() or setOutput().
+ */
+public class FastXmlWriter {
+
+    public final static int DEFAULT_BUFFER_SIZE = 8192;
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+
+    /**
+     * escaped bytes of '&lt;', '&amp;', '&gt;', '&quot;' and '&apos;', other bytes are not escaped
+     */
+    private final static byte[][] ESCAPES = new byte[128][];
+
+    static {
+        ESCAPES['<'] = "&lt;".getBytes(UTF_8);
+        ESCAPES['&'] = "&amp;".getBytes(UTF_8);
+        ESCAPES['>'] = "&gt;".getBytes(UTF_8);
+        ESCAPES['"'] = "&quot;".getBytes(UTF_8);
+        ESCAPES['\''] = "&apos;".getBytes(UTF_8);
+    }
+
+    private final static byte[] DIGITS = "0123456789".getBytes(UTF_8);
+    private final static byte[] MIN_INT = "-2147483648".getBytes(UTF_8);
+    private final static byte[] MIN_LONG = "-9223372036854775808".getBytes(UTF_8);
+    private final static byte[] NAN = "NaN".getBytes(UTF_8);
+    private final static byte[] INF = "INF".getBytes(UTF_8);
+    private final static byte[] NEGATIVE_INF = "-INF".getBytes(UTF_8);
+    private final static byte[] TRUE = "true".getBytes(UTF_8);
+    private final static byte[] FALSE = "false".getBytes(UTF_8);
+    /**
+     * powers of 10 which are exact in double
+     */
+    private final static double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * an element or attribute name encoded once, use it as a constant to write names without encoding
+     */
+    public final static class Name {
+        private final String name;
+        private final byte[] startTag; // "<name"
+        private final byte[] endTag; // "</name>"
+        private final byte[] attribute; // " name=\""
+
+        private Name(String name) {
+            byte[] bytes = name.getBytes(UTF_8);
+            if (bytes.length == 0) {
+                throw new IllegalArgumentException("name is empty");
+            }
+            for (byte b : bytes) {
+                if (!ByteUtils.isValidTokenChar(b)) {
+                    throw new IllegalArgumentException("invalid char in name: " + name);
+                }
+            }
+            this.name = name;
+            this.startTag = concat("<", bytes, "");
+            this.endTag = concat("</", bytes, ">");
+            this.attribute = concat(" ", bytes, "=\"");
+        }
+
+        private static byte[] concat(String prefix, byte[] bytes, String suffix) {
+            byte[] result = new byte[prefix.length() + bytes.length + suffix.length()];
+            System.arraycopy(prefix.getBytes(UTF_8), 0, result, 0, prefix.length());
+            System.arraycopy(bytes, 0, result, prefix.length(), bytes.length);
+            System.arraycopy(suffix.getBytes(UTF_8), 0, result, prefix.length() + bytes.length, suffix.length());
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * encode a name once, the name is encoded as UTF-8 which is the same as any ASCII compatible charset for ASCII names
+     *
+     * @param name element or attribute name
+     * @return encoded name
+     */
+    public static Name name(String name) {
+        return new Name(name);
+    }
+
+    private final Charset charset;
+    private final boolean utf8;
+    /**
+     * encoder for non-ASCII chars if charset is not UTF-8
+     */
+    private final CharsetEncoder encoder;
+    private final CharBuffer encoderInput;
+    private final ByteBuffer encoderOutput;
+
+    /**
+     * bytes are written into buffer[position, limit)
+     */
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    /**
+     * the internal buffer, it's used except writing into a ByteBuffer with array
+     */
+    private byte[] ownBuffer;
+    private OutputStream out;
+    private ByteBuffer byteBuffer;
+    /**
+     * start of bytes in buffer which have not been flushed
+     */
+    private int flushed;
+
+    /**
+     * open elements, and whether the start tag of the last one is not closed by '>'
+     */
+    private Name[] elements = new Name[16];
+    private int depth;
+    private boolean startTagOpen;
+
+    /**
+     * create a writer into its internal buffer, with default charset
+     */
+    public FastXmlWriter() {
+        this(null, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * create a writer into its internal buffer
+     *
+     * @param charset    charset compatible with ASCII; if null, AbstractFastXmlParser.DEFAULT_CHARSET will be used
+     * @param bufferSize initial size of internal buffer, or the size of buffer when writing into OutputStream
+     */
+    public FastXmlWriter(Charset charset, int bufferSize) {
+        this.charset = charset == null ? AbstractFastXmlParser.DEFAULT_CHARSET : charset;
+        byte[] lessThan = "<".getBytes(this.charset);
+        if (lessThan.length != 1 || lessThan[0] != '<') {
+            throw new IllegalArgumentException("charset should be compatible with ASCII: " + this.charset);
+        }
+        this.utf8 = UTF_8.equals(this.charset);
+        if (utf8) {
+            this.encoder = null;
+            this.encoderInput = null;
+            this.encoderOutput = null;
+        } else {
+            this.encoder = this.charset.newEncoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT);
+            this.encoderInput = CharBuffer.allocate(2);
+            this.encoderOutput = ByteBuffer.allocate(16);
+        }
+        this.ownBuffer = new byte[Math.max(bufferSize, 64)];
+        reset();
+    }
+
+    /**
+     * write into the internal buffer from the beginning, get bytes by getBuffer() and size()
+     */
+    public void reset() {
+        this.out = null;
+        this.byteBuffer = null;
+        this.buffer = ownBuffer;
+        this.position = 0;
+        this.flushed = 0;
+        this.limit = buffer.length;
+        resetElements();
+    }
+
+    /**
+     * write into output stream, bytes are flushed when the internal buffer is full, or flush() is called
+     *
+     * @param out output stream
+     */
+    public void setOutput(OutputStream out) {
+        reset();
+        this.out = out;
+    }
+
+    /**
+     * write into byte buffer from it's position, the position is moved when flush() is called.
+     * BufferOverflowException is thrown if the byte buffer is full.
+     *
+     * @param byteBuffer byte buffer
+     */
+    public void setOutput(ByteBuffer byteBuffer) {
+        reset();
+        this.byteBuffer = byteBuffer;
+        if (byteBuffer.hasArray()) { // write into it's array directly
+            this.buffer = byteBuffer.array();
+            this.position = this.flushed = byteBuffer.arrayOffset() + byteBuffer.position();
+            this.limit = byteBuffer.arrayOffset() + byteBuffer.limit();
+        }
+    }
+
+    private void resetElements() {
+        for (int i = 0; i < depth; i++) {
+            elements[i] = null;
+        }
+        depth = 0;
+        startTagOpen = false;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return count of open elements
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return the internal buffer, bytes written after reset() are in [0, size())
+     */
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return count of bytes in the internal buffer which are not flushed
+     */
+    public int size() {
+        return position - flushed;
+    }
+
+    /**
+     * @return copy of bytes in the internal buffer which are not flushed
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[position - flushed];
+        System.arraycopy(buffer, flushed, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * write xml declaration with encoding
+     *
+     * @throws IOException
+     */
+    public void writeStartDocument() throws IOException {
+        writeAscii("<?xml version=\"1.0\" encoding=\"");
+        writeAscii(charset.name());
+        writeAscii("\"?>");
+    }
+
+    /**
+     * close all open elements and flush
+     *
+     * @throws IOException
+     */
+    public void writeEndDocument() throws IOException {
+        while (depth > 0) {
+            writeEndElement();
+        }
+        flush();
+    }
+
+    public void writeStartElement(String name) throws IOException {
+        writeStartElement(new Name(name));
+    }
+
+    /**
+     * write "&lt;name", attributes can be written until content or another element is written
+     *
+     * @param name pre-encoded name
+     * @throws IOException
+     */
+    public void writeStartElement(Name name) throws IOException {
+        closeStartTag();
+        if (depth == elements.length) {
+            Name[] newElements = new Name[depth << 1];
+            System.arraycopy(elements, 0, newElements, 0, depth);
+            elements = newElements;
+        }
+        elements[depth++] = name;
+        writeBytes(name.startTag, 0, name.startTag.length);
+        startTagOpen = true;
+    }
+
+    /**
+     * close the last open element by "/&gt;" if it has no content, otherwise by "&lt;/name&gt;"
+     *
+     * @throws IOException
+     */
+    public void writeEndElement() throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("no open element");
+        }
+        Name name = elements[--depth];
+        elements[depth] = null;
+        if (startTagOpen) {
+            ensure(2);
+            buffer[position++] = '/';
+            buffer[position++] = '>';
+            startTagOpen = false;
+        } else {
+            writeBytes(name.endTag, 0, name.endTag.length);
+        }
+    }
+
+    /**
+     * write an element with text content
+     *
+     * @param name pre-encoded name
+     * @param text text, it will be escaped
+     * @throws IOException
+     */
+    public void writeElement(Name name, String text) throws IOException {
+        writeStartElement(name);
+        writeText(text);
+        writeEndElement();
+    }
+
+    public void writeElement(Name name, long value) throws IOException {
+        writeStartElement(name);
+        writeText(value);
+        writeEndElement();
+    }
+
+    public void writeAttribute(String name, String value) throws IOException {
+        writeAttribute(new Name(name), value);
+    }
+
+    public void writeAttribute(Name name, String value) throws IOException {
+        startAttribute(name);
+        writeEscaped(value);
+        endAttribute();
+    }
+
+    public void writeAttribute(Name name, int value) throws IOException {
+        startAttribute(name);
+        writeInt(value);
+        endAttribute();
+    }
+
+    public void writeAttribute(Name name, long value) throws IOException {
+        startAttribute(name);
+        writeLong(value);
+        endAttribute();
+    }
+
+    public void writeAttribute(Name name, double value) throws IOException {
+        startAttribute(name);
+        writeDouble(value);
+        endAttribute();
+    }
+
+    /**
+     * write attribute value which is encoded in charset of writer, it will be escaped
+     */
+    public void writeAttribute(Name name, byte[] value, int offset, int length) throws IOException {
+        startAttribute(name);
+        writeEscaped(value, offset, length);
+        endAttribute();
+    }
+
+    private void startAttribute(Name name) throws IOException {
+        if (!startTagOpen) {
+            throw new IllegalStateException("attribute should be written after start element");
+        }
+        writeBytes(name.attribute, 0, name.attribute.length);
+    }
+
+    private void endAttribute() throws IOException {
+        ensure(1);
+        buffer[position++] = '"';
+    }
+
+    /**
+     * write escaped text
+     *
+     * @param text text, null is ignored
+     * @throws IOException
+     */
+    public void writeText(String text) throws IOException {
+        closeStartTag();
+        if (text != null) {
+            writeEscaped(text);
+        }
+    }
+
+    /**
+     * write text which is encoded in charset of writer, such as bytes of a token of parser, it will be escaped
+     */
+    public void writeText(byte[] text, int offset, int length) throws IOException {
+        closeStartTag();
+        writeEscaped(text, offset, length);
+    }
+
+    public void writeText(int value) throws IOException {
+        closeStartTag();
+        writeInt(value);
+    }
+
+    public void writeText(long value) throws IOException {
+        closeStartTag();
+        writeLong(value);
+    }
+
+    /**
+     * write double value, NaN and infinity are written as "NaN", "INF" and "-INF" of xml schema
+     */
+    public void writeText(double value) throws IOException {
+        closeStartTag();
+        writeDouble(value);
+    }
+
+    public void writeText(boolean value) throws IOException {
+        closeStartTag();
+        byte[] bytes = value ? TRUE : FALSE;
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * write time as ISO 8601 in UTC, such as "2016-09-14T08:30:00.123Z"
+     *
+     * @param epochMillis milliseconds from 1970-01-01T00:00:00Z
+     * @throws IOException
+     */
+    public void writeTimestamp(long epochMillis) throws IOException {
+        closeStartTag();
+        long days = floorDiv(epochMillis, 86400000L);
+        int millisOfDay = (int) (epochMillis - days * 86400000L);
+        // civil date from days since 1970-01-01, see http://howardhinnant.github.io/date_algorithms.html
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        if (year < 0 || year > 9999) {
+            throw new IllegalArgumentException("year should be in [0, 9999]: " + year);
+        }
+        ensure(24);
+        byte[] buffer = this.buffer;
+        int p = position;
+        p = write2Digits(buffer, p, (int) year / 100);
+        p = write2Digits(buffer, p, (int) year % 100);
+        buffer[p++] = '-';
+        p = write2Digits(buffer, p, month);
+        buffer[p++] = '-';
+        p = write2Digits(buffer, p, day);
+        buffer[p++] = 'T';
+        p = write2Digits(buffer, p, millisOfDay / 3600000);
+        buffer[p++] = ':';
+        p = write2Digits(buffer, p, millisOfDay / 60000 % 60);
+        buffer[p++] = ':';
+        p = write2Digits(buffer, p, millisOfDay / 1000 % 60);
+        buffer[p++] = '.';
+        int millis = millisOfDay % 1000;
+        buffer[p++] = DIGITS[millis / 100];
+        p = write2Digits(buffer, p, millis % 100);
+        buffer[p++] = 'Z';
+        position = p;
+    }
+
+    /**
+     * write bytes without escaping, such as a fragment of xml
+     */
+    public void writeRaw(byte[] bytes, int offset, int length) throws IOException {
+        closeStartTag();
+        writeBytes(bytes, offset, length);
+    }
+
+    /**
+     * write bytes in buffer into output stream or byte buffer
+     *
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        if (out != null) {
+            out.write(buffer, flushed, position - flushed);
+            out.flush();
+            position = flushed = 0;
+        } else if (byteBuffer != null) {
+            if (buffer == ownBuffer) {
+                byteBuffer.put(buffer, flushed, position - flushed);
+                position = flushed = 0;
+            } else {
+                byteBuffer.position(position - byteBuffer.arrayOffset());
+                flushed = position;
+            }
+        }
+    }
+
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            ensure(1);
+            buffer[position++] = '>';
+            startTagOpen = false;
+        }
+    }
+
+    /**
+     * make room for n bytes: flush if writing into output stream or byte buffer, otherwise grow the internal buffer
+     *
+     * @param n count of bytes
+     * @throws IOException
+     */
+    private void ensure(int n) throws IOException {
+        if (position + n <= limit) {
+            return;
+        }
+        if (buffer != ownBuffer) { // array of byte buffer
+            throw new BufferOverflowException();
+        }
+        if (out != null || byteBuffer != null) {
+            flush();
+        }
+        if (position + n > limit) {
+            byte[] newBuffer = new byte[Math.max(buffer.length << 1, position + n)];
+            System.arraycopy(buffer, 0, newBuffer, 0, position);
+            buffer = ownBuffer = newBuffer;
+            limit = buffer.length;
+        }
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (position + length > limit && out != null && length > buffer.length / 2) { // write large bytes directly
+            flush();
+            out.write(bytes, offset, length);
+            return;
+        }
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void writeAscii(String s) throws IOException {
+        int length = s.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            buffer[position++] = (byte) s.charAt(i);
+        }
+    }
+
+    /**
+     * escape bytes by copying runs of bytes which need no escaping
+     */
+    private void writeEscaped(byte[] bytes, int offset, int length) throws IOException {
+        int end = offset + length;
+        int runStart = offset;
+        for (int i = offset; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= 0 && ESCAPES[b] != null) {
+                writeBytes(bytes, runStart, i - runStart);
+                writeBytes(ESCAPES[b], 0, ESCAPES[b].length);
+                runStart = i + 1;
+            }
+        }
+        writeBytes(bytes, runStart, end - runStart);
+    }
+
+    /**
+     * escape and encode string, ASCII chars are written directly
+     */
+    private void writeEscaped(String s) throws IOException {
+        int length = s.length();
+        for (int i = 0; i < length; ) {
+            byte[] buffer = this.buffer;
+            int p = position;
+            int limit = this.limit;
+            char c = 0;
+            // fast path: ASCII chars which need no escaping
+            while (i < length && p < limit && (c = s.charAt(i)) < 128 && ESCAPES[c] == null) {
+                buffer[p++] = (byte) c;
+                i++;
+            }
+            position = p;
+            if (i == length) {
+                return;
+            }
+            if (p == limit) {
+                ensure(1);
+            } else if (c < 128) {
+                writeBytes(ESCAPES[c], 0, ESCAPES[c].length);
+                i++;
+            } else {
+                i = writeNonAscii(s, i, length);
+            }
+        }
+    }
+
+    /**
+     * encode a non-ASCII char or surrogate pair
+     *
+     * @return index of the next char
+     */
+    private int writeNonAscii(String s, int i, int length) throws IOException {
+        char c = s.charAt(i);
+        int count = Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1)) ? 2 : 1;
+        if (utf8) {
+            if (c < 0x800) {
+                ensure(2);
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (count == 2) {
+                int codePoint = Character.toCodePoint(c, s.charAt(i + 1));
+                ensure(4);
+                buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) { // unpaired surrogate
+                writeCharReference(0xFFFD);
+            } else {
+                ensure(3);
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        } else {
+            encoderInput.clear();
+            encoderInput.put(c);
+            if (count == 2) {
+                encoderInput.put(s.charAt(i + 1));
+            }
+            encoderInput.flip();
+            encoderOutput.clear();
+            encoder.reset();
+            CoderResult result = encoder.encode(encoderInput, encoderOutput, true);
+            if (!result.isError()) {
+                result = encoder.flush(encoderOutput);
+            }
+            if (result.isError()) { // the char can not be encoded in charset
+                writeCharReference(count == 2 ? Character.toCodePoint(c, s.charAt(i + 1)) : c);
+            } else {
+                writeBytes(encoderOutput.array(), 0, encoderOutput.position());
+            }
+        }
+        return i + count;
+    }
+
+    /**
+     * write "&amp;#codePoint;"
+     */
+    private void writeCharReference(int codePoint) throws IOException {
+        ensure(3);
+        buffer[position++] = '&';
+        buffer[position++] = '#';
+        writeInt(codePoint);
+        ensure(1);
+        buffer[position++] = ';';
+    }
+
+    private void writeInt(int value) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            writeBytes(MIN_INT, 0, MIN_INT.length);
+            return;
+        }
+        ensure(11);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + stringSize(value);
+        for (int p = end; ; ) {
+            int q = value / 10;
+            buffer[--p] = DIGITS[value - q * 10];
+            value = q;
+            if (value == 0) {
+                break;
+            }
+        }
+        position = end;
+    }
+
+    private void writeLong(long value) throws IOException {
+        if (value == (int) value) {
+            writeInt((int) value);
+            return;
+        }
+        if (value == Long.MIN_VALUE) {
+            writeBytes(MIN_LONG, 0, MIN_LONG.length);
+            return;
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int end = position + stringSize(value);
+        for (int p = end; value != 0; ) {
+            long q = value / 10;
+            buffer[--p] = DIGITS[(int) (value - q * 10)];
+            value = q;
+        }
+        position = end;
+    }
+
+    /**
+     * write the shortest digits(at most 15 significant digits) which can be parsed back to the same double,
+     * the digits are checked by exact arithmetic, and Double.toString() is used if no such digits are found
+     */
+    private void writeDouble(double value) throws IOException {
+        if (value != value) {
+            writeBytes(NAN, 0, NAN.length);
+            return;
+        } else if (value == Double.POSITIVE_INFINITY) {
+            writeBytes(INF, 0, INF.length);
+            return;
+        } else if (value == Double.NEGATIVE_INFINITY) {
+            writeBytes(NEGATIVE_INF, 0, NEGATIVE_INF.length);
+            return;
+        }
+        double abs = Math.abs(value);
+        if (abs == 0 || (abs >= 1e-7 && abs < 1e15)) {
+            if (abs == (long) abs) { // integer, written as "123.0" just like Double.toString()
+                if (value < 0 || (value == 0 && 1 / value < 0)) {
+                    ensure(1);
+                    buffer[position++] = '-';
+                }
+                writeLong((long) abs);
+                ensure(2);
+                buffer[position++] = '.';
+                buffer[position++] = '0';
+                return;
+            }
+            int exponent = (int) Math.floor(Math.log10(abs));
+            int scale = 14 - exponent; // count of decimals for 15 significant digits
+            if (scale > 0 && scale < POWERS_OF_TEN.length) {
+                long digits = Math.round(abs * POWERS_OF_TEN[scale]);
+                while (scale > 0 && digits % 10 == 0) {
+                    digits /= 10;
+                    scale--;
+                }
+                // exact when both digits and the power of 10 are exact in double
+                if (digits < (1L << 53) && digits / POWERS_OF_TEN[scale] == abs) {
+                    if (value < 0) {
+                        ensure(1);
+                        buffer[position++] = '-';
+                    }
+                    writeDecimal(digits, scale);
+                    return;
+                }
+            }
+        }
+        writeAscii(Double.toString(value));
+    }
+
+    /**
+     * write digits / 10^scale, scale is positive
+     */
+    private void writeDecimal(long digits, int scale) throws IOException {
+        int size = stringSize(digits);
+        ensure(Math.max(size, scale) + 2);
+        byte[] buffer = this.buffer;
+        int p = position;
+        if (size <= scale) { // "0.00ddd"
+            buffer[p++] = '0';
+            buffer[p++] = '.';
+            for (int i = size; i < scale; i++) {
+                buffer[p++] = '0';
+            }
+            position = p + size;
+        } else {
+            position = p + size + 1;
+        }
+        int dot = position - scale - 1;
+        for (int i = position - 1; i >= p; i--) {
+            if (i == dot) {
+                buffer[i] = '.';
+            } else {
+                long q = digits / 10;
+                buffer[i] = DIGITS[(int) (digits - q * 10)];
+                digits = q;
+            }
+        }
+    }
+
+    private static int write2Digits(byte[] buffer, int p, int value) {
+        buffer[p] = DIGITS[value / 10];
+        buffer[p + 1] = DIGITS[value % 10];
+        return p + 2;
+    }
+
+    private static int stringSize(long value) {
+        long x = 10;
+        for (int i = 1; i < 19; i++) {
+            if (value < x) {
+                return i;
+            }
+            x *= 10;
+        }
+        return 19;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) {
+            q--;
+        }
+        return q;
+    }
+}
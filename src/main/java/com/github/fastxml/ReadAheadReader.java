@@ -0,0 +1,212 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Read segments from input stream on a helper thread, so the parser can parse the current segment
+ * while the next one is being read.
+ * Every segment is filled fully except the last one, the count of filled segments waiting for parser is bounded.
+ * Segments released by parser will be reused by the helper thread.
+ */
+class ReadAheadReader extends SegmentReader implements Runnable {
+
+    /**
+     * marks the end of segments
+     */
+    private final static byte[] END = new byte[0];
+
+    private final InputStream is;
+    /**
+     * segments have been filled and are waiting for parser
+     */
+    private final BlockingQueue<byte[]> filledSegments;
+    /**
+     * segments released by parser, they will be filled again
+     */
+    private final ConcurrentLinkedQueue<byte[]> freeSegments = new ConcurrentLinkedQueue<byte[]>();
+    private final Thread thread;
+    /**
+     * the exception thrown by input stream, it's visible to parser after END is taken
+     */
+    private volatile IOException exception;
+    /**
+     * set by close(), the helper thread doesn't read input stream any more after it's set
+     */
+    private volatile boolean closed;
+    /**
+     * the last segment which may be not full, and it's length
+     */
+    private volatile byte[] lastSegment;
+    private volatile int lastSegmentLength;
+    /**
+     * whether END has been taken by parser, only accessed by parser thread
+     */
+    private boolean finished;
+
+    /**
+     * create a reader, the helper thread will be started by start()
+     *
+     * @param is            input stream
+     * @param segmentSize   size of each segment
+     * @param bufferCount   max count of filled segments waiting for parser
+     * @param threadFactory factory to create the helper thread, such as a factory of virtual threads; if null, a daemon thread will be created
+     */
+    ReadAheadReader(InputStream is, int segmentSize, int bufferCount, ThreadFactory threadFactory) {
+        super(segmentSize);
+        this.is = is;
+        this.filledSegments = new ArrayBlockingQueue<byte[]>(Math.max(bufferCount, 1) + 1); // one more for END
+        if (threadFactory == null) {
+            this.thread = new Thread(this, "fastxml-read-ahead");
+            this.thread.setDaemon(true);
+        } else {
+            this.thread = threadFactory.newThread(this);
+        }
+    }
+
+    /**
+     * start the helper thread
+     */
+    @Override
+    void start() {
+        thread.start();
+    }
+
+    public void run() {
+        try {
+            for (; ; ) {
+                byte[] segment = freeSegments.poll();
+                if (segment == null) {
+                    segment = new byte[segmentSize];
+                }
+                int length = readFully(segment);
+                if (closed) {
+                    return;
+                }
+                if (length < segmentSize) { // EOF
+                    if (length > 0) {
+                        lastSegment = segment;
+                        lastSegmentLength = length;
+                        filledSegments.put(segment);
+                    }
+                    filledSegments.put(END);
+                    return;
+                }
+                filledSegments.put(segment);
+            }
+        } catch (IOException e) {
+            exception = e;
+            filledSegments.clear(); // make room for END, the parser will not need these bytes
+            filledSegments.offer(END);
+        } catch (InterruptedException e) {
+            // closed by parser
+        }
+    }
+
+    /**
+     * read bytes until the segment is full or EOF, or the reader is closed
+     *
+     * @param segment
+     * @return count of bytes
+     * @throws IOException
+     */
+    private int readFully(byte[] segment) throws IOException {
+        int length = 0;
+        while (length < segmentSize && !closed) {
+            int count = is.read(segment, length, segmentSize - length);
+            if (count < 0) {
+                break;
+            }
+            length += count;
+        }
+        return length;
+    }
+
+    /**
+     * take the next filled segment, wait if it's not ready
+     *
+     * @return the next segment, or null if EOF
+     * @throws ParseException if IOException is thrown by input stream or the parser thread is interrupted
+     */
+    @Override
+    byte[] take() throws ParseException {
+        if (!finished) {
+            try {
+                byte[] segment = filledSegments.take();
+                if (segment != END) {
+                    return segment;
+                }
+                finished = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw ParseException.ioException(new InterruptedIOException("interrupted when waiting for read-ahead"));
+            }
+        }
+        if (exception != null) {
+            throw ParseException.ioException(exception);
+        }
+        return null;
+    }
+
+    /**
+     * get the count of bytes in a segment which is taken from this reader
+     *
+     * @param segment
+     * @return count of bytes
+     */
+    @Override
+    int length(byte[] segment) {
+        return segment == lastSegment ? lastSegmentLength : segmentSize;
+    }
+
+    /**
+     * give a segment back for reusing
+     *
+     * @param segment
+     */
+    @Override
+    void recycle(byte[] segment) {
+        freeSegments.offer(segment);
+    }
+
+    /**
+     * stop the helper thread, and take back segments which can be reused.
+     * If END has not been taken, the helper thread may be still using segments, so no segment will be taken back.
+     * A read blocked in input stream can't be interrupted, the helper thread returns after it without reading again,
+     * so the input stream should be closed by caller to stop such a read at once.
+     *
+     * @return segments which can be reused
+     */
+    @Override
+    byte[][] close() {
+        if (!finished) {
+            closed = true;
+            thread.interrupt();
+            return new byte[0][];
+        }
+        // END has been taken, so the helper thread will not touch any segment
+        return freeSegments.toArray(new byte[freeSegments.size()][]);
+    }
+}
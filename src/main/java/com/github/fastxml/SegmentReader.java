@@ -0,0 +1,70 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import com.github.fastxml.exception.ParseException;
+
+/**
+ * Produce filled segments for FastXmlParser4InputStream on other threads.
+ * Every segment is full except the last one, segments are taken by parser in document order,
+ * and they will be given back by recycle() when parser does not need them.
+ */
+abstract class SegmentReader {
+
+    /**
+     * size of each segment, it must be power of 2
+     */
+    protected final int segmentSize;
+
+    protected SegmentReader(int segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * start producing segments
+     */
+    abstract void start();
+
+    /**
+     * take the next filled segment, wait if it's not ready
+     *
+     * @return the next segment, or null if EOF
+     * @throws ParseException if IOException is thrown when producing segments or the parser thread is interrupted
+     */
+    abstract byte[] take() throws ParseException;
+
+    /**
+     * get the count of bytes in a segment which is taken from this reader
+     *
+     * @param segment
+     * @return count of bytes
+     */
+    abstract int length(byte[] segment);
+
+    /**
+     * give a segment back for reusing
+     *
+     * @param segment
+     */
+    abstract void recycle(byte[] segment);
+
+    /**
+     * stop producing segments, and take back segments which can be reused
+     *
+     * @return segments which can be reused
+     */
+    abstract byte[][] close();
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer/single-consumer ring of token records, all records are preallocated as parallel int arrays.
+ * Producer and consumer only read the sequence of each other when their cached copy says the ring is full or empty.
+ */
+final class TokenRing {
+
+    final static int WAIT_BUSY_SPIN = 0;
+    final static int WAIT_YIELD = 1;
+    final static int WAIT_PARK = 2;
+    /**
+     * busy spin yields after so many tries, so it will not starve the other side when they share a core
+     */
+    private final static int MAX_SPINS = 10000;
+    /**
+     * park strategy spins and yields a few times before parking, because the other side is usually fast
+     */
+    private final static int PARK_SPINS = 100;
+    private final static int PARK_YIELDS = 200;
+    /**
+     * max time of each park, it's a guard of the race between publishing and parking
+     */
+    private final static long PARK_NANOS = 50000L;
+
+    /**
+     * event, next event and flags of each token, see FastXmlParser4Pipeline.meta()
+     */
+    final int[] metas;
+    final int[] offsets;
+    final int[] lengths;
+    final int[] depths;
+    /**
+     * charset of START_DOCUMENT records, other records don't write it
+     */
+    final Charset[] charsets;
+    private final int mask;
+    private final int waitStrategy;
+
+    /**
+     * count of published records, written by producer
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * count of consumed records, written by consumer
+     */
+    private final AtomicLong head = new AtomicLong();
+    /**
+     * threads which are parked, they will be unparked by the other side
+     */
+    private volatile Thread parkedProducer;
+    private volatile Thread parkedConsumer;
+
+    // only accessed by producer
+    private long producerSequence;
+    private long cachedHead;
+    // only accessed by consumer
+    private long consumerSequence;
+    private long cachedTail;
+    /**
+     * whether records from the pinned sequence are kept for rewind(), only accessed by consumer
+     */
+    private boolean pinned;
+
+    /**
+     * @param capacity     count of records, it will be rounded up to power of 2
+     * @param waitStrategy WAIT_BUSY_SPIN, WAIT_YIELD or WAIT_PARK
+     */
+    TokenRing(int capacity, int waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.metas = new int[size];
+        this.offsets = new int[size];
+        this.lengths = new int[size];
+        this.depths = new int[size];
+        this.charsets = new Charset[size];
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * wait until there is room for a record, called by producer
+     *
+     * @param pipeline owner of this ring, waiting is stopped if its document is cancelled
+     * @return index of the record to be written, or -1 if cancelled
+     */
+    int claim(FastXmlParser4Pipeline pipeline) {
+        long wrapPoint = producerSequence - metas.length;
+        if (cachedHead <= wrapPoint) {
+            for (int count = 0; (cachedHead = head.get()) <= wrapPoint; count++) {
+                if (pipeline.isCancelled()) {
+                    return -1;
+                }
+                if (waitStrategy == WAIT_PARK && count >= PARK_YIELDS) {
+                    parkedProducer = Thread.currentThread();
+                    if (head.get() <= wrapPoint) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    parkedProducer = null;
+                } else {
+                    idle(count);
+                }
+            }
+        }
+        return (int) producerSequence & mask;
+    }
+
+    /**
+     * publish the claimed record, called by producer
+     */
+    void publish() {
+        tail.lazySet(++producerSequence);
+        Thread consumer = parkedConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * wait until a record is published, called by consumer
+     *
+     * @return index of the record to be read
+     */
+    int take() {
+        if (cachedTail <= consumerSequence) {
+            for (int count = 0; (cachedTail = tail.get()) <= consumerSequence; count++) {
+                if (waitStrategy == WAIT_PARK && count >= PARK_YIELDS) {
+                    parkedConsumer = Thread.currentThread();
+                    if (tail.get() <= consumerSequence) {
+                        LockSupport.parkNanos(this, PARK_NANOS);
+                    }
+                    parkedConsumer = null;
+                } else {
+                    idle(count);
+                }
+            }
+        }
+        return (int) consumerSequence & mask;
+    }
+
+    /**
+     * give the record back to producer after it has been read, called by consumer
+     */
+    void release() {
+        ++consumerSequence;
+        if (!pinned) {
+            head.lazySet(consumerSequence);
+            Thread producer = parkedProducer;
+            if (producer != null) {
+                LockSupport.unpark(producer);
+            }
+        }
+    }
+
+    /**
+     * keep records from the next record to be read, so they can be read again after rewind(). Producer can't publish
+     * more than capacity records after the pinned one until unpin() is called. Called by consumer
+     *
+     * @return sequence of the pinned record
+     */
+    long pin() {
+        pinned = true;
+        head.lazySet(consumerSequence); // records before it are not needed any more
+        return consumerSequence;
+    }
+
+    /**
+     * give pinned records back to producer, called by consumer
+     */
+    void unpin() {
+        if (pinned) {
+            pinned = false;
+            head.lazySet(consumerSequence);
+            Thread producer = parkedProducer;
+            if (producer != null) {
+                LockSupport.unpark(producer);
+            }
+        }
+    }
+
+    /**
+     * read records again from a pinned sequence, called by consumer
+     */
+    void rewind(long sequence) {
+        consumerSequence = sequence;
+    }
+
+    /**
+     * @return count of records which have been read, called by consumer
+     */
+    long consumed() {
+        return consumerSequence;
+    }
+
+    int capacity() {
+        return metas.length;
+    }
+
+    /**
+     * drop all published records, called by consumer when producer is idle
+     */
+    void clear() {
+        pinned = false;
+        consumerSequence = cachedTail = tail.get();
+        head.set(consumerSequence);
+    }
+
+    /**
+     * wait a moment by the wait strategy, it's used when waiting for the state of the other side
+     *
+     * @param count how many times it has waited
+     */
+    void idle(int count) {
+        if (waitStrategy == WAIT_YIELD) {
+            Thread.yield();
+        } else if (waitStrategy == WAIT_BUSY_SPIN) {
+            if (count >= MAX_SPINS) {
+                Thread.yield();
+            }
+        } else if (count >= PARK_YIELDS) {
+            LockSupport.parkNanos(this, PARK_NANOS);
+        } else if (count >= PARK_SPINS) {
+            Thread.yield();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml.binding;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.exception.ParseException;
+
+import java.nio.charset.Charset;
+
+/**
+ * Helpers called by binders generated by FastXmlBinderProcessor, and by FastXmlMapper.
+ */
+public final class BinderSupport {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+    private final static byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private final static byte[] ONE = {'1'};
+
+    private BinderSupport() {
+    }
+
+    /**
+     * @return name bytes in UTF-8, it's compared with bytes of document by isMatch()
+     */
+    public static byte[] bytes(String name) {
+        return name.getBytes(UTF_8);
+    }
+
+    /**
+     * go to the text of element from START_TAG, attributes and children of a value element are skipped
+     *
+     * @return true if parser is at TEXT, false if parser is at the end of an empty element
+     * @throws ParseException
+     */
+    public static boolean nextText(FastXmlParser parser) throws ParseException {
+        int event = parser.next();
+        while (event == FastXmlParser.ATTRIBUTE_NAME) {
+            parser.next(); // ATTRIBUTE_VALUE
+            event = parser.next();
+        }
+        while (event == FastXmlParser.START_TAG) {
+            parser.skipCurrentTag();
+            event = parser.next();
+        }
+        return event == FastXmlParser.TEXT;
+    }
+
+    /**
+     * @return current text or attribute value decoded, "" if it's empty
+     * @throws ParseException
+     */
+    public static String string(FastXmlParser parser) throws ParseException {
+        String string = parser.getStringWithDecoding();
+        return string == null ? "" : string;
+    }
+
+    /**
+     * @return true if current text or attribute value is "true" or "1"
+     */
+    public static boolean bool(FastXmlParser parser) {
+        return parser.isMatch(TRUE) || parser.isMatch(ONE);
+    }
+
+    /**
+     * @return the constant named by current text or attribute value
+     * @throws ParseException if no such constant
+     */
+    public static <E extends Enum<E>> E enumValue(FastXmlParser parser, Class<E> type) throws ParseException {
+        String name = parser.getStringWithDecoding();
+        try {
+            if (name != null) {
+                return Enum.valueOf(type, name);
+            }
+        } catch (IllegalArgumentException e) {
+            // not found
+        }
+        throw ParseException.formatError("unknown constant of " + type.getName() + ": " + name, parser);
+    }
+}
@@ -0,0 +1,520 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml.binding;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Generate binders for classes annotated by FastXmlType, see FastXmlType.
+ * Generated code only calls FastXmlParser, FastXmlWriter and BinderSupport, there is no reflection or warm-up:
+ * read() is a next() loop which dispatches names by isMatch() to an index, and a switch on the index
+ * calls getInt(), getLong(), getDouble() or getStringWithDecoding() for the field, or skipCurrentTag() for unknown elements.
+ * Nested classes are bound by static methods of their own binders, so every call site is monomorphic.
+ * <p>
+ * This processor is registered in META-INF/services, so it runs when fastxml is on the class path of javac.
+ */
+@SupportedAnnotationTypes("com.github.fastxml.binding.FastXmlType")
+public class FastXmlBinderProcessor extends AbstractProcessor {
+
+    // kinds of values
+    private final static int STRING = 0;
+    private final static int INT = 1;
+    private final static int LONG = 2;
+    private final static int SHORT = 3;
+    private final static int DOUBLE = 4;
+    private final static int FLOAT = 5;
+    private final static int BOOLEAN = 6;
+    private final static int ENUM = 7;
+    private final static int OBJECT = 8;
+
+    private final static String SUFFIX = "FastXmlBinder";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(FastXmlType.class)) {
+            if (!(element instanceof TypeElement)) {
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            try {
+                generate(type);
+            } catch (IllegalArgumentException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), element);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can't write binder: " + e, element);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return qualified name of binder of type
+     */
+    private String binderName(TypeElement type) {
+        String packageName = packageOf(type).getQualifiedName().toString();
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element e = type.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+            name.insert(0, e.getSimpleName() + "_");
+        }
+        name.append(SUFFIX);
+        return packageName.length() == 0 ? name.toString() : packageName + "." + name;
+    }
+
+    private PackageElement packageOf(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    private void generate(TypeElement type) throws IOException {
+        boolean record = type.getKind().name().equals("RECORD");
+        if (type.getKind() != ElementKind.CLASS && !record) {
+            throw new IllegalArgumentException("@FastXmlType should be on a class or a record");
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE)) {
+            throw new IllegalArgumentException("@FastXmlType class should not be private");
+        }
+        List<Property> properties = properties(type, record);
+        String binderName = binderName(type);
+        String simpleName = binderName.substring(binderName.lastIndexOf('.') + 1);
+        String typeName = type.getQualifiedName().toString();
+
+        StringBuilder out = new StringBuilder();
+        PackageElement pkg = packageOf(type);
+        if (!pkg.isUnnamed()) {
+            out.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+        }
+        out.append("import com.github.fastxml.FastXmlParser;\n");
+        out.append("import com.github.fastxml.FastXmlWriter;\n");
+        out.append("import com.github.fastxml.binding.BinderSupport;\n");
+        out.append("import com.github.fastxml.exception.ParseException;\n\n");
+        out.append("import java.io.IOException;\n\n");
+        out.append("/**\n * Generated by FastXmlBinderProcessor for ").append(typeName).append(", don't edit it.\n */\n");
+        out.append("public final class ").append(simpleName).append(" {\n\n");
+        for (int i = 0; i < properties.size(); i++) {
+            String name = properties.get(i).name;
+            out.append("    private final static byte[] NAME_").append(i).append(" = BinderSupport.bytes(\"").append(name).append("\");\n");
+            out.append("    private final static FastXmlWriter.Name TAG_").append(i).append(" = FastXmlWriter.name(\"").append(name).append("\");\n");
+        }
+        out.append("\n    private ").append(simpleName).append("() {\n    }\n\n");
+        generateRead(out, typeName, properties, record);
+        generateField(out, properties);
+        generateWrite(out, typeName, properties);
+        out.append("}\n");
+
+        Writer writer = processingEnv.getFiler().createSourceFile(binderName, type).openWriter();
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void generateRead(StringBuilder out, String typeName, List<Property> properties, boolean record) {
+        out.append("    /**\n     * bind the element at START_TAG to a new object, then the current event will be the end of the element\n     */\n");
+        out.append("    public static ").append(typeName).append(" read(FastXmlParser parser) throws ParseException {\n");
+        if (record) {
+            for (Property property : properties) {
+                out.append("        ").append(property.typeName).append(' ').append(property.readGet).append(" = ")
+                        .append(property.primitive ? (property.kind == BOOLEAN ? "false" : "0") : "null").append(";\n");
+            }
+        } else {
+            out.append("        ").append(typeName).append(" value = new ").append(typeName).append("();\n");
+        }
+        out.append("        int event = parser.next();\n");
+        out.append("        while (event == FastXmlParser.ATTRIBUTE_NAME) {\n");
+        out.append("            int field = field(parser);\n");
+        out.append("            parser.next(); // ATTRIBUTE_VALUE\n");
+        out.append("            switch (field) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            if (property.kind == OBJECT) {
+                continue;
+            }
+            out.append("                case ").append(i).append(":\n");
+            out.append("                    ").append(set(property, textValue(property))).append(";\n");
+            out.append("                    break;\n");
+        }
+        out.append("                default:\n");
+        out.append("                    break;\n");
+        out.append("            }\n");
+        out.append("            event = parser.next();\n");
+        out.append("        }\n");
+        out.append("        while (event == FastXmlParser.START_TAG) {\n");
+        out.append("            switch (field(parser)) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            out.append("                case ").append(i).append(":\n");
+            if (property.kind == OBJECT) {
+                out.append("                    ").append(set(property, property.binderName + ".read(parser)")).append(";\n");
+            } else {
+                out.append("                    if (BinderSupport.nextText(parser)) {\n");
+                out.append("                        ").append(set(property, textValue(property))).append(";\n");
+                out.append("                        parser.next(); // END_TAG\n");
+                if (property.kind == STRING) {
+                    out.append("                    } else {\n");
+                    out.append("                        ").append(set(property, "\"\"")).append(";\n");
+                }
+                out.append("                    }\n");
+            }
+            out.append("                    break;\n");
+        }
+        out.append("                default:\n");
+        out.append("                    parser.skipCurrentTag();\n");
+        out.append("            }\n");
+        out.append("            event = parser.next();\n");
+        out.append("        }\n");
+        out.append("        if (event == FastXmlParser.TEXT) { // text of an element with fields is ignored\n");
+        out.append("            parser.next();\n");
+        out.append("        }\n");
+        if (record) {
+            out.append("        return new ").append(typeName).append('(');
+            for (int i = 0; i < properties.size(); i++) {
+                out.append(i == 0 ? "" : ", ").append(properties.get(i).readGet);
+            }
+            out.append(");\n");
+        } else {
+            out.append("        return value;\n");
+        }
+        out.append("    }\n\n");
+    }
+
+    /**
+     * dispatch name of current token to the index of property
+     */
+    private void generateField(StringBuilder out, List<Property> properties) {
+        out.append("    private static int field(FastXmlParser parser) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            out.append("        if (parser.isMatch(NAME_").append(i).append(")) {\n");
+            out.append("            return ").append(i).append(";\n");
+            out.append("        }\n");
+        }
+        out.append("        return -1;\n");
+        out.append("    }\n\n");
+    }
+
+    private void generateWrite(StringBuilder out, String typeName, List<Property> properties) {
+        out.append("    public static void write(FastXmlWriter writer, String name, ").append(typeName).append(" value) throws IOException {\n");
+        out.append("        write(writer, FastXmlWriter.name(name), value);\n");
+        out.append("    }\n\n");
+        out.append("    /**\n     * write the object as an element, null fields are not written\n     */\n");
+        out.append("    public static void write(FastXmlWriter writer, FastXmlWriter.Name name, ").append(typeName).append(" value) throws IOException {\n");
+        out.append("        writer.writeStartElement(name);\n");
+        for (int pass = 0; pass < 2; pass++) { // attributes, then elements
+            for (int i = 0; i < properties.size(); i++) {
+                Property property = properties.get(i);
+                if (property.attribute != (pass == 0)) {
+                    continue;
+                }
+                String v = "v" + i;
+                out.append("        ").append(property.typeName).append(' ').append(v).append(" = ").append(property.writeGet).append(";\n");
+                String indent = "        ";
+                if (property.list) {
+                    out.append("        if (").append(v).append(" != null) {\n");
+                    out.append("            for (").append(property.elementTypeName).append(" e").append(i).append(" : ").append(v).append(") {\n");
+                    v = "e" + i;
+                    indent = "                ";
+                }
+                if (!property.primitive) {
+                    out.append(indent).append("if (").append(v).append(" != null) {\n");
+                    writeValue(out, indent + "    ", property, i, v);
+                    out.append(indent).append("}\n");
+                } else {
+                    writeValue(out, indent, property, i, v);
+                }
+                if (property.list) {
+                    out.append("            }\n");
+                    out.append("        }\n");
+                }
+            }
+        }
+        out.append("        writer.writeEndElement();\n");
+        out.append("    }\n");
+    }
+
+    private void writeValue(StringBuilder out, String indent, Property property, int i, String v) {
+        String tag = "TAG_" + i;
+        if (property.attribute) {
+            out.append(indent).append("writer.writeAttribute(").append(tag).append(", ").append(stringOrNumber(property.kind, v)).append(");\n");
+        } else if (property.kind == OBJECT) {
+            out.append(indent).append(property.binderName).append(".write(writer, ").append(tag).append(", ").append(v).append(");\n");
+        } else if (property.kind == DOUBLE || property.kind == FLOAT) {
+            out.append(indent).append("writer.writeStartElement(").append(tag).append(");\n");
+            out.append(indent).append("writer.writeText(").append(v).append(");\n");
+            out.append(indent).append("writer.writeEndElement();\n");
+        } else {
+            out.append(indent).append("writer.writeElement(").append(tag).append(", ").append(stringOrNumber(property.kind, v)).append(");\n");
+        }
+    }
+
+    /**
+     * @return expression of value as String or number for overloaded methods of writer
+     */
+    private static String stringOrNumber(int kind, String v) {
+        switch (kind) {
+            case BOOLEAN:
+                return v + " ? \"true\" : \"false\"";
+            case ENUM:
+                return v + ".name()";
+            default:
+                return v;
+        }
+    }
+
+    /**
+     * @return expression of current text or attribute value
+     */
+    private static String textValue(Property property) {
+        switch (property.kind) {
+            case STRING:
+                return "BinderSupport.string(parser)";
+            case INT:
+                return "parser.getInt()";
+            case LONG:
+                return "parser.getLong()";
+            case SHORT:
+                return "parser.getShort()";
+            case DOUBLE:
+                return "parser.getDouble()";
+            case FLOAT:
+                return "parser.getFloat()";
+            case BOOLEAN:
+                return "BinderSupport.bool(parser)";
+            default:
+                return "BinderSupport.enumValue(parser, " + property.valueTypeName + ".class)";
+        }
+    }
+
+    /**
+     * @return statement setting value to property, or adding it to the list
+     */
+    private static String set(Property property, String value) {
+        if (!property.list) {
+            return String.format(property.readSet, value);
+        }
+        String get = property.readGet;
+        return "if (" + get + " == null) {\n                        "
+                + String.format(property.readSet, "new java.util.ArrayList<" + property.elementTypeName + ">()")
+                + ";\n                    }\n                    " + get + ".add(" + value + ")";
+    }
+
+    /**
+     * collect fields of type and its super classes, a field hidden by subclass is ignored
+     */
+    private List<Property> properties(TypeElement type, boolean record) {
+        List<Property> properties = new ArrayList<Property>();
+        Set<String> names = new HashSet<String>();
+        List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(type);
+        List<ExecutableElement> methods = ElementFilter.methodsIn(members);
+        for (TypeElement t = type; t != null; t = superclass(t)) {
+            for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                String name = field.getSimpleName().toString();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT) || !names.add(name)) {
+                    continue;
+                }
+                properties.add(property(type, field, methods, record));
+            }
+        }
+        return properties;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        if (superclass.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+        String name = element.getQualifiedName().toString();
+        return name.equals("java.lang.Object") || name.equals("java.lang.Record") ? null : element;
+    }
+
+    private Property property(TypeElement type, VariableElement field, List<ExecutableElement> methods, boolean record) {
+        Property property = new Property();
+        String name = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        TypeMirror fieldType = field.asType();
+        property.name = name;
+        property.typeName = fieldType.toString();
+        property.primitive = fieldType.getKind().isPrimitive();
+        property.attribute = field.getAnnotation(FastXmlAttribute.class) != null;
+
+        TypeMirror valueType = fieldType;
+        TypeMirror listElement = listElement(fieldType);
+        if (listElement != null) {
+            property.list = true;
+            property.elementTypeName = listElement.toString();
+            valueType = listElement;
+        }
+        property.kind = kindOf(valueType, field);
+        property.valueTypeName = valueType.toString();
+        if (property.kind == OBJECT) {
+            property.binderName = binderName((TypeElement) ((DeclaredType) valueType).asElement());
+            if (property.attribute) {
+                throw new IllegalArgumentException(name + " of " + type + " can't be an attribute");
+            }
+        }
+
+        if (record) {
+            property.readGet = "f_" + name;
+            property.readSet = "f_" + name + " = %s";
+            property.writeGet = "value." + name + "()";
+        } else if (accessible(field, type)) {
+            property.readGet = "value." + name;
+            property.readSet = "value." + name + " = %s";
+            property.writeGet = property.readGet;
+        } else {
+            String getter = (fieldType.getKind() == TypeKind.BOOLEAN ? "is" : "get") + capitalized;
+            if (!hasMethod(methods, getter, 0) && !hasMethod(methods, getter = "get" + capitalized, 0)) {
+                throw new IllegalArgumentException(name + " of " + type + " is not accessible, and it has no getter");
+            }
+            if (!hasMethod(methods, "set" + capitalized, 1)) {
+                throw new IllegalArgumentException(name + " of " + type + " is not accessible, and it has no setter");
+            }
+            property.readGet = "value." + getter + "()";
+            property.readSet = "value.set" + capitalized + "(%s)";
+            property.writeGet = property.readGet;
+        }
+        return property;
+    }
+
+    /**
+     * @return true if field can be accessed by binder in the package of type
+     */
+    private boolean accessible(VariableElement field, TypeElement type) {
+        Set<Modifier> modifiers = field.getModifiers();
+        return !modifiers.contains(Modifier.PRIVATE)
+                && (modifiers.contains(Modifier.PUBLIC) || packageOf(field).equals(packageOf(type)));
+    }
+
+    private static boolean hasMethod(List<ExecutableElement> methods, String name, int parameters) {
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == parameters
+                    && !method.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return type argument if type is List, Collection or ArrayList, otherwise null
+     */
+    private TypeMirror listElement(TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        DeclaredType declared = (DeclaredType) type;
+        String name = ((TypeElement) declared.asElement()).getQualifiedName().toString();
+        if (!name.equals("java.util.List") && !name.equals("java.util.Collection") && !name.equals("java.util.ArrayList")) {
+            return null;
+        }
+        if (declared.getTypeArguments().size() != 1 || declared.getTypeArguments().get(0).getKind() != TypeKind.DECLARED) {
+            throw new IllegalArgumentException("element type of " + type + " should be a class");
+        }
+        return declared.getTypeArguments().get(0);
+    }
+
+    private int kindOf(TypeMirror type, VariableElement field) {
+        switch (type.getKind()) {
+            case INT:
+                return INT;
+            case LONG:
+                return LONG;
+            case SHORT:
+                return SHORT;
+            case DOUBLE:
+                return DOUBLE;
+            case FLOAT:
+                return FLOAT;
+            case BOOLEAN:
+                return BOOLEAN;
+            case DECLARED:
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                String name = element.getQualifiedName().toString();
+                if (name.equals("java.lang.String")) {
+                    return STRING;
+                } else if (name.equals("java.lang.Integer")) {
+                    return INT;
+                } else if (name.equals("java.lang.Long")) {
+                    return LONG;
+                } else if (name.equals("java.lang.Short")) {
+                    return SHORT;
+                } else if (name.equals("java.lang.Double")) {
+                    return DOUBLE;
+                } else if (name.equals("java.lang.Float")) {
+                    return FLOAT;
+                } else if (name.equals("java.lang.Boolean")) {
+                    return BOOLEAN;
+                } else if (element.getKind() == ElementKind.ENUM) {
+                    return ENUM;
+                } else if (element.getAnnotation(FastXmlType.class) != null) {
+                    return OBJECT;
+                }
+                throw new IllegalArgumentException(type + " of " + field + " should be annotated by @FastXmlType");
+            default:
+                throw new IllegalArgumentException("unsupported type of " + field + ": " + type);
+        }
+    }
+
+    private static class Property {
+        String name;
+        String typeName;
+        boolean primitive;
+        boolean attribute;
+        int kind;
+        /**
+         * type of value, it's type of element if property is a list
+         */
+        String valueTypeName;
+        boolean list;
+        String elementTypeName;
+        /**
+         * binder of nested class
+         */
+        String binderName;
+        /**
+         * expression to get property in read(), and statement pattern to set it
+         */
+        String readGet;
+        String readSet;
+        String writeGet;
+    }
+}
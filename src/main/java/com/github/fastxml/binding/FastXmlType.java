@@ -0,0 +1,36 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml.binding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generate a binder class for the annotated class at compile time by FastXmlBinderProcessor.
+ * The binder is named by the class with "FastXmlBinder" appended in the same package, and the names of outer classes
+ * are joined by '_', such as Order_ItemFastXmlBinder for nested class Order.Item. It has static methods:
+ * <li>read(FastXmlParser parser), bind the element at START_TAG to a new object</li>
+ * <li>write(FastXmlWriter writer, FastXmlWriter.Name name, T value), write the object as an element</li>
+ * Fields are bound by the same rules as FastXmlMapper, except that names are matched exactly.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface FastXmlType {
+}
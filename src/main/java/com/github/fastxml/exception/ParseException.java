@@ -16,8 +16,6 @@
 package com.github.fastxml.exception;
 
 import com.github.fastxml.FastXmlParser;
-import com.github.fastxml.FastXmlParser4ByteArray;
-import com.github.fastxml.FastXmlParser4InputStream;
 
 import java.io.IOException;
 
@@ -54,24 +52,9 @@ public class ParseException extends Exception {
         if (parser == null) {
             return;
         }
-        if (parser instanceof FastXmlParser4ByteArray) {
-            byte[] docBytes = parser.getDocument();
-            int length = docBytes.length;
-            row = 1;
-            int cursor = parser.getCursor();
-            int lastNewLine = 1;
-            for (int i = 0; i <= cursor; i++) {
-                if (docBytes[i] == '\n') {
-                    row++;
-                    lastNewLine = i;
-                }
-            }
-            column = cursor - lastNewLine;
-        } else {
-            FastXmlParser4InputStream parser4InputStream = (FastXmlParser4InputStream) parser;
-            row = parser4InputStream.getRow();
-            column = parser4InputStream.getColumn();
-        }
+        // location is computed on demand, only when a exception is thrown
+        row = parser.getRow();
+        column = parser.getColumn();
     }
 
     @Override
@@ -80,4 +80,39 @@ public class ByteUtils {
         return b >= 0 && b <= 122 && (byteType[b] & 2) > 0;
     }
 
+    /**
+     * count new lines('\n') in bytes
+     *
+     * @param bytes the byte array
+     * @param begin the beginning index, inclusive
+     * @param end   the ending index, exclusive
+     * @return count of new lines
+     */
+    public final static int countNewLines(final byte[] bytes, int begin, final int end) {
+        int count = 0;
+        for (; begin < end; begin++) {
+            if (bytes[begin] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * find the last new line('\n') in bytes
+     *
+     * @param bytes the byte array
+     * @param begin the beginning index, inclusive
+     * @param end   the ending index, exclusive
+     * @return index of the last new line, or -1 if not found
+     */
+    public final static int lastIndexOfNewLine(final byte[] bytes, final int begin, int end) {
+        for (end--; end >= begin; end--) {
+            if (bytes[end] == '\n') {
+                return end;
+            }
+        }
+        return -1;
+    }
+
 }
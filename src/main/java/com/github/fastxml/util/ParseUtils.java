@@ -25,6 +25,8 @@ import java.nio.charset.Charset;
  */
 public class ParseUtils {
 
+    private final static Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
     /**
      * parse bytes to string with specific encoding charset, remove "<![CDATA[" and "]]>" and replace entity reference if necessary
      *
@@ -148,6 +150,23 @@ public class ParseUtils {
     }
 
 
+    /**
+     * parse bytes which contain neither CDATA block nor entity reference to string at once
+     *
+     * @param bytes   the byte array
+     * @param begin   the beginning index, inclusive.
+     * @param length  the length of bytes need to be parsed
+     * @param ascii   true if all bytes are ASCII, then they are copied to chars without charset decoder
+     * @param charset charset of bytes which are not ASCII
+     * @return string parse from bytes. if the length of string is 0, then return null
+     */
+    public final static String parsePlainString(final byte[] bytes, final int begin, final int length, final boolean ascii, final Charset charset) {
+        if (length == 0) {
+            return null;
+        }
+        return new String(bytes, begin, length, ascii ? LATIN_1 : charset);
+    }
+
     public final static String parseStringWithDecoding(final byte[] bytes, final int begin, final int length, final Charset charset) throws ParseException {
         final String strNeedDecoding = new String(bytes, begin, length, charset);
         final char[] chars = strNeedDecoding.toCharArray();
@@ -265,6 +284,119 @@ public class ParseUtils {
     }
 
 
+    /**
+     * remove "<![CDATA[" and "]]>" and replace entity references in place, decoded bytes are moved to the beginning.
+     * Decoded bytes are never longer than the source, bytes after the decoded length are left as they were.
+     *
+     * @param bytes   the byte array
+     * @param begin   the beginning index, inclusive.
+     * @param length  the length of bytes need to be decoded
+     * @param charset charset to encode character references which are not ASCII
+     * @return length of decoded bytes
+     * @throws ParseException
+     */
+    public final static int decodeInSitu(final byte[] bytes, final int begin, final int length, final Charset charset) throws ParseException {
+        final int last = begin + length;
+        int target = begin;
+        for (int i = begin; i < last; i++) {
+            if (bytes[i] == '<' && bytes[i + 1] == '!' && bytes[i + 2] == '['
+                    && bytes[i + 3] == 'C' && bytes[i + 4] == 'D' && bytes[i + 5] == 'A'
+                    && bytes[i + 6] == 'T' && bytes[i + 7] == 'A' && bytes[i + 8] == '[') { // found CDATA block
+                for (i += 9; i < last; i++) {
+                    if (bytes[i] == ']' && bytes[i + 1] == ']' && bytes[i + 2] == '>') {
+                        break;
+                    }
+                    bytes[target++] = bytes[i];
+                }
+                if (i >= last) {
+                    throw ParseException.formatError("CDATA is not closed");
+                }
+                i += 2;
+            } else if (bytes[i] == '&') { // found entity reference
+                int end = i + 1;
+                while (end < last && bytes[end] != ';') {
+                    end++;
+                }
+                if (end >= last) {
+                    throw ParseException.entityError("Errors in Entity: should be end with ';'");
+                }
+                int codePoint = parseEntityReference(bytes, i + 1, end);
+                if (codePoint < 0x80) {
+                    bytes[target++] = (byte) codePoint;
+                } else {
+                    byte[] encoded = new String(Character.toChars(codePoint)).getBytes(charset);
+                    if (encoded.length > end + 1 - i) {
+                        throw ParseException.entityError("Errors in char reference: can't be decoded in place");
+                    }
+                    System.arraycopy(encoded, 0, bytes, target, encoded.length);
+                    target += encoded.length;
+                }
+                i = end;
+            } else {
+                bytes[target++] = bytes[i];
+            }
+        }
+        return target - begin;
+    }
+
+    /**
+     * @param bytes the byte array
+     * @param begin index after '&amp;'
+     * @param end   index of ';'
+     * @return code point of entity reference
+     * @throws ParseException
+     */
+    private final static int parseEntityReference(final byte[] bytes, int begin, final int end) throws ParseException {
+        int length = end - begin;
+        if (length > 1 && bytes[begin] == '#') {
+            int val = 0;
+            if (bytes[begin + 1] == 'x') { // Hexadecimal reference
+                if (length == 2) {
+                    throw ParseException.entityError("Errors in Entity: Illegal char following &#x");
+                }
+                for (begin += 2; begin < end; begin++) {
+                    byte b = bytes[begin];
+                    if (b >= '0' && b <= '9') {
+                        val = (val << 4) + (b - '0');
+                    } else if (b >= 'a' && b <= 'f') {
+                        val = (val << 4) + (b - 'a' + 10);
+                    } else if (b >= 'A' && b <= 'F') {
+                        val = (val << 4) + (b - 'A' + 10);
+                    } else {
+                        throw ParseException.entityError("Errors in Entity: Illegal char following &#x");
+                    }
+                    if (val > Character.MAX_CODE_POINT) {
+                        throw ParseException.entityError("Errors in char reference: out of range");
+                    }
+                }
+            } else { // Numeric reference
+                for (begin++; begin < end; begin++) {
+                    byte b = bytes[begin];
+                    if (b >= '0' && b <= '9') {
+                        val = val * 10 + (b - '0');
+                    } else {
+                        throw ParseException.entityError("Errors in char reference: Illegal char following &#");
+                    }
+                    if (val > Character.MAX_CODE_POINT) {
+                        throw ParseException.entityError("Errors in char reference: out of range");
+                    }
+                }
+            }
+            return val;
+        } else if (length == 3 && bytes[begin] == 'a' && bytes[begin + 1] == 'm' && bytes[begin + 2] == 'p') { // &amp; --> &
+            return '&';
+        } else if (length == 4 && bytes[begin] == 'a' && bytes[begin + 1] == 'p' && bytes[begin + 2] == 'o' && bytes[begin + 3] == 's') { // &apos; --> '
+            return '\'';
+        } else if (length == 4 && bytes[begin] == 'q' && bytes[begin + 1] == 'u' && bytes[begin + 2] == 'o' && bytes[begin + 3] == 't') { // &quot; --> "
+            return '"';
+        } else if (length == 2 && bytes[begin] == 'l' && bytes[begin + 1] == 't') { // &lt; --> <
+            return '<';
+        } else if (length == 2 && bytes[begin] == 'g' && bytes[begin + 1] == 't') { // &gt; --> >
+            return '>';
+        }
+        throw ParseException.entityError("Errors in Entity: Illegal entity char");
+    }
+
     /**
      * parse bytes to integer
      *
@@ -407,6 +539,27 @@ public class ParseUtils {
         }
     }
 
+    /**
+     * check that bytes are the same as expected bytes, such as a name recorded by FastXmlParser.nextBatch()
+     *
+     * @param bytes       the byte array
+     * @param begin       the beginning index, inclusive.
+     * @param length      the length of bytes need to be checked
+     * @param expectBytes expected bytes
+     * @return true if they are the same
+     */
+    public final static boolean isMatch(final byte[] bytes, final int begin, final int length, final byte[] expectBytes) {
+        if (length != expectBytes.length) {
+            return false;
+        }
+        for (int i = begin, j = 0; j < length; i++, j++) {
+            if (bytes[i] != expectBytes[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * parse byte to char one by one
      *
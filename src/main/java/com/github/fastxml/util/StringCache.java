@@ -0,0 +1,223 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.fastxml.util;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded cache of strings built from bytes, so values repeated in documents, such as codes or status,
+ * are returned as the same string instead of a new copy each time. Bytes are looked up by hash and compared
+ * without building a string.
+ * <p>
+ * Entries are grouped into sets of 4 by hash, and an entry of the set is evicted by clock algorithm when a new one is added:
+ * an entry which has been hit since the hand passed it is skipped once. It's lock-free, so one cache can be shared
+ * by parsers on different threads; an entry may be lost when two threads add to the same set at the same time,
+ * which only costs a miss later. Hits and misses are counted in stripes chosen by thread, and summed on demand,
+ * so lookups on different threads seldom write the same counter, however many threads use the cache.
+ */
+public final class StringCache {
+
+    public final static int DEFAULT_CAPACITY = 4096;
+    public final static int DEFAULT_MAX_LENGTH = 32;
+
+    private final static int WAYS = 4; // entries of a set
+    /**
+     * count of counter stripes, power of 2 not less than 2 times of processors
+     */
+    private final static int COUNTER_STRIPES = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors() * 4 - 1, 1));
+    private final static int COUNTER_PADDING = 8; // stripes of counters are in different cache lines
+    private final static Charset LATIN_1 = Charset.forName("ISO-8859-1");
+
+    private final AtomicReferenceArray<Entry> entries;
+    /**
+     * clock hand of each set, it's only a hint, so updates are not synchronized
+     */
+    private final int[] hands;
+    private final int setMask;
+    private final int maxLength;
+    /**
+     * hits and misses of each stripe
+     */
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_STRIPES * COUNTER_PADDING);
+
+    private static class Entry {
+        final int hash;
+        final byte[] bytes;
+        final Charset charset;
+        final String value;
+        /**
+         * set when the entry is hit, and cleared when the clock hand passes it. It's only a hint, so it's not volatile
+         */
+        boolean referenced;
+
+        Entry(int hash, byte[] bytes, Charset charset, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.charset = charset;
+            this.value = value;
+        }
+
+        boolean matches(int hash, byte[] bytes, int begin, int length, Charset charset) {
+            if (this.hash != hash || this.bytes.length != length
+                    || (this.charset != charset && (charset == null || !charset.equals(this.charset)))) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.bytes[i] != bytes[begin + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public StringCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param capacity  max count of strings, it's rounded up to power of 2
+     * @param maxLength strings built from more bytes than it are not cached
+     */
+    public StringCache(int capacity, int maxLength) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity should be positive: " + capacity);
+        }
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("max length should be positive: " + maxLength);
+        }
+        int size = WAYS;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new AtomicReferenceArray<Entry>(size);
+        this.hands = new int[size / WAYS];
+        this.setMask = size / WAYS - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * get the string of bytes from cache, or build it and add it to cache
+     *
+     * @param bytes   the byte array
+     * @param begin   the beginning index, inclusive.
+     * @param length  the length of bytes, they should contain neither CDATA block nor entity reference
+     * @param charset charset to decode bytes, null if all bytes are ASCII
+     * @return string of bytes. if the length of bytes is 0, then return null
+     */
+    public String get(final byte[] bytes, final int begin, final int length, final Charset charset) {
+        if (length == 0) {
+            return null;
+        } else if (length > maxLength) {
+            return new String(bytes, begin, length, charset == null ? LATIN_1 : charset);
+        }
+        int hash = 0;
+        for (int i = begin, last = begin + length; i < last; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        int set = (hash ^ (hash >>> 16)) & setMask;
+        int base = set * WAYS;
+        for (int way = 0; way < WAYS; way++) {
+            Entry entry = entries.get(base + way);
+            if (entry != null && entry.matches(hash, bytes, begin, length, charset)) {
+                if (!entry.referenced) { // don't write shared memory on every hit
+                    entry.referenced = true;
+                }
+                counters.getAndIncrement(stripe());
+                return entry.value;
+            }
+        }
+        counters.getAndIncrement(stripe() + 1);
+        byte[] key = new byte[length];
+        System.arraycopy(bytes, begin, key, 0, length);
+        String value = new String(key, 0, length, charset == null ? LATIN_1 : charset);
+        add(set, new Entry(hash, key, charset, value));
+        return value;
+    }
+
+    /**
+     * add an entry to an empty or unreferenced slot found by clock hand, referenced entries are cleared as the hand passes,
+     * so a slot is found in two rounds. If another thread changes the slot first, the entry is dropped
+     */
+    private void add(int set, Entry entry) {
+        int base = set * WAYS;
+        int hand = hands[set];
+        for (int i = 0; i < WAYS * 2; i++) {
+            int index = base + hand;
+            hand = (hand + 1) & (WAYS - 1);
+            Entry old = entries.get(index);
+            if (old == null || !old.referenced) {
+                entries.compareAndSet(index, old, entry);
+                break;
+            }
+            old.referenced = false;
+        }
+        hands[set] = hand;
+    }
+
+    /**
+     * @return count of lookups which found the string in cache
+     */
+    public long getHits() {
+        return sum(0);
+    }
+
+    /**
+     * @return count of lookups which built a new string, bytes longer than max length are not counted
+     */
+    public long getMisses() {
+        return sum(1);
+    }
+
+    private long sum(int offset) {
+        long sum = 0;
+        for (int i = 0; i < COUNTER_STRIPES; i++) {
+            sum += counters.get(i * COUNTER_PADDING + offset);
+        }
+        return sum;
+    }
+
+    /**
+     * @return index of hits in the stripe of current thread, ids of threads are spread by golden ratio,
+     * so threads created one after another, such as workers of a pool, are in different stripes
+     */
+    private static int stripe() {
+        int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return ((hash >>> 16) & (COUNTER_STRIPES - 1)) * COUNTER_PADDING;
+    }
+
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * remove all strings and reset counters
+     */
+    public void clear() {
+        for (int i = 0; i < entries.length(); i++) {
+            entries.set(i, null);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlBatchParser;
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.exception.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * scalability of FastXmlBatchParser: parse small documents with 1, 2, 4 ... 64 threads, and on virtual threads if JVM supports them.
+ * Throughput should grow with threads until all cores are busy.
+ * It's not a unit test, run it by main method.
+ */
+public class BatchParserBenchmark {
+
+    private final static FastXmlBatchParser.DocumentHandler<Long> HANDLER = new FastXmlBatchParser.DocumentHandler<Long>() {
+        public Long handle(FastXmlParser parser) throws ParseException {
+            long checksum = 0;
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.TEXT) {
+                    checksum += parser.getString().length();
+                }
+            }
+            return checksum;
+        }
+    };
+
+    private final static FastXmlBatchParser.ResultListener<Long> LISTENER = new FastXmlBatchParser.ResultListener<Long>() {
+        public void onResult(long index, Long result) {
+        }
+
+        public void onError(long index, Exception e) {
+            throw new IllegalStateException(e);
+        }
+    };
+
+    public static void main(String[] args) throws InterruptedException {
+        List<byte[]> documents = new ArrayList<byte[]>();
+        for (int i = 0; i < 100000; i++) {
+            StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<message id=\"").append(i).append("\">");
+            for (int j = 0; j < 20 + i % 40; j++) { // 1-4KB
+                sb.append("<field name=\"f").append(j).append("\">value ").append(i * j).append("</field>");
+            }
+            documents.add(sb.append("</message>").toString().getBytes());
+        }
+        System.out.println("cores: " + Runtime.getRuntime().availableProcessors());
+        for (int round = 0; round < 2; round++) {
+            for (int threads = 1; threads <= 64; threads <<= 1) {
+                for (boolean ordered : new boolean[]{false, true}) {
+                    FastXmlBatchParser batchParser = new FastXmlBatchParser(threads, FastXmlBatchParser.DEFAULT_MAX_IN_FLIGHT_BYTES, ordered, null);
+                    FastXmlBatchParser.Stats stats = batchParser.parse(documents.iterator(), HANDLER, LISTENER);
+                    batchParser.close();
+                    System.out.printf("threads: %2d, ordered: %5s, %s%n", threads, ordered, stats);
+                }
+            }
+            ThreadFactory virtualThreadFactory = FastXmlBatchParser.virtualThreadFactory();
+            if (virtualThreadFactory != null) {
+                FastXmlBatchParser batchParser = new FastXmlBatchParser(virtualThreadFactory, FastXmlBatchParser.DEFAULT_MAX_IN_FLIGHT_BYTES, false, null);
+                System.out.printf("virtual threads, %s%n", batchParser.parse(documents.iterator(), HANDLER, LISTENER));
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlColumnExtractor;
+import com.github.fastxml.FastXmlMapper;
+
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * fill columns from the same document by binding objects then transposing them, by FastXmlColumnExtractor,
+ * and by FastXmlColumnExtractor with a thread per core.
+ * It's not a unit test, run it by main method.
+ */
+public class ColumnExtractorBenchmark {
+
+    private final static int RECORDS = 1000000;
+    private final static int BATCH_SIZE = 4096;
+
+    public static class Rows {
+        List<Row> row;
+    }
+
+    public static class Row {
+        int id;
+        String city;
+        double price;
+        long count;
+    }
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<row id=\"").append(i).append("\"><city>city ").append(i % 100).append("</city><price>")
+                    .append(i * 0.25).append("</price><count>").append(i * 1000L).append("</count></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+        FastXmlMapper mapper = new FastXmlMapper();
+        FastXmlColumnExtractor extractor = new FastXmlColumnExtractor("/rows/row")
+                .addColumn("@id", FastXmlColumnExtractor.INT)
+                .addColumn("city", FastXmlColumnExtractor.STRING)
+                .addColumn("price", FastXmlColumnExtractor.DOUBLE)
+                .addColumn("count", FastXmlColumnExtractor.LONG)
+                .setBatchSize(BATCH_SIZE);
+        final AtomicLong checksum = new AtomicLong();
+        FastXmlColumnExtractor.BatchHandler handler = new FastXmlColumnExtractor.BatchHandler() {
+            public void onBatch(FastXmlColumnExtractor.Batch batch) {
+                long sum = 0;
+                long[] counts = batch.getLongs(3);
+                for (int row = 0; row < batch.getSize(); row++) {
+                    sum += counts[row];
+                }
+                checksum.addAndGet(sum);
+            }
+        };
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int round = 0; round < 10; round++) {
+            long begin = System.nanoTime();
+            long transposed = transpose(mapper.read(doc, Rows.class));
+            long transposeTime = System.nanoTime() - begin;
+
+            checksum.set(0);
+            begin = System.nanoTime();
+            extractor.extract(doc, handler);
+            long serialTime = System.nanoTime() - begin;
+            long serialChecksum = checksum.get();
+
+            checksum.set(0);
+            begin = System.nanoTime();
+            extractor.extract(doc, threads, handler);
+            long parallelTime = System.nanoTime() - begin;
+            System.out.printf("bind and transpose: %6.1f ms(%d), extract: %6.1f ms(%d), extract by %d threads: %6.1f ms(%d)%n",
+                    transposeTime / 1e6, transposed, serialTime / 1e6, serialChecksum, threads, parallelTime / 1e6, checksum.get());
+        }
+    }
+
+    /**
+     * copy objects into column arrays of batch size like what a columnar engine loads
+     *
+     * @return checksum of count column
+     */
+    private static long transpose(Rows rows) {
+        int[] ids = new int[BATCH_SIZE];
+        int[] cities = new int[BATCH_SIZE];
+        double[] prices = new double[BATCH_SIZE];
+        long[] counts = new long[BATCH_SIZE];
+        Map<String, Integer> dictionary = new HashMap<String, Integer>();
+        long sum = 0;
+        int size = 0;
+        for (Row row : rows.row) {
+            ids[size] = row.id;
+            Integer code = dictionary.get(row.city);
+            if (code == null) {
+                dictionary.put(row.city, code = dictionary.size());
+            }
+            cities[size] = code;
+            prices[size] = row.price;
+            counts[size] = row.count;
+            sum += row.count;
+            if (++size == BATCH_SIZE) {
+                size = 0;
+                dictionary.clear();
+            }
+        }
+        return sum;
+    }
+}
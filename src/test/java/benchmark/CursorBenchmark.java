@@ -0,0 +1,86 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.exception.ParseException;
+
+import java.nio.charset.Charset;
+
+/**
+ * read two children of every record by a hand-written next() loop, and by seekChild() and readIntChild() etc.
+ * It's not a unit test, run it by main method.
+ */
+public class CursorBenchmark {
+
+    private final static int RECORDS = 200000;
+    private final static byte[] ROW = "row".getBytes();
+    private final static byte[] ID = "id".getBytes();
+    private final static byte[] NAME = "name".getBytes();
+
+    public static void main(String[] args) throws ParseException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<row type=\"a\" version=\"1\"><id>").append(i).append("</id><audit by=\"x\"><created>2016-09-21</created>")
+                    .append("<modified>2016-09-21</modified><history><entry>1</entry><entry>2</entry></history></audit><name>name ")
+                    .append(i).append("</name><note>note</note></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        for (int round = 0; round < 10; round++) {
+            long begin = System.nanoTime();
+            parser.setInput(doc, null);
+            long loopChecksum = readByLoop(parser);
+            long loopTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(doc, null);
+            long cursorChecksum = readByCursor(parser);
+            System.out.printf("next() loop: %6.1f ms(%d), cursor: %6.1f ms(%d)%n",
+                    loopTime / 1e6, loopChecksum, (System.nanoTime() - begin) / 1e6, cursorChecksum);
+        }
+    }
+
+    private static long readByLoop(FastXmlParser parser) throws ParseException {
+        long checksum = 0;
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            if (event == FastXmlParser.START_TAG && parser.getDepth() == 3) {
+                if (parser.isMatch(ID)) {
+                    parser.next();
+                    checksum += parser.getInt();
+                } else if (parser.isMatch(NAME)) {
+                    parser.next();
+                    checksum += parser.getStringWithDecoding().length();
+                } else {
+                    parser.skipCurrentTag();
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static long readByCursor(FastXmlParser parser) throws ParseException {
+        long checksum = 0;
+        parser.nextStartTag();
+        while (parser.seekChild(ROW)) {
+            checksum += parser.readIntChild(ID, 0);
+            checksum += parser.readStringChild(NAME).length();
+            parser.seekChild(ROW); // skip the rest of row
+        }
+        return checksum;
+    }
+}
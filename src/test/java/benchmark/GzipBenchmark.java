@@ -0,0 +1,117 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlFactory;
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.exception.ParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * parse gzip input by GZIPInputStream on parser thread, by pipelined inflater thread, and parse BGZF input by parallel inflaters.
+ * It's not a unit test, run it by main method.
+ */
+public class GzipBenchmark {
+
+    public static void main(String[] args) throws IOException, ParseException {
+        StringBuilder sb = new StringBuilder("<root>\n");
+        for (int i = 0; i < 300000; i++) {
+            sb.append("  <item id=\"").append(i).append("\" type=\"t").append(i % 7).append("\"><name>item")
+                    .append(i).append("</name><price>").append(i * 13 % 1000).append(".5</price></item>\n");
+        }
+        sb.append("</root>");
+        byte[] doc = sb.toString().getBytes();
+        byte[] gzip = gzip(doc);
+        byte[] bgzf = bgzf(doc);
+        System.out.printf("xml: %d bytes, gzip: %d bytes, bgzf: %d bytes%n", doc.length, gzip.length, bgzf.length);
+
+        for (int i = 0; i < 5; i++) {
+            long begin = System.nanoTime();
+            int count = consume(FastXmlFactory.newInstance(new GZIPInputStream(new ByteArrayInputStream(gzip), 8192)));
+            long syncTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            consume(FastXmlFactory.newGzipInstance(new ByteArrayInputStream(gzip)));
+            long pipelineTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            consume(FastXmlFactory.newGzipInstance(new ByteArrayInputStream(bgzf)));
+            long parallelTime = System.nanoTime() - begin;
+            System.out.printf("events: %d, sync: %6.1f ms, pipeline: %6.1f ms, parallel bgzf: %6.1f ms%n",
+                    count, syncTime / 1e6, pipelineTime / 1e6, parallelTime / 1e6);
+        }
+    }
+
+    private static int consume(FastXmlParser parser) throws ParseException {
+        int count = 0;
+        while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            count++;
+        }
+        return count;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        gzip.write(bytes);
+        gzip.close();
+        return out.toByteArray();
+    }
+
+    /**
+     * compress bytes to BGZF members, ended with an empty member as EOF marker
+     */
+    private static byte[] bgzf(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[70000];
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        for (int offset = 0; offset <= bytes.length; offset += 65280) {
+            int length = Math.min(65280, bytes.length - offset);
+            deflater.reset();
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            int compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(buffer, compressed, buffer.length - compressed);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(bytes, offset, length);
+            int blockSize = 18 + compressed + 8;
+            out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+                    (byte) (blockSize - 1), (byte) ((blockSize - 1) >> 8)}, 0, 18);
+            out.write(buffer, 0, compressed);
+            int[] trailer = {(int) crc.getValue(), length};
+            for (int value : trailer) {
+                out.write(value);
+                out.write(value >> 8);
+                out.write(value >> 16);
+                out.write(value >> 24);
+            }
+            if (length == 0) {
+                break;
+            }
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.exception.ParseException;
+
+import java.nio.charset.Charset;
+
+/**
+ * read every text and attribute value as string, decoded by copying and decoded in place by in-situ option.
+ * The document is copied before each traversal, because in-situ option modifies it.
+ * It's not a unit test, run it by main method.
+ */
+public class InSituBenchmark {
+
+    private final static int RECORDS = 200000;
+
+    public static void main(String[] args) throws ParseException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<row id=\"").append(i).append("\" owner=\"tom &amp; jerry\"><name>name ").append(i)
+                    .append("</name><note>a &lt; b &amp;&amp; c &gt; d, 汤姆 &#x6C64;&#22982;</note><code><![CDATA[if (a < b) {}]]></code></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+        String[] names = {"copy", "in situ"};
+        FastXmlParser.Options[] options = {null, new FastXmlParser.Options().setInSitu(true)};
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        for (int round = 0; round < 10; round++) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < options.length; i++) {
+                byte[] bytes = doc.clone();
+                parser.setOptions(options[i]);
+                long begin = System.nanoTime();
+                parser.setInput(bytes, null);
+                long length = 0;
+                for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                    if (event == FastXmlParser.TEXT || event == FastXmlParser.ATTRIBUTE_VALUE) {
+                        length += parser.getStringWithDecoding().length();
+                    }
+                }
+                line.append(String.format("%s: %6.1f ms(%d chars)  ", names[i], (System.nanoTime() - begin) / 1e6, length));
+            }
+            System.out.println(line);
+        }
+    }
+}
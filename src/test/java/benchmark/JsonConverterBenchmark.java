@@ -0,0 +1,115 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlJsonConverter;
+import com.github.fastxml.FastXmlParser4InputStream;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * convert the same document into JSON by FastXmlJsonConverter, and by DOM of JDK with a simple serializer.
+ * It's not a unit test, run it by main method.
+ */
+public class JsonConverterBenchmark {
+
+    private final static int RECORDS = 100000;
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<item id=\"").append(i).append("\"><name>item &amp; ").append(i)
+                    .append("</name><price>").append(i * 0.25).append("</price></item>");
+        }
+        byte[] doc = sb.append("</root>").toString().getBytes(Charset.forName("utf-8"));
+        FastXmlJsonConverter converter = new FastXmlJsonConverter();
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(doc.length * 2);
+
+        for (int round = 0; round < 10; round++) {
+            out.reset();
+            long begin = System.nanoTime();
+            converter.convert(doc);
+            long arrayTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(new ByteArrayInputStream(doc));
+            converter.convert(parser, out);
+            long streamTime = System.nanoTime() - begin;
+            int size = out.size();
+
+            begin = System.nanoTime();
+            Document document = builder.parse(new ByteArrayInputStream(doc));
+            StringBuilder json = new StringBuilder();
+            json.append("{\"root\":");
+            serialize(document.getDocumentElement(), json);
+            byte[] domJson = json.append('}').toString().getBytes("utf-8");
+            long domTime = System.nanoTime() - begin;
+            System.out.printf("byte array: %6.1f ms, input stream: %6.1f ms(%d bytes), dom: %6.1f ms(%d bytes)%n",
+                    arrayTime / 1e6, streamTime / 1e6, size, domTime / 1e6, domJson.length);
+        }
+    }
+
+    /**
+     * a simple serializer without escaping, repeated children are always arrays
+     */
+    private static void serialize(Element element, StringBuilder json) {
+        NamedNodeMap attributes = element.getAttributes();
+        Node child = element.getFirstChild();
+        if (attributes.getLength() == 0 && (child == null || child.getNodeType() == Node.TEXT_NODE)) {
+            json.append('"').append(element.getTextContent()).append('"');
+            return;
+        }
+        json.append('{');
+        String separator = "";
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            json.append(separator).append("\"@").append(attribute.getNodeName()).append("\":\"").append(attribute.getNodeValue()).append('"');
+            separator = ",";
+        }
+        String lastName = null;
+        for (; child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            String name = child.getNodeName();
+            if (name.equals(lastName)) {
+                json.append(',');
+            } else {
+                if (lastName != null) {
+                    json.append(']');
+                }
+                json.append(separator).append('"').append(name).append("\":[");
+                lastName = name;
+            }
+            serialize((Element) child, json);
+            separator = ",";
+        }
+        if (lastName != null) {
+            json.append(']');
+        }
+        json.append('}');
+    }
+}
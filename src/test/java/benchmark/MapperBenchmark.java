@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlMapper;
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.binding.FastXmlAttribute;
+import com.github.fastxml.binding.FastXmlType;
+import com.github.fastxml.exception.ParseException;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * bind the same document by FastXmlMapper, by the binder generated for @FastXmlType and by a hand-written loop.
+ * It's not a unit test, run it by main method.
+ */
+public class MapperBenchmark {
+
+    private final static int RECORDS = 200000;
+    private final static byte[] ITEM = "item".getBytes();
+    private final static byte[] ID = "id".getBytes();
+    private final static byte[] NAME = "name".getBytes();
+    private final static byte[] PRICE = "price".getBytes();
+    private final static byte[] COUNT = "count".getBytes();
+
+    @FastXmlType
+    public static class Items {
+        List<Item> item;
+    }
+
+    @FastXmlType
+    public static class Item {
+        @FastXmlAttribute
+        int id;
+        String name;
+        double price;
+        long count;
+    }
+
+    public static void main(String[] args) throws ParseException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><items>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<item id=\"").append(i).append("\"><name>item &amp; ").append(i).append("</name><price>")
+                    .append(i * 0.25).append("</price><count>").append(i * 1000L).append("</count></item>");
+        }
+        byte[] doc = sb.append("</items>").toString().getBytes(Charset.forName("utf-8"));
+        FastXmlMapper mapper = new FastXmlMapper();
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+
+        for (int round = 0; round < 10; round++) {
+            long begin = System.nanoTime();
+            Items items = mapper.read(doc, Items.class);
+            long mapperTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(doc, null);
+            parser.next(); // START_DOCUMENT
+            parser.next(); // START_TAG
+            Items generated = MapperBenchmark_ItemsFastXmlBinder.read(parser);
+            long generatedTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(doc, null);
+            List<Item> list = handWritten(parser);
+            long handTime = System.nanoTime() - begin;
+            System.out.printf("mapper: %6.1f ms(%d items), generated: %6.1f ms(%d items), hand-written: %6.1f ms(%d items)%n",
+                    mapperTime / 1e6, items.item.size(), generatedTime / 1e6, generated.item.size(), handTime / 1e6, list.size());
+        }
+    }
+
+    static List<Item> handWritten(FastXmlParser parser) throws ParseException {
+        List<Item> list = new ArrayList<Item>();
+        Item item = null;
+        int event;
+        while ((event = parser.next()) != FastXmlParser.END_DOCUMENT) {
+            if (event == FastXmlParser.START_TAG) {
+                if (parser.isMatch(ITEM)) {
+                    item = new Item();
+                    list.add(item);
+                } else if (parser.isMatch(NAME)) {
+                    parser.next();
+                    item.name = parser.getStringWithDecoding();
+                } else if (parser.isMatch(PRICE)) {
+                    parser.next();
+                    item.price = parser.getDouble();
+                } else if (parser.isMatch(COUNT)) {
+                    parser.next();
+                    item.count = parser.getLong();
+                }
+            } else if (event == FastXmlParser.ATTRIBUTE_NAME && parser.isMatch(ID)) {
+                parser.next();
+                item.id = parser.getInt();
+            }
+        }
+        return list;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ParseUtils;
+
+import java.nio.charset.Charset;
+
+/**
+ * sum lengths of all tokens and values of "id" attributes by next() with getters, and by records of nextBatch().
+ * It's not a unit test, run it by main method.
+ */
+public class NextBatchBenchmark {
+
+    private final static int RECORDS = 200000;
+    private final static int BATCH = 1024;
+    private final static byte[] ID = "id".getBytes();
+
+    public static void main(String[] args) throws ParseException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<row id=\"").append(i).append("\" type=\"t\"><name>name ").append(i)
+                    .append("</name><price>").append(i * 0.5).append("</price><empty/></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        int[] events = new int[BATCH];
+        int[] offsets = new int[BATCH];
+        int[] lengths = new int[BATCH];
+        int[] depths = new int[BATCH];
+        for (int round = 0; round < 10; round++) {
+            long begin = System.nanoTime();
+            parser.setInput(doc, null);
+            long nextChecksum = 0;
+            boolean id = false;
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                nextChecksum += parser.getRawBytes().length + parser.getDepth();
+                if (event == FastXmlParser.ATTRIBUTE_NAME) {
+                    id = parser.isMatch(ID);
+                } else if (event == FastXmlParser.ATTRIBUTE_VALUE && id) {
+                    nextChecksum += parser.getInt();
+                }
+            }
+            long nextTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(doc, null);
+            long batchChecksum = 0;
+            id = false;
+            int count;
+            while ((count = parser.nextBatch(events, offsets, lengths, depths, BATCH)) > 0) {
+                byte[] bytes = parser.getBatchBytes();
+                for (int i = 0; i < count; i++) {
+                    batchChecksum += lengths[i] + depths[i];
+                }
+                for (int i = 0; i < count; i++) {
+                    if (events[i] == FastXmlParser.ATTRIBUTE_NAME) {
+                        id = ParseUtils.isMatch(bytes, offsets[i], lengths[i], ID);
+                    } else if (events[i] == FastXmlParser.ATTRIBUTE_VALUE && id) {
+                        batchChecksum += ParseUtils.parseInt(bytes, offsets[i], lengths[i]);
+                    }
+                }
+                if (events[count - 1] == FastXmlParser.END_DOCUMENT) {
+                    batchChecksum -= depths[count - 1] + lengths[count - 1];
+                }
+            }
+            System.out.printf("next(): %6.1f ms(%d), nextBatch(): %6.1f ms(%d)%n",
+                    nextTime / 1e6, nextChecksum, (System.nanoTime() - begin) / 1e6, batchChecksum);
+        }
+    }
+}
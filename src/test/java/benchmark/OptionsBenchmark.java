@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.exception.ParseException;
+
+import java.nio.charset.Charset;
+
+/**
+ * traverse the same document with all events, and with attributes, text or deep elements suppressed by options.
+ * It's not a unit test, run it by main method.
+ */
+public class OptionsBenchmark {
+
+    private final static int RECORDS = 200000;
+
+    public static void main(String[] args) throws ParseException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<row id=\"").append(i).append("\" type=\"t").append(i % 7).append("\" created=\"2016-09-21\" owner=\"user")
+                    .append(i % 100).append("\" version=\"3\" flags=\"a b c\"><name>name ").append(i)
+                    .append("</name><detail><note lang=\"en\">some text of note &amp; more</note><size>").append(i * 3)
+                    .append("</size></detail></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+        String[] names = {"all events", "skip attributes", "skip text", "max depth 2", "all options"};
+        FastXmlParser.Options[] options = {
+                null,
+                new FastXmlParser.Options().setSkipAttributes(true),
+                new FastXmlParser.Options().setSkipText(true),
+                new FastXmlParser.Options().setMaxDepth(2),
+                new FastXmlParser.Options().setSkipAttributes(true).setSkipText(true).setMaxDepth(2)
+        };
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        for (int round = 0; round < 10; round++) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < options.length; i++) {
+                parser.setOptions(options[i]);
+                long begin = System.nanoTime();
+                parser.setInput(doc, null);
+                int events = 0;
+                while (parser.next() != FastXmlParser.END_DOCUMENT) {
+                    events++;
+                }
+                line.append(String.format("%s: %6.1f ms(%d events)  ", names[i], (System.nanoTime() - begin) / 1e6, events));
+            }
+            System.out.println(line);
+        }
+    }
+}
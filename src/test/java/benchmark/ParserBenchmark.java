@@ -0,0 +1,143 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.FastXmlParser4InputStream;
+import com.github.fastxml.exception.ParseException;
+import util.FileLoaderUtils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+
+/**
+ * compare the throughput of FastXmlParser4ByteArray and FastXmlParser4InputStream on the same bytes.
+ * Each parser is measured in its own JVMs, so the JIT profile of one parser doesn't slow down the other,
+ * and every JVM warms up before its measured iterations. The median of iterations and forks is reported.
+ * Usage: ParserBenchmark [forks], or ParserBenchmark array|stream to measure one parser in this JVM.
+ * It's not a unit test, run it by main method.
+ */
+public class ParserBenchmark {
+
+    private final static String[] FILE_NAMES = {"bioinfo.xml", "book.xml", "form.xml", "nav.xml", "order.xml", "soap.xml"};
+    private final static int ROUNDS = 500; // rounds of all files in an iteration
+    private final static int WARMUP_ITERATIONS = 10;
+    private final static int ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && ("array".equals(args[0]) || "stream".equals(args[0]))) {
+            double[] speeds = measure("array".equals(args[0]));
+            System.out.printf("%s %.1f %.1f %.1f%n", args[0], median(speeds), speeds[0], speeds[speeds.length - 1]);
+            return;
+        }
+        int forks = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        double array = fork("array", forks);
+        double stream = fork("stream", forks);
+        System.out.printf("byte array  : %8.1f MB/s%n", array);
+        System.out.printf("input stream: %8.1f MB/s%n", stream);
+        System.out.printf("array/stream: %8.2f%n", array / stream);
+    }
+
+    /**
+     * run a parser in new JVMs, and print the result of each JVM
+     *
+     * @return median throughput of JVMs in MB/s
+     */
+    private static double fork(String parser, int forks) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        double[] speeds = new double[forks];
+        for (int i = 0; i < forks; i++) {
+            Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    ParserBenchmark.class.getName(), parser).redirectErrorStream(true).start();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            String line;
+            String result = null;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(parser + " ")) {
+                    result = line;
+                } else {
+                    System.out.println(line);
+                }
+            }
+            if (process.waitFor() != 0 || result == null) {
+                throw new IllegalStateException("fork of " + parser + " failed");
+            }
+            String[] fields = result.split(" ");
+            speeds[i] = Double.parseDouble(fields[1]);
+            System.out.printf("%-6s fork %d: median %s MB/s, min %s, max %s%n", parser, i + 1, fields[1], fields[2], fields[3]);
+        }
+        Arrays.sort(speeds);
+        return median(speeds);
+    }
+
+    /**
+     * @return sorted throughput of measured iterations in MB/s
+     */
+    private static double[] measure(boolean byteArray) throws IOException, ParseException {
+        byte[][] docs = new byte[FILE_NAMES.length][];
+        long totalBytes = 0;
+        for (int i = 0; i < FILE_NAMES.length; i++) {
+            docs[i] = FileLoaderUtils.loadClasspathFile(FILE_NAMES[i]);
+            totalBytes += docs[i].length;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            run(docs, ROUNDS, byteArray);
+        }
+        double mb = totalBytes * (double) ROUNDS / (1024 * 1024);
+        double[] speeds = new double[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            speeds[i] = mb / (run(docs, ROUNDS, byteArray) / 1e9);
+        }
+        Arrays.sort(speeds);
+        return speeds;
+    }
+
+    private static double median(double[] sorted) {
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+    private static long run(byte[][] docs, int rounds, boolean byteArray) throws ParseException {
+        FastXmlParser4ByteArray arrayParser = new FastXmlParser4ByteArray();
+        FastXmlParser4InputStream streamParser = new FastXmlParser4InputStream();
+        long checksum = 0;
+        long begin = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (byte[] doc : docs) {
+                FastXmlParser parser;
+                if (byteArray) {
+                    arrayParser.setInput(doc, null);
+                    parser = arrayParser;
+                } else {
+                    streamParser.setInput(new ByteArrayInputStream(doc), FastXmlParser4InputStream.DEFAULT_BUFFER_SIZE, null);
+                    parser = streamParser;
+                }
+                while (parser.next() != FastXmlParser.END_DOCUMENT) {
+                    checksum += parser.getDepth();
+                }
+            }
+        }
+        long time = System.nanoTime() - begin;
+        if (checksum == 42) {
+            System.out.println(checksum);
+        }
+        return time;
+    }
+}
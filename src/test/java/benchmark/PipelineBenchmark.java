@@ -0,0 +1,78 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.FastXmlParser4Pipeline;
+import com.github.fastxml.exception.ParseException;
+import util.FileLoaderUtils;
+
+import java.io.IOException;
+
+/**
+ * parse documents with some work of consumer per event, by FastXmlParser4ByteArray and by pipeline with every wait strategy.
+ * Pipeline should be close to max(tokenizing, consuming) instead of their sum when there are two free cores.
+ * It's not a unit test, run it by main method.
+ */
+public class PipelineBenchmark {
+
+    private final static int LOOP = 2000;
+
+    public static void main(String[] args) throws IOException, ParseException {
+        byte[] doc = FileLoaderUtils.loadClasspathFile("bioinfo.xml");
+        FastXmlParser4ByteArray serial = new FastXmlParser4ByteArray();
+        String[] names = {"busy spin", "yield", "park"};
+        FastXmlParser4Pipeline[] pipelines = new FastXmlParser4Pipeline[names.length];
+        for (int i = 0; i < names.length; i++) {
+            pipelines[i] = new FastXmlParser4Pipeline(FastXmlParser4Pipeline.DEFAULT_CAPACITY, i, null);
+        }
+        for (int round = 0; round < 5; round++) {
+            long begin = System.nanoTime();
+            for (int i = 0; i < LOOP; i++) {
+                serial.setInput(doc, null);
+                consume(serial);
+            }
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("serial: %6.1f ms", (System.nanoTime() - begin) / 1e6));
+            for (int p = 0; p < pipelines.length; p++) {
+                begin = System.nanoTime();
+                for (int i = 0; i < LOOP; i++) {
+                    pipelines[p].setInput(doc, null);
+                    consume(pipelines[p]);
+                }
+                sb.append(String.format(", %s: %6.1f ms", names[p], (System.nanoTime() - begin) / 1e6));
+            }
+            System.out.println(sb);
+        }
+        for (FastXmlParser4Pipeline pipeline : pipelines) {
+            pipeline.close();
+        }
+    }
+
+    private static void consume(FastXmlParser parser) throws ParseException {
+        long checksum = 0;
+        while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            // simulate the work of consumer, such as binding and validation
+            for (int i = 0; i < 50; i++) {
+                checksum += i ^ parser.getDepth();
+            }
+        }
+        if (checksum == 42) {
+            System.out.println(checksum);
+        }
+    }
+}
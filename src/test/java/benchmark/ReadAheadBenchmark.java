@@ -0,0 +1,83 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4InputStream;
+import com.github.fastxml.exception.ParseException;
+import util.FileLoaderUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * parse a slow input stream with and without read-ahead, every read of the stream costs some time
+ * and every event costs some time of the consumer, so read-ahead should be close to max(IO, CPU) instead of their sum.
+ * It's not a unit test, run it by main method.
+ */
+public class ReadAheadBenchmark {
+
+    public static void main(String[] args) throws IOException, ParseException {
+        byte[] doc = FileLoaderUtils.loadClasspathFile("bioinfo.xml");
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        for (int i = 0; i < 3; i++) {
+            long begin = System.nanoTime();
+            parser.setInput(new SlowInputStream(doc), 1024, null);
+            consume(parser);
+            long syncTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(new SlowInputStream(doc), 1024, null, 4, null);
+            consume(parser);
+            long readAheadTime = System.nanoTime() - begin;
+            System.out.printf("sync: %6.1f ms, read-ahead: %6.1f ms%n", syncTime / 1e6, readAheadTime / 1e6);
+        }
+    }
+
+    private static void consume(FastXmlParser parser) throws ParseException {
+        long checksum = 0;
+        while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            // simulate the work of consumer
+            for (int i = 0; i < 60000; i++) {
+                checksum += i ^ parser.getDepth();
+            }
+        }
+        if (checksum == 42) {
+            System.out.println(checksum);
+        }
+    }
+
+    /**
+     * every read costs 1ms, just like a network file system
+     */
+    private static class SlowInputStream extends FilterInputStream {
+        SlowInputStream(byte[] bytes) {
+            super(new ByteArrayInputStream(bytes));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return super.read(b, off, Math.min(len, 256));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.FastXmlRewriter;
+import com.github.fastxml.exception.ParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * compare rewriting a document with copying its bytes and with parsing it only.
+ * It's not a unit test, run it by main method.
+ */
+public class RewriterBenchmark {
+
+    private final static int RECORDS = 200000;
+
+    public static void main(String[] args) throws ParseException, IOException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><root><header><password>123</password></header>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<item id=\"").append(i).append("\"><name>item &amp; ").append(i)
+                    .append("</name><price>").append(i * 0.25).append("</price></item>\n");
+        }
+        byte[] doc = sb.append("</root>").toString().getBytes(Charset.forName("utf-8"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(doc.length + 1024);
+        FastXmlRewriter rewriter = new FastXmlRewriter().delete("/root/header").replaceText("/root/header/password", "***");
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+
+        for (int round = 0; round < 10; round++) {
+            out.reset();
+            long begin = System.nanoTime();
+            out.write(doc, 0, doc.length);
+            long copyTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(doc, null);
+            int count = 0;
+            while (parser.next() != FastXmlParser.END_DOCUMENT) {
+                count++;
+            }
+            long parseTime = System.nanoTime() - begin;
+
+            out.reset();
+            begin = System.nanoTime();
+            rewriter.rewrite(doc, null, out);
+            long rewriteTime = System.nanoTime() - begin;
+            System.out.printf("copy: %6.1f ms, parse: %6.1f ms(%d events), rewrite: %6.1f ms(%d of %d bytes)%n",
+                    copyTime / 1e6, parseTime / 1e6, count, rewriteTime / 1e6, out.size(), doc.length);
+        }
+    }
+}
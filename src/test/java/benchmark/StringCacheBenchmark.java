@@ -0,0 +1,73 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.StringCache;
+
+import java.nio.charset.Charset;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * read every text and attribute value of repetitive records as string without cache and with a string cache,
+ * and count distinct string instances kept by the results.
+ * It's not a unit test, run it by main method.
+ */
+public class StringCacheBenchmark {
+
+    private final static int RECORDS = 200000;
+    private final static String[] CURRENCIES = {"CNY", "USD", "EUR", "JPY", "GBP"};
+    private final static String[] STATUS = {"NEW", "PAID", "SHIPPED", "CLOSED"};
+
+    public static void main(String[] args) throws ParseException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<row currency=\"").append(CURRENCIES[i % CURRENCIES.length]).append("\" status=\"")
+                    .append(STATUS[i % STATUS.length]).append("\"><country>CN</country><city>汤姆 ").append(i % 50)
+                    .append("</city><unit>kg</unit></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+        String[] names = {"no cache", "cache"};
+        StringCache cache = new StringCache();
+        FastXmlParser.Options[] options = {null, new FastXmlParser.Options().setStringCache(cache)};
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        String[] values = new String[RECORDS * 5];
+        for (int round = 0; round < 10; round++) {
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < options.length; i++) {
+                parser.setOptions(options[i]);
+                long begin = System.nanoTime();
+                parser.setInput(doc, null);
+                int count = 0;
+                for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                    if (event == FastXmlParser.TEXT || event == FastXmlParser.ATTRIBUTE_VALUE) {
+                        values[count++] = parser.getStringWithDecoding();
+                    }
+                }
+                long time = System.nanoTime() - begin;
+                Map<String, Boolean> instances = new IdentityHashMap<String, Boolean>();
+                for (int j = 0; j < count; j++) {
+                    instances.put(values[j], Boolean.TRUE);
+                }
+                line.append(String.format("%s: %6.1f ms(%d strings)  ", names[i], time / 1e6, instances.size()));
+            }
+            System.out.println(line.append(String.format("hits: %d, misses: %d", cache.getHits(), cache.getMisses())));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ParseUtils;
+
+import java.nio.charset.Charset;
+
+/**
+ * read every text and attribute value as string by getStringWithDecoding() which picks the path by token flags,
+ * and by ParseUtils.parseStringWithDecoding() on tokens of nextBatch(), which decodes every token by charset and scans it
+ * for CDATA and entity references.
+ * It's not a unit test, run it by main method.
+ */
+public class TokenFlagsBenchmark {
+
+    private final static int RECORDS = 200000;
+    private final static int BATCH_SIZE = 256;
+
+    public static void main(String[] args) throws ParseException {
+        Charset charset = Charset.forName("utf-8");
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < RECORDS; i++) {
+            sb.append("<row id=\"").append(i).append("\" type=\"t").append(i % 7).append("\"><name>name ").append(i)
+                    .append("</name><city>汤姆 ").append(i % 100).append("</city><note>a &amp; b</note><size>").append(i * 3)
+                    .append("</size></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(charset);
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        int[] events = new int[BATCH_SIZE];
+        int[] offsets = new int[BATCH_SIZE];
+        int[] lengths = new int[BATCH_SIZE];
+        int[] depths = new int[BATCH_SIZE];
+        for (int round = 0; round < 10; round++) {
+            long begin = System.nanoTime();
+            parser.setInput(doc, null);
+            long length = 0;
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.TEXT || event == FastXmlParser.ATTRIBUTE_VALUE) {
+                    length += parser.getStringWithDecoding().length();
+                }
+            }
+            long flagsTime = System.nanoTime() - begin;
+
+            begin = System.nanoTime();
+            parser.setInput(doc, null);
+            long decodedLength = 0;
+            for (int count = parser.nextBatch(events, offsets, lengths, depths, BATCH_SIZE); count > 0;
+                 count = parser.nextBatch(events, offsets, lengths, depths, BATCH_SIZE)) {
+                for (int i = 0; i < count; i++) {
+                    if (events[i] == FastXmlParser.TEXT || events[i] == FastXmlParser.ATTRIBUTE_VALUE) {
+                        decodedLength += ParseUtils.parseStringWithDecoding(parser.getBatchBytes(), offsets[i], lengths[i], charset).length();
+                    }
+                }
+            }
+            System.out.printf("by token flags: %6.1f ms(%d chars), always decoding: %6.1f ms(%d chars)%n",
+                    flagsTime / 1e6, length, (System.nanoTime() - begin) / 1e6, decodedLength);
+        }
+    }
+}
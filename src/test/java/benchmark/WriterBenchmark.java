@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package benchmark;
+
+import com.github.fastxml.FastXmlWriter;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * write the same records by FastXmlWriter and by XMLStreamWriter of JDK.
+ * It's not a unit test, run it by main method.
+ */
+public class WriterBenchmark {
+
+    private final static int RECORDS = 200000;
+    private final static FastXmlWriter.Name ROOT = FastXmlWriter.name("root");
+    private final static FastXmlWriter.Name ITEM = FastXmlWriter.name("item");
+    private final static FastXmlWriter.Name ID = FastXmlWriter.name("id");
+    private final static FastXmlWriter.Name NAME = FastXmlWriter.name("name");
+    private final static FastXmlWriter.Name PRICE = FastXmlWriter.name("price");
+    private final static FastXmlWriter.Name TIME = FastXmlWriter.name("time");
+
+    public static void main(String[] args) throws IOException, XMLStreamException {
+        String[] names = new String[100];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "item & <" + i + ">";
+        }
+        XMLOutputFactory factory = XMLOutputFactory.newInstance();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024 * 1024);
+        FastXmlWriter writer = new FastXmlWriter(Charset.forName("utf-8"), FastXmlWriter.DEFAULT_BUFFER_SIZE);
+
+        for (int round = 0; round < 10; round++) {
+            out.reset();
+            long begin = System.nanoTime();
+            writer.setOutput(out);
+            writer.writeStartDocument();
+            writer.writeStartElement(ROOT);
+            for (int i = 0; i < RECORDS; i++) {
+                writer.writeStartElement(ITEM);
+                writer.writeAttribute(ID, i);
+                writer.writeElement(NAME, names[i % names.length]);
+                writer.writeStartElement(PRICE);
+                writer.writeText(i * 0.25);
+                writer.writeEndElement();
+                writer.writeStartElement(TIME);
+                writer.writeTimestamp(1473811200000L + i * 1000L);
+                writer.writeEndElement();
+                writer.writeEndElement();
+            }
+            writer.writeEndDocument();
+            long fastTime = System.nanoTime() - begin;
+            int fastSize = out.size();
+
+            out.reset();
+            begin = System.nanoTime();
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+            format.setTimeZone(TimeZone.getTimeZone("UTC"));
+            XMLStreamWriter jdkWriter = factory.createXMLStreamWriter(out, "UTF-8");
+            jdkWriter.writeStartDocument("UTF-8", "1.0");
+            jdkWriter.writeStartElement("root");
+            for (int i = 0; i < RECORDS; i++) {
+                jdkWriter.writeStartElement("item");
+                jdkWriter.writeAttribute("id", String.valueOf(i));
+                jdkWriter.writeStartElement("name");
+                jdkWriter.writeCharacters(names[i % names.length]);
+                jdkWriter.writeEndElement();
+                jdkWriter.writeStartElement("price");
+                jdkWriter.writeCharacters(String.valueOf(i * 0.25));
+                jdkWriter.writeEndElement();
+                jdkWriter.writeStartElement("time");
+                jdkWriter.writeCharacters(format.format(new Date(1473811200000L + i * 1000L)));
+                jdkWriter.writeEndElement();
+                jdkWriter.writeEndElement();
+            }
+            jdkWriter.writeEndDocument();
+            jdkWriter.close();
+            long jdkTime = System.nanoTime() - begin;
+            System.out.printf("fastxml: %6.1f ms(%d bytes), jdk: %6.1f ms(%d bytes)%n",
+                    fastTime / 1e6, fastSize, jdkTime / 1e6, out.size());
+        }
+    }
+}
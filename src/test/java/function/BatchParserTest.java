@@ -0,0 +1,256 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlBatchParser;
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * tests of FastXmlBatchParser
+ */
+public class BatchParserTest {
+
+    /**
+     * parse the value of &lt;id&gt;
+     */
+    private final static FastXmlBatchParser.DocumentHandler<Integer> ID_HANDLER = new FastXmlBatchParser.DocumentHandler<Integer>() {
+        public Integer handle(FastXmlParser parser) throws ParseException {
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.START_TAG && "id".equals(parser.getString())) {
+                    parser.next();
+                    return parser.getInt();
+                }
+            }
+            return null;
+        }
+    };
+
+    /**
+     * results should be delivered in the order of documents, even if in-flight bytes are bounded
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testOrdered() throws InterruptedException {
+        FastXmlBatchParser batchParser = new FastXmlBatchParser(4, 300, true, null);
+        try {
+            RecordingListener listener = new RecordingListener();
+            FastXmlBatchParser.Stats stats = batchParser.parse(documents(1000).iterator(), ID_HANDLER, listener);
+            Assert.assertEquals(1000, stats.getDocuments());
+            Assert.assertEquals(0, stats.getErrors());
+            Assert.assertTrue(stats.getLatencyNanos(50) <= stats.getLatencyNanos(99));
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(Long.valueOf(i), listener.indexes.get(i));
+                Assert.assertEquals(Integer.valueOf(i * 7), listener.results.get(i));
+            }
+        } finally {
+            batchParser.close();
+        }
+    }
+
+    /**
+     * every result should be delivered once when unordered, and errors are delivered by onError()
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testUnorderedAndErrors() throws InterruptedException {
+        final ThreadFactory threadFactory = FastXmlBatchParser.virtualThreadFactory() != null
+                ? FastXmlBatchParser.virtualThreadFactory() : new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                return new Thread(r);
+            }
+        };
+        FastXmlBatchParser batchParser = new FastXmlBatchParser(threadFactory, 4096, false, null);
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>();
+        for (byte[] document : documents(500)) {
+            buffers.add(ByteBuffer.wrap(document));
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(64);
+        direct.put("<doc><id>1</id></doc>".getBytes()).flip();
+        buffers.add(direct);
+        buffers.add(ByteBuffer.wrap("  <doc><id>x</id></doc>  ".getBytes(), 2, 21)); // not a number
+        buffers.add(ByteBuffer.wrap("<doc><id>2</id></doc>".getBytes()).asReadOnlyBuffer());
+
+        RecordingListener listener = new RecordingListener();
+        FastXmlBatchParser.Stats stats = batchParser.parseBuffers(buffers.iterator(), ID_HANDLER, listener);
+        Assert.assertEquals(503, stats.getDocuments());
+        Assert.assertEquals(1, stats.getErrors());
+        Assert.assertEquals(Long.valueOf(501), listener.errorIndexes.get(0));
+        Set<Long> indexes = new HashSet<Long>(listener.indexes);
+        Assert.assertEquals(502, indexes.size());
+        for (int i = 0; i < listener.indexes.size(); i++) {
+            long index = listener.indexes.get(i);
+            int expect = index < 500 ? (int) index * 7 : (index == 500 ? 1 : 2);
+            Assert.assertEquals(Integer.valueOf(expect), listener.results.get(i));
+        }
+    }
+
+    /**
+     * workers should keep parsing while listener is busy, and listener should still be called by one thread at a time
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testSlowListener() throws InterruptedException {
+        final CountDownLatch handled = new CountDownLatch(100);
+        FastXmlBatchParser.DocumentHandler<Integer> handler = new FastXmlBatchParser.DocumentHandler<Integer>() {
+            public Integer handle(FastXmlParser parser) throws Exception {
+                Integer id = ID_HANDLER.handle(parser);
+                handled.countDown();
+                return id;
+            }
+        };
+        final AtomicInteger delivering = new AtomicInteger();
+        final boolean[] waited = new boolean[1];
+        final RecordingListener recording = new RecordingListener();
+        FastXmlBatchParser.ResultListener<Integer> listener = new FastXmlBatchParser.ResultListener<Integer>() {
+            public void onResult(long index, Integer result) {
+                Assert.assertEquals(1, delivering.incrementAndGet());
+                try {
+                    if (index == 0) { // other documents complete while the first result is being delivered
+                        waited[0] = handled.await(10, TimeUnit.SECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                recording.onResult(index, result);
+                delivering.decrementAndGet();
+            }
+
+            public void onError(long index, Exception e) {
+                recording.onError(index, e);
+            }
+        };
+        FastXmlBatchParser batchParser = new FastXmlBatchParser(4, 1024 * 1024, true, null);
+        try {
+            FastXmlBatchParser.Stats stats = batchParser.parse(documents(1000).iterator(), handler, listener);
+            Assert.assertTrue(waited[0]);
+            Assert.assertEquals(1000, stats.getDocuments());
+            for (int i = 0; i < 1000; i++) {
+                Assert.assertEquals(Long.valueOf(i), recording.indexes.get(i));
+                Assert.assertEquals(Integer.valueOf(i * 7), recording.results.get(i));
+            }
+        } finally {
+            batchParser.close();
+        }
+    }
+
+    /**
+     * an Error thrown by handler should be thrown by parse() after other results are delivered, instead of hanging it
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testHandlerError() throws InterruptedException {
+        FastXmlBatchParser.DocumentHandler<Integer> handler = new FastXmlBatchParser.DocumentHandler<Integer>() {
+            public Integer handle(FastXmlParser parser) throws Exception {
+                Integer id = ID_HANDLER.handle(parser);
+                if (id == 3 * 7) {
+                    throw new AssertionError("bad document");
+                }
+                return id;
+            }
+        };
+        FastXmlBatchParser batchParser = new FastXmlBatchParser(4, 300, true, null);
+        try {
+            RecordingListener listener = new RecordingListener();
+            try {
+                batchParser.parse(documents(100).iterator(), handler, listener);
+                Assert.fail("error of handler should be thrown");
+            } catch (AssertionError e) {
+                Assert.assertEquals("bad document", e.getMessage());
+            }
+            Assert.assertEquals(99, listener.indexes.size());
+            Assert.assertFalse(listener.indexes.contains(3L));
+            // permits of the failed document are released, so the batch parser still works
+            Assert.assertEquals(100, batchParser.parse(documents(100).iterator(), ID_HANDLER, new RecordingListener()).getDocuments());
+        } finally {
+            batchParser.close();
+        }
+    }
+
+    /**
+     * parse() should throw instead of hanging when documents can't be started
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testRejected() throws InterruptedException {
+        FastXmlBatchParser batchParser = new FastXmlBatchParser(2, 4096, true, null);
+        batchParser.close();
+        try {
+            batchParser.parse(documents(10).iterator(), ID_HANDLER, new RecordingListener());
+            Assert.fail("parse() after close() should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        FastXmlBatchParser nullThreads = new FastXmlBatchParser(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                return null;
+            }
+        }, 4096, false, null);
+        try {
+            nullThreads.parse(documents(10).iterator(), ID_HANDLER, new RecordingListener());
+            Assert.fail("null thread should be rejected");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+    }
+
+    private static List<byte[]> documents(int count) {
+        List<byte[]> documents = new ArrayList<byte[]>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder("<doc><name>doc").append(i).append("</name>");
+            for (int j = 0; j < i % 10; j++) { // different size and parse time
+                sb.append("<padding a=\"").append(j).append("\">text</padding>");
+            }
+            documents.add(sb.append("<id>").append(i * 7).append("</id></doc>").toString().getBytes());
+        }
+        return documents;
+    }
+
+    private static class RecordingListener implements FastXmlBatchParser.ResultListener<Integer> {
+        final List<Long> indexes = new ArrayList<Long>();
+        final List<Integer> results = new ArrayList<Integer>();
+        final List<Long> errorIndexes = new ArrayList<Long>();
+
+        public void onResult(long index, Integer result) {
+            indexes.add(index);
+            results.add(result);
+        }
+
+        public void onError(long index, Exception e) {
+            Assert.assertTrue(e instanceof com.github.fastxml.exception.NumberFormatException);
+            errorIndexes.add(index);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.FastXmlWriter;
+import com.github.fastxml.binding.FastXmlAttribute;
+import com.github.fastxml.binding.FastXmlType;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * tests of binders generated by FastXmlBinderProcessor
+ */
+public class BinderTest {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+    private final static String DOC = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<order id=\"42\" status=\"new &amp; paid\" unknown=\"x\">\n"
+            + "  <created>1473811200000</created><total>12.5</total><paid>true</paid><state>SHIPPED</state>\n"
+            + "  <ignored><a><b/></a></ignored><skipped/>\n"
+            + "  <customer vip=\"1\"><name>汤姆</name><note/><level>3</level></customer>\n"
+            + "  <item sku=\"a\"><count>2</count><price>1.5</price></item>\n"
+            + "  <item sku=\"b\"><count>1</count><price currency=\"CNY\">3</price><parent sku=\"c\"/></item>\n"
+            + "  <tag>x</tag><tag><![CDATA[<y>]]></tag>\n"
+            + "</order>";
+
+    public enum State {
+        NEW, SHIPPED
+    }
+
+    public static class Base {
+        @FastXmlAttribute
+        int id;
+        @FastXmlAttribute
+        String status;
+    }
+
+    @FastXmlType
+    public static class Order extends Base {
+        static int instances;
+        long created;
+        double total;
+        Boolean paid;
+        State state;
+        Customer customer;
+        List<Item> item;
+        List<String> tag;
+        transient int cache;
+    }
+
+    @FastXmlType
+    public static class Customer {
+        @FastXmlAttribute
+        private boolean vip;
+        private String name;
+        String note;
+        Integer level;
+        String missing = "default";
+
+        public boolean isVip() {
+            return vip;
+        }
+
+        public void setVip(boolean vip) {
+            this.vip = vip;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @FastXmlType
+    public static class Item {
+        @FastXmlAttribute
+        String sku;
+        short count;
+        float price;
+        Item parent;
+    }
+
+    /**
+     * @throws ParseException
+     */
+    @Test
+    public void testRead() throws ParseException {
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(DOC.getBytes(UTF_8), null);
+        Assert.assertEquals(FastXmlParser.START_DOCUMENT, parser.next());
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Order order = BinderTest_OrderFastXmlBinder.read(parser);
+        Assert.assertEquals(FastXmlParser.END_DOCUMENT, parser.next());
+
+        Assert.assertEquals(42, order.id);
+        Assert.assertEquals("new & paid", order.status);
+        Assert.assertEquals(1473811200000L, order.created);
+        Assert.assertEquals(12.5, order.total, 0);
+        Assert.assertEquals(Boolean.TRUE, order.paid);
+        Assert.assertEquals(State.SHIPPED, order.state);
+        Assert.assertEquals(0, order.cache);
+
+        Assert.assertTrue(order.customer.isVip());
+        Assert.assertEquals("汤姆", order.customer.getName());
+        Assert.assertEquals("", order.customer.note);
+        Assert.assertEquals(Integer.valueOf(3), order.customer.level);
+        Assert.assertEquals("default", order.customer.missing);
+
+        Assert.assertEquals(2, order.item.size());
+        Assert.assertEquals("a", order.item.get(0).sku);
+        Assert.assertEquals(2, order.item.get(0).count);
+        Assert.assertEquals(1.5f, order.item.get(0).price, 0);
+        Assert.assertNull(order.item.get(0).parent);
+        Assert.assertEquals("b", order.item.get(1).sku);
+        Assert.assertEquals(3f, order.item.get(1).price, 0);
+        Assert.assertEquals("c", order.item.get(1).parent.sku);
+        Assert.assertEquals(Arrays.asList("x", "<y>"), order.tag);
+
+        try {
+            parser.setInput("<order><state>LOST</state></order>".getBytes(UTF_8), null);
+            parser.next();
+            parser.next();
+            BinderTest_OrderFastXmlBinder.read(parser);
+            Assert.fail("unknown enum constant should not be bound");
+        } catch (ParseException e) {
+            Assert.assertTrue(e.getMessage().contains("LOST"));
+        }
+    }
+
+    /**
+     * write objects and read them back
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testWriteAndRead() throws IOException, ParseException {
+        Order order = new Order();
+        order.id = 7;
+        order.status = "a<b";
+        order.created = -1;
+        order.total = 0.25;
+        order.state = State.NEW;
+        order.customer = new Customer();
+        order.customer.setName("\"quoted\" & <tagged>");
+        order.customer.setVip(true);
+        order.item = new ArrayList<Item>();
+        for (int i = 0; i < 3; i++) {
+            Item item = new Item();
+            item.sku = "s" + i;
+            item.count = (short) i;
+            order.item.add(item);
+        }
+        order.tag = Arrays.asList("t");
+
+        FastXmlWriter writer = new FastXmlWriter(UTF_8, FastXmlWriter.DEFAULT_BUFFER_SIZE);
+        BinderTest_OrderFastXmlBinder.write(writer, "order", order);
+
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(writer.toByteArray(), null);
+        parser.next();
+        parser.next();
+        Order copy = BinderTest_OrderFastXmlBinder.read(parser);
+        Assert.assertEquals(7, copy.id);
+        Assert.assertEquals("a<b", copy.status);
+        Assert.assertEquals(-1, copy.created);
+        Assert.assertEquals(0.25, copy.total, 0);
+        Assert.assertNull(copy.paid);
+        Assert.assertEquals(State.NEW, copy.state);
+        Assert.assertTrue(copy.customer.isVip());
+        Assert.assertEquals("\"quoted\" & <tagged>", copy.customer.getName());
+        Assert.assertNull(copy.customer.note);
+        Assert.assertEquals(3, copy.item.size());
+        Assert.assertEquals("s2", copy.item.get(2).sku);
+        Assert.assertEquals(2, copy.item.get(2).count);
+        Assert.assertEquals(Arrays.asList("t"), copy.tag);
+    }
+}
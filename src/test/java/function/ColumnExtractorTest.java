@@ -0,0 +1,199 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlColumnExtractor;
+import com.github.fastxml.FastXmlParser4InputStream;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * tests of FastXmlColumnExtractor
+ */
+public class ColumnExtractorTest {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+
+    /**
+     * records of all batches as strings
+     */
+    private static class Collector implements FastXmlColumnExtractor.BatchHandler {
+        final List<String> batches = new ArrayList<String>();
+
+        public synchronized void onBatch(FastXmlColumnExtractor.Batch batch) {
+            StringBuilder sb = new StringBuilder();
+            for (int row = 0; row < batch.getSize(); row++) {
+                for (int column = 0; column < batch.getColumnCount(); column++) {
+                    sb.append(column == 0 ? "" : ",");
+                    if (batch.isNull(column, row)) {
+                        sb.append("null");
+                    } else if (batch.getColumnType(column) == FastXmlColumnExtractor.INT) {
+                        sb.append(batch.getInts(column)[row]);
+                    } else if (batch.getColumnType(column) == FastXmlColumnExtractor.LONG) {
+                        sb.append(batch.getLongs(column)[row]);
+                    } else if (batch.getColumnType(column) == FastXmlColumnExtractor.DOUBLE) {
+                        sb.append(batch.getDoubles(column)[row]);
+                    } else {
+                        sb.append(batch.getString(column, row));
+                    }
+                }
+                sb.append(';');
+            }
+            // sortable by split and sequence
+            batches.add(String.format("%06d%06d:", batch.getSplit(), batch.getSequence()) + sb);
+        }
+
+        String records() {
+            Collections.sort(batches);
+            StringBuilder sb = new StringBuilder();
+            for (String batch : batches) {
+                sb.append(batch.substring(batch.indexOf(':') + 1));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * @throws ParseException
+     */
+    @Test
+    public void testExtract() throws ParseException {
+        String doc = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<export><meta><row id=\"-1\"/></meta><rows>\n"
+                + "  <row id=\"1\"><name>a &amp; b</name><price>1.5</price><t:time>1473811200000</t:time><addr zip=\"100\"><city>北京</city></addr></row>\n"
+                + "  <other><row id=\"-2\"/></other>\n"
+                + "  <row id=\"2\" unknown=\"x\"><skip><name>no</name></skip><name/><price></price><addr/></row>\n"
+                + "  <row><name>a &amp; b</name><price>3</price><name>last</name><addr zip=\"\"><city><![CDATA[<x>]]></city></addr></row>\n"
+                + "</rows></export>";
+        FastXmlColumnExtractor extractor = new FastXmlColumnExtractor("/export/rows/row")
+                .addColumn("@id", FastXmlColumnExtractor.INT)
+                .addColumn("name", FastXmlColumnExtractor.STRING)
+                .addColumn("price", FastXmlColumnExtractor.DOUBLE)
+                .addColumn("time", FastXmlColumnExtractor.LONG)
+                .addColumn("addr/@zip", FastXmlColumnExtractor.INT)
+                .addColumn("addr/city", FastXmlColumnExtractor.STRING)
+                .setBatchSize(2);
+        String expect = "1,a & b,1.5,1473811200000,100,北京;2,,null,null,null,null;"
+                + "null,last,3.0,null,null,<x>;";
+
+        Collector collector = new Collector();
+        Assert.assertEquals(3, extractor.extract(doc.getBytes(UTF_8), collector));
+        Assert.assertEquals(2, collector.batches.size());
+        Assert.assertEquals(expect, collector.records());
+
+        collector = new Collector();
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new ByteArrayInputStream(doc.getBytes(UTF_8)));
+        Assert.assertEquals(3, extractor.extract(parser, collector));
+        Assert.assertEquals(expect, collector.records());
+
+        // a name matches records at any depth
+        collector = new Collector();
+        FastXmlColumnExtractor byName = new FastXmlColumnExtractor("row").addColumn("@id", FastXmlColumnExtractor.INT);
+        Assert.assertEquals(5, byName.extract(doc.getBytes(UTF_8), collector));
+        Assert.assertEquals("-1;1;-2;2;null;", collector.records());
+
+        try {
+            extractor.addColumn("other", FastXmlColumnExtractor.INT);
+            Assert.fail("columns should not be added after extracting");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * strings of a batch are encoded by a dictionary, and parallel extraction gets the same records as serial extraction
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallel() throws Exception {
+        StringBuilder sb = new StringBuilder("<rows>");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("<row id=\"").append(i).append("\"><city>city").append(i % 7).append("</city>");
+            if (i % 3 != 0) {
+                sb.append("<total>").append(i * 100000L).append("</total>");
+            }
+            sb.append("</row>\n");
+        }
+        final byte[] doc = sb.append("</rows>").toString().getBytes(UTF_8);
+        FastXmlColumnExtractor extractor = new FastXmlColumnExtractor("/rows/row")
+                .addColumn("@id", FastXmlColumnExtractor.INT)
+                .addColumn("city", FastXmlColumnExtractor.STRING)
+                .addColumn("total", FastXmlColumnExtractor.LONG)
+                .setBatchSize(1000);
+
+        Collector serial = new Collector();
+        Assert.assertEquals(20000, extractor.extract(doc, serial));
+        Collector parallel = new Collector();
+        Assert.assertEquals(20000, extractor.extract(doc, 3, parallel));
+        Assert.assertEquals(serial.records(), parallel.records());
+        Assert.assertTrue(parallel.batches.size() > serial.batches.size()); // batches don't cross ranges
+
+        extractor.extract(doc, new FastXmlColumnExtractor.BatchHandler() {
+            public void onBatch(FastXmlColumnExtractor.Batch batch) {
+                Assert.assertEquals(7, batch.getDictionarySize(1));
+                int[] codes = batch.getCodes(1);
+                for (int row = 0; row < batch.getSize(); row++) {
+                    int id = batch.getInts(0)[row];
+                    Assert.assertEquals("city" + (id % 7), batch.getDictionary(1)[codes[row]]);
+                    Assert.assertEquals(id % 3 == 0, (batch.getNulls(2)[row >>> 6] & (1L << row)) != 0);
+                }
+            }
+        });
+
+        try {
+            extractor.extract("<rows><row id=\"1\"/><row id=\"x\"/></rows>".getBytes(UTF_8), 2, serial);
+            Assert.fail("invalid number should not be extracted");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    /**
+     * names of records in CDATA blocks, comments and attribute values are not split points
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testParallelMarkup() throws Exception {
+        StringBuilder sb = new StringBuilder("<rows>");
+        for (int i = 0; i < 20000; i++) {
+            sb.append("<!-- <row id=\"-1\"> --><row id=\"").append(i).append("\" ref='a<row'><city><![CDATA[see <row> here]]></city>")
+                    .append("<total>").append(i).append("</total></row>\n");
+        }
+        byte[] doc = sb.append("</rows>").toString().getBytes(UTF_8);
+        FastXmlColumnExtractor extractor = new FastXmlColumnExtractor("/rows/row")
+                .addColumn("@id", FastXmlColumnExtractor.INT)
+                .addColumn("city", FastXmlColumnExtractor.STRING)
+                .addColumn("total", FastXmlColumnExtractor.LONG)
+                .setBatchSize(1000);
+
+        Collector serial = new Collector();
+        Assert.assertEquals(20000, extractor.extract(doc, serial));
+        Collector parallel = new Collector();
+        Assert.assertEquals(20000, extractor.extract(doc, 4, parallel));
+        Assert.assertEquals(serial.records(), parallel.records());
+        Assert.assertTrue(parallel.batches.size() > serial.batches.size());
+    }
+}
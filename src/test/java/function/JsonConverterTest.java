@@ -0,0 +1,120 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlJsonConverter;
+import com.github.fastxml.FastXmlParser4InputStream;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * tests of FastXmlJsonConverter
+ */
+public class JsonConverterTest {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+    private final static String DOC = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<order id=\"7\" status='new'>\n"
+            + "  <price>-12.5e3</price><code>007</code><tag>1</tag><tag>2</tag><tag>3</tag><note/><memo></memo>\n"
+            + "  <line no=\"1\">汤姆 &amp; \"杰瑞\"\\</line><line no=\"2\"><![CDATA[<a>\t]]> &lt;b&gt;</line>\n"
+            + "  <item><name>a</name><tag>x</tag></item>\n"
+            + "  <total>3</total><item><name>b</name></item>\n"
+            + "</order>";
+
+    /**
+     * default convention: attributes are prefixed by '@', consecutive siblings are arrays, and numbers are copied
+     *
+     * @throws ParseException
+     * @throws IOException
+     */
+    @Test
+    public void testConvert() throws ParseException, IOException {
+        FastXmlJsonConverter converter = new FastXmlJsonConverter();
+        String expected = "{\"order\":{\"@id\":7,\"@status\":\"new\",\"price\":-12.5e3,\"code\":\"007\",\"tag\":[1,2,3],"
+                + "\"note\":null,\"memo\":null,"
+                + "\"line\":[{\"@no\":1,\"#text\":\"汤姆 & \\\"杰瑞\\\"\\\\\"},{\"@no\":2,\"#text\":\"<a>\\t <b>\"}],"
+                + "\"item\":{\"name\":\"a\",\"tag\":\"x\"},\"total\":3,\"item\":{\"name\":\"b\"}}}";
+        for (int i = 0; i < 2; i++) { // converter is reusable
+            Assert.assertEquals(expected, new String(converter.convert(DOC.getBytes(UTF_8)), UTF_8));
+        }
+
+        // document in GBK is converted into UTF-8
+        String gbk = DOC.replace("UTF-8", "GBK");
+        Assert.assertEquals(expected, new String(converter.convert(gbk.getBytes("GBK")), UTF_8));
+    }
+
+    /**
+     * @throws ParseException
+     * @throws IOException
+     */
+    @Test
+    public void testConvention() throws ParseException, IOException {
+        FastXmlJsonConverter converter = new FastXmlJsonConverter().setAttributePrefix("-").setTextKey("$")
+                .setNumbers(false).setArrayDetection(false).addArrayName("item").addArrayName("price");
+        String expected = "{\"order\":{\"-id\":\"7\",\"-status\":\"new\",\"price\":[\"-12.5e3\"],\"code\":\"007\","
+                + "\"tag\":\"1\",\"tag\":\"2\",\"tag\":\"3\",\"note\":null,\"memo\":null,"
+                + "\"line\":{\"-no\":\"1\",\"$\":\"汤姆 & \\\"杰瑞\\\"\\\\\"},\"line\":{\"-no\":\"2\",\"$\":\"<a>\\t <b>\"},"
+                + "\"item\":[{\"name\":\"a\",\"tag\":\"x\"}],\"total\":\"3\",\"item\":[{\"name\":\"b\"}]}}";
+        Assert.assertEquals(expected, new String(converter.convert(DOC.getBytes(UTF_8)), UTF_8));
+    }
+
+    /**
+     * large document is converted by FastXmlParser4InputStream, only the first one of siblings is kept for lookahead
+     *
+     * @throws ParseException
+     * @throws IOException
+     */
+    @Test
+    public void testStream() throws ParseException, IOException {
+        StringBuilder xml = new StringBuilder("<root><records>");
+        StringBuilder json = new StringBuilder("{\"root\":{\"records\":{\"record\":[");
+        for (int i = 0; i < 5000; i++) {
+            xml.append("<record id=\"").append(i).append("\"><v>").append(i * 0.5).append("</v><s>\u0001x").append(i).append("</s></record>");
+            json.append(i == 0 ? "" : ",").append("{\"@id\":").append(i).append(",\"v\":").append(i * 0.5)
+                    .append(",\"s\":\"\\u0001x").append(i).append("\"}");
+        }
+        xml.append("</records></root>");
+        json.append("]}}}");
+        byte[] bytes = xml.toString().getBytes(UTF_8);
+
+        FastXmlJsonConverter converter = new FastXmlJsonConverter().setLookahead(1024);
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new ByteArrayInputStream(bytes), 1024, UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        converter.convert(parser, out);
+        Assert.assertEquals(json.toString(), new String(out.toByteArray(), UTF_8));
+
+        // the first one of siblings is larger than lookahead
+        String large = xml.toString().replace("<records>", "<records><big>" + xml.substring(0, 16384).replace('<', '[') + "</big><big/>");
+        parser.setInput(new ByteArrayInputStream(large.getBytes(UTF_8)), 1024, UTF_8);
+        try {
+            converter.convert(parser, new ByteArrayOutputStream());
+            Assert.fail("the second big should not be converted after the first one exceeds lookahead");
+        } catch (ParseException e) {
+            Assert.assertTrue(e.getMessage().contains("lookahead"));
+        }
+        parser.setInput(new ByteArrayInputStream(large.getBytes(UTF_8)), 1024, UTF_8);
+        out.reset();
+        converter.addArrayName("big").convert(parser, out);
+        Assert.assertTrue(new String(out.toByteArray(), UTF_8).startsWith("{\"root\":{\"records\":{\"big\":[\"[root>[records>[record id=\\\"0\\\">"));
+    }
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlMapper;
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * tests of FastXmlMapper
+ */
+public class MapperTest {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+    private final static String DOC = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<o:order xmlns:o=\"urn:order\" id=\"42\" status=\"new &amp; paid\" unknown=\"x\">\n"
+            + "  <created>1473811200000</created><total>12.5</total><paid>true</paid><state>SHIPPED</state>\n"
+            + "  <ignored><a><b/></a></ignored><skipped/>\n"
+            + "  <o:customer vip=\"1\"><name>汤姆</name><note/><level>3</level></o:customer>\n"
+            + "  <item sku=\"a\"><count>2</count><price>1.5</price></item>\n"
+            + "  <item sku=\"b\"><count>1</count><price currency=\"CNY\">3</price><parent sku=\"c\"/></item>\n"
+            + "  <tag>x</tag><tag><![CDATA[<y>]]></tag><ratio>0.5</ratio><ratio>2</ratio>\n"
+            + "  <cache>1</cache>\n"
+            + "</o:order>";
+
+    public enum State {
+        NEW, SHIPPED
+    }
+
+    public static class Base {
+        int id;
+        String status;
+    }
+
+    public static class Order extends Base {
+        static int instances;
+        long created;
+        double total;
+        Boolean paid;
+        State state;
+        Customer customer;
+        List<Item> item;
+        List<String> tag;
+        List<Double> ratio;
+        transient int cache;
+    }
+
+    public static class Customer {
+        boolean vip;
+        String name;
+        String note;
+        Integer level;
+        String missing = "default";
+    }
+
+    public static class Item {
+        String sku;
+        short count;
+        float price;
+        Item parent;
+    }
+
+    /**
+     * @throws ParseException
+     */
+    @Test
+    public void testRead() throws ParseException {
+        FastXmlMapper mapper = new FastXmlMapper();
+        byte[] bytes = DOC.getBytes(UTF_8);
+        for (int i = 0; i < 3; i++) { // plan is cached
+            Order order = i < 2 ? mapper.read(bytes, Order.class) : mapper.read(new ByteArrayInputStream(bytes), Order.class);
+            Assert.assertEquals(42, order.id);
+            Assert.assertEquals("new & paid", order.status);
+            Assert.assertEquals(1473811200000L, order.created);
+            Assert.assertEquals(12.5, order.total, 0);
+            Assert.assertEquals(Boolean.TRUE, order.paid);
+            Assert.assertEquals(State.SHIPPED, order.state);
+            Assert.assertEquals(0, order.cache);
+
+            Assert.assertTrue(order.customer.vip);
+            Assert.assertEquals("汤姆", order.customer.name);
+            Assert.assertEquals("", order.customer.note);
+            Assert.assertEquals(Integer.valueOf(3), order.customer.level);
+            Assert.assertEquals("default", order.customer.missing);
+
+            Assert.assertEquals(2, order.item.size());
+            Assert.assertEquals("a", order.item.get(0).sku);
+            Assert.assertEquals(2, order.item.get(0).count);
+            Assert.assertEquals(1.5f, order.item.get(0).price, 0);
+            Assert.assertNull(order.item.get(0).parent);
+            Assert.assertEquals("b", order.item.get(1).sku);
+            Assert.assertEquals(3f, order.item.get(1).price, 0);
+            Assert.assertEquals("c", order.item.get(1).parent.sku);
+            Assert.assertEquals(Arrays.asList("x", "<y>"), order.tag);
+            Assert.assertEquals(Arrays.asList(0.5, 2.0), order.ratio);
+        }
+    }
+
+    /**
+     * bind repeated elements one by one from a parser
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testReadFromParser() throws ParseException {
+        FastXmlMapper mapper = new FastXmlMapper();
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput("<items><item sku=\"a\"/><other/><item sku=\"b\"><count>7</count></item></items>".getBytes(UTF_8), null);
+        StringBuilder sb = new StringBuilder();
+        int event;
+        while ((event = parser.next()) != FastXmlParser.END_DOCUMENT) {
+            if (event == FastXmlParser.START_TAG && parser.getDepth() == 2) {
+                if (parser.isMatch("item".getBytes(UTF_8))) {
+                    Item item = mapper.read(parser, Item.class);
+                    sb.append(item.sku).append(item.count);
+                } else {
+                    parser.skipCurrentTag();
+                }
+            }
+        }
+        Assert.assertEquals("a0b7", sb.toString());
+
+        try {
+            mapper.read("<order><state>LOST</state></order>".getBytes(UTF_8), Order.class);
+            Assert.fail("unknown enum constant should not be bound");
+        } catch (ParseException e) {
+            Assert.assertTrue(e.getMessage().contains("LOST"));
+        }
+        try {
+            mapper.read("<order id=\"x\"/>".getBytes(UTF_8), Order.class);
+            Assert.fail("invalid number should not be bound");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+}
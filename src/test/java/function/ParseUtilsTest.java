@@ -146,4 +146,38 @@ public class ParseUtilsTest {
         Assert.assertEquals("-&côté &amp;c&#244;t&#233; &côté", ParseUtils.parseStringWithDecoding(testBytes, 0, testBytes.length, charset));
         Assert.assertEquals("-&côté &amp;c&#244;t&#233; &côté", ParseUtils.parseString(testBytes, 0, testBytes.length));
     }
+
+    @Test
+    public void testParsePlainString() {
+        Charset charset = Charset.forName("utf-8");
+        byte[] testBytes = "<a>plain</a><b>汤姆</b>".getBytes(charset);
+        Assert.assertEquals("plain", ParseUtils.parsePlainString(testBytes, 3, 5, true, charset));
+        Assert.assertEquals("汤姆", ParseUtils.parsePlainString(testBytes, 15, 6, false, charset));
+        Assert.assertNull(ParseUtils.parsePlainString(testBytes, 3, 0, true, charset));
+    }
+
+    @Test
+    public void testDecodeInSitu() throws ParseException {
+        Charset charset = Charset.forName("utf-8");
+        byte[] testBytes = "<a>-&amp;c&#244;t&#xE9;<![CDATA[ &amp;<b> ]]>&lt;&#x1F600;&quot;</a>".getBytes(charset);
+        int length = ParseUtils.decodeInSitu(testBytes, 3, testBytes.length - 7, charset);
+        Assert.assertEquals("-&côté &amp;<b> <\uD83D\uDE00\"", new String(testBytes, 3, length, charset));
+        Assert.assertTrue(new String(testBytes, charset).endsWith("</a>"));
+
+        testBytes = "a&unknown;".getBytes();
+        try {
+            ParseUtils.decodeInSitu(testBytes, 0, testBytes.length, charset);
+            Assert.fail("unknown entity should not be decoded");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIsMatch() {
+        byte[] testBytes = "<name>".getBytes();
+        Assert.assertTrue(ParseUtils.isMatch(testBytes, 1, 4, "name".getBytes()));
+        Assert.assertFalse(ParseUtils.isMatch(testBytes, 1, 4, "nama".getBytes()));
+        Assert.assertFalse(ParseUtils.isMatch(testBytes, 1, 5, "name".getBytes()));
+    }
 }
@@ -17,14 +17,25 @@ package function;
 
 import com.github.fastxml.FastXmlFactory;
 import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
 import com.github.fastxml.exception.NumberFormatException;
 import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ParseUtils;
+import com.github.fastxml.util.StringCache;
 import org.junit.Assert;
 import org.junit.Test;
 import util.FileLoaderUtils;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by weager on 2016/06/07.
@@ -183,4 +194,581 @@ public class Parser4ByteArrayTest {
         }
     }
 
+    /**
+     * row and column of ParseException should point to the wrong byte
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testErrorLocation() throws ParseException {
+        assertErrorLocation("<a>\n  <b x=1/>\n</a>".getBytes(), 2, 8);
+        StringBuilder sb = new StringBuilder("<root>\n");
+        for (int i = 0; i < 500; i++) {
+            sb.append("  <item id=\"").append(i).append("\">text</item>\n");
+        }
+        sb.append("  <item id=500>text</item>\n</root>");
+        assertErrorLocation(sb.toString().getBytes(), 502, 12);
+    }
+
+    /**
+     * parse concatenated documents in multi-document mode
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testMultiDocument() throws IOException, ParseException {
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setMultiDocument(true);
+        parser.setInput(concatenatedDocuments(3), null);
+        Assert.assertEquals(expectedDocuments(3), traverseDocuments(parser));
+        Assert.assertEquals(FastXmlParser.END_DOCUMENT, parser.next());
+
+        // a single document is the same as before
+        byte[] bytes = FileLoaderUtils.loadClasspathFile("bioinfo.xml");
+        parser.setInput(bytes, null);
+        int count = 0;
+        while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            count++;
+        }
+        Assert.assertEquals(FastXmlParser.END_DOCUMENT, parser.getNextEvent());
+        Assert.assertTrue(count > 100);
+
+        parser.setInput("<a/>\0x<b/>".getBytes(), null);
+        try {
+            traverseDocuments(parser);
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            Assert.assertEquals(6, e.getColumn());
+        }
+    }
+
+    private void assertErrorLocation(byte[] bytes, int row, int column) throws ParseException {
+        FastXmlParser parser = FastXmlFactory.newInstance(bytes);
+        try {
+            while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            }
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            Assert.assertEquals(row, e.getRow());
+            Assert.assertEquals(column, e.getColumn());
+            Assert.assertEquals(row, parser.getRow());
+            Assert.assertEquals(column, parser.getColumn());
+        }
+    }
+
+    /**
+     * concatenated documents with their own declarations, separated by nothing, new lines or NUL bytes
+     */
+    private static byte[] concatenatedDocuments(int copies) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < copies; i++) {
+            out.write(("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<a x=\"" + i + "\">one</a>\n").getBytes("utf-8"));
+            out.write("<?xml version=\"1.0\" encoding=\"GBK\"?><b>".getBytes("GBK"));
+            out.write("汤姆".getBytes("GBK"));
+            out.write("</b>\0\0<!-- log entry --><c/>\0".getBytes("utf-8"));
+            out.write("<d><e>2</e></d>".getBytes("utf-8"));
+        }
+        out.write("\n\0\n".getBytes("utf-8"));
+        return out.toByteArray();
+    }
+
+    /**
+     * traverse documents until the last END_DOCUMENT, documents are separated by '|'
+     */
+    private static String traverseDocuments(FastXmlParser parser) throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        do {
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.START_DOCUMENT) {
+                    sb.append(parser.getEncode().name()).append(':');
+                } else if (event != FastXmlParser.END_TAG_WITHOUT_TEXT) {
+                    sb.append(parser.getStringWithDecoding()).append(',');
+                }
+            }
+            sb.append('|');
+        } while (parser.getNextEvent() == FastXmlParser.START_DOCUMENT);
+        return sb.toString();
+    }
+
+    private static String expectedDocuments(int copies) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            sb.append("UTF-8:a,x,").append(i).append(",one,a,|GBK:b,汤姆,b,|").append(Charset.defaultCharset().name())
+                    .append(":c,|").append(Charset.defaultCharset().name()).append(":d,e,2,e,d,|");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * copy the current element unchanged, without generating events for its descendants
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testCopyCurrentElement() throws IOException, ParseException {
+        Charset utf8 = Charset.forName("utf-8");
+        String envelope = envelope(10);
+        byte[] bytes = envelope.getBytes(utf8);
+        String body = body(envelope);
+
+        FastXmlParser parser = FastXmlFactory.newInstance(bytes);
+        moveToStartTag(parser, "Header");
+        long[] range = parser.getCurrentElementRange();
+        Assert.assertEquals("<Header a=\"1\"/>", new String(bytes, (int) range[0], (int) (range[1] - range[0]), utf8));
+        Assert.assertEquals(FastXmlParser.END_TAG_WITHOUT_TEXT, parser.getCurrentEvent());
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertTrue(parser.isMatch("Body".getBytes()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(body.getBytes(utf8).length, parser.copyCurrentElement(out));
+        Assert.assertEquals(body, new String(out.toByteArray(), utf8));
+        assertAfterBody(parser);
+
+        parser = FastXmlFactory.newInstance(bytes);
+        moveToStartTag(parser, "Body");
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+        parser.copyCurrentElement(buffer);
+        Assert.assertEquals(body, new String(buffer.array(), 0, buffer.position(), utf8));
+        assertAfterBody(parser);
+
+        parser = FastXmlFactory.newInstance(envelope.substring(0, envelope.indexOf("</Body >")).getBytes(utf8));
+        moveToStartTag(parser, "Body");
+        try {
+            parser.getCurrentElementRange();
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    /**
+     * look up attributes of start tag by name, read them at once, then skip them or step through them as usual
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testAttributes() throws ParseException {
+        String xml = "<a><item id=\"12\" name='x &amp; y' empty=\"\" flag=\"true\"><b/></item><c/><d k=\"1\">t</d></a>";
+        FastXmlParser parser = FastXmlFactory.newInstance(xml.getBytes());
+        moveToStartTag(parser, "item");
+        Assert.assertEquals(4, parser.getAttributeCount());
+        Assert.assertEquals(-1, parser.indexOfAttribute("missing".getBytes()));
+        parser.selectAttribute(parser.indexOfAttribute("name".getBytes()));
+        Assert.assertEquals("x & y", parser.getStringWithDecoding());
+        parser.selectAttribute(parser.indexOfAttribute("id".getBytes()));
+        Assert.assertEquals(12, parser.getInt());
+        parser.selectAttribute(2);
+        Assert.assertNull(parser.getString()); // empty value is null, the same as ATTRIBUTE_VALUE event
+        final StringBuilder sb = new StringBuilder();
+        parser.readAttributes(new FastXmlParser.AttributeSink() {
+            public void attribute(byte[] bytes, int nameOffset, int nameLength, int valueOffset, int valueLength) {
+                sb.append(new String(bytes, nameOffset, nameLength)).append('=').append(new String(bytes, valueOffset, valueLength)).append(';');
+            }
+        });
+        Assert.assertEquals("id=12;name=x &amp; y;empty=;flag=true;", sb.toString());
+        long[] range = parser.getCurrentElementRange();
+        Assert.assertTrue(parser.isMatch("item".getBytes()));
+        Assert.assertEquals("<item id=\"12\" name='x &amp; y' empty=\"\" flag=\"true\"><b/></item>", xml.substring((int) range[0], (int) range[1]));
+        parser.skipAttributes();
+        Assert.assertTrue(parser.isMatch("item".getBytes()));
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertTrue(parser.isMatch("b".getBytes()));
+        Assert.assertEquals(0, parser.getAttributeCount());
+        parser.skipAttributes();
+        Assert.assertEquals(FastXmlParser.END_TAG_WITHOUT_TEXT, parser.next());
+        Assert.assertEquals(FastXmlParser.END_TAG, parser.next());
+        Assert.assertTrue(parser.isMatch("item".getBytes()));
+
+        // scanned attributes don't change events of next()
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertEquals(0, parser.getAttributeCount());
+        Assert.assertEquals(FastXmlParser.END_TAG_WITHOUT_TEXT, parser.next());
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertEquals(0, parser.indexOfAttribute("k".getBytes()));
+        Assert.assertEquals(FastXmlParser.ATTRIBUTE_NAME, parser.next());
+        Assert.assertTrue(parser.isMatch("k".getBytes()));
+        Assert.assertEquals(FastXmlParser.ATTRIBUTE_VALUE, parser.next());
+        Assert.assertEquals(1, parser.getInt());
+        Assert.assertEquals(FastXmlParser.TEXT, parser.next());
+        Assert.assertEquals("t", parser.getString());
+
+        parser = FastXmlFactory.newInstance("<a><b k=\"1\" j=\"2".getBytes());
+        moveToStartTag(parser, "b");
+        try {
+            parser.getAttributeCount();
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    /**
+     * attributes, text and elements deeper than max depth are skipped by the scanner
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testOptions() throws ParseException {
+        byte[] bytes = OPTIONS_XML.getBytes();
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setOptions(new FastXmlParser.Options().setSkipAttributes(true));
+        parser.setInput(bytes, null);
+        Assert.assertEquals("<root1,<a2,<b3,<c4,'deep,>c,<c4,/,>b,<b3,/,>a,<d2,'text & more</d>,>d,<e2,/,<g2,>g,>root,", events(parser));
+        Assert.assertEquals(0, parser.getDepth());
+
+        parser.setOptions(new FastXmlParser.Options().setSkipText(true));
+        parser.setInput(bytes, null);
+        Assert.assertEquals("<root1,@v,=1>,<a2,@x,=1,@y,=/>,<b3,@z,=2,<c4,>c,<c4,@k,=3,/,>b,<b3,/,>a,<d2,>d,<e2,@f,=4,/,<g2,>g,>root,", events(parser));
+
+        parser.setOptions(new FastXmlParser.Options().setMaxDepth(2));
+        parser.setInput(bytes, null);
+        Assert.assertEquals("<root1,@v,=1>,<a2,@x,=1,@y,=/>,>a,<d2,'text & more</d>,>d,<e2,@f,=4,/,<g2,>g,>root,", events(parser));
+        Assert.assertEquals(0, parser.getDepth());
+
+        parser.setOptions(new FastXmlParser.Options().setSkipAttributes(true).setSkipText(true).setMaxDepth(2));
+        parser.setInput(bytes, null);
+        Assert.assertEquals("<root1,<a2,>a,<d2,>d,<e2,/,<g2,>g,>root,", events(parser));
+        parser.setInput(bytes, null);
+        moveToStartTag(parser, "a");
+        long[] range = parser.getCurrentElementRange();
+        Assert.assertEquals("<a x=\"1\" y='/>'><b z=\"2\"><c>deep</c><c k=\"3\"/></b><b/></a>", OPTIONS_XML.substring((int) range[0], (int) range[1]));
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertTrue(parser.isMatch("d".getBytes()));
+
+        parser.setOptions(new FastXmlParser.Options().setMaxDepth(1));
+        parser.setInput(bytes, null);
+        Assert.assertEquals("<root1,@v,=1>,>root,", events(parser));
+
+        parser.setOptions(null);
+        parser.setInput(bytes, null);
+        Assert.assertTrue(events(parser).startsWith("<root1,@v,=1>,<a2,@x,=1,@y,=/>,<b3,@z,=2,<c4,'deep,>c,"));
+        try {
+            new FastXmlParser.Options().setMaxDepth(0);
+            Assert.fail("max depth should be positive");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private final static String OPTIONS_XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root v=\"1>\">\n  <!-- comment -->\n"
+            + "  <a x=\"1\" y='/>'><b z=\"2\"><c>deep</c><c k=\"3\"/></b><b/></a>\n"
+            + "  <d>text &amp; more<![CDATA[</d>]]></d><e f=\"4\"/><g> </g>\n</root>";
+
+    /**
+     * events till the end of document: "&lt;" name depth for START_TAG, "&gt;" name for END_TAG, "/" for END_TAG_WITHOUT_TEXT,
+     * "@" name for ATTRIBUTE_NAME, "=" value for ATTRIBUTE_VALUE and "'" text for TEXT
+     */
+    private static String events(FastXmlParser parser) throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            if (event == FastXmlParser.START_TAG) {
+                sb.append('<').append(parser.getString()).append(parser.getDepth());
+            } else if (event == FastXmlParser.END_TAG) {
+                sb.append('>').append(parser.getString());
+            } else if (event == FastXmlParser.END_TAG_WITHOUT_TEXT) {
+                sb.append('/');
+            } else if (event == FastXmlParser.ATTRIBUTE_NAME) {
+                sb.append('@').append(parser.getString());
+            } else if (event == FastXmlParser.ATTRIBUTE_VALUE) {
+                sb.append('=').append(parser.getString());
+            } else if (event == FastXmlParser.TEXT) {
+                sb.append('\'').append(parser.getStringWithDecoding());
+            } else {
+                continue;
+            }
+            sb.append(',');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * navigate by start tags and read children by name, uninteresting elements are skipped
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testCursor() throws ParseException {
+        String xml = "<orders>\n  <order id=\"1\"><skip><id>9</id></skip><id>1</id><name>a &amp; b</name><count>3</count>"
+                + "<tag>x</tag><tag/><tag><![CDATA[<y>]]></tag></order>\n"
+                + "  <order id=\"2\"><name></name><count/></order><order/><other><order/></other>\n</orders>";
+        FastXmlParser parser = FastXmlFactory.newInstance(xml.getBytes());
+        Assert.assertTrue(parser.nextStartTag());
+        Assert.assertTrue(parser.isMatch("orders".getBytes()));
+        Assert.assertTrue(parser.nextStartTag());
+        Assert.assertEquals(1, parser.readIntChild("id".getBytes(), -1));
+        Assert.assertEquals("a & b", parser.readStringChild("name".getBytes()));
+        Assert.assertEquals(3, parser.readLongChild("count".getBytes(), -1));
+        StringBuilder sb = new StringBuilder();
+        while (parser.seekChild("tag".getBytes())) {
+            sb.append(parser.nextText()).append(',');
+        }
+        Assert.assertEquals("x,,<y>,", sb.toString());
+        Assert.assertEquals(FastXmlParser.END_TAG, parser.getCurrentEvent());
+        Assert.assertTrue(parser.isMatch("order".getBytes()));
+
+        Assert.assertTrue(parser.nextSiblingStartTag());
+        Assert.assertEquals(2, parser.getDepth());
+        Assert.assertEquals("", parser.readStringChild("name".getBytes()));
+        Assert.assertEquals(7, parser.readIntChild("count".getBytes(), 7));
+        Assert.assertEquals(5, parser.readIntChild("missing".getBytes(), 5));
+        Assert.assertEquals(FastXmlParser.END_TAG, parser.getCurrentEvent());
+        Assert.assertEquals(1, parser.getDepth());
+
+        Assert.assertTrue(parser.nextSiblingStartTag());
+        Assert.assertNull(parser.readStringChild("name".getBytes()));
+        Assert.assertEquals(FastXmlParser.END_TAG_WITHOUT_TEXT, parser.getCurrentEvent());
+        Assert.assertTrue(parser.nextSiblingStartTag());
+        Assert.assertTrue(parser.isMatch("other".getBytes()));
+        Assert.assertFalse(parser.nextSiblingStartTag());
+        Assert.assertTrue(parser.isMatch("orders".getBytes()));
+        Assert.assertFalse(parser.nextStartTag());
+
+        parser = FastXmlFactory.newInstance(xml.getBytes());
+        parser.nextStartTag();
+        parser.nextStartTag();
+        try {
+            parser.nextText();
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            // expected
+        }
+    }
+
+    /**
+     * records of tokens written by nextBatch() are decoded as getters of next() do
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testNextBatch() throws IOException, ParseException {
+        byte[] bytes = FileLoaderUtils.loadClasspathFile("test1.xml");
+        FastXmlParser parser = FastXmlFactory.newInstance(bytes);
+        StringBuilder expected = new StringBuilder();
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            expected.append(event).append(parser.getDepth()).append(':').append(parser.getStringWithDecoding()).append(',');
+        }
+        expected.append(FastXmlParser.END_DOCUMENT).append("0:,");
+
+        int[] events = new int[7];
+        int[] offsets = new int[7];
+        int[] lengths = new int[7];
+        int[] depths = new int[7];
+        parser = FastXmlFactory.newInstance(bytes);
+        StringBuilder actual = new StringBuilder();
+        int batches = 0;
+        for (int count = parser.nextBatch(events, offsets, lengths, depths, 7); count > 0; count = parser.nextBatch(events, offsets, lengths, depths, 7)) {
+            for (int i = 0; i < count; i++) {
+                actual.append(events[i]).append(depths[i]).append(':');
+                if (events[i] != FastXmlParser.END_DOCUMENT) {
+                    actual.append(ParseUtils.parseStringWithDecoding(parser.getBatchBytes(), offsets[i], lengths[i], parser.getEncode()));
+                }
+                actual.append(',');
+            }
+            batches++;
+        }
+        Assert.assertEquals(expected.toString(), actual.toString());
+        Assert.assertTrue(batches > 1);
+        Assert.assertEquals(FastXmlParser.END_DOCUMENT, parser.getCurrentEvent());
+    }
+
+    /**
+     * sub parsers of elements are parsed on other threads while the main parser goes on
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCreateSubParser() throws Exception {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><order><id>1</id><total>4950</total>");
+        for (int i = 0; i < 100; i++) {
+            sb.append("<item sku=\"").append(i).append("\"><name>汤姆 &amp; ").append(i).append("</name><count>").append(i)
+                    .append("</count><tag/></item>\n");
+        }
+        sb.append("<item/></order>");
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(sb.toString().getBytes(Charset.forName("utf-8")), null);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<String>> futures = new ArrayList<Future<String>>();
+            Assert.assertTrue(parser.nextStartTag());
+            Assert.assertEquals(4950, parser.readIntChild("total".getBytes(), -1));
+            while (parser.seekChild("item".getBytes())) {
+                final FastXmlParser4ByteArray subParser = parser.createSubParser();
+                Assert.assertEquals(FastXmlParser.START_TAG, subParser.getCurrentEvent());
+                Assert.assertEquals(1, subParser.getDepth());
+                Assert.assertEquals("UTF-8", subParser.getEncode().name());
+                futures.add(pool.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        String name = subParser.readStringChild("name".getBytes());
+                        long count = subParser.readLongChild("count".getBytes(), -1);
+                        Assert.assertFalse(subParser.seekChild("missing".getBytes()));
+                        Assert.assertEquals(FastXmlParser.END_DOCUMENT, subParser.next());
+                        return name + ":" + count;
+                    }
+                }));
+            }
+            Assert.assertTrue(parser.isMatch("order".getBytes()));
+            Assert.assertEquals(101, futures.size());
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals("汤姆 & " + i + ":" + i, futures.get(i).get());
+            }
+            Assert.assertEquals("null:-1", futures.get(100).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * peek into an element by mark and reset, then parse it again
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testMark() throws ParseException {
+        String xml = "<order><item sku=\"a\"><type>book</type><price>3</price></item><item sku=\"b\"><type>pen</type></item></order>";
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(xml.getBytes(), null);
+        try {
+            parser.reset();
+            Assert.fail("parser should not be reset without mark");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertTrue(parser.nextStartTag());
+        Assert.assertTrue(parser.seekChild("item".getBytes()));
+        parser.selectAttribute(parser.indexOfAttribute("sku".getBytes()));
+        parser.mark();
+        Assert.assertEquals("book", parser.readStringChild("type".getBytes()));
+        parser.reset();
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.getCurrentEvent());
+        Assert.assertTrue(parser.isMatch("item".getBytes()));
+        Assert.assertEquals(2, parser.getDepth());
+        Assert.assertEquals(1, parser.getAttributeCount());
+        Assert.assertEquals("@sku,=a,<type3,'book,>type,<price3,'3,>price,>item,<item2,@sku,=b,<type3,'pen,>type,>item,>order,", events(parser));
+
+        // the mark is kept after reset
+        parser.reset();
+        Assert.assertEquals(3, parser.readIntChild("price".getBytes(), -1));
+        parser.reset();
+        parser.release();
+        try {
+            parser.reset();
+            Assert.fail("parser should not be reset after release");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+
+    /**
+     * values are decoded in place inside the input array, and the same events are returned as decoding by copying
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testInSitu() throws ParseException {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<root a=\"x &amp; &quot;y&quot;\" b='&#x6C64;&#22982;'>"
+                + "<n>&#49;2</n><t>a &lt; b<![CDATA[ <c>&amp;</c> ]]>&gt;</t><u>plain</u><e/><v></v></root>";
+        Charset utf8 = Charset.forName("utf-8");
+        String expect = "<root1,@a,=x & \"y\",@b,=汤姆,<n2,'12,>n,<t2,'a < b <c>&amp;</c> >,>t,<u2,'plain,>u,<e2,/,<v2,>v,>root,";
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setInput(xml.getBytes(utf8), null);
+        Assert.assertEquals(expect, events(parser));
+
+        byte[] bytes = xml.getBytes(utf8);
+        parser.setOptions(new FastXmlParser.Options().setInSitu(true));
+        parser.setInput(bytes, null);
+        Assert.assertEquals(expect, events(parser));
+        Assert.assertFalse(xml.equals(new String(bytes, utf8)));
+
+        // attributes looked up at start tag are decoded by copying, and numbers are parsed from decoded bytes
+        parser.setInput(xml.getBytes(utf8), null);
+        Assert.assertTrue(parser.nextStartTag());
+        parser.selectAttribute(parser.indexOfAttribute("a".getBytes()));
+        Assert.assertEquals("x & \"y\"", parser.getStringWithDecoding());
+        parser.skipAttributes();
+        Assert.assertEquals(12, parser.readIntChild("n".getBytes(), -1));
+        Assert.assertTrue(parser.seekChild("t".getBytes()));
+        Assert.assertEquals(FastXmlParser.TEXT, parser.next());
+        Assert.assertEquals("a < b <c>&amp;</c> >", new String(parser.getRawBytes(), utf8));
+        try {
+            parser.mark();
+            Assert.fail("mark should not be supported in in-situ mode");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    /**
+     * repeated values are the same string when a cache is set by options, values with markup are not cached
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testStringCache() throws ParseException {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < 10; i++) {
+            sb.append("<row currency=\"CNY\"><city>汤姆</city><note>a &amp; b</note></row>");
+        }
+        byte[] bytes = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+        StringCache cache = new StringCache();
+        FastXmlParser4ByteArray parser = new FastXmlParser4ByteArray();
+        parser.setOptions(new FastXmlParser.Options().setStringCache(cache));
+        parser.setInput(bytes, null);
+        List<String> values = new ArrayList<String>();
+        int event;
+        while ((event = parser.next()) != FastXmlParser.END_DOCUMENT) {
+            if (event == FastXmlParser.ATTRIBUTE_VALUE || event == FastXmlParser.TEXT) {
+                values.add(parser.getStringWithDecoding());
+            }
+        }
+        Assert.assertEquals(30, values.size());
+        for (int i = 3; i < 30; i++) {
+            Assert.assertEquals(values.get(i - 3), values.get(i));
+            if (i % 3 != 2) {
+                Assert.assertSame(values.get(i - 3), values.get(i));
+            } else {
+                Assert.assertNotSame(values.get(i - 3), values.get(i));
+            }
+        }
+        Assert.assertEquals("汤姆", values.get(1));
+        Assert.assertEquals(18, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    /**
+     * a SOAP envelope whose Body contains comments, CDATA, processing instructions, nested Body and '&gt;' in attribute values
+     */
+    private static String envelope(int items) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Envelope><Header a=\"1\"/>");
+        sb.append("<Body id=\"b>1\">\n  <!-- </Body> in comment -->\n  <order><![CDATA[</order> <x>]]></order><?pi </Body>?>\n  <Body/><list>");
+        for (int i = 0; i < items; i++) {
+            sb.append("<item k='>").append(i).append("'>汤姆 &amp; ").append(i).append("</item >");
+        }
+        sb.append("</list>\n</Body ><Tail>t</Tail></Envelope>");
+        return sb.toString();
+    }
+
+    private static String body(String envelope) {
+        return envelope.substring(envelope.indexOf("<Body id"), envelope.indexOf("<Tail>"));
+    }
+
+    private static void moveToStartTag(FastXmlParser parser, String name) throws ParseException {
+        while (parser.next() != FastXmlParser.START_TAG || !parser.isMatch(name.getBytes())) {
+        }
+    }
+
+    /**
+     * after copying, the current event should be the end tag of copied element, and parsing should continue after it
+     */
+    private static void assertAfterBody(FastXmlParser parser) throws ParseException {
+        Assert.assertEquals(FastXmlParser.END_TAG, parser.getCurrentEvent());
+        Assert.assertTrue(parser.isMatch("Body".getBytes()));
+        Assert.assertEquals(1, parser.getDepth());
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertTrue(parser.isMatch("Tail".getBytes()));
+        Assert.assertEquals(FastXmlParser.TEXT, parser.next());
+        Assert.assertEquals("t", parser.getString());
+    }
 }
@@ -17,15 +17,27 @@ package function;
 
 import com.github.fastxml.FastXmlFactory;
 import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4InputStream;
 import com.github.fastxml.exception.NumberFormatException;
 import com.github.fastxml.exception.ParseException;
+import com.github.fastxml.util.ParseUtils;
 import org.junit.Assert;
 import org.junit.Test;
 import util.FileLoaderUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Created by weager on 2016/06/07.
@@ -184,4 +196,671 @@ public class Parser4InputStreamTest {
         }
     }
 
+    /**
+     * tokens span segments when buffer is small and the stream returns a few bytes each time,
+     * the result should be the same as parsing the whole byte array
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testSmallBuffer() throws IOException, ParseException {
+        String[] fileNames = {"bioinfo.xml", "book.xml", "form.xml", "soap.xml", "test1-gbk.xml", "test2.xml"};
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        for (String fileName : fileNames) {
+            byte[] bytes = FileLoaderUtils.loadClasspathFile(fileName);
+            String expect = traverse(FastXmlFactory.newInstance(bytes));
+            // reuse parser and its segments
+            parser.setInput(new TrickleInputStream(bytes, 7), 1024, null);
+            Assert.assertEquals(expect, traverse(parser));
+            parser.setInput(new ByteArrayInputStream(bytes), 1024, null);
+            Assert.assertEquals(expect, traverse(parser));
+        }
+    }
+
+    /**
+     * read input stream ahead on a helper thread, the result should be the same as parsing the whole byte array
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testReadAhead() throws IOException, ParseException {
+        String[] fileNames = {"bioinfo.xml", "book.xml", "form.xml", "soap.xml", "test1-gbk.xml", "test2.xml"};
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        for (String fileName : fileNames) {
+            byte[] bytes = FileLoaderUtils.loadClasspathFile(fileName);
+            String expect = traverse(FastXmlFactory.newInstance(bytes));
+            parser.setInput(new TrickleInputStream(bytes, 100), 1024, null, 2, null);
+            Assert.assertEquals(expect, traverse(parser));
+            Assert.assertEquals(expect, traverse(FastXmlFactory.newReadAheadInstance(new ByteArrayInputStream(bytes))));
+        }
+    }
+
+    /**
+     * IOException thrown on the read-ahead thread should be thrown by next()
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testReadAheadIOException() throws IOException {
+        final byte[] bytes = FileLoaderUtils.loadClasspathFile("bioinfo.xml");
+        final IOException exception = new IOException("broken stream");
+        InputStream is = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            private int count;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (count > 5000) {
+                    throw exception;
+                }
+                int n = super.read(b, off, Math.min(len, 1000));
+                count += n;
+                return n;
+            }
+        };
+        try {
+            FastXmlParser parser = FastXmlFactory.newReadAheadInstance(is, 1024, null, 2, null);
+            while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            }
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            Assert.assertSame(exception, e.getCause());
+        }
+    }
+
+    /**
+     * after close(), the read-ahead thread should not read input stream again, even if it was blocked in a read
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReadAheadClose() throws Exception {
+        final byte[] bytes = FileLoaderUtils.loadClasspathFile("bioinfo.xml");
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger reads = new AtomicInteger();
+        InputStream is = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (reads.incrementAndGet() == 5) { // blocked at the beginning of a segment, which is not full after it
+                    blocked.countDown();
+                    while (release.getCount() > 0) { // like reading a socket, interrupt doesn't stop it
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            // ignore
+                        }
+                    }
+                }
+                return super.read(b, off, Math.min(len, 1000));
+            }
+        };
+        FastXmlParser4InputStream parser = (FastXmlParser4InputStream) FastXmlFactory.newReadAheadInstance(is, 1024, null, 2, null);
+        Assert.assertEquals(FastXmlParser.START_DOCUMENT, parser.next());
+        Assert.assertTrue(blocked.await(10, TimeUnit.SECONDS));
+        parser.close();
+        int readsWhenClosed = reads.get();
+        release.countDown();
+        Thread.sleep(100);
+        Assert.assertEquals(readsWhenClosed, reads.get());
+    }
+
+    /**
+     * row and column of ParseException should point to the wrong byte, even if some segments have been released
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testErrorLocation() throws ParseException {
+        assertErrorLocation("<a>\n  <b x=1/>\n</a>".getBytes(), 2, 8);
+        StringBuilder sb = new StringBuilder("<root>\n");
+        for (int i = 0; i < 500; i++) {
+            sb.append("  <item id=\"").append(i).append("\">text</item>\n");
+        }
+        sb.append("  <item id=500>text</item>\n</root>");
+        assertErrorLocation(sb.toString().getBytes(), 502, 12);
+    }
+
+    /**
+     * gzip, concatenated gzip members, BGZF and plain xml should be parsed as the whole byte array
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testGzip() throws IOException, ParseException {
+        StringBuilder sb = new StringBuilder("<root>\n");
+        for (int i = 0; i < 5000; i++) {
+            sb.append("  <item id=\"").append(i).append("\">text &amp; ").append(i * 31).append("</item>\n");
+        }
+        sb.append("</root>");
+        byte[] big = sb.toString().getBytes();
+        String[] fileNames = {"bioinfo.xml", "book.xml", "test1-gbk.xml", "test2.xml"};
+        byte[][] docs = new byte[fileNames.length + 1][];
+        for (int i = 0; i < fileNames.length; i++) {
+            docs[i] = FileLoaderUtils.loadClasspathFile(fileNames[i]);
+        }
+        docs[fileNames.length] = big;
+
+        for (byte[] bytes : docs) {
+            String expect = traverse(FastXmlFactory.newInstance(bytes));
+            Assert.assertEquals(expect, traverse(FastXmlFactory.newGzipInstance(new ByteArrayInputStream(bytes))));
+            Assert.assertEquals(expect, traverse(FastXmlFactory.newGzipInstance(new ByteArrayInputStream(gzip(bytes, bytes.length)))));
+            Assert.assertEquals(expect, traverse(FastXmlFactory.newGzipInstance(new ByteArrayInputStream(gzip(bytes, 3000)))));
+            Assert.assertEquals(expect, traverse(FastXmlFactory.newGzipInstance(new ByteArrayInputStream(bgzf(bytes, 3000)), 1024, null, null, null)));
+            Assert.assertEquals(expect, traverse(FastXmlFactory.newGzipInstance(new TrickleInputStream(bgzf(bytes, 65280), 100))));
+        }
+    }
+
+    /**
+     * corrupt BGZF member should be reported by next()
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testCorruptBgzf() throws IOException {
+        byte[] bytes = bgzf(FileLoaderUtils.loadClasspathFile("bioinfo.xml"), 3000);
+        bytes[bytes.length - 40] ^= 0x55; // CRC32 of the last member will not match
+        try {
+            FastXmlParser parser = FastXmlFactory.newGzipInstance(new ByteArrayInputStream(bytes), 1024, null, null, null);
+            while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            }
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            Assert.assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    /**
+     * compress bytes to concatenated gzip members
+     */
+    private static byte[] gzip(byte[] bytes, int memberSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int offset = 0; offset < bytes.length; offset += memberSize) {
+            GZIPOutputStream gzip = new GZIPOutputStream(out);
+            gzip.write(bytes, offset, Math.min(memberSize, bytes.length - offset));
+            gzip.finish();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * compress bytes to BGZF members, ended with an empty member as EOF marker
+     */
+    private static byte[] bgzf(byte[] bytes, int memberSize) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[70000];
+        for (int offset = 0; offset <= bytes.length; offset += memberSize) {
+            int length = Math.min(memberSize, bytes.length - offset);
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            deflater.setInput(bytes, offset, length);
+            deflater.finish();
+            int compressed = 0;
+            while (!deflater.finished()) {
+                compressed += deflater.deflate(buffer, compressed, buffer.length - compressed);
+            }
+            deflater.end();
+            CRC32 crc = new CRC32();
+            crc.update(bytes, offset, length);
+            int blockSize = 18 + compressed + 8;
+            out.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0,
+                    (byte) (blockSize - 1), (byte) ((blockSize - 1) >> 8)}, 0, 18);
+            out.write(buffer, 0, compressed);
+            writeInt(out, (int) crc.getValue());
+            writeInt(out, length);
+            if (length == 0) {
+                break;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+
+    /**
+     * parse concatenated documents in multi-document mode, documents span segments
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testMultiDocument() throws IOException, ParseException {
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setMultiDocument(true);
+        byte[] bytes = concatenatedDocuments(100);
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, null);
+        Assert.assertEquals(expectedDocuments(100), traverseDocuments(parser));
+        Assert.assertEquals(FastXmlParser.END_DOCUMENT, parser.next());
+        parser.setInput(new ByteArrayInputStream(bytes), 1024, null, 2, null);
+        Assert.assertEquals(expectedDocuments(100), traverseDocuments(parser));
+    }
+
+    private void assertErrorLocation(byte[] bytes, int row, int column) throws ParseException {
+        FastXmlParser parser = FastXmlFactory.newInstance(new ByteArrayInputStream(bytes), 1024, null);
+        try {
+            while (parser.next() != FastXmlParser.END_DOCUMENT) {
+            }
+            Assert.fail("ParseException should be thrown");
+        } catch (ParseException e) {
+            Assert.assertEquals(row, e.getRow());
+            Assert.assertEquals(column, e.getColumn());
+            Assert.assertEquals(row, parser.getRow());
+            Assert.assertEquals(column, parser.getColumn());
+        }
+    }
+
+    private String traverse(FastXmlParser parser) throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            sb.append(event).append(':').append(parser.getDepth()).append(':').append(parser.getStringWithDecoding()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * input stream which returns a few bytes on each read
+     */
+    private static class TrickleInputStream extends ByteArrayInputStream {
+        private final int maxCount;
+
+        TrickleInputStream(byte[] bytes, int maxCount) {
+            super(bytes);
+            this.maxCount = maxCount;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, maxCount));
+        }
+    }
+
+    /**
+     * concatenated documents with their own declarations, separated by nothing, new lines or NUL bytes
+     */
+    private static byte[] concatenatedDocuments(int copies) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < copies; i++) {
+            out.write(("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<a x=\"" + i + "\">one</a>\n").getBytes("utf-8"));
+            out.write("<?xml version=\"1.0\" encoding=\"GBK\"?><b>".getBytes("GBK"));
+            out.write("汤姆".getBytes("GBK"));
+            out.write("</b>\0\0<!-- log entry --><c/>\0".getBytes("utf-8"));
+            out.write("<d><e>2</e></d>".getBytes("utf-8"));
+        }
+        out.write("\n\0\n".getBytes("utf-8"));
+        return out.toByteArray();
+    }
+
+    /**
+     * traverse documents until the last END_DOCUMENT, documents are separated by '|'
+     */
+    private static String traverseDocuments(FastXmlParser parser) throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        do {
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.START_DOCUMENT) {
+                    sb.append(parser.getEncode().name()).append(':');
+                } else if (event != FastXmlParser.END_TAG_WITHOUT_TEXT) {
+                    sb.append(parser.getStringWithDecoding()).append(',');
+                }
+            }
+            sb.append('|');
+        } while (parser.getNextEvent() == FastXmlParser.START_DOCUMENT);
+        return sb.toString();
+    }
+
+    private static String expectedDocuments(int copies) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < copies; i++) {
+            sb.append("UTF-8:a,x,").append(i).append(",one,a,|GBK:b,汤姆,b,|").append(Charset.defaultCharset().name())
+                    .append(":c,|").append(Charset.defaultCharset().name()).append(":d,e,2,e,d,|");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * copy the current element unchanged while reading it, the element spans many segments
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testCopyCurrentElement() throws IOException, ParseException {
+        Charset utf8 = Charset.forName("utf-8");
+        String envelope = envelope(500);
+        byte[] bytes = envelope.getBytes(utf8);
+        String body = body(envelope);
+        int bodyBegin = envelope.substring(0, envelope.indexOf("<Body id")).getBytes(utf8).length;
+
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, null);
+        moveToStartTag(parser, "Header");
+        long[] range = parser.getCurrentElementRange();
+        Assert.assertEquals("<Header a=\"1\"/>", new String(bytes, (int) range[0], (int) (range[1] - range[0]), utf8));
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        range = parser.getCurrentElementRange();
+        Assert.assertEquals(bodyBegin, range[0]);
+        Assert.assertEquals(bodyBegin + body.getBytes(utf8).length, range[1]);
+        assertAfterBody(parser);
+
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, null);
+        moveToStartTag(parser, "Body");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(body.getBytes(utf8).length, parser.copyCurrentElement(out));
+        Assert.assertEquals(body, new String(out.toByteArray(), utf8));
+        assertAfterBody(parser);
+
+        parser.setInput(new ByteArrayInputStream(bytes), 1024, null, 2, null);
+        moveToStartTag(parser, "Body");
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        parser.copyCurrentElement(buffer);
+        buffer.flip();
+        byte[] copied = new byte[buffer.remaining()];
+        buffer.get(copied);
+        Assert.assertEquals(body, new String(copied, utf8));
+        assertAfterBody(parser);
+    }
+
+    /**
+     * attributes of a start tag which spans many segments can be looked up and read at once
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testAttributes() throws IOException, ParseException {
+        StringBuilder sb = new StringBuilder("<a><item");
+        for (int i = 0; i < 200; i++) {
+            sb.append(" attr").append(i).append("=\"").append(i).append(i % 10 == 0 ? " &amp; 汤姆" : "").append('"');
+        }
+        String xml = sb.append("><b/></item><c/></a>").toString();
+        Charset utf8 = Charset.forName("utf-8");
+
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new TrickleInputStream(xml.getBytes(utf8), 37), 1024, utf8);
+        moveToStartTag(parser, "item");
+        Assert.assertEquals(200, parser.getAttributeCount());
+        parser.selectAttribute(parser.indexOfAttribute("attr150".getBytes()));
+        Assert.assertEquals("150 & 汤姆", parser.getStringWithDecoding());
+        parser.selectAttribute(parser.indexOfAttribute("attr3".getBytes()));
+        Assert.assertEquals(3, parser.getInt());
+        final int[] sum = new int[2];
+        parser.readAttributes(new FastXmlParser.AttributeSink() {
+            public void attribute(byte[] bytes, int nameOffset, int nameLength, int valueOffset, int valueLength) {
+                sum[0]++;
+                sum[1] += Integer.parseInt(new String(bytes, valueOffset, valueLength).split(" ")[0]);
+            }
+        });
+        Assert.assertEquals(200, sum[0]);
+        Assert.assertEquals(199 * 100, sum[1]);
+        parser.skipAttributes();
+        Assert.assertTrue(parser.isMatch("item".getBytes()));
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertTrue(parser.isMatch("b".getBytes()));
+
+        // step through attributes after scanning them
+        parser.setInput(new TrickleInputStream(xml.getBytes(utf8), 37), 1024, utf8);
+        moveToStartTag(parser, "item");
+        Assert.assertEquals(200, parser.getAttributeCount());
+        int count = 0;
+        while (parser.next() == FastXmlParser.ATTRIBUTE_NAME) {
+            Assert.assertEquals(FastXmlParser.ATTRIBUTE_VALUE, parser.next());
+            count++;
+        }
+        Assert.assertEquals(200, count);
+        Assert.assertTrue(parser.isMatch("b".getBytes()));
+    }
+
+    /**
+     * attributes, text and elements deeper than max depth are skipped by the scanner across segments
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testOptions() throws IOException, ParseException {
+        StringBuilder sb = new StringBuilder("<root><a x=\"1\" y='/>'><list>");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("<item k=\"").append(i).append("\">汤姆 &amp; <![CDATA[</item>]]></item>");
+        }
+        sb.append("</list><b/></a><d v=\"2\">text &amp; more</d><e f=\"4\"/></root>");
+        byte[] bytes = sb.toString().getBytes(Charset.forName("utf-8"));
+
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setOptions(new FastXmlParser.Options().setMaxDepth(2));
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, null);
+        Assert.assertEquals("<root1,<a2,@x,=1,@y,=/>,>a,<d2,@v,=2,'text & more,>d,<e2,@f,=4,/,>root,", events(parser));
+        Assert.assertEquals(0, parser.getDepth());
+
+        parser.setOptions(new FastXmlParser.Options().setSkipAttributes(true).setSkipText(true));
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, null);
+        String events = events(parser);
+        Assert.assertTrue(events.startsWith("<root1,<a2,<list3,<item4,>item,<item4,>item,"));
+        Assert.assertTrue(events.endsWith(">item,>list,<b3,/,>a,<d2,>d,<e2,/,>root,"));
+    }
+
+    /**
+     * text and attribute values with or without non-ASCII bytes, CDATA blocks and entity references across segments
+     * are read by the fast path or by decoding, as the flags recorded by the scanner
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testTokenFlags() throws IOException, ParseException {
+        StringBuilder sb = new StringBuilder("<root>");
+        for (int i = 0; i < 300; i++) {
+            sb.append("<a v=\"").append(i).append("\" x=\"&lt;").append(i).append("\" w='汤姆").append(i).append("'>")
+                    .append("<b>plain ").append(i).append("</b><c>汤姆 ").append(i).append("</c>")
+                    .append("<d><![CDATA[汤姆 &amp; ").append(i).append("]]></d><e>a &amp; ").append(i).append("</e></a>");
+        }
+        byte[] bytes = sb.append("</root>").toString().getBytes(Charset.forName("utf-8"));
+        byte[] name = "汤姆".getBytes(Charset.forName("utf-8"));
+        String rawName = ParseUtils.parseString(name, 0, name.length); // getString() doesn't decode by charset
+        StringBuilder expect = new StringBuilder("<root1,");
+        for (int i = 0; i < 300; i++) {
+            expect.append("<a2,@v,=").append(i).append(",@x,=<").append(i).append(",@w,=").append(rawName).append(i)
+                    .append(",<b3,'plain ").append(i).append(",>b,<c3,'汤姆 ").append(i).append(",>c,<d3,'汤姆 &amp; ").append(i)
+                    .append(",>d,<e3,'a & ").append(i).append(",>e,>a,");
+        }
+        expect.append(">root,");
+
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, Charset.forName("utf-8"));
+        Assert.assertEquals(expect.toString(), events(parser));
+
+        // attribute values looked up at start tag keep their flags
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, Charset.forName("utf-8"));
+        for (int i = 0; i < 300; i++) {
+            moveToStartTag(parser, "a");
+            parser.selectAttribute(parser.indexOfAttribute("w".getBytes()));
+            Assert.assertEquals("汤姆" + i, parser.getStringWithDecoding());
+            parser.selectAttribute(parser.indexOfAttribute("x".getBytes()));
+            Assert.assertEquals("<" + i, parser.getStringWithDecoding());
+        }
+    }
+
+    /**
+     * bytes from the marked token are kept while peeking across many segments, until lookahead limit is exceeded
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testMark() throws IOException, ParseException {
+        StringBuilder sb = new StringBuilder("<root><head id=\"1\"/><list>");
+        for (int i = 0; i < 1000; i++) {
+            sb.append("<item k=\"").append(i).append("\">汤姆 &amp; ").append(i).append("</item>\n");
+        }
+        String xml = sb.append("</list><tail>end</tail></root>").toString();
+        Charset utf8 = Charset.forName("utf-8");
+        byte[] bytes = xml.getBytes(utf8);
+
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, utf8);
+        moveToStartTag(parser, "list");
+        parser.mark();
+        moveToStartTag(parser, "tail");
+        parser.reset();
+        Assert.assertTrue(parser.isMatch("list".getBytes()));
+        Assert.assertEquals(2, parser.getDepth());
+        Assert.assertEquals(1, parser.getRow());
+        String events = events(parser);
+        Assert.assertTrue(events.startsWith("<item3,@k,=0,'汤姆 & 0,>item,"));
+        Assert.assertTrue(events.endsWith("'汤姆 & 999,>item,>list,<tail2,'end,>tail,>root,"));
+
+        // the mark is dropped when lookahead limit is exceeded
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, utf8);
+        parser.setLookaheadLimit(4096);
+        moveToStartTag(parser, "list");
+        parser.mark();
+        moveToStartTag(parser, "tail");
+        try {
+            parser.reset();
+            Assert.fail("mark should be dropped");
+        } catch (ParseException e) {
+            // expected
+        }
+        Assert.assertEquals("end", parser.nextText());
+    }
+
+    /**
+     * events till the end of document: "&lt;" name depth for START_TAG, "&gt;" name for END_TAG, "/" for END_TAG_WITHOUT_TEXT,
+     * "@" name for ATTRIBUTE_NAME, "=" value for ATTRIBUTE_VALUE and "'" text for TEXT
+     */
+    private static String events(FastXmlParser parser) throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            if (event == FastXmlParser.START_TAG) {
+                sb.append('<').append(parser.getString()).append(parser.getDepth());
+            } else if (event == FastXmlParser.END_TAG) {
+                sb.append('>').append(parser.getString());
+            } else if (event == FastXmlParser.END_TAG_WITHOUT_TEXT) {
+                sb.append('/');
+            } else if (event == FastXmlParser.ATTRIBUTE_NAME) {
+                sb.append('@').append(parser.getString());
+            } else if (event == FastXmlParser.ATTRIBUTE_VALUE) {
+                sb.append('=').append(parser.getString());
+            } else if (event == FastXmlParser.TEXT) {
+                sb.append('\'').append(parser.getStringWithDecoding());
+            } else {
+                continue;
+            }
+            sb.append(',');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * read children of records by name across segments, skipped elements are not kept in buffer
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testCursor() throws IOException, ParseException {
+        StringBuilder sb = new StringBuilder("<rows>");
+        for (int i = 0; i < 500; i++) {
+            sb.append("<row><ignored a=\"1\"><x>").append(i).append("</x><y/></ignored><id>").append(i)
+                    .append("</id><name>汤姆 &amp; ").append(i).append("</name></row>");
+        }
+        byte[] bytes = sb.append("</rows>").toString().getBytes(Charset.forName("utf-8"));
+
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, Charset.forName("utf-8"));
+        Assert.assertTrue(parser.nextStartTag());
+        int count = 0;
+        while (parser.seekChild("row".getBytes())) {
+            Assert.assertEquals(count, parser.readIntChild("id".getBytes(), -1));
+            Assert.assertEquals("汤姆 & " + count, parser.readStringChild("name".getBytes()));
+            Assert.assertFalse(parser.seekChild("missing".getBytes()));
+            count++;
+        }
+        Assert.assertEquals(500, count);
+        Assert.assertFalse(parser.nextStartTag());
+    }
+
+    /**
+     * tokens of nextBatch() are copied, so they are valid after segments are released
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testNextBatch() throws IOException, ParseException {
+        Charset utf8 = Charset.forName("utf-8");
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><rows>");
+        for (int i = 0; i < 300; i++) {
+            sb.append("<row id=\"").append(i).append("\" note='汤姆 &amp; ").append(i).append("'><text>");
+            for (int j = 0; j < i % 50; j++) {
+                sb.append("汤姆 &lt;").append(j).append("&gt; <![CDATA[<x>]]>");
+            }
+            sb.append("</text><empty/></row>");
+        }
+        byte[] bytes = sb.append("</rows>").toString().getBytes(utf8);
+        FastXmlParser4InputStream parser = new FastXmlParser4InputStream();
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, null);
+        StringBuilder expected = new StringBuilder();
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            expected.append(event).append(parser.getDepth()).append(':').append(parser.getStringWithDecoding()).append(',');
+        }
+
+        int[] events = new int[500];
+        int[] offsets = new int[500];
+        int[] lengths = new int[500];
+        int[] depths = new int[500];
+        parser.setInput(new TrickleInputStream(bytes, 37), 1024, null);
+        StringBuilder actual = new StringBuilder();
+        int count;
+        while ((count = parser.nextBatch(events, offsets, lengths, depths, 500)) > 0) {
+            for (int i = 0; i < count; i++) {
+                if (events[i] != FastXmlParser.END_DOCUMENT) {
+                    actual.append(events[i]).append(depths[i]).append(':')
+                            .append(ParseUtils.parseStringWithDecoding(parser.getBatchBytes(), offsets[i], lengths[i], utf8)).append(',');
+                }
+            }
+        }
+        Assert.assertEquals(expected.toString(), actual.toString());
+    }
+
+
+    /**
+     * a SOAP envelope whose Body contains comments, CDATA, processing instructions, nested Body and '&gt;' in attribute values
+     */
+    private static String envelope(int items) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Envelope><Header a=\"1\"/>");
+        sb.append("<Body id=\"b>1\">\n  <!-- </Body> in comment -->\n  <order><![CDATA[</order> <x>]]></order><?pi </Body>?>\n  <Body/><list>");
+        for (int i = 0; i < items; i++) {
+            sb.append("<item k='>").append(i).append("'>汤姆 &amp; ").append(i).append("</item >");
+        }
+        sb.append("</list>\n</Body ><Tail>t</Tail></Envelope>");
+        return sb.toString();
+    }
+
+    private static String body(String envelope) {
+        return envelope.substring(envelope.indexOf("<Body id"), envelope.indexOf("<Tail>"));
+    }
+
+    private static void moveToStartTag(FastXmlParser parser, String name) throws ParseException {
+        while (parser.next() != FastXmlParser.START_TAG || !parser.isMatch(name.getBytes())) {
+        }
+    }
+
+    /**
+     * after copying, the current event should be the end tag of copied element, and parsing should continue after it
+     */
+    private static void assertAfterBody(FastXmlParser parser) throws ParseException {
+        Assert.assertEquals(FastXmlParser.END_TAG, parser.getCurrentEvent());
+        Assert.assertTrue(parser.isMatch("Body".getBytes()));
+        Assert.assertEquals(1, parser.getDepth());
+        Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+        Assert.assertTrue(parser.isMatch("Tail".getBytes()));
+        Assert.assertEquals(FastXmlParser.TEXT, parser.next());
+        Assert.assertEquals("t", parser.getString());
+    }
 }
@@ -0,0 +1,343 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlFactory;
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlParser4ByteArray;
+import com.github.fastxml.FastXmlParser4Pipeline;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+import util.FileLoaderUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * tests of FastXmlParser4Pipeline
+ */
+public class Parser4PipelineTest {
+
+    private final static String[] FILE_NAMES = {"bioinfo.xml", "book.xml", "form.xml", "soap.xml", "test1-gbk.xml", "test2.xml"};
+
+    /**
+     * tokens replayed from the ring should be the same as parsing by FastXmlParser4ByteArray,
+     * the small ring makes producer wait for consumer
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testTraverse() throws IOException, ParseException {
+        int[] waitStrategies = {FastXmlParser4Pipeline.WAIT_BUSY_SPIN, FastXmlParser4Pipeline.WAIT_YIELD, FastXmlParser4Pipeline.WAIT_PARK};
+        for (int waitStrategy : waitStrategies) {
+            FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(16, waitStrategy, null);
+            try {
+                for (String fileName : FILE_NAMES) {
+                    byte[] bytes = FileLoaderUtils.loadClasspathFile(fileName);
+                    String expect = traverse(FastXmlFactory.newInstance(bytes));
+                    parser.setInput(bytes, null);
+                    Assert.assertEquals(expect, traverse(parser));
+                    Assert.assertEquals(FastXmlParser.END_DOCUMENT, parser.next());
+                }
+            } finally {
+                parser.close();
+            }
+        }
+    }
+
+    /**
+     * the previous document can be abandoned, and skipCurrentTag() works on replayed tokens
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testAbandonAndSkip() throws IOException, ParseException {
+        byte[] bioinfo = FileLoaderUtils.loadClasspathFile("bioinfo.xml");
+        byte[] test2 = FileLoaderUtils.loadClasspathFile("test2.xml");
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(8, FastXmlParser4Pipeline.WAIT_PARK, null);
+        try {
+            parser.setInput(bioinfo, null);
+            for (int i = 0; i < 20; i++) {
+                parser.next();
+            }
+            parser.setInput(test2, null);
+            StringBuilder sb = new StringBuilder();
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.START_TAG) {
+                    if ("package".equals(parser.getString())) {
+                        parser.skipCurrentTag();
+                    } else {
+                        sb.append(parser.getString()).append(',');
+                    }
+                }
+            }
+            Assert.assertEquals("bix,", sb.toString());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * documents following the first one are replayed in multi-document mode
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testMultiDocument() throws ParseException {
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(4, FastXmlParser4Pipeline.WAIT_YIELD, null);
+        try {
+            parser.setMultiDocument(true);
+            parser.setInput("<a>1</a>\n<a>2</a>\0<a>3</a>".getBytes(), null);
+            StringBuilder sb = new StringBuilder();
+            do {
+                for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                    if (event == FastXmlParser.TEXT) {
+                        sb.append(parser.getInt());
+                    }
+                }
+            } while (parser.getNextEvent() == FastXmlParser.START_DOCUMENT);
+            Assert.assertEquals("123", sb.toString());
+            Assert.assertEquals(FastXmlParser.END_DOCUMENT, parser.next());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * charset of each document should be replayed with its records, even if producer has parsed the next declaration
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testMultiDocumentCharset() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><a>汤姆</a>\n".getBytes("UTF-8"));
+        out.write("<?xml version=\"1.0\" encoding=\"GBK\"?><a>杰瑞</a>".getBytes("GBK"));
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(64, FastXmlParser4Pipeline.WAIT_YIELD, null);
+        try {
+            parser.setMultiDocument(true);
+            parser.setInput(out.toByteArray(), null);
+            Thread.sleep(100); // let producer tokenize both documents first
+            StringBuilder sb = new StringBuilder();
+            do {
+                for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                    if (event == FastXmlParser.TEXT) {
+                        sb.append(parser.getEncode().name()).append(':').append(parser.getStringWithDecoding()).append(',');
+                    }
+                }
+            } while (parser.getNextEvent() == FastXmlParser.START_DOCUMENT);
+            Assert.assertEquals("UTF-8:汤姆,GBK:杰瑞,", sb.toString());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * range of the current element should be found by replaying records of its descendants
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testCurrentElementRange() throws ParseException {
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(4, FastXmlParser4Pipeline.WAIT_YIELD, null);
+        try {
+            String xml = "<a><b x=\"1>\"><c/><b>text</b></b><d y='2'/><e/></a>";
+            parser.setInput(xml.getBytes(), null);
+            StringBuilder sb = new StringBuilder();
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.START_TAG && parser.getDepth() == 2) {
+                    long[] range = parser.getCurrentElementRange();
+                    sb.append(xml.substring((int) range[0], (int) range[1])).append('|');
+                }
+            }
+            Assert.assertEquals("<b x=\"1>\"><c/><b>text</b></b>|<d y='2'/>|<e/>|", sb.toString());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * ranges should be the same as byte array parser when attributes are skipped by producer,
+     * the last record of an element without descendants is its tag name then, and quoted values after it may contain '&gt;'
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testCurrentElementRangeSkippingAttributes() throws ParseException {
+        String xml = "<a><b x=\"1>2\"/><f z='a>b'></f><g k=\">\"><h/></g><i j=\"/>\">t</i></a>";
+        FastXmlParser.Options options = new FastXmlParser.Options().setSkipAttributes(true);
+        FastXmlParser4ByteArray expected = new FastXmlParser4ByteArray();
+        expected.setOptions(options);
+        expected.setInput(xml.getBytes(), null);
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(4, FastXmlParser4Pipeline.WAIT_YIELD, null);
+        try {
+            parser.setOptions(options);
+            parser.setInput(xml.getBytes(), null);
+            int count = 0;
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                Assert.assertEquals(expected.next(), event);
+                if (event == FastXmlParser.START_TAG && parser.getDepth() == 2) {
+                    Assert.assertArrayEquals(expected.getCurrentElementRange(), parser.getCurrentElementRange());
+                    count++;
+                }
+            }
+            Assert.assertEquals(4, count);
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * attributes are scanned from document bytes, and their records are replayed to skip them
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testAttributes() throws ParseException {
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(4, FastXmlParser4Pipeline.WAIT_YIELD, null);
+        try {
+            parser.setInput("<a><b x=\"1>\" y='2' z=\"3\"><c/></b><d y=\"4\">t</d></a>".getBytes(), null);
+            StringBuilder sb = new StringBuilder();
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                if (event == FastXmlParser.START_TAG) {
+                    int index = parser.indexOfAttribute("y".getBytes());
+                    if (index >= 0) {
+                        parser.selectAttribute(index);
+                        sb.append(parser.getInt());
+                    }
+                    sb.append(parser.getAttributeCount()).append(',');
+                    parser.skipAttributes();
+                } else if (event == FastXmlParser.ATTRIBUTE_NAME || event == FastXmlParser.ATTRIBUTE_VALUE) {
+                    Assert.fail("attributes should be skipped");
+                }
+            }
+            Assert.assertEquals("0,23,0,41,", sb.toString());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * options are applied by producer
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testOptions() throws ParseException {
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(4, FastXmlParser4Pipeline.WAIT_YIELD, null);
+        try {
+            parser.setOptions(new FastXmlParser.Options().setSkipAttributes(true).setSkipText(true).setMaxDepth(2));
+            parser.setInput("<a x=\"1\"><b y='2'><c>deep</c></b><d>text</d><e/></a>".getBytes(), null);
+            StringBuilder sb = new StringBuilder();
+            for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+                sb.append(event).append(parser.getString()).append(',');
+            }
+            Assert.assertEquals("0null,1a,1b,2b,1d,2d,1e,3e,2a,", sb.toString());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * records from the marked token are pinned in ring and replayed again after reset,
+     * the mark is dropped when the ring is full of pinned records, so producer can go on
+     *
+     * @throws ParseException
+     */
+    @Test
+    public void testMark() throws ParseException {
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline(64, FastXmlParser4Pipeline.WAIT_YIELD, null);
+        try {
+            String xml = "<a><list><item k=\"1\">x</item><item k=\"2\">y</item></list><tail>t</tail></a>";
+            parser.setInput(xml.getBytes(), null);
+            Assert.assertTrue(parser.seekChild("a".getBytes()));
+            Assert.assertTrue(parser.seekChild("list".getBytes()));
+            parser.mark();
+            String events = traverse(parser);
+            parser.reset();
+            Assert.assertTrue(parser.isMatch("list".getBytes()));
+            Assert.assertEquals(2, parser.getDepth());
+            Assert.assertEquals(events, traverse(parser));
+            parser.reset();
+            Assert.assertEquals("x", parser.readStringChild("item".getBytes()));
+            Assert.assertEquals("y", parser.readStringChild("item".getBytes()));
+            parser.release();
+            try {
+                parser.reset();
+                Assert.fail("parser should not be reset after release");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+
+            StringBuilder sb = new StringBuilder("<a><list>");
+            for (int i = 0; i < 1000; i++) {
+                sb.append("<item>").append(i).append("</item>");
+            }
+            parser.setInput(sb.append("</list><tail>t</tail></a>").toString().getBytes(), null);
+            Assert.assertTrue(parser.seekChild("a".getBytes()));
+            parser.mark();
+            Assert.assertTrue(parser.seekChild("tail".getBytes()));
+            try {
+                parser.reset();
+                Assert.fail("mark should be dropped");
+            } catch (ParseException e) {
+                // expected
+            }
+            Assert.assertEquals("t", parser.nextText());
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * ParseException thrown by producer should be thrown by next()
+     */
+    @Test
+    public void testParseException() throws ParseException {
+        FastXmlParser4Pipeline parser = new FastXmlParser4Pipeline();
+        try {
+            parser.setInput("<a>\n  <b x=1/>\n</a>".getBytes(), null);
+            try {
+                while (parser.next() != FastXmlParser.END_DOCUMENT) {
+                }
+                Assert.fail("ParseException should be thrown");
+            } catch (ParseException e) {
+                Assert.assertEquals(2, e.getRow());
+                Assert.assertEquals(8, e.getColumn());
+            }
+            // the parser can be reused after an error
+            parser.setInput("<a>b</a>".getBytes(), null);
+            Assert.assertEquals(FastXmlParser.START_DOCUMENT, parser.next());
+            Assert.assertEquals(FastXmlParser.START_TAG, parser.next());
+            Assert.assertEquals(FastXmlParser.TEXT, parser.next());
+            Assert.assertEquals("b", parser.getString());
+        } finally {
+            parser.close();
+        }
+    }
+
+    private String traverse(FastXmlParser parser) throws ParseException {
+        StringBuilder sb = new StringBuilder();
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            sb.append(event).append(':').append(parser.getNextEvent()).append(':').append(parser.getDepth())
+                    .append(':').append(parser.getStringWithDecoding()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlRewriter;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * tests of FastXmlRewriter
+ */
+public class RewriterTest {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+    private final static String DOC = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">\n"
+            + "  <soap:Header><wsse:Security><token a=\">\">secret<!-- <x> --></token></wsse:Security><trace/></soap:Header>\n"
+            + "  <soap:Body>\n"
+            + "    <order id='7' status=\"new\">\n"
+            + "      <card><![CDATA[4111 </card>]]></card>\n"
+            + "      <amount currency=\"CNY\" >12.5</amount>\n"
+            + "      <note/>\n"
+            + "      <item>汤姆</item>\n"
+            + "      <item>杰瑞</item>\n"
+            + "    </order>\n"
+            + "  </soap:Body>\n"
+            + "</soap:Envelope>";
+
+    /**
+     * a document without matched rules should be copied as it is
+     *
+     * @throws ParseException
+     * @throws IOException
+     */
+    @Test
+    public void testCopy() throws ParseException, IOException {
+        byte[] doc = DOC.getBytes(UTF_8);
+        Assert.assertArrayEquals(doc, new FastXmlRewriter().rewrite(doc));
+        Assert.assertArrayEquals(doc, new FastXmlRewriter().delete("/Envelope/Body/missing").rename("missing", "x").rewrite(doc));
+    }
+
+    /**
+     * only tokens changed by rules are written again
+     *
+     * @throws ParseException
+     * @throws IOException
+     */
+    @Test
+    public void testRewrite() throws ParseException, IOException {
+        FastXmlRewriter rewriter = new FastXmlRewriter()
+                .delete("/Envelope/Header/Security")
+                .replaceText("card", "****")
+                .rename("/soap:Envelope/soap:Body/order/amount", "total")
+                .setAttribute("/Envelope/Body/order", "status", "\"done\"")
+                .setAttribute("order", "by", "a & b")
+                .replaceText("note", "<none>")
+                .rename("*/item", "name")
+                .setAttribute("/*/Body/*/name", "x", "1"); // no element named name in document
+        String expected = DOC.replace("<wsse:Security><token a=\">\">secret<!-- <x> --></token></wsse:Security>", "")
+                .replace("<![CDATA[4111 </card>]]>", "****")
+                .replace("<amount currency=\"CNY\" >12.5</amount>", "<total currency=\"CNY\" >12.5</total>")
+                .replace("status=\"new\">", "status=\"&quot;done&quot;\" by=\"a &amp; b\">")
+                .replace("<note/>", "<note>&lt;none&gt;</note>")
+                .replace("<item>汤姆</item>", "<name>汤姆</name>")
+                .replace("<item>杰瑞</item>", "<name>杰瑞</name>");
+        byte[] doc = DOC.getBytes(UTF_8);
+        for (int i = 0; i < 2; i++) { // rewriter is reusable
+            Assert.assertEquals(expected, new String(rewriter.rewrite(doc), UTF_8));
+        }
+
+        // charset from param, and output to stream
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new FastXmlRewriter().replaceText("token", "").rename("Security", "s").setAttribute("trace", "id", "1")
+                .rewrite(doc, UTF_8, out);
+        expected = DOC.replace("<wsse:Security><token a=\">\">secret<!-- <x> --></token></wsse:Security><trace/>",
+                "<s><token a=\">\"></token></s><trace id=\"1\"/>");
+        Assert.assertEquals(expected, new String(out.toByteArray(), UTF_8));
+    }
+
+    @Test
+    public void testBadRule() throws ParseException, IOException {
+        FastXmlRewriter rewriter = new FastXmlRewriter();
+        try {
+            rewriter.rename("a", "b c");
+            Assert.fail("invalid name should not be accepted");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        rewriter.delete("a").rewrite("<r><a/></r>".getBytes(UTF_8));
+        try {
+            rewriter.delete("b");
+            Assert.fail("rule should not be added after rewriting");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+}
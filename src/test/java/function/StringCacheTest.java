@@ -0,0 +1,119 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.util.StringCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * tests of StringCache
+ */
+public class StringCacheTest {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+
+    @Test
+    public void testGet() {
+        StringCache cache = new StringCache(10, 8);
+        Assert.assertEquals(16, cache.getCapacity());
+        byte[] bytes = "<a>CNY</a><b>CNY</b><c>汤姆</c><d>a long value</d>".getBytes(UTF_8);
+        String first = cache.get(bytes, 3, 3, null);
+        Assert.assertEquals("CNY", first);
+        Assert.assertSame(first, cache.get(bytes, 13, 3, null));
+        Assert.assertEquals("汤姆", cache.get(bytes, 23, 6, UTF_8));
+        Assert.assertSame(cache.get(bytes, 23, 6, UTF_8), cache.get(bytes, 23, 6, UTF_8));
+        Assert.assertNull(cache.get(bytes, 3, 0, null));
+        // bytes longer than max length are not cached or counted
+        Assert.assertEquals("a long value", cache.get(bytes, 36, 12, null));
+        Assert.assertNotSame(cache.get(bytes, 36, 12, null), cache.get(bytes, 36, 12, null));
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+
+        cache.clear();
+        Assert.assertNotSame(first, cache.get(bytes, 3, 3, null));
+        Assert.assertEquals(0, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        try {
+            new StringCache(0, 8);
+            Assert.fail("capacity should be positive");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * values hit since the clock hand passed are kept when new values are added
+     */
+    @Test
+    public void testEviction() {
+        StringCache cache = new StringCache(4, 8); // only one set
+        byte[] hot = "hot".getBytes();
+        String value = cache.get(hot, 0, hot.length, null);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertSame(value, cache.get(hot, 0, hot.length, null));
+            byte[] cold = ("cold" + i).getBytes();
+            Assert.assertEquals("cold" + i, cache.get(cold, 0, cold.length, null));
+        }
+        Assert.assertEquals(100, cache.getHits());
+        Assert.assertEquals(101, cache.getMisses());
+    }
+
+    /**
+     * a cache shared by threads returns right values
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        final StringCache cache = new StringCache(64, 16);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(pool.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        int errors = 0;
+                        for (int i = 0; i < 100000; i++) {
+                            String expect = "v" + (i % 200);
+                            byte[] bytes = expect.getBytes();
+                            if (!expect.equals(cache.get(bytes, 0, bytes.length, null))) {
+                                errors++;
+                            }
+                        }
+                        return errors;
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                Assert.assertEquals(Integer.valueOf(0), future.get());
+            }
+            Assert.assertEquals(400000, cache.getHits() + cache.getMisses());
+            Assert.assertTrue(cache.getHits() > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
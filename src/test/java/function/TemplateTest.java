@@ -0,0 +1,134 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlTemplate;
+import com.github.fastxml.FastXmlWriter;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * tests of FastXmlTemplate
+ */
+public class TemplateTest {
+
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+    private final static String TEMPLATE = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\"><soap:Body>"
+            + "<order id=\"${id}\" note=\"note: ${note}\"><name>${name}</name><price>${price}</price>"
+            + "<copy>${name} &amp; ${id}</copy></order></soap:Body></soap:Envelope>";
+
+    /**
+     * slots should be replaced by escaped values, and other bytes should be kept
+     *
+     * @throws ParseException
+     * @throws IOException
+     */
+    @Test
+    public void testRender() throws ParseException, IOException {
+        FastXmlTemplate template = FastXmlTemplate.compile(TEMPLATE.getBytes(UTF_8));
+        Assert.assertEquals(UTF_8, template.getCharset());
+        Assert.assertArrayEquals(new String[]{"id", "note", "name", "price"}, template.getSlotNames());
+        Assert.assertEquals(2, template.indexOf("name"));
+        Assert.assertEquals(-1, template.indexOf("none"));
+
+        String expected = TEMPLATE.replace("${id}", "42").replace("${note}", "&quot;a&quot; &lt; b")
+                .replace("${name}", "汤姆 &amp; 杰瑞").replace("${price}", "12.5");
+        byte[] bytes = template.render(42, "\"a\" < b", "汤姆 & 杰瑞", 12.5);
+        Assert.assertEquals(expected, new String(bytes, UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.render(out, 42, "\"a\" < b", "汤姆 & 杰瑞", 12.5);
+        Assert.assertEquals(expected, new String(out.toByteArray(), UTF_8));
+
+        // render as a fragment of a bigger document
+        FastXmlTemplate item = FastXmlTemplate.compile("<item>${value}</item>".getBytes(UTF_8), UTF_8);
+        FastXmlWriter writer = new FastXmlWriter(UTF_8, 64);
+        writer.writeStartElement("items");
+        writer.writeAttribute("count", "2");
+        item.render(writer, "a");
+        item.render(writer, (Object) null);
+        writer.writeEndDocument();
+        Assert.assertEquals("<items count=\"2\"><item>a</item><item></item></items>", new String(writer.toByteArray(), UTF_8));
+
+        try {
+            item.render(new FastXmlWriter(Charset.forName("GBK"), 64), "a");
+            Assert.fail("charset of writer should be checked");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            FastXmlTemplate.compile("<a>${value</a>".getBytes(UTF_8));
+            Assert.fail("unclosed slot should not be compiled");
+        } catch (ParseException e) {
+            // expected
+        }
+        try {
+            FastXmlTemplate.compile("<a><![CDATA[x ${value} y]]></a>".getBytes(UTF_8));
+            Assert.fail("slot in CDATA should not be compiled");
+        } catch (ParseException e) {
+            // expected
+        }
+        FastXmlTemplate cdata = FastXmlTemplate.compile("<a><![CDATA[$]]>${value}<![CDATA[{x}]]></a>".getBytes(UTF_8), UTF_8);
+        Assert.assertEquals(1, cdata.getSlotCount());
+        Assert.assertEquals("<a><![CDATA[$]]>&lt;<![CDATA[{x}]]></a>", new String(cdata.render("<"), UTF_8));
+    }
+
+    /**
+     * a compiled template can be rendered by many threads
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentRender() throws Exception {
+        final FastXmlTemplate template = FastXmlTemplate.compile(TEMPLATE.getBytes(UTF_8));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 4; t++) {
+                final int thread = t;
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < 2000; i++) {
+                            String name = "name" + thread + "_" + i;
+                            String xml = new String(template.render(i, "", name, 0.5), UTF_8);
+                            if (!xml.contains("<name>" + name + "</name>") || !xml.contains("id=\"" + i + "\"")) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                Assert.assertTrue(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2016 FastXml author(https://github.com/fastxml/fastxml)
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package function;
+
+import com.github.fastxml.FastXmlFactory;
+import com.github.fastxml.FastXmlParser;
+import com.github.fastxml.FastXmlWriter;
+import com.github.fastxml.exception.ParseException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * tests of FastXmlWriter
+ */
+public class WriterTest {
+
+    private final static FastXmlWriter.Name ORDER = FastXmlWriter.name("order");
+    private final static FastXmlWriter.Name ID = FastXmlWriter.name("id");
+    private final static FastXmlWriter.Name ITEM = FastXmlWriter.name("item");
+    private final static FastXmlWriter.Name PRICE = FastXmlWriter.name("price");
+    private final static Charset UTF_8 = Charset.forName("utf-8");
+
+    /**
+     * written document should be parsed back to the same values, and open elements are closed by writeEndDocument()
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testWriteAndParse() throws IOException, ParseException {
+        FastXmlWriter writer = new FastXmlWriter(UTF_8, 64);
+        writer.writeStartDocument();
+        writer.writeStartElement(ORDER);
+        writer.writeAttribute(ID, 42);
+        writer.writeAttribute(FastXmlWriter.name("note"), "a<b & \"c\" 'd'");
+        writer.writeElement(ITEM, "汤姆克鲁兹 & 𝄞");
+        writer.writeStartElement(PRICE);
+        writer.writeText(-12.75);
+        writer.writeEndElement();
+        writer.writeStartElement(ITEM);
+        writer.writeEndElement();
+        writer.writeStartElement("time");
+        writer.writeTimestamp(1473842096789L);
+        writer.writeEndDocument();
+        Assert.assertEquals(0, writer.getDepth());
+
+        String xml = new String(writer.toByteArray(), UTF_8);
+        Assert.assertEquals("<?xml version=\"1.0\" encoding=\"UTF-8\"?><order id=\"42\" note=\"a&lt;b &amp; &quot;c&quot; &apos;d&apos;\">"
+                + "<item>汤姆克鲁兹 &amp; 𝄞</item><price>-12.75</price><item/><time>2016-09-14T08:34:56.789Z</time></order>", xml);
+
+        FastXmlParser parser = FastXmlFactory.newInstance(writer.toByteArray());
+        StringBuilder sb = new StringBuilder();
+        for (int event = parser.next(); event != FastXmlParser.END_DOCUMENT; event = parser.next()) {
+            if (event == FastXmlParser.ATTRIBUTE_VALUE || event == FastXmlParser.TEXT) {
+                sb.append(parser.getStringWithDecoding()).append('|');
+            }
+        }
+        Assert.assertEquals("42|a<b & \"c\" 'd'|汤姆克鲁兹 & 𝄞|-12.75|2016-09-14T08:34:56.789Z|", sb.toString());
+    }
+
+    /**
+     * numbers should be the same as String.valueOf(), and doubles should be parsed back to the same value
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testNumbers() throws IOException {
+        FastXmlWriter writer = new FastXmlWriter(UTF_8, 64);
+        long[] longs = {0, 1, -1, 9, 10, 99, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, 1234567890123L};
+        for (long value : longs) {
+            writer.reset();
+            writer.writeText(value);
+            Assert.assertEquals(String.valueOf(value), new String(writer.toByteArray(), UTF_8));
+        }
+        double[] doubles = {0.0, -0.0, 1.0, 0.1, 0.5, 123.456, 1e-7, 1.5e-5, 0.30000000000000004, 1e15, 1e300, -2.5e-300,
+                Double.MIN_VALUE, Double.MAX_VALUE, 3.141592653589793};
+        for (double value : doubles) {
+            assertDouble(writer, value);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            assertDouble(writer, random.nextDouble() * Math.pow(10, random.nextInt(20) - 8));
+            assertDouble(writer, Math.round(random.nextDouble() * 100000) / 100.0);
+        }
+        writer.reset();
+        writer.writeText(0.1);
+        writer.writeText(" ");
+        writer.writeText(123.0);
+        writer.writeText(" ");
+        writer.writeText(Double.NEGATIVE_INFINITY);
+        Assert.assertEquals("0.1 123.0 -INF", new String(writer.toByteArray(), UTF_8));
+    }
+
+    private void assertDouble(FastXmlWriter writer, double value) throws IOException {
+        writer.reset();
+        writer.writeText(value);
+        String text = new String(writer.toByteArray(), UTF_8);
+        Assert.assertEquals(text, Double.doubleToLongBits(value), Double.doubleToLongBits(Double.parseDouble(text)));
+    }
+
+    /**
+     * timestamps should be the same as SimpleDateFormat in UTC
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testTimestamp() throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        FastXmlWriter writer = new FastXmlWriter(UTF_8, 64);
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long millis = (long) ((random.nextDouble() - 0.3) * 4e12); // from 1932 to 2096
+            writer.reset();
+            writer.writeTimestamp(millis);
+            Assert.assertEquals(format.format(new Date(millis)), new String(writer.toByteArray(), UTF_8));
+        }
+    }
+
+    /**
+     * write into output stream with a small buffer, byte buffers, and in a charset which can not encode every char
+     *
+     * @throws IOException
+     * @throws ParseException
+     */
+    @Test
+    public void testOutputs() throws IOException, ParseException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("text <").append(i).append("> 文本 ");
+        }
+        FastXmlWriter writer = new FastXmlWriter(UTF_8, 64);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.setOutput(out);
+        writer.writeElement(ITEM, text.toString());
+        writer.flush();
+        FastXmlParser parser = FastXmlFactory.newInstance(out.toByteArray(), UTF_8);
+        parser.next();
+        parser.next();
+        parser.next();
+        Assert.assertEquals(text.toString(), parser.getStringWithDecoding());
+
+        ByteBuffer heap = ByteBuffer.allocate(100);
+        heap.position(10);
+        ByteBuffer slice = heap.slice();
+        writer.setOutput(slice);
+        writer.writeElement(ITEM, 12345);
+        writer.flush();
+        Assert.assertEquals("<item>12345</item>".length(), slice.position());
+        Assert.assertEquals("<item>12345</item>", new String(heap.array(), 10, slice.position(), UTF_8));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(100);
+        writer.setOutput(direct);
+        writer.writeElement(ITEM, "abc");
+        writer.flush();
+        Assert.assertEquals("<item>abc</item>".length(), direct.position());
+
+        writer.setOutput(ByteBuffer.allocate(10));
+        try {
+            writer.writeElement(ITEM, "too long");
+            Assert.fail("BufferOverflowException should be thrown");
+        } catch (BufferOverflowException e) {
+            // expected
+        }
+
+        FastXmlWriter gbkWriter = new FastXmlWriter(Charset.forName("GBK"), 64);
+        gbkWriter.writeStartDocument();
+        gbkWriter.writeElement(ITEM, "汤姆 ☃");
+        gbkWriter.writeElement(ITEM, "𝄞");
+        Assert.assertTrue(new String(gbkWriter.toByteArray(), "GBK").endsWith("<item>&#119070;</item>"));
+        parser = FastXmlFactory.newInstance(gbkWriter.toByteArray());
+        parser.next();
+        Assert.assertEquals(Charset.forName("GBK"), parser.getEncode());
+        parser.next();
+        parser.next();
+        Assert.assertEquals("汤姆 ☃", parser.getStringWithDecoding());
+    }
+}